@@ -119,6 +119,13 @@ object Deps {
     }
   }
 
+  object Jmh {
+    private const val version = "1.25"
+
+    const val Core = "org.openjdk.jmh:jmh-core:$version"
+    const val GeneratorAnnotationProcessor = "org.openjdk.jmh:jmh-generator-annprocess:$version"
+  }
+
   object JUnit {
     private const val version = "4.13"
 
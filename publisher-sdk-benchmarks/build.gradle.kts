@@ -0,0 +1,58 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+plugins {
+  id("com.android.library")
+}
+
+androidLibModule()
+
+dependencies {
+  testImplementation(project(":publisher-sdk"))
+  testImplementation(Deps.AndroidX.Annotations)
+  testImplementation(Deps.Json.Json)
+  testImplementation(Deps.Mockito.Core)
+  testImplementation(Deps.Jmh.Core)
+  testAnnotationProcessor(Deps.Jmh.GeneratorAnnotationProcessor)
+}
+
+// Benchmarks are JMH classes compiled with the JVM unit tests, so they run on a plain JVM against
+// the mockable Android jar (see unitTests.isReturnDefaultValues in AndroidModule.kt).
+// Run with `./gradlew :publisher-sdk-benchmarks:jmh`, optionally filtered with
+// `-Pjmh.include=<regexp>`. Results are written as JSON so they can be archived and compared
+// between releases.
+afterEvaluate {
+  val unitTest = tasks.getByName<Test>("testDebugUnitTest")
+
+  tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs the JMH benchmarks and writes the results in build/reports/jmh/results.json"
+
+    val resultFile = buildDir.resolve("reports/jmh/results.json")
+    outputs.file(resultFile)
+    outputs.upToDateWhen { false }
+
+    dependsOn("compileDebugUnitTestSources")
+    classpath = unitTest.classpath
+    main = "org.openjdk.jmh.Main"
+    args("-rf", "json", "-rff", resultFile.absolutePath)
+    findProperty("jmh.include")?.let { args(it.toString()) }
+
+    doFirst {
+      resultFile.parentFile.mkdirs()
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.criteo.publisher;
+
+import static com.criteo.publisher.BenchmarkStubs.stub;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.criteo.publisher.dependency.LazyDependency;
+import com.criteo.publisher.headerbidding.AppBiddingLogMessage;
+import com.criteo.publisher.logging.LogHandler;
+import com.criteo.publisher.logging.LogLevelGate;
+import com.criteo.publisher.logging.LogMessage;
+import com.criteo.publisher.logging.Logger;
+import com.criteo.publisher.logging.LoggerFactory;
+import com.criteo.publisher.model.AdSize;
+import com.criteo.publisher.model.BannerAdUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the messages logged while loading a banner, when no handler logs them, which is
+ * the case in production.
+ * <p>
+ * {@link #eagerMessages()} builds each message before giving it to the logger, as the SDK used to
+ * do, while {@link #lazyMessages()} only builds them if their level is loggable. This is mostly
+ * about allocations: run it with <code>-prof gc</code> and compare <code>gc.alloc.rate.norm</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BannerLoadLoggingBenchmark {
+
+  private Logger logger;
+  private CriteoBannerView bannerView;
+  private BannerAdUnit adUnit;
+
+  /**
+   * No bid is found in this scenario. This is typed so the overloaded factories can be resolved.
+   */
+  private Bid noBid;
+
+  @Setup
+  public void setUp() {
+    List<LazyDependency<LogHandler>> handlers = Collections.singletonList(
+        new LazyDependency<>("SilentHandler", SilentHandler::new)
+    );
+
+    LogLevelGate logLevelGate = new LogLevelGate(handlers);
+    logLevelGate.refresh();
+
+    logger = new LoggerFactory(handlers, null, logLevelGate)
+        .createLogger(BannerLoadLoggingBenchmark.class);
+    bannerView = stub(CriteoBannerView.class);
+    adUnit = new BannerAdUnit("adUnit", new AdSize(320, 50));
+  }
+
+  @Benchmark
+  public void eagerMessages() {
+    logger.log(BannerLogMessage.onBannerViewInitialized(adUnit));
+    logger.log(BannerLogMessage.onBannerViewLoading(bannerView, noBid));
+    logger.log(BiddingLogMessage.onConsumableBidLoaded(adUnit, noBid));
+    logger.log(AppBiddingLogMessage.onTryingToEnrichAdObjectFromBid(noBid));
+    logger.log(BannerLogMessage.onBannerViewLoaded(bannerView));
+  }
+
+  @Benchmark
+  public void lazyMessages() {
+    logger.log(Log.INFO, BannerLogMessage::onBannerViewInitialized, adUnit);
+    logger.log(Log.INFO, BannerLogMessage::onBannerViewLoading, bannerView, noBid);
+    logger.log(Log.INFO, BiddingLogMessage::onConsumableBidLoaded, adUnit, noBid);
+    logger.log(Log.INFO, AppBiddingLogMessage::onTryingToEnrichAdObjectFromBid, noBid);
+    logger.log(Log.INFO, BannerLogMessage::onBannerViewLoaded, bannerView);
+  }
+
+  /**
+   * Handler logging nothing, as the console and remote handlers in production with their default
+   * levels.
+   */
+  private static class SilentHandler implements LogHandler {
+    @Override
+    public void log(@NonNull String tag, @NonNull LogMessage logMessage) {
+      // Nothing is logged
+    }
+
+    @Override
+    public boolean isLoggable(int level) {
+      return false;
+    }
+  }
+}
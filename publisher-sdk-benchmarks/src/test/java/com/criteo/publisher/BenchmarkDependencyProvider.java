@@ -0,0 +1,47 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher;
+
+import androidx.annotation.NonNull;
+import com.criteo.publisher.logging.LoggerFactory;
+import java.util.Collections;
+
+/**
+ * {@link DependencyProvider} usable outside of an Android application.
+ * <p>
+ * Benchmarked classes get their {@link com.criteo.publisher.logging.Logger} and Gson instance from
+ * the global provider. The default log handlers need an application context, so this provider
+ * gives loggers without any handler instead. Other dependencies are built as in production.
+ */
+public class BenchmarkDependencyProvider extends DependencyProvider {
+
+  private final LoggerFactory loggerFactory = new LoggerFactory(Collections.emptyList());
+
+  public static void install() {
+    DependencyProvider.setInstance(new BenchmarkDependencyProvider());
+  }
+
+  public static void uninstall() {
+    DependencyProvider.setInstance(null);
+  }
+
+  @NonNull
+  @Override
+  public LoggerFactory provideLoggerFactory() {
+    return loggerFactory;
+  }
+}
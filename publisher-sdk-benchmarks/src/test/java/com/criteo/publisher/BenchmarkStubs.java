@@ -0,0 +1,59 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+import com.criteo.publisher.model.AdSize;
+import com.criteo.publisher.util.DeviceUtil;
+
+public final class BenchmarkStubs {
+
+  public static final AdSize SCREEN_SIZE = new AdSize(360, 640);
+
+  private BenchmarkStubs() {
+  }
+
+  /**
+   * Returns a mock that does not record its invocations.
+   * <p>
+   * Benchmarks invoke their collaborators millions of times, a regular mock would keep all those
+   * invocations in memory and end up measuring the garbage collector.
+   */
+  @NonNull
+  public static <T> T stub(@NonNull Class<T> klass) {
+    return mock(klass, withSettings().stubOnly());
+  }
+
+  @NonNull
+  public static DeviceUtil stubDeviceUtil() {
+    DeviceUtil deviceUtil = stub(DeviceUtil.class);
+    when(deviceUtil.getCurrentScreenSize()).thenReturn(SCREEN_SIZE);
+    return deviceUtil;
+  }
+
+  @NonNull
+  public static Context stubContext() {
+    Context context = stub(Context.class);
+    when(context.getPackageName()).thenReturn("com.criteo.publisher.benchmarks");
+    return context;
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher;
+
+import static com.criteo.publisher.BenchmarkStubs.stub;
+import static com.criteo.publisher.BenchmarkStubs.stubDeviceUtil;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import com.criteo.publisher.bid.BidLifecycleListener;
+import com.criteo.publisher.cache.BidRefillPolicy;
+import com.criteo.publisher.cache.SdkCache;
+import com.criteo.publisher.context.ContextData;
+import com.criteo.publisher.model.AdSize;
+import com.criteo.publisher.model.AdUnit;
+import com.criteo.publisher.model.AdUnitMapper;
+import com.criteo.publisher.model.BannerAdUnit;
+import com.criteo.publisher.model.CacheAdUnit;
+import com.criteo.publisher.model.CdbResponseSlot;
+import com.criteo.publisher.model.Config;
+import com.criteo.publisher.network.BidRequestSender;
+import com.criteo.publisher.network.LiveBidRequestSender;
+import com.criteo.publisher.privacy.ConsentData;
+import com.criteo.publisher.util.DeviceUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link BidManager#getBidForAdUnitAndPrefetch(AdUnit, ContextData)}, the path taken
+ * by every bid asked by the publisher when live bidding is disabled.
+ * <p>
+ * The CDB call is replaced by an immediate response: the prefetch triggered by each consumption
+ * directly caches new valid bids, as {@link BidManager#setCacheAdUnits(List)} would do on a real
+ * response. So each invocation reads the cache, consumes a bid, computes the refill depth and
+ * refills the cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BidManagerBenchmark {
+
+  @Param({"1", "32"})
+  public int adUnitCount;
+
+  private BidManager bidManager;
+  private AdUnit[] adUnits;
+  private ContextData contextData;
+
+  @Setup
+  public void setUp() {
+    BenchmarkDependencyProvider.install();
+
+    Clock clock = new EpochClock();
+    DeviceUtil deviceUtil = stubDeviceUtil();
+
+    SdkCache sdkCache = new SdkCache(deviceUtil);
+    BidRequestSender bidRequestSender = stub(BidRequestSender.class);
+
+    bidManager = new BidManager(
+        sdkCache,
+        stub(Config.class),
+        clock,
+        new BidRefillPolicy(clock),
+        new AdUnitMapper(deviceUtil),
+        bidRequestSender,
+        stub(LiveBidRequestSender.class),
+        stub(BidLifecycleListener.class),
+        stub(ConsentData.class)
+    );
+
+    doAnswer(invocation -> {
+      List<CacheAdUnit> requestedAdUnits = invocation.getArgument(0);
+      List<CdbResponseSlot> slots = new ArrayList<>(requestedAdUnits.size());
+      for (CacheAdUnit requestedAdUnit : requestedAdUnits) {
+        slots.add(newValidBid(requestedAdUnit, clock.getCurrentTimeInMillis()));
+      }
+      bidManager.setCacheAdUnits(slots);
+      return null;
+    }).when(bidRequestSender).sendBidRequest(any(), any(), any());
+
+    adUnits = new AdUnit[adUnitCount];
+    for (int i = 0; i < adUnitCount; i++) {
+      adUnits[i] = new BannerAdUnit("adUnit" + i, new AdSize(320, 50));
+    }
+
+    contextData = new ContextData().set(ContextData.CONTENT_URL, "https://criteo.com");
+
+    // Fill the cache a first time so measured invocations always find a bid
+    for (AdUnit adUnit : adUnits) {
+      bidManager.getBidForAdUnitAndPrefetch(adUnit, contextData);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkDependencyProvider.uninstall();
+  }
+
+  @State(Scope.Thread)
+  public static class AdUnitCursor {
+    private int index;
+
+    int next(int bound) {
+      index = (index + 1) % bound;
+      return index;
+    }
+  }
+
+  @Benchmark
+  public CdbResponseSlot getBidForAdUnitAndPrefetch(AdUnitCursor cursor) {
+    return bidManager.getBidForAdUnitAndPrefetch(adUnits[cursor.next(adUnitCount)], contextData);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public CdbResponseSlot getBidForAdUnitAndPrefetch_Contended(AdUnitCursor cursor) {
+    return bidManager.getBidForAdUnitAndPrefetch(adUnits[cursor.next(adUnitCount)], contextData);
+  }
+
+  private static CdbResponseSlot newValidBid(CacheAdUnit cacheAdUnit, long timeOfDownload) {
+    return new CdbResponseSlot(
+        null,
+        cacheAdUnit.getPlacementId(),
+        null,
+        "1.00",
+        "USD",
+        cacheAdUnit.getSize().getWidth(),
+        cacheAdUnit.getSize().getHeight(),
+        "https://criteo.com/display.js",
+        null,
+        3600,
+        timeOfDownload
+    );
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.bid;
+
+import com.criteo.publisher.EpochClock;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link UniqueIdGenerator}, invoked once per CDB request and once per requested slot.
+ * <p>
+ * {@link #generateId()} includes the random generation of the {@link UUID}, which is shared by
+ * all threads, while {@link #formatId()} only measures the formatting of a given one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UniqueIdGeneratorBenchmark {
+
+  private final UniqueIdGenerator generator = new UniqueIdGenerator(new EpochClock());
+  private final UUID uuid = UUID.randomUUID();
+
+  @Benchmark
+  public String generateId() {
+    return generator.generateId();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public String generateId_Contended() {
+    return generator.generateId();
+  }
+
+  @Benchmark
+  public String formatId() {
+    return generator.generateId(uuid, 1600000000L);
+  }
+
+}
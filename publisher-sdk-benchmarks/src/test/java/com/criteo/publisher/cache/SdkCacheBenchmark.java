@@ -0,0 +1,137 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.cache;
+
+import static com.criteo.publisher.BenchmarkStubs.stubDeviceUtil;
+
+import com.criteo.publisher.BenchmarkDependencyProvider;
+import com.criteo.publisher.model.AdSize;
+import com.criteo.publisher.model.CacheAdUnit;
+import com.criteo.publisher.model.CdbResponseSlot;
+import com.criteo.publisher.util.AdUnitType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of the {@link SdkCache} operations done for each consumed bid: a bid is added (as on
+ * a CDB response), peeked and then removed (as on a consumption).
+ * <p>
+ * The contended variant runs the same cycle from several threads on distinct ad units, which
+ * measures the cost of the lock striping when ad units are used concurrently.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SdkCacheBenchmark {
+
+  /**
+   * Number of bids already cached for each ad unit, so insertions are done in a non-empty queue.
+   */
+  @Param({"0", "3"})
+  public int cachedBidsPerAdUnit;
+
+  private SdkCache sdkCache;
+
+  @Setup
+  public void setUp() {
+    BenchmarkDependencyProvider.install();
+    sdkCache = new SdkCache(stubDeviceUtil(), cachedBidsPerAdUnit + 1);
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkDependencyProvider.uninstall();
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadAdUnit {
+    private static int threadCount = 0;
+
+    CacheAdUnit cacheAdUnit;
+    CdbResponseSlot slot;
+
+    @Setup
+    public void setUp(SdkCacheBenchmark benchmark) {
+      int threadIndex;
+      synchronized (ThreadAdUnit.class) {
+        threadIndex = threadCount++;
+      }
+
+      String placementId = "adUnit" + threadIndex;
+      AdSize size = new AdSize(320, 50);
+      cacheAdUnit = new CacheAdUnit(size, placementId, AdUnitType.CRITEO_BANNER);
+      slot = newBid(placementId, size, 3600);
+
+      for (int i = 0; i < benchmark.cachedBidsPerAdUnit; i++) {
+        // Cached bids are expiring after the measured one, so it is always peeked first
+        benchmark.sdkCache.add(newBid(placementId, size, 7200));
+      }
+    }
+  }
+
+  @Benchmark
+  public void addPeekRemove(ThreadAdUnit threadAdUnit, Blackhole blackhole) {
+    addPeekRemove(threadAdUnit.cacheAdUnit, threadAdUnit.slot, blackhole);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void addPeekRemove_Contended(ThreadAdUnit threadAdUnit, Blackhole blackhole) {
+    addPeekRemove(threadAdUnit.cacheAdUnit, threadAdUnit.slot, blackhole);
+  }
+
+  private void addPeekRemove(CacheAdUnit cacheAdUnit, CdbResponseSlot slot, Blackhole blackhole) {
+    synchronized (sdkCache.getLock(cacheAdUnit)) {
+      sdkCache.add(slot);
+      blackhole.consume(sdkCache.peekAdUnit(cacheAdUnit));
+      sdkCache.remove(cacheAdUnit);
+    }
+  }
+
+  private static CdbResponseSlot newBid(String placementId, AdSize size, int ttlInSeconds) {
+    return new CdbResponseSlot(
+        null,
+        placementId,
+        null,
+        "1.00",
+        "USD",
+        size.getWidth(),
+        size.getHeight(),
+        "https://criteo.com/display.js",
+        null,
+        ttlInSeconds,
+        System.currentTimeMillis()
+    );
+  }
+
+}
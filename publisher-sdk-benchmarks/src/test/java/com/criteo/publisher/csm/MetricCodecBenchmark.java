@@ -0,0 +1,134 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import com.criteo.publisher.BenchmarkDependencyProvider;
+import com.criteo.publisher.DependencyProvider;
+import com.criteo.publisher.csm.ObjectQueueFactory.AdapterConverter;
+import com.criteo.publisher.util.JsonSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the format of the metrics stored in the CSM sending queue: the JSON of previous
+ * versions against the binary {@link MetricCodec}.
+ * <p>
+ * Besides the time, the size of the stored element is reported by the <code>storedBytes</code>
+ * secondary result of the write benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricCodecBenchmark {
+
+  private JsonSerializer jsonSerializer;
+  private AdapterConverter<Metric> converter;
+  private Metric metric;
+  private byte[] json;
+  private byte[] binary;
+
+  /**
+   * Size in bytes of the stored element, reported as is since all elements have the same size.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class StoredBytes {
+    public long storedBytes;
+
+    void record(int size) {
+      storedBytes = size;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkDependencyProvider.install();
+    jsonSerializer = DependencyProvider.getInstance().provideJsonSerializer();
+    converter = new AdapterConverter<>(jsonSerializer, Metric.class, new MetricCodec());
+
+    metric = Metric.builder("5f4e2b5a3c8e9d7f1a2b3c4d5e6f7a8b")
+        .setRequestGroupId("0b4c4e4f2a7b4e1c9b3d0a1b2c3d4e5f")
+        .setCdbCallStartTimestamp(1600000000000L)
+        .setCdbCallEndTimestamp(1600000000042L)
+        .setElapsedTimestamp(1600000001337L)
+        .setProfileId(235)
+        .setZoneId(1337)
+        .setReadyToSend(true)
+        .build();
+
+    json = writeJson().toByteArray();
+    binary = writeBinary().toByteArray();
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkDependencyProvider.uninstall();
+  }
+
+  @Benchmark
+  public ByteArrayOutputStream writeJson(StoredBytes storedBytes) throws IOException {
+    ByteArrayOutputStream output = writeJson();
+    storedBytes.record(output.size());
+    return output;
+  }
+
+  @Benchmark
+  public ByteArrayOutputStream writeBinary(StoredBytes storedBytes) throws IOException {
+    ByteArrayOutputStream output = writeBinary();
+    storedBytes.record(output.size());
+    return output;
+  }
+
+  @Benchmark
+  public Metric readJson() throws IOException {
+    return jsonSerializer.read(Metric.class, new ByteArrayInputStream(json));
+  }
+
+  @Benchmark
+  public Metric readBinary() throws IOException {
+    return converter.from(binary);
+  }
+
+  private ByteArrayOutputStream writeJson() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    jsonSerializer.write(metric, output);
+    return output;
+  }
+
+  private ByteArrayOutputStream writeBinary() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    converter.toStream(metric, output);
+    return output;
+  }
+}
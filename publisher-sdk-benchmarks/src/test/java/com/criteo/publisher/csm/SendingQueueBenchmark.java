@@ -0,0 +1,158 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import static com.criteo.publisher.BenchmarkStubs.stub;
+import static com.criteo.publisher.BenchmarkStubs.stubContext;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import com.criteo.publisher.BenchmarkDependencyProvider;
+import com.criteo.publisher.DependencyProvider;
+import com.criteo.publisher.util.BuildConfigWrapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the CSM sending queue as built in production, with both backends: a bounded queue
+ * over a Tape file, and a ring buffer over a memory-mapped file.
+ * <p>
+ * With Tape, each offer reads the total size of the queue to enforce its bound. The queue is
+ * pre-filled with {@link #queuedMetrics} metrics, and each measured operation keeps this number
+ * constant, so the results show how the cost evolves when the queue fills up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SendingQueueBenchmark {
+
+  /**
+   * Default size of the CSM batches, see {@link BuildConfigWrapper#getCsmBatchSize()}.
+   */
+  private static final int BATCH_SIZE = 24;
+
+  /**
+   * Large enough to never evict metrics during the benchmark.
+   */
+  private static final int MAX_SIZE_OF_QUEUE = 16 * 1024 * 1024;
+
+  @Param({"0", "1000", "10000"})
+  public int queuedMetrics;
+
+  @Param({"tape", "mappedRingBuffer"})
+  public String backend;
+
+  private File filesDir;
+  private ConcurrentSendingQueue<Metric> queue;
+  private Metric metric;
+  private List<Metric> batch;
+
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkDependencyProvider.install();
+    DependencyProvider dependencyProvider = DependencyProvider.getInstance();
+
+    filesDir = Files.createTempDirectory("csm").toFile();
+    Context context = stubContext();
+    when(context.getFilesDir()).thenReturn(filesDir);
+
+    BuildConfigWrapper buildConfigWrapper = stub(BuildConfigWrapper.class);
+    when(buildConfigWrapper.getMaxSizeOfCsmMetricSendingQueue()).thenReturn(MAX_SIZE_OF_QUEUE);
+    when(buildConfigWrapper.getCsmQueueFilename()).thenReturn("queue");
+    when(buildConfigWrapper.isSendingQueueMappedRingBufferEnabled())
+        .thenReturn("mappedRingBuffer".equals(backend));
+
+    MetricSendingQueueConfiguration configuration =
+        new MetricSendingQueueConfiguration(buildConfigWrapper);
+
+    ObjectQueueFactory<Metric> objectQueueFactory = new ObjectQueueFactory<>(
+        context,
+        dependencyProvider.provideJsonSerializer(),
+        configuration
+    );
+    queue = new SendingQueueFactory<>(objectQueueFactory, configuration, buildConfigWrapper)
+        .create();
+
+    metric = Metric.builder("5f4e2b5a3c8e9d7f1a2b3c4d5e6f7a8b")
+        .setRequestGroupId("0b4c4e4f-2a7b-4e1c-9b3d-0a1b2c3d4e5f")
+        .setCdbCallStartTimestamp(1600000000000L)
+        .setCdbCallEndTimestamp(1600000000042L)
+        .setElapsedTimestamp(1600000001337L)
+        .setProfileId(235)
+        .setZoneId(1337)
+        .setReadyToSend(true)
+        .build();
+
+    batch = Collections.nCopies(BATCH_SIZE, metric);
+
+    for (int i = 0; i < queuedMetrics; i++) {
+      queue.offer(metric);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkDependencyProvider.uninstall();
+
+    File[] files = filesDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    filesDir.delete();
+  }
+
+  @Benchmark
+  public int offerThenPoll() {
+    queue.offer(metric);
+    return queue.poll(1).size();
+  }
+
+  /**
+   * Same as a CSM batch that is sent and then rolled back.
+   */
+  @Benchmark
+  public int offerAllThenPollBatch() {
+    queue.offerAll(batch);
+    return queue.poll(BATCH_SIZE).size();
+  }
+
+  @Benchmark
+  public int getTotalSize() {
+    return queue.getTotalSize();
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.logging;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.criteo.publisher.EpochClock;
+import com.criteo.publisher.dependency.LazyDependency;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the cost of a {@link Logger#log(LogMessage)} call for the calling thread, when
+ * messages are handled on this thread or handed over to an {@link AsyncLogDispatcher}.
+ * <p>
+ * The production handlers need an Android runtime, so they are replaced by a handler doing the
+ * same kind of work: formatting the stack trace and the date of the message. In the asynchronous
+ * mode, a caller faster than the consumer fills the ring, and its messages are then dropped: this
+ * is also part of the measured cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggerBenchmark {
+
+  @Param({"sync", "async"})
+  public String mode;
+
+  private Logger logger;
+  private LogMessage messageWithThrowable;
+  private LogMessage messageWithoutThrowable;
+
+  @Setup
+  public void setUp() {
+    AsyncLogDispatcher dispatcher = null;
+    if ("async".equals(mode)) {
+      dispatcher = new AsyncLogDispatcher(1024, runnable -> {
+        Thread thread = new Thread(runnable, "logging");
+        thread.setDaemon(true);
+        return thread;
+      }, new EpochClock());
+    }
+
+    logger = new LoggerFactory(
+        Collections.singletonList(
+            new LazyDependency<>("FormattingHandler", FormattingHandler::new)
+        ),
+        dispatcher,
+        null
+    ).createLogger(LoggerBenchmark.class);
+
+    messageWithThrowable = new LogMessage(Log.WARN, "Error while loading ad", new Exception());
+    messageWithoutThrowable = new LogMessage(Log.INFO, "Ad loaded");
+  }
+
+  @Benchmark
+  public void logWithThrowable() {
+    logger.log(messageWithThrowable);
+  }
+
+  @Benchmark
+  public void logWithoutThrowable() {
+    logger.log(messageWithoutThrowable);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void logWithoutThrowable_Contended() {
+    logger.log(messageWithoutThrowable);
+  }
+
+  /**
+   * Equivalent of the work done by the console and remote handlers.
+   */
+  private static class FormattingHandler implements LogHandler {
+
+    private static volatile int sink;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat(
+        "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'",
+        Locale.ROOT
+    );
+
+    FormattingHandler() {
+      dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Override
+    public void log(@NonNull String tag, @NonNull LogMessage logMessage) {
+      StringBuilder builder = new StringBuilder();
+      builder.append(logMessage.getMessage());
+
+      Throwable throwable = logMessage.getThrowable();
+      if (throwable != null) {
+        StringWriter stackTrace = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(stackTrace));
+        builder.append(stackTrace);
+      }
+
+      builder.append(",threadId:").append(Thread.currentThread().getName());
+      builder.append(',').append(dateFormat.format(new Date()));
+      consume(builder.toString());
+    }
+
+    private static void consume(@NonNull String formatted) {
+      sink = formatted.length();
+    }
+
+    @Override
+    public boolean isLoggable(int level) {
+      return true;
+    }
+  }
+}
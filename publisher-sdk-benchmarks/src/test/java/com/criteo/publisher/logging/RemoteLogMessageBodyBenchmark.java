@@ -0,0 +1,129 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.logging;
+
+import static com.criteo.publisher.BenchmarkStubs.stub;
+import static com.criteo.publisher.BenchmarkStubs.stubContext;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.criteo.publisher.EpochClock;
+import com.criteo.publisher.Session;
+import com.criteo.publisher.integration.IntegrationRegistry;
+import com.criteo.publisher.util.AdvertisingInfo;
+import com.criteo.publisher.util.BuildConfigWrapper;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the creation of remote log message bodies by
+ * {@link RemoteLogRecordsFactory#createMessageBody(LogMessage)}, against the previous
+ * implementation based on a {@link SimpleDateFormat} and a joined list of parts.
+ * <p>
+ * The previous implementation shared a single {@link SimpleDateFormat}, which is not thread-safe.
+ * To still measure it in the contended benchmarks, each thread gets its own instance here.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RemoteLogMessageBodyBenchmark {
+
+  private RemoteLogRecordsFactory factory;
+  private SimpleDateFormat legacyFormat;
+  private LogMessage logMessage;
+
+  @Setup
+  public void setUp() {
+    factory = new RemoteLogRecordsFactory(
+        new BuildConfigWrapper(),
+        stubContext(),
+        stub(AdvertisingInfo.class),
+        stub(Session.class),
+        stub(IntegrationRegistry.class),
+        new EpochClock(),
+        new PublisherCodeRemover()
+    );
+
+    legacyFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+    legacyFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+    logMessage = new LogMessage(Log.WARN, "Error while loading ad for adUnit 42");
+  }
+
+  @Benchmark
+  public String encoder() {
+    return factory.createMessageBody(logMessage);
+  }
+
+  @Benchmark
+  public String simpleDateFormat() {
+    return legacyCreateMessageBody(logMessage);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public String encoder_Contended() {
+    return factory.createMessageBody(logMessage);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public String simpleDateFormat_Contended() {
+    return legacyCreateMessageBody(logMessage);
+  }
+
+  /**
+   * Equivalent of the previous implementation, without the stack trace that is absent here.
+   */
+  @NonNull
+  private String legacyCreateMessageBody(@NonNull LogMessage logMessage) {
+    String formattedDate = legacyFormat.format(new Date(System.currentTimeMillis()));
+
+    List<String> messageParts = new ArrayList<>();
+    messageParts.add(logMessage.getMessage());
+    messageParts.add("threadId:" + Thread.currentThread().getName());
+    messageParts.add(formattedDate);
+
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < messageParts.size(); i++) {
+      if (i > 0) {
+        builder.append(',');
+      }
+      builder.append(messageParts.get(i));
+    }
+    return builder.toString();
+  }
+}
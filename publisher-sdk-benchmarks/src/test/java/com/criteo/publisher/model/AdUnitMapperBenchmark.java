@@ -0,0 +1,101 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.model;
+
+import static com.criteo.publisher.BenchmarkStubs.stubDeviceUtil;
+
+import com.criteo.publisher.BenchmarkDependencyProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of {@link AdUnitMapper}, called on each bid request to map the publisher ad units
+ * into the internal {@link CacheAdUnit}.
+ * <p>
+ * Ad units are a mix of banners, interstitials and natives, so all sizing paths are exercised.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdUnitMapperBenchmark {
+
+  @Param({"1", "8", "32"})
+  public int adUnitCount;
+
+  private AdUnitMapper adUnitMapper;
+  private List<AdUnit> adUnits;
+
+  @Setup
+  public void setUp() {
+    BenchmarkDependencyProvider.install();
+    adUnitMapper = new AdUnitMapper(stubDeviceUtil());
+
+    adUnits = new ArrayList<>(adUnitCount);
+    for (int i = 0; i < adUnitCount; i++) {
+      String adUnitId = "adUnit" + i;
+      switch (i % 3) {
+        case 0:
+          adUnits.add(new BannerAdUnit(adUnitId, new AdSize(320, 50)));
+          break;
+        case 1:
+          adUnits.add(new InterstitialAdUnit(adUnitId));
+          break;
+        default:
+          adUnits.add(new NativeAdUnit(adUnitId));
+          break;
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkDependencyProvider.uninstall();
+  }
+
+  @Benchmark
+  public List<List<CacheAdUnit>> mapToChunks() {
+    return adUnitMapper.mapToChunks(adUnits);
+  }
+
+  /**
+   * Ad units are mapped one by one, as done when the publisher asks for a bid.
+   */
+  @Benchmark
+  public void map(Blackhole blackhole) {
+    for (AdUnit adUnit : adUnits) {
+      blackhole.consume(adUnitMapper.map(adUnit));
+    }
+  }
+
+}
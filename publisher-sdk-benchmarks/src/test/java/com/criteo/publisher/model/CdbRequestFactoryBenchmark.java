@@ -0,0 +1,149 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.model;
+
+import static com.criteo.publisher.BenchmarkStubs.stub;
+import static com.criteo.publisher.BenchmarkStubs.stubContext;
+import static org.mockito.Mockito.when;
+
+import com.criteo.publisher.BenchmarkDependencyProvider;
+import com.criteo.publisher.EpochClock;
+import com.criteo.publisher.bid.UniqueIdGenerator;
+import com.criteo.publisher.context.ContextData;
+import com.criteo.publisher.context.ContextProvider;
+import com.criteo.publisher.context.UserData;
+import com.criteo.publisher.context.UserDataHolder;
+import com.criteo.publisher.integration.IntegrationRegistry;
+import com.criteo.publisher.privacy.UserPrivacyUtil;
+import com.criteo.publisher.util.AdUnitType;
+import com.criteo.publisher.util.AdvertisingInfo;
+import com.criteo.publisher.util.BuildConfigWrapper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link CdbRequestFactory}, invoked for each CDB call.
+ * <p>
+ * Context data, user data and device context have the size of a typical integration, so the cost
+ * of {@link CdbRequestFactory#mergeToNestedMap(Map[])} is representative.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CdbRequestFactoryBenchmark {
+
+  @Param({"1", "8"})
+  public int slotCount;
+
+  private CdbRequestFactory factory;
+  private List<CacheAdUnit> cacheAdUnits;
+  private ContextData contextData;
+  private Map<String, Object> userContext;
+  private Map<String, Object> publisherContext;
+
+  @Setup
+  public void setUp() {
+    BenchmarkDependencyProvider.install();
+
+    userContext = new LinkedHashMap<>();
+    userContext.put("device.make", "Google");
+    userContext.put("device.model", "Pixel 4");
+    userContext.put("device.contype", 2);
+    userContext.put("device.w", 1080);
+    userContext.put("device.h", 2280);
+    userContext.put("data.orientation", "Portrait");
+    userContext.put("user.geo.country", "FR");
+    userContext.put("data.inputLanguage", Arrays.asList("fr", "en"));
+    userContext.put("data.sessionDuration", 42);
+
+    ContextProvider contextProvider = stub(ContextProvider.class);
+    when(contextProvider.fetchUserContext()).thenReturn(userContext);
+
+    UserDataHolder userDataHolder = new UserDataHolder();
+    userDataHolder.set(new UserData()
+        .set(UserData.HASHED_EMAIL, "c4ca4238a0b923820dcc509a6f75849b")
+        .set(UserData.DEV_USER_ID, "devUserId")
+        .set("data.segments", Arrays.asList("sports", "news"))
+    );
+
+    factory = new CdbRequestFactory(
+        stubContext(),
+        "B-000001",
+        stub(DeviceInfo.class),
+        stub(AdvertisingInfo.class),
+        stub(UserPrivacyUtil.class),
+        new UniqueIdGenerator(new EpochClock()),
+        new BuildConfigWrapper(),
+        stub(IntegrationRegistry.class),
+        contextProvider,
+        userDataHolder
+    );
+
+    cacheAdUnits = new ArrayList<>(slotCount);
+    for (int i = 0; i < slotCount; i++) {
+      AdSize size = new AdSize(320, 50);
+      cacheAdUnits.add(new CacheAdUnit(size, "adUnit" + i, AdUnitType.CRITEO_BANNER));
+    }
+
+    contextData = new ContextData()
+        .set(ContextData.CONTENT_URL, "https://criteo.com/articles/42")
+        .set("data.foo", "bar")
+        .set("data.bar", 1337)
+        .set("data.keywords", Arrays.asList("sports", "football"));
+
+    publisherContext = new LinkedHashMap<>();
+    publisherContext.put(ContextData.CONTENT_URL, "https://criteo.com/articles/42");
+    publisherContext.put("data.foo", "bar");
+    publisherContext.put("data.bar", 1337);
+    publisherContext.put("data.keywords", Arrays.asList("sports", "football"));
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkDependencyProvider.uninstall();
+  }
+
+  @Benchmark
+  public CdbRequest createRequest() {
+    return factory.createRequest(cacheAdUnits, contextData);
+  }
+
+  @Benchmark
+  public Map<String, Object> mergeToNestedMap() {
+    return factory.mergeToNestedMap(userContext, publisherContext);
+  }
+
+}
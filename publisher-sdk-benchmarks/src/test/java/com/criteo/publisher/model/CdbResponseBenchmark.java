@@ -0,0 +1,108 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.model;
+
+import com.criteo.publisher.BenchmarkDependencyProvider;
+import com.criteo.publisher.DependencyProvider;
+import com.criteo.publisher.util.JsonSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the CDB response parsing.
+ * <p>
+ * {@link #fromJson()} measures the JSONObject based parsing of {@link
+ * CdbResponse#fromJson(JSONObject)} while {@link #read()} measures the streaming read done by the
+ * network layer on the response body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CdbResponseBenchmark {
+
+  private static final String DISPLAY_URL =
+      "https://rdi.eu.criteo.com/delivery/rtb/demo/ajs?zoneid=1417086&w=320&h=50";
+
+  @Param({"1", "8", "32"})
+  public int slotCount;
+
+  private JsonSerializer jsonSerializer;
+  private JSONObject json;
+  private byte[] body;
+
+  @Setup
+  public void setUp() throws JSONException {
+    BenchmarkDependencyProvider.install();
+    jsonSerializer = DependencyProvider.getInstance().provideJsonSerializer();
+
+    JSONArray slots = new JSONArray();
+    for (int i = 0; i < slotCount; i++) {
+      slots.put(new JSONObject()
+          .put("impId", "5f4e2b5a3c8e9d7f1a2b3c4d5e6f7a8b")
+          .put("placementId", "adUnit" + i)
+          .put("zoneId", 1337)
+          .put("cpm", "1.12")
+          .put("currency", "EUR")
+          .put("width", 320)
+          .put("height", 50)
+          .put("ttl", 3600)
+          .put("displayUrl", DISPLAY_URL)
+      );
+    }
+
+    json = new JSONObject()
+        .put("slots", slots)
+        .put("timeToNextCall", 0);
+    body = json.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkDependencyProvider.uninstall();
+  }
+
+  @Benchmark
+  public CdbResponse fromJson() {
+    return CdbResponse.fromJson(json);
+  }
+
+  @Benchmark
+  public CdbResponse read() throws IOException {
+    return jsonSerializer.read(CdbResponse.class, new ByteArrayInputStream(body));
+  }
+
+}
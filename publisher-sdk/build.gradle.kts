@@ -39,6 +39,19 @@ androidLibModule {
     addBuildConfigField<String>("cdbUrl")
     addBuildConfigField<String>("eventUrl")
     addBuildConfigField<Int>("networkTimeoutInMillis")
+    addBuildConfigField<Boolean>("pooledHttpTransportEnabled")
+    addBuildConfigField<Int>("httpMaxConnectionsPerHost")
+    addBuildConfigField<Int>("httpMaxIdleConnections")
+    addBuildConfigField<Int>("httpKeepAliveDurationInMillis")
+    addBuildConfigField<Boolean>("http2Enabled")
+    addBuildConfigField<Boolean>("gzipRequestEnabled")
+
+    // Bid cache
+    addBuildConfigField<Int>("bidCacheDepth")
+    addBuildConfigField<Int>("bidCacheSweepIntervalInMillis")
+    addBuildConfigField<Int>("bidRefreshAheadPercent")
+    addBuildConfigField<Int>("bidRefreshAheadConsumptionWindowInMillis")
+    addBuildConfigField<Int>("bidRequestCoalescingWindowInMillis")
 
     // Client side metrics
     addBuildConfigField<String>("csmQueueFilename")
@@ -46,6 +59,12 @@ androidLibModule {
     addBuildConfigField<Int>("csmBatchSize")
     addBuildConfigField<Int>("maxSizeOfCsmMetricsFolder")
     addBuildConfigField<Int>("maxSizeOfCsmMetricSendingQueue")
+    addBuildConfigField<Int>("csmWriteBehindDelayInMillis")
+    addBuildConfigField<Int>("csmWriteBehindMaxPendingMetrics")
+    addBuildConfigField<Boolean>("csmAggregationEnabled")
+    addBuildConfigField<Int>("csmAggregationFeedbackSamplePercent")
+    addBuildConfigField<Int>("csmRecoveryBatchSize")
+    addBuildConfigField<Int>("csmRecoveryMaxDelayInMillis")
 
     // Advanced Native
     addBuildConfigField<Int>("adChoiceIconWidthInDp")
@@ -56,6 +75,17 @@ androidLibModule {
     addBuildConfigField<String>("remoteLogQueueFilename")
     addBuildConfigField<Int>("maxSizeOfRemoteLogSendingQueue")
 
+    // Asynchronous logging
+    addBuildConfigField<Boolean>("asyncLoggingEnabled")
+    addBuildConfigField<Int>("asyncLoggingRingCapacity")
+
+    // Sending queues upload
+    addBuildConfigField<Int>("sendingQueueUploadCheckIntervalInMillis")
+    addBuildConfigField<Int>("sendingQueueUploadIntervalInMillis")
+    addBuildConfigField<Int>("sendingQueueUploadThresholdInBytes")
+    addBuildConfigField<Int>("sendingQueueUploadMaxBackoffInMillis")
+    addBuildConfigField<Boolean>("sendingQueueMappedRingBufferEnabled")
+
     // Misc
     addBuildConfigField<String>("pubSdkSharedPreferences")
     addBuildConfigField<Int>("defaultMinLogLevel")
@@ -125,6 +155,7 @@ dependencies {
     annotationProcessor(Deps.AutoValue.GsonFactory)
 
     implementation(Deps.Square.Picasso.Picasso)
+    implementation(Deps.Square.OkHttp.OkHttp)
 
     testImplementation(project(":test-utils"))
     testImplementation(Deps.JUnit.JUnit)
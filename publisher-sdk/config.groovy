@@ -44,6 +44,55 @@ preconditionThrowsOnException = false
 // Duration in milliseconds for the network layer to drop a call and consider it timeouted.
 networkTimeoutInMillis = 60 * 1000
 
+// Indicate if HTTP calls are done through a pooled keep-alive client (OkHttp). If not, a new
+// HttpURLConnection is opened for each call.
+pooledHttpTransportEnabled = true
+
+// Maximum number of concurrent calls to a single host with the pooled HTTP client. Further calls
+// wait for a previous one to end, at most for the network timeout.
+httpMaxConnectionsPerHost = 4
+
+// Maximum number of idle connections, all hosts together, kept alive in the pool of the pooled HTTP
+// client.
+httpMaxIdleConnections = 5
+
+// Duration in milliseconds an idle connection is kept alive in the pool before being closed.
+httpKeepAliveDurationInMillis = 5 * 60 * 1000
+
+// Indicate if the pooled HTTP client may negotiate HTTP/2 with servers supporting it. Concurrent
+// calls to such servers are then multiplexed on a single connection.
+http2Enabled = false
+
+// Indicate if bodies of CDB, CSM and remote logs requests are compressed with gzip. Endpoints not
+// supporting it are detected at runtime, and receive uncompressed requests afterward.
+gzipRequestEnabled = false
+
+/**
+ * Bid cache configuration
+ */
+
+// Maximum number of bids kept in cache for a single ad unit. Ad units consumed in bursts (such as
+// native ads in a feed) keep up to this number of bids so that consecutive impressions are served
+// without waiting for the refill. Rarely consumed ad units keep only one bid.
+// Set to 1 by default, so a single bid is cached per ad unit unless a deeper cache is opted in.
+bidCacheDepth = 1
+
+// Interval in milliseconds between two sweeps of the bid cache. Sweeps evict expired bids and
+// refresh ahead the ones about to expire.
+bidCacheSweepIntervalInMillis = 30 * 1000
+
+// Percentage of the TTL of a cached bid under which a new bid is fetched ahead of its expiry.
+bidRefreshAheadPercent = 10
+
+// Period of time in milliseconds during which an ad unit must have had a bid consumed for its
+// cached bids to be refreshed ahead. Other ad units are left to expire.
+bidRefreshAheadConsumptionWindowInMillis = 5 * 60 * 1000
+
+// Window in milliseconds during which bid requests are merged into multi-slot CDB calls. This
+// reduces the number of calls when many ad units are prefetched at the same time (for instance
+// when a screen with several placements is displayed). Set it to 0 to send requests directly.
+bidRequestCoalescingWindowInMillis = 20
+
 /**
  * Client-Side Metrics configuration
  */
@@ -69,6 +118,31 @@ maxSizeOfCsmMetricsFolder = 48 * 1024
 // 60KB represents ~360 metrics (with ~170 bytes/metric) which already represent an extreme case.
 maxSizeOfCsmMetricSendingQueue = 60 * 1024
 
+// Delay during which updates of metrics are kept in memory before being written in the metrics
+// folder, or 0 to write them directly. The state of a metric changes several times within a few
+// hundred milliseconds after its CDB call, so most of those updates are merged into a single write.
+csmWriteBehindDelayInMillis = 2000
+
+// Number of metrics with pending updates above which they are written without waiting for the
+// write-behind delay.
+csmWriteBehindMaxPendingMetrics = 32
+
+// Indicate if finished metrics are aggregated on device into latency histograms and counters per
+// profile and zone, and sent as compact summaries. This requires the summary endpoint of CSM.
+csmAggregationEnabled = false
+
+// In aggregation mode, percentage of the metrics that are still sent as individual feedbacks.
+// Those metrics are not counted in the summaries.
+csmAggregationFeedbackSamplePercent = 1
+
+// Number of metrics moved at once from the metrics folder to the sending queue when the metrics
+// stored by a previous session are recovered. Each batch costs a single synced write.
+csmRecoveryBatchSize = 32
+
+// Maximum delay in milliseconds before recovering the metrics stored by a previous session. The
+// recovery starts earlier if the first CDB call is over before.
+csmRecoveryMaxDelayInMillis = 5000
+
 /**
  * Width and height in dp of the injected AdChoice icon for advanced native.
  */
@@ -90,6 +164,40 @@ remoteLogQueueFilename = 'criteo_remote_logs_queue'
 // 250KB represents ~51 logs (with ~5000 bytes/log with big stacktrace) which already represent an extreme case.
 maxSizeOfRemoteLogSendingQueue = 250 * 1024
 
+/**
+ * Asynchronous logging
+ */
+
+// Hand log messages over to a background thread, instead of handling them on the calling thread.
+asyncLoggingEnabled = false
+
+// Number of log messages that can wait for the background thread. Other messages are dropped and
+// counted. Rounded up to a power of 2.
+asyncLoggingRingCapacity = 1024
+
+/**
+ * Upload of the sending queues (CSM and remote logs)
+ */
+
+// Interval in milliseconds between two checks of the sending queues. Checks are cheap: they only
+// read the size of the queues.
+sendingQueueUploadCheckIntervalInMillis = 10 * 1000
+
+// A non-empty queue is uploaded when it was not uploaded for this duration in milliseconds. This is
+// also the first backoff delay after a failed upload.
+sendingQueueUploadIntervalInMillis = 60 * 1000
+
+// Size (in bytes) above which a queue is uploaded without waiting for the upload interval.
+sendingQueueUploadThresholdInBytes = 4 * 1024
+
+// Maximum delay in milliseconds between two uploads of a queue while they keep failing. The backoff
+// delay is doubled after each failure up to this value.
+sendingQueueUploadMaxBackoffInMillis = 15 * 60 * 1000
+
+// Store the sending queues in a fixed-size ring buffer in a memory-mapped file, instead of a Tape
+// queue file. Elements of existing Tape queue files are moved into the ring buffer on first use.
+sendingQueueMappedRingBufferEnabled = false
+
 environments {
     debug {
         eventUrl = 'https://an.url.that.does.not.exist'
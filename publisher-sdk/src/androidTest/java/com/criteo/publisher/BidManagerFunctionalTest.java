@@ -50,10 +50,8 @@ import com.criteo.publisher.cache.SdkCache;
 import com.criteo.publisher.concurrent.TrackingCommandsExecutorWithDelay;
 import com.criteo.publisher.context.ContextData;
 import com.criteo.publisher.context.ContextProvider;
-import com.criteo.publisher.csm.MetricSendingQueueConsumer;
 import com.criteo.publisher.integration.IntegrationRegistry;
 import com.criteo.publisher.logging.Logger;
-import com.criteo.publisher.logging.RemoteLogSendingQueueConsumer;
 import com.criteo.publisher.mock.MockBean;
 import com.criteo.publisher.mock.MockedDependenciesRule;
 import com.criteo.publisher.mock.SpyBean;
@@ -130,12 +128,6 @@ public class BidManagerFunctionalTest {
   @SpyBean
   private IntegrationRegistry integrationRegistry;
 
-  @MockBean
-  private MetricSendingQueueConsumer metricSendingQueueConsumer;
-
-  @MockBean
-  private RemoteLogSendingQueueConsumer remoteLogSendingQueueConsumer;
-
   @SpyBean
   private UserPrivacyUtil userPrivacyUtil;
 
@@ -820,8 +812,6 @@ public class BidManagerFunctionalTest {
     clearInvocations(cache);
     clearInvocations(api);
     clearInvocations(bidLifecycleListener);
-    clearInvocations(metricSendingQueueConsumer);
-    clearInvocations(remoteLogSendingQueueConsumer);
 
     // Given a second fetch, without any clock change
     CdbResponseSlot slot = givenMockedCdbRespondingSlot();
@@ -895,8 +885,6 @@ public class BidManagerFunctionalTest {
     waitForIdleState();
 
     verify(bidListener).onNoBid();
-    verify(metricSendingQueueConsumer, never()).sendMetricBatch();
-    verify(remoteLogSendingQueueConsumer, never()).sendRemoteLogBatch();
   }
 
   @Test
@@ -917,8 +905,6 @@ public class BidManagerFunctionalTest {
     waitForIdleState();
 
     verify(bidListener).onNoBid();
-    verify(metricSendingQueueConsumer, never()).sendMetricBatch();
-    verify(remoteLogSendingQueueConsumer, never()).sendRemoteLogBatch();
   }
 
   @Test
@@ -936,8 +922,6 @@ public class BidManagerFunctionalTest {
     assertNoLiveBidIsConsumedFromCache();
     assertNoLiveBidIsCached();
     assertShouldNotCallCdbAndNotPopulateCache();
-    verify(metricSendingQueueConsumer).sendMetricBatch();
-    verify(remoteLogSendingQueueConsumer).sendRemoteLogBatch();
   }
 
   @Test
@@ -956,8 +940,6 @@ public class BidManagerFunctionalTest {
     assertLiveBidIsConsumedFromCache(cacheAdUnit, cdbResponseSlot);
     assertNoLiveBidIsCached();
     assertShouldNotCallCdbAndNotPopulateCache();
-    verify(metricSendingQueueConsumer).sendMetricBatch();
-    verify(remoteLogSendingQueueConsumer).sendRemoteLogBatch();
   }
 
   @Test
@@ -976,8 +958,6 @@ public class BidManagerFunctionalTest {
     assertLiveBidIsConsumedFromCache(cacheAdUnit, cdbResponseSlot);
     assertNoLiveBidIsCached();
     assertShouldNotCallCdbAndNotPopulateCache();
-    verify(metricSendingQueueConsumer).sendMetricBatch();
-    verify(remoteLogSendingQueueConsumer).sendRemoteLogBatch();
   }
 
   @Test
@@ -996,8 +976,6 @@ public class BidManagerFunctionalTest {
     assertNoLiveBidIsConsumedFromCache();
     assertNoLiveBidIsCached();
     assertShouldNotCallCdbAndNotPopulateCache();
-    verify(metricSendingQueueConsumer).sendMetricBatch();
-    verify(remoteLogSendingQueueConsumer).sendRemoteLogBatch();
   }
 
   @Test
@@ -1012,8 +990,6 @@ public class BidManagerFunctionalTest {
     waitForIdleState();
 
     assertShouldCallCdb(singletonList(cacheAdUnit));
-    verify(metricSendingQueueConsumer).sendMetricBatch();
-    verify(remoteLogSendingQueueConsumer).sendRemoteLogBatch();
   }
 
   @Test
@@ -1517,8 +1493,6 @@ public class BidManagerFunctionalTest {
     }), any());
     verify(bidLifecycleListener).onCdbCallStarted(any());
     verify(bidLifecycleListener).onCdbCallFinished(any(), any());
-    verify(metricSendingQueueConsumer).sendMetricBatch();
-    verify(remoteLogSendingQueueConsumer).sendRemoteLogBatch();
   }
 
   private void assertShouldNotCallCdbAndNotPopulateCache() throws Exception {
@@ -1744,12 +1718,11 @@ public class BidManagerFunctionalTest {
         cache,
         dependencyProvider.provideConfig(),
         dependencyProvider.provideClock(),
+        dependencyProvider.provideBidRefillPolicy(),
         dependencyProvider.provideAdUnitMapper(),
         dependencyProvider.provideBidRequestSender(),
         dependencyProvider.provideLiveBidRequestSender(),
         dependencyProvider.provideBidLifecycleListener(),
-        dependencyProvider.provideMetricSendingQueueConsumer(),
-        remoteLogSendingQueueConsumer,
         dependencyProvider.provideConsentData()
     );
   }
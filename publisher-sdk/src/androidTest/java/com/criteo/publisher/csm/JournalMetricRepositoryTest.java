@@ -0,0 +1,449 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import static com.criteo.publisher.csm.MetricDirectoryHelper.clear;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import com.criteo.publisher.mock.MockedDependenciesRule;
+import com.criteo.publisher.util.BuildConfigWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class JournalMetricRepositoryTest {
+
+  @Rule
+  public MockedDependenciesRule mockedDependenciesRule = new MockedDependenciesRule();
+
+  @Inject
+  private Context context;
+
+  @Inject
+  private BuildConfigWrapper buildConfigWrapper;
+
+  @Inject
+  private MetricParser parser;
+
+  private EntryCodec<Metric> codec;
+
+  private MetricDirectory directory;
+
+  private JournalMetricRepository repository;
+
+  @Before
+  public void setUp() throws Exception {
+    codec = new MetricCodec();
+    givenNewRepository();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    clear(directory);
+  }
+
+  @Test
+  public void getTotalSize_GivenEmptyRepository_ReturnZero() throws Exception {
+    assertEquals(0, repository.getTotalSize());
+  }
+
+  @Test
+  public void getTotalSize_GivenUpdatesOfSameMetric_OnlyCountLastVersion() throws Exception {
+    repository.addOrUpdateById("id", builder -> builder.setCdbCallStartTimestamp(42L));
+    int sizeAfterFirstUpdate = repository.getTotalSize();
+
+    repository.addOrUpdateById("id", builder -> builder.setCdbCallStartTimestamp(1337L));
+    repository.addOrUpdateById("id", builder -> builder.setCdbCallStartTimestamp(42L));
+
+    assertTrue(sizeAfterFirstUpdate > 0);
+    assertEquals(sizeAfterFirstUpdate, repository.getTotalSize());
+  }
+
+  @Test
+  public void getTotalSize_GivenNewRepository_ReturnSameSize() throws Exception {
+    repository.addOrUpdateById("id1", builder -> builder.setCdbCallStartTimestamp(42L));
+    repository.addOrUpdateById("id2", builder -> builder.setReadyToSend(true));
+    repository.moveById("id1", metric -> true);
+    int size = repository.getTotalSize();
+
+    givenNewRepository();
+
+    assertEquals(size, repository.getTotalSize());
+  }
+
+  @Test
+  public void contains_AfterUpdatesAndMovesWithNewRepository_ReturnLiveMetrics() throws Exception {
+    repository.addOrUpdateById("id1", builder -> {});
+    repository.addOrUpdateById("id2", builder -> {});
+    repository.moveById("id1", metric -> true);
+
+    givenNewRepository();
+
+    assertFalse(repository.contains("id1"));
+    assertTrue(repository.contains("id2"));
+  }
+
+  @Test
+  public void getById_AfterUpdatesAndMovesWithNewRepository_ReturnLiveMetrics() throws Exception {
+    repository.addOrUpdateById("id1", builder -> {});
+    repository.addOrUpdateById("id2", builder -> builder.setCdbCallStartTimestamp(42L));
+    repository.moveById("id1", metric -> true);
+
+    givenNewRepository();
+
+    assertNull(repository.getById("id1"));
+    assertEquals(
+        Metric.builder("id2").setCdbCallStartTimestamp(42L).build(),
+        repository.getById("id2")
+    );
+  }
+
+  @Test
+  public void updateById_GivenManyUpdateOperationsWithNewRepository_RepositoryContainMetricWithAllUpdates() throws Exception {
+    Metric expected = Metric.builder("impId")
+        .setCdbCallStartTimestamp(42L)
+        .setCdbCallEndTimestamp(1337L)
+        .setCdbCallTimeout(true)
+        .build();
+
+    repository.addOrUpdateById("impId", builder -> builder.setCdbCallStartTimestamp(42L));
+    givenNewRepository();
+    repository.addOrUpdateById("impId", builder -> builder.setCdbCallEndTimestamp(1337L));
+    givenNewRepository();
+    repository.addOrUpdateById("impId", builder -> builder.setCdbCallTimeout(true));
+    givenNewRepository();
+
+    Collection<Metric> metrics = repository.getAllStoredMetrics();
+
+    assertEquals(1, metrics.size());
+    assertTrue(metrics.contains(expected));
+  }
+
+  @Test
+  public void updateById_GivenIoExceptionDuringWrite_DoNotUpdateMetric() throws Exception {
+    codec = spy(codec);
+    givenNewRepository();
+
+    repository.addOrUpdateById("id", builder -> {});
+
+    doThrow(IOException.class).when(codec).write(any(), any());
+    repository.addOrUpdateById("id", builder -> builder.setCdbCallStartTimestamp(42L));
+    repository.addOrUpdateById("id2", builder -> {});
+
+    assertEquals(1, repository.getAllStoredMetrics().size());
+    assertTrue(repository.getAllStoredMetrics().contains(Metric.builder("id").build()));
+  }
+
+  @Test
+  public void updateById_GivenSeveralUpdatesInParallel_NoUpdateIsLost() throws Exception {
+    int parties = 30;
+    CyclicBarrier barrier = new CyclicBarrier(parties);
+    ExecutorService executor = Executors.newFixedThreadPool(parties);
+    ArrayList<Future<?>> futures = new ArrayList<>();
+
+    for (int i = 0; i < parties; i++) {
+      futures.add(executor.submit(() -> {
+        barrier.await();
+        repository.addOrUpdateById("id", builder -> {
+          Long previous = builder.build().getCdbCallStartTimestamp();
+          builder.setCdbCallStartTimestamp(previous == null ? 1L : previous + 1L);
+        });
+        return null;
+      }));
+    }
+
+    for (Future<?> future : futures) {
+      future.get();
+    }
+
+    givenNewRepository();
+
+    Collection<Metric> metrics = repository.getAllStoredMetrics();
+    assertEquals(1, metrics.size());
+    assertTrue(metrics.contains(Metric.builder("id")
+        .setCdbCallStartTimestamp((long) parties)
+        .build()));
+  }
+
+  @Test
+  public void updateById_DuringMoveOfSameMetric_WaitForEndOfMove() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    CountDownLatch isInMove = new CountDownLatch(1);
+    CountDownLatch isUpdateStarted = new CountDownLatch(1);
+
+    repository.addOrUpdateById("id", builder -> builder.setCdbCallStartTimestamp(1L));
+
+    Future<?> moveTask = executor.submit(() -> {
+      repository.moveById("id", metric -> {
+        isInMove.countDown();
+        awaitShortly(isUpdateStarted);
+        return false;
+      });
+    });
+
+    Future<?> updateTask = executor.submit(() -> {
+      awaitShortly(isInMove);
+      isUpdateStarted.countDown();
+      repository.addOrUpdateById("id", builder -> builder.setCdbCallEndTimestamp(2L));
+    });
+
+    moveTask.get();
+    updateTask.get();
+
+    // The update is applied on the rollbacked metric
+    assertTrue(repository.getAllStoredMetrics().contains(Metric.builder("id")
+        .setCdbCallStartTimestamp(1L)
+        .setCdbCallEndTimestamp(2L)
+        .build()));
+  }
+
+  @Test
+  public void moveById_GivenSuccessfulMove_RemoveMetric() throws Exception {
+    MetricMover mover = mock(MetricMover.class);
+    when(mover.offerToDestination(any())).thenReturn(true);
+
+    repository.addOrUpdateById("id", builder -> builder.setCdbCallStartTimestamp(1L));
+    repository.moveById("id", mover);
+
+    verify(mover, times(1)).offerToDestination(Metric.builder("id")
+        .setCdbCallStartTimestamp(1L)
+        .build());
+    assertTrue(repository.getAllStoredMetrics().isEmpty());
+  }
+
+  @Test
+  public void moveById_GivenUnsuccessfulMoveAndNewRepository_RollbackMetric() throws Exception {
+    repository.addOrUpdateById("id", builder -> builder.setCdbCallStartTimestamp(2L));
+    repository.moveById("id", metric -> false);
+
+    givenNewRepository();
+
+    Collection<Metric> metrics = repository.getAllStoredMetrics();
+    assertEquals(1, metrics.size());
+    assertTrue(metrics.contains(Metric.builder("id")
+        .setCdbCallStartTimestamp(2L)
+        .build()));
+  }
+
+  @Test
+  public void moveById_GivenErrorDuringMove_RollbackMetric() throws Exception {
+    RuntimeException exception = new RuntimeException();
+    repository.addOrUpdateById("id", builder -> {});
+
+    try {
+      repository.moveById("id", metric -> {
+        throw exception;
+      });
+    } catch (RuntimeException e) {
+      assertEquals(exception, e);
+    }
+
+    assertTrue(repository.contains("id"));
+  }
+
+  @Test
+  public void moveByIds_GivenSuccessfulMoveAndNewRepository_RemoveWholeBatch() throws Exception {
+    repository.addOrUpdateById("id1", builder -> builder.setCdbCallStartTimestamp(1L));
+    repository.addOrUpdateById("id2", builder -> builder.setCdbCallStartTimestamp(2L));
+    repository.addOrUpdateById("id3", builder -> builder.setCdbCallStartTimestamp(3L));
+
+    List<Metric> movedMetrics = new ArrayList<>();
+    int movedCount = repository.moveByIds(Arrays.asList("id1", "id2", "unknown"), metrics -> {
+      movedMetrics.addAll(metrics);
+      return true;
+    });
+
+    givenNewRepository();
+
+    assertEquals(2, movedCount);
+    assertEquals(Arrays.asList(
+        Metric.builder("id1").setCdbCallStartTimestamp(1L).build(),
+        Metric.builder("id2").setCdbCallStartTimestamp(2L).build()
+    ), movedMetrics);
+    assertFalse(repository.contains("id1"));
+    assertFalse(repository.contains("id2"));
+    assertTrue(repository.contains("id3"));
+  }
+
+  @Test
+  public void moveByIds_GivenUnsuccessfulMoveAndNewRepository_RollbackWholeBatch() throws Exception {
+    repository.addOrUpdateById("id1", builder -> {});
+    repository.addOrUpdateById("id2", builder -> {});
+
+    int movedCount = repository.moveByIds(Arrays.asList("id1", "id2"), metrics -> false);
+
+    givenNewRepository();
+
+    assertEquals(0, movedCount);
+    assertTrue(repository.contains("id1"));
+    assertTrue(repository.contains("id2"));
+  }
+
+  @Test
+  public void addOrUpdateById_GivenManyUpdates_JournalIsCompacted() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      long timestamp = i;
+      repository.addOrUpdateById("id" + (i % 10), builder -> {
+        builder.setCdbCallStartTimestamp(timestamp);
+      });
+    }
+
+    long journalSize = directory.createJournalFile().length();
+    assertTrue(journalSize <= Math.max(
+        JournalMetricRepository.MIN_COMPACTION_SIZE,
+        2L * repository.getTotalSize()
+    ));
+
+    givenNewRepository();
+    assertEquals(10, repository.getAllStoredMetrics().size());
+    assertTrue(repository.getAllStoredMetrics().contains(Metric.builder("id9")
+        .setCdbCallStartTimestamp(999L)
+        .build()));
+  }
+
+  @Test
+  public void getAllStoredMetrics_GivenTornRecordAtEndOfJournal_IgnoreIt() throws Exception {
+    repository.addOrUpdateById("id1", builder -> builder.setCdbCallStartTimestamp(1L));
+    // Record announcing a payload of 42 bytes, but only 3 of them were written
+    appendInJournal(new byte[] { 'U', 0, 0, 0, 42, 1, 2, 3 });
+
+    givenNewRepository();
+    repository.addOrUpdateById("id3", builder -> {});
+    givenNewRepository();
+
+    Collection<Metric> metrics = repository.getAllStoredMetrics();
+    assertEquals(2, metrics.size());
+    assertTrue(metrics.contains(Metric.builder("id1").setCdbCallStartTimestamp(1L).build()));
+    assertTrue(metrics.contains(Metric.builder("id3").build()));
+  }
+
+  @Test
+  public void getAllStoredMetrics_GivenCorruptedRecord_IgnoreIt() throws Exception {
+    repository.addOrUpdateById("id1", builder -> {});
+    // Well delimited record whose payload is of an unknown codec version
+    appendInJournal(new byte[] { 'U', 0, 0, 0, 3, 42, 0, 0 });
+    givenNewRepository();
+    repository.addOrUpdateById("id2", builder -> {});
+    givenNewRepository();
+
+    Collection<Metric> metrics = repository.getAllStoredMetrics();
+    assertEquals(2, metrics.size());
+  }
+
+  @Test
+  public void getAllStoredMetrics_GivenInvalidRecordLength_IgnoreRestOfJournal() throws Exception {
+    repository.addOrUpdateById("id1", builder -> {});
+    appendInJournal(new byte[] { 'U', -1, -1, -1, -1 });
+    givenNewRepository();
+    repository.addOrUpdateById("id2", builder -> {});
+    givenNewRepository();
+
+    Collection<Metric> metrics = repository.getAllStoredMetrics();
+    assertEquals(2, metrics.size());
+    assertTrue(metrics.contains(Metric.builder("id1").build()));
+    assertTrue(metrics.contains(Metric.builder("id2").build()));
+  }
+
+  @Test
+  public void getTotalSize_GivenSdkGeneratedIds_IsSmallerThanJson() throws Exception {
+    repository.addOrUpdateById("0123456789abcdef0123456789abcdef", builder -> {
+      builder.setRequestGroupId("fedcba9876543210fedcba9876543210");
+      builder.setCdbCallStartTimestamp(1600000000000L);
+      builder.setCdbCallEndTimestamp(1600000000042L);
+      builder.setZoneId(1337);
+      builder.setProfileId(235);
+    });
+
+    Metric metric = repository.getAllStoredMetrics().iterator().next();
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    parser.write(metric, json);
+
+    assertTrue(repository.getTotalSize() * 2 < json.size());
+  }
+
+  @Test
+  public void getAllStoredMetrics_GivenMetricsOfLegacyRepository_MoveThemInJournal() throws Exception {
+    Metric legacyMetric = Metric.builder("legacy")
+        .setCdbCallStartTimestamp(42L)
+        .build();
+
+    FileMetricRepository legacyRepository = new FileMetricRepository(directory);
+    legacyRepository.addOrUpdateById("legacy", builder -> builder.setCdbCallStartTimestamp(42L));
+
+    givenNewRepository();
+
+    assertTrue(repository.getAllStoredMetrics().contains(legacyMetric));
+    assertTrue(new FileMetricRepository(directory).getAllStoredMetrics().isEmpty());
+
+    givenNewRepository();
+
+    assertTrue(repository.getAllStoredMetrics().contains(legacyMetric));
+  }
+
+  private void appendInJournal(byte[] content) throws IOException {
+    File journal = directory.createJournalFile();
+    try (FileOutputStream fos = new FileOutputStream(journal, true)) {
+      fos.write(content);
+    }
+  }
+
+  private void awaitShortly(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void givenNewRepository() {
+    directory = new MetricDirectory(context, buildConfigWrapper, parser);
+    repository = new JournalMetricRepository(
+        new AtomicFile(directory.createJournalFile()),
+        codec,
+        new FileMetricRepository(directory)
+    );
+  }
+
+}
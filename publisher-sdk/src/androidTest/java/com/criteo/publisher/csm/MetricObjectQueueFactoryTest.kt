@@ -19,6 +19,7 @@ package com.criteo.publisher.csm
 import android.content.Context
 import com.criteo.publisher.mock.MockedDependenciesRule
 import com.criteo.publisher.mock.SpyBean
+import com.criteo.publisher.util.BuildConfigWrapper
 import com.criteo.publisher.util.JsonSerializer
 import com.nhaarman.mockitokotlin2.doReturn
 import com.nhaarman.mockitokotlin2.spy
@@ -46,6 +47,9 @@ class MetricObjectQueueFactoryTest {
   @Inject
   private lateinit var jsonSerializer: JsonSerializer
 
+  @Inject
+  private lateinit var buildConfigWrapper: BuildConfigWrapper
+
   @SpyBean
   private lateinit var configuration: MetricSendingQueueConfiguration
 
@@ -74,7 +78,7 @@ class MetricObjectQueueFactoryTest {
     val requiredMetricsForOverflow = maxSize / smallSizeEstimationPerMetrics
     val requiredMetricsForOverflowWithMargin = (requiredMetricsForOverflow * 1.20).toInt()
 
-    val sendingQueue = SendingQueueFactory(factory, configuration).create()
+    val sendingQueue = SendingQueueFactory(factory, configuration, buildConfigWrapper).create()
 
     for (i in 0 until requiredMetricsForOverflowWithMargin) {
       val metric = Metric.builder("id$i")
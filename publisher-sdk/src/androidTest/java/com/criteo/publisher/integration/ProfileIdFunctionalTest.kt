@@ -30,12 +30,15 @@ import com.criteo.publisher.concurrent.ThreadingUtil.runOnMainThreadAndWait
 import com.criteo.publisher.context.ContextData
 import com.criteo.publisher.csm.MetricHelper
 import com.criteo.publisher.csm.MetricRepository
-import com.criteo.publisher.csm.MetricSendingQueueConsumer
+import com.criteo.publisher.csm.MetricSendingQueue
 import com.criteo.publisher.csm.MetricSendingQueueProducer
+import com.criteo.publisher.csm.MetricSendingTask
 import com.criteo.publisher.mock.MockedDependenciesRule
 import com.criteo.publisher.mock.SpyBean
+import com.criteo.publisher.model.Config
 import com.criteo.publisher.network.PubSdkApi
 import com.criteo.publisher.privacy.ConsentData
+import com.criteo.publisher.util.BuildConfigWrapper
 import com.google.android.gms.ads.admanager.AdManagerAdRequest
 import com.mopub.mobileads.MoPubInterstitial
 import com.mopub.mobileads.MoPubView
@@ -43,8 +46,6 @@ import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.atLeastOnce
 import com.nhaarman.mockitokotlin2.check
 import com.nhaarman.mockitokotlin2.clearInvocations
-import com.nhaarman.mockitokotlin2.doCallRealMethod
-import com.nhaarman.mockitokotlin2.doNothing
 import com.nhaarman.mockitokotlin2.mock
 import com.nhaarman.mockitokotlin2.verify
 import com.nhaarman.mockitokotlin2.whenever
@@ -62,8 +63,14 @@ class ProfileIdFunctionalTest {
   @Inject
   private lateinit var context: Context
 
-  @SpyBean
-  private lateinit var metricSendingQueueConsumer: MetricSendingQueueConsumer
+  @Inject
+  private lateinit var metricSendingQueue: MetricSendingQueue
+
+  @Inject
+  private lateinit var buildConfigWrapper: BuildConfigWrapper
+
+  @Inject
+  private lateinit var config: Config
 
   @SpyBean
   private lateinit var metricSendingQueueProducer: MetricSendingQueueProducer
@@ -172,9 +179,6 @@ class ProfileIdFunctionalTest {
 
   @Test
   fun csm_GivenIntegrationSpecificBidConsumedWithUsedSdkByAnotherIntegration_GroupMetricsByProfileId() {
-    // Deactivate the CSM sending to show that SDK is handling sending different profile IDs
-    doNothing().whenever(metricSendingQueueConsumer).sendMetricBatch()
-
     givenInitializedCriteo()
 
     givenConsentGiven()
@@ -182,7 +186,6 @@ class ProfileIdFunctionalTest {
     bidStandaloneInterstitial()
     bidOtherAdServer()
 
-    doCallRealMethod().whenever(metricSendingQueueConsumer).sendMetricBatch()
     triggerMetricRequest()
 
     verify(api).postCsm(check {
@@ -382,8 +385,7 @@ class ProfileIdFunctionalTest {
   private fun triggerMetricRequest() {
     metricSendingQueueProducer.pushAllInQueue(metricRepository)
     mockedDependenciesRule.waitForIdleState()
-    metricSendingQueueConsumer.sendMetricBatch()
-    mockedDependenciesRule.waitForIdleState()
+    MetricSendingTask(metricSendingQueue, api, buildConfigWrapper, config).run()
   }
 
   private fun verifyCdbIsCalledWith(integration: Integration) {
@@ -20,6 +20,7 @@ import android.content.Context
 import com.criteo.publisher.csm.ObjectQueueFactory
 import com.criteo.publisher.csm.SendingQueueFactory
 import com.criteo.publisher.mock.MockedDependenciesRule
+import com.criteo.publisher.util.BuildConfigWrapper
 import com.criteo.publisher.util.JsonSerializer
 import com.nhaarman.mockitokotlin2.doReturn
 import com.nhaarman.mockitokotlin2.spy
@@ -50,6 +51,9 @@ class RemoteLogObjectQueueFactoryTest {
   @Inject
   private lateinit var configuration: RemoteLogSendingQueueConfiguration
 
+  @Inject
+  private lateinit var buildConfigWrapper: BuildConfigWrapper
+
   @Inject
   private lateinit var remoteLogRecordsFactory: RemoteLogRecordsFactory
 
@@ -76,7 +80,7 @@ class RemoteLogObjectQueueFactoryTest {
     val requiredLogsForOverflow = maxSize / smallSizeEstimationPerLog
     val requiredLogsForOverflowWithMargin = (requiredLogsForOverflow * 1.20).toInt()
 
-    val sendingQueue = SendingQueueFactory(factory, configuration).create()
+    val sendingQueue = SendingQueueFactory(factory, configuration, buildConfigWrapper).create()
 
     for (i in 0 until requiredLogsForOverflowWithMargin) {
       val message = "#$i: Lorem ipsum dolor sit amet, consectetur adipiscing elit."
@@ -21,6 +21,7 @@ import com.criteo.publisher.CriteoUtil.givenInitializedCriteo
 import com.criteo.publisher.SafeRunnable
 import com.criteo.publisher.TestAdUnits
 import com.criteo.publisher.concurrent.ThreadingUtil.runOnMainThreadAndWait
+import com.criteo.publisher.csm.SendingQueueUploadScheduler
 import com.criteo.publisher.mock.MockedDependenciesRule
 import com.criteo.publisher.mock.SpyBean
 import com.criteo.publisher.model.Config
@@ -50,7 +51,7 @@ class RemoteLoggingFunctionalTest {
   private lateinit var consentData: ConsentData
 
   @SpyBean
-  private lateinit var remoteLogSendingQueueConsumer: RemoteLogSendingQueueConsumer
+  private lateinit var sendingQueueUploadScheduler: SendingQueueUploadScheduler
 
   @SpyBean
   private lateinit var remoteLogSendingQueue: RemoteLogSendingQueue
@@ -87,11 +88,11 @@ class RemoteLoggingFunctionalTest {
   }
 
   @Test
-  fun whenCriteoInitIsCalled_SendRemoteLogBatch() {
+  fun whenCriteoInitIsCalled_RequestUploadOfRemoteLogs() {
     givenInitializedCriteo()
     mockedDependenciesRule.waitForIdleState()
 
-    verify(remoteLogSendingQueueConsumer).sendRemoteLogBatch()
+    verify(sendingQueueUploadScheduler).requestUpload()
   }
 
   @Test
@@ -313,7 +313,11 @@ public class ConfigIntegrationTests {
         true,
         1337,
         true,
-        RemoteLogLevel.DEBUG
+        RemoteLogLevel.DEBUG,
+        10,
+        1000,
+        30000,
+        20
     );
 
     givenRemoteConfigInLocalStorage(persistedConfig);
@@ -340,6 +344,10 @@ public class ConfigIntegrationTests {
         null,
         null,
         null,
+        null,
+        10,
+        null,
+        30000,
         null
     );
 
@@ -353,7 +361,11 @@ public class ConfigIntegrationTests {
         true,
         42,
         false,
-        RemoteLogLevel.INFO
+        RemoteLogLevel.INFO,
+        null,
+        1000,
+        null,
+        20
     );
 
     RemoteConfigResponse expectedRemoteConfig = RemoteConfigResponse.create(
@@ -366,7 +378,11 @@ public class ConfigIntegrationTests {
         true,
         42,
         false,
-        RemoteLogLevel.INFO
+        RemoteLogLevel.INFO,
+        10,
+        1000,
+        30000,
+        20
     );
 
     givenRemoteConfigInLocalStorage(oldPersistedConfig);
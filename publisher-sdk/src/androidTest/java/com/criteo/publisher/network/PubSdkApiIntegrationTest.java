@@ -372,7 +372,11 @@ public class PubSdkApiIntegrationTest {
         false,
         1000,
         true,
-        RemoteLogLevel.WARNING
+        RemoteLogLevel.WARNING,
+        null,
+        null,
+        null,
+        null
     );
   }
 }
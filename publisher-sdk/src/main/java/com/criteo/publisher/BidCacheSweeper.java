@@ -0,0 +1,115 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.criteo.publisher.util.ApplicationStartedListener;
+import com.criteo.publisher.util.ApplicationStoppedListener;
+import com.criteo.publisher.util.BuildConfigWrapper;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically sweep the bid cache so expired bids are evicted proactively and bids about to expire
+ * are refreshed ahead of time.
+ * <p>
+ * Sweeps are paused while the application is in background: no bid is consumed then, so refreshing
+ * ahead would only waste network and battery. They are resumed when the application goes back in
+ * foreground.
+ *
+ * @see BidManager#sweepCache(int, long)
+ */
+public class BidCacheSweeper implements ApplicationStartedListener, ApplicationStoppedListener {
+
+  @NonNull
+  private final BidManager bidManager;
+
+  @NonNull
+  private final ScheduledExecutorService scheduledExecutorService;
+
+  @NonNull
+  private final BuildConfigWrapper buildConfigWrapper;
+
+  @GuardedBy("this")
+  private boolean isStarted = false;
+
+  @GuardedBy("this")
+  private boolean isPaused = false;
+
+  @Nullable
+  @GuardedBy("this")
+  private ScheduledFuture<?> sweepFuture = null;
+
+  public BidCacheSweeper(
+      @NonNull BidManager bidManager,
+      @NonNull ScheduledExecutorService scheduledExecutorService,
+      @NonNull BuildConfigWrapper buildConfigWrapper
+  ) {
+    this.bidManager = bidManager;
+    this.scheduledExecutorService = scheduledExecutorService;
+    this.buildConfigWrapper = buildConfigWrapper;
+  }
+
+  /**
+   * Start sweeping the cache periodically. Only the first call has an effect.
+   */
+  public synchronized void start() {
+    if (isStarted) {
+      return;
+    }
+
+    isStarted = true;
+    scheduleSweeps();
+  }
+
+  @Override
+  public synchronized void onApplicationStarted() {
+    isPaused = false;
+    scheduleSweeps();
+  }
+
+  @Override
+  public synchronized void onApplicationStopped() {
+    isPaused = true;
+
+    if (sweepFuture != null) {
+      sweepFuture.cancel(false);
+      sweepFuture = null;
+    }
+  }
+
+  @GuardedBy("this")
+  private void scheduleSweeps() {
+    if (!isStarted || isPaused || sweepFuture != null) {
+      return;
+    }
+
+    long intervalInMillis = buildConfigWrapper.getBidCacheSweepIntervalInMillis();
+    sweepFuture = scheduledExecutorService.scheduleWithFixedDelay(new SafeRunnable() {
+      @Override
+      public void runSafely() {
+        bidManager.sweepCache(
+            buildConfigWrapper.getBidRefreshAheadPercent(),
+            buildConfigWrapper.getBidRefreshAheadConsumptionWindowInMillis()
+        );
+      }
+    }, intervalInMillis, intervalInMillis, TimeUnit.MILLISECONDS);
+  }
+}
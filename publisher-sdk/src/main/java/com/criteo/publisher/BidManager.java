@@ -16,17 +16,15 @@
 
 package com.criteo.publisher;
 
-import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import com.criteo.publisher.bid.BidLifecycleListener;
+import com.criteo.publisher.cache.BidRefillPolicy;
 import com.criteo.publisher.cache.SdkCache;
 import com.criteo.publisher.context.ContextData;
-import com.criteo.publisher.csm.MetricSendingQueueConsumer;
 import com.criteo.publisher.logging.Logger;
 import com.criteo.publisher.logging.LoggerFactory;
-import com.criteo.publisher.logging.RemoteLogSendingQueueConsumer;
 import com.criteo.publisher.model.AdUnit;
 import com.criteo.publisher.model.AdUnitMapper;
 import com.criteo.publisher.model.CacheAdUnit;
@@ -38,8 +36,11 @@ import com.criteo.publisher.network.BidRequestSender;
 import com.criteo.publisher.network.LiveBidRequestSender;
 import com.criteo.publisher.privacy.ConsentData;
 import com.criteo.publisher.util.ApplicationStoppedListener;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class BidManager implements ApplicationStoppedListener {
@@ -49,13 +50,29 @@ public class BidManager implements ApplicationStoppedListener {
    */
   private static final int DEFAULT_TTL_IN_SECONDS = 15 * 60;
 
+  private static final int SECOND_TO_MILLI = 1000;
+
   @NonNull
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
+  /**
+   * Cache of bids. Compound operations on a given {@link CacheAdUnit} (peek, silence check,
+   * consumption) are guarded by the lock given by {@link SdkCache#getLock(CacheAdUnit)}, so
+   * different ad units do not contend with each other.
+   */
   @NonNull
-  @GuardedBy("cacheLock")
   private final SdkCache cache;
-  private final Object cacheLock = new Object();
+
+  @NonNull
+  private final BidRefillPolicy refillPolicy;
+
+  /**
+   * Last context data given by the publisher for each ad unit, used when bids are fetched on its
+   * behalf, such as refreshes ahead of expiry.
+   */
+  @NonNull
+  private final ConcurrentMap<CacheAdUnit, ContextData> lastContextData =
+      new ConcurrentHashMap<>();
 
   private final AtomicLong cdbTimeToNextCall = new AtomicLong(0);
 
@@ -77,12 +94,6 @@ public class BidManager implements ApplicationStoppedListener {
   @NonNull
   private final BidLifecycleListener bidLifecycleListener;
 
-  @NonNull
-  private final MetricSendingQueueConsumer metricSendingQueueConsumer;
-
-  @NonNull
-  private final RemoteLogSendingQueueConsumer remoteLogSendingQueueConsumer;
-
   @NonNull
   private final ConsentData consentData;
 
@@ -90,23 +101,21 @@ public class BidManager implements ApplicationStoppedListener {
       @NonNull SdkCache sdkCache,
       @NonNull Config config,
       @NonNull Clock clock,
+      @NonNull BidRefillPolicy refillPolicy,
       @NonNull AdUnitMapper adUnitMapper,
       @NonNull BidRequestSender bidRequestSender,
       @NonNull LiveBidRequestSender liveBidRequestSender,
       @NonNull BidLifecycleListener bidLifecycleListener,
-      @NonNull MetricSendingQueueConsumer metricSendingQueueConsumer,
-      @NonNull RemoteLogSendingQueueConsumer remoteLogSendingQueueConsumer,
       @NonNull ConsentData consentData
   ) {
     this.cache = sdkCache;
     this.config = config;
     this.clock = clock;
+    this.refillPolicy = refillPolicy;
     this.adUnitMapper = adUnitMapper;
     this.bidRequestSender = bidRequestSender;
     this.liveBidRequestSender = liveBidRequestSender;
     this.bidLifecycleListener = bidLifecycleListener;
-    this.metricSendingQueueConsumer = metricSendingQueueConsumer;
-    this.remoteLogSendingQueueConsumer = remoteLogSendingQueueConsumer;
     this.consentData = consentData;
   }
 
@@ -151,20 +160,25 @@ public class BidManager implements ApplicationStoppedListener {
    * <ul>
    *   <li>The kill switch is engaged. See {@link Config#isKillSwitchEnabled()}</li>
    *   <li>The given {@link AdUnit} is not valid. See {@link AdUnitMapper} for validity definition</li>
-   *   <li>There is no last fetch bid or last is consumed</li>
+   *   <li>There is no cached bid or all cached bids are consumed</li>
    *   <li>Last fetch bid correspond to a no-bid (CPM = 0 and TTL = 0)</li>
    *   <li>Last fetch bid is a not-expired silence (CPM = 0 and TTL > 0)</li>
-   *   <li>Last fetch bid is expired</li>
+   *   <li>All cached bids are expired</li>
    * </ul>
    * <p>
-   * Asynchronously, a new bid is fetch to CDB to get a new proposition. Hence if this method
-   * returns a bid, it is consumed, and you have to wait for the new proposition to get a result
-   * again. Meanwhile, you'll only get a <code>null</code> value.
+   * Several bids may be cached for the same {@link AdUnit} (see {@link SdkCache}). The one
+   * expiring first is consumed and returned.
+   * <p>
+   * Asynchronously, new bids are fetch to CDB to refill the cache up to a depth given by the
+   * consumption rate of the ad unit (see {@link BidRefillPolicy}). If this method returns the last
+   * cached bid, you have to wait for the new proposition to get a result again. Meanwhile, you'll
+   * only get a <code>null</code> value.
    * There may be some case when a new bid is not fetch:
    * <ul>
    *   <li>The kill switch is engaged</li>
    *   <li>The given {@link AdUnit} is not valid</li>
    *   <li>Last fetch bid is a not-expired silence</li>
+   *   <li>The cache already holds enough bids for the given {@link AdUnit}</li>
    *   <li>There is already an async call to CDB for the given {@link AdUnit}</li>
    * </ul>
    *
@@ -186,12 +200,17 @@ public class BidManager implements ApplicationStoppedListener {
       return null;
     }
 
-    synchronized (cacheLock) {
-      if (!isSilencedFor(cacheAdUnit)) {
+    lastContextData.put(cacheAdUnit, contextData);
+
+    synchronized (cache.getLock(cacheAdUnit)) {
+      boolean isSilenced = isSilencedFor(cacheAdUnit);
+      CdbResponseSlot cdbResponseSlot = consumeCachedBid(cacheAdUnit);
+
+      if (!isSilenced) {
         fetchForCache(cacheAdUnit, contextData);
       }
 
-      return consumeCachedBid(cacheAdUnit);
+      return cdbResponseSlot;
     }
   }
 
@@ -200,38 +219,41 @@ public class BidManager implements ApplicationStoppedListener {
       return true;
     }
 
-    synchronized (cacheLock) {
-      CdbResponseSlot cdbResponseSlot = cache.peekAdUnit(cacheAdUnit);
-      return isBidCurrentlySilent(cdbResponseSlot);
-    }
+    CdbResponseSlot cdbResponseSlot = cache.peekAdUnit(cacheAdUnit);
+    return isBidCurrentlySilent(cdbResponseSlot);
   }
 
   private void consumeCachedBidIfExpired(@NonNull CacheAdUnit cacheAdUnit) {
-    synchronized (cacheLock) {
+    synchronized (cache.getLock(cacheAdUnit)) {
+      // Cached bids are ordered by expiry time, so expired ones are first
       CdbResponseSlot cdbResponseSlot = cache.peekAdUnit(cacheAdUnit);
-      if (cdbResponseSlot != null && hasBidExpired(cdbResponseSlot)) {
+      while (cdbResponseSlot != null && hasBidExpired(cdbResponseSlot)) {
         cache.remove(cacheAdUnit);
         bidLifecycleListener.onBidConsumed(cacheAdUnit, cdbResponseSlot);
+        cdbResponseSlot = cache.peekAdUnit(cacheAdUnit);
       }
     }
   }
 
   private CdbResponseSlot consumeCachedBid(@NonNull CacheAdUnit cacheAdUnit) {
-    synchronized (cacheLock) {
+    synchronized (cache.getLock(cacheAdUnit)) {
       CdbResponseSlot cdbResponseSlot = cache.peekAdUnit(cacheAdUnit);
 
-      if (cdbResponseSlot != null) {
-        boolean isBidSilent = isBidCurrentlySilent(cdbResponseSlot);
-        boolean hasBidExpired = hasBidExpired(cdbResponseSlot);
-
-        if (!isBidSilent) {
-          cache.remove(cacheAdUnit);
-          bidLifecycleListener.onBidConsumed(cacheAdUnit, cdbResponseSlot);
+      // Expired bids are consumed until a valid one is found
+      while (cdbResponseSlot != null) {
+        if (isBidCurrentlySilent(cdbResponseSlot)) {
+          return null;
         }
 
-        if (!isBidSilent && !hasBidExpired) {
+        cache.remove(cacheAdUnit);
+        bidLifecycleListener.onBidConsumed(cacheAdUnit, cdbResponseSlot);
+
+        if (!hasBidExpired(cdbResponseSlot)) {
+          refillPolicy.onBidConsumed(cacheAdUnit);
           return cdbResponseSlot;
         }
+
+        cdbResponseSlot = cache.peekAdUnit(cacheAdUnit);
       }
 
       return null;
@@ -248,10 +270,30 @@ public class BidManager implements ApplicationStoppedListener {
   }
 
   /**
-   * load data for next time
+   * load data for next time, if the cache holds less bids than the target depth of the ad unit
+   * <p>
+   * A refill requests a single bid. When the target depth is not reached yet once it is over,
+   * another refill is done (see {@link RefillCdbCallListener}).
    */
   private void fetchForCache(@NonNull CacheAdUnit cacheAdUnit, @NonNull ContextData contextData) {
-    sendBidRequest(Collections.singletonList(cacheAdUnit), contextData);
+    int targetDepth = refillPolicy.getTargetDepth(cacheAdUnit, cache.getMaxBidsPerAdUnit());
+    if (cache.getBidCount(cacheAdUnit) >= targetDepth || killSwitchEngaged()) {
+      return;
+    }
+
+    bidRequestSender.sendBidRequest(
+        Collections.singletonList(cacheAdUnit),
+        contextData,
+        new RefillCdbCallListener(cacheAdUnit, contextData)
+    );
+  }
+
+  private void continueRefill(@NonNull CacheAdUnit cacheAdUnit, @NonNull ContextData contextData) {
+    synchronized (cache.getLock(cacheAdUnit)) {
+      if (!isSilencedFor(cacheAdUnit)) {
+        fetchForCache(cacheAdUnit, contextData);
+      }
+    }
   }
 
   @VisibleForTesting
@@ -271,7 +313,9 @@ public class BidManager implements ApplicationStoppedListener {
       return;
     }
 
-    synchronized (cacheLock) {
+    lastContextData.put(cacheAdUnit, contextData);
+
+    synchronized (cache.getLock(cacheAdUnit)) {
       consumeCachedBidIfExpired(cacheAdUnit);
 
       if (isSilencedFor(cacheAdUnit)) {
@@ -289,9 +333,6 @@ public class BidManager implements ApplicationStoppedListener {
             )
         );
       }
-
-      metricSendingQueueConsumer.sendMetricBatch();
-      remoteLogSendingQueueConsumer.sendRemoteLogBatch();
     }
   }
 
@@ -308,14 +349,14 @@ public class BidManager implements ApplicationStoppedListener {
         contextData,
         new CacheOnlyCdbCallListener()
     );
-    metricSendingQueueConsumer.sendMetricBatch();
-    remoteLogSendingQueueConsumer.sendRemoteLogBatch();
   }
 
   void setCacheAdUnits(@NonNull List<CdbResponseSlot> slots) {
-    synchronized (cacheLock) {
-      for (CdbResponseSlot slot : slots) {
-        CdbResponseSlot cachedSlot = cache.peekAdUnit(cache.detectCacheAdUnit(slot));
+    for (CdbResponseSlot slot : slots) {
+      CacheAdUnit cacheAdUnit = cache.detectCacheAdUnit(slot);
+
+      synchronized (cache.getLock(cacheAdUnit)) {
+        CdbResponseSlot cachedSlot = cache.peekAdUnit(cacheAdUnit);
         if (isBidCurrentlySilent(cachedSlot)) {
           // Do not override silence bid that was concurrently cached.
           continue;
@@ -327,6 +368,11 @@ public class BidManager implements ApplicationStoppedListener {
             slot.setTtlInSeconds(DEFAULT_TTL_IN_SECONDS);
           }
 
+          if (isBidCurrentlySilent(slot)) {
+            // A silence replaces all the bids that were cached for this ad unit.
+            cache.clear(cacheAdUnit);
+          }
+
           cache.add(slot);
           bidLifecycleListener.onBidCached(slot);
         }
@@ -334,6 +380,56 @@ public class BidManager implements ApplicationStoppedListener {
     }
   }
 
+  /**
+   * Evict expired bids from the cache and refresh ahead the ones that are about to expire.
+   * <p>
+   * Expired bids are consumed, as if the publisher asked for them, so their lifecycle ends and
+   * they do not take memory anymore.
+   * <p>
+   * When the latest expiring bid of an ad unit has less than the given percentage of its TTL
+   * left, a new bid is fetched for this ad unit, so that the publisher does not pay a cache miss
+   * once it expires. The last context data given for this ad unit is used. Only ad units that had
+   * a bid consumed during the given window are refreshed: others are not worth a CDB call and are
+   * left to expire. Ad units that are silenced are not refreshed either.
+   *
+   * @param refreshAheadPercent percentage of the TTL under which a bid is refreshed ahead
+   * @param consumptionWindowInMillis period of time during which an ad unit must have had a bid
+   * consumed to be refreshed
+   */
+  public void sweepCache(int refreshAheadPercent, long consumptionWindowInMillis) {
+    List<CacheAdUnit> cacheAdUnitsToRefresh = new ArrayList<>();
+
+    for (CacheAdUnit cacheAdUnit : cache.getAdUnits()) {
+      synchronized (cache.getLock(cacheAdUnit)) {
+        consumeCachedBidIfExpired(cacheAdUnit);
+
+        CdbResponseSlot latestSlot = cache.peekLastAdUnit(cacheAdUnit);
+        if (latestSlot != null
+            && refillPolicy.isRecentlyConsumed(cacheAdUnit, consumptionWindowInMillis)
+            && !isSilencedFor(cacheAdUnit)
+            && isBidAboutToExpire(latestSlot, refreshAheadPercent)) {
+          cacheAdUnitsToRefresh.add(cacheAdUnit);
+        }
+      }
+    }
+
+    for (CacheAdUnit cacheAdUnit : cacheAdUnitsToRefresh) {
+      ContextData contextData = lastContextData.get(cacheAdUnit);
+      if (contextData == null) {
+        contextData = new ContextData();
+      }
+
+      sendBidRequest(Collections.singletonList(cacheAdUnit), contextData);
+    }
+  }
+
+  private boolean isBidAboutToExpire(@NonNull CdbResponseSlot slot, int refreshAheadPercent) {
+    long ttlInMillis = slot.getTtlInSeconds() * (long) SECOND_TO_MILLI;
+    long expiryTimeInMillis = slot.getTimeOfDownload() + ttlInMillis;
+    long remainingTimeInMillis = expiryTimeInMillis - clock.getCurrentTimeInMillis();
+    return remainingTimeInMillis * 100 <= ttlInMillis * refreshAheadPercent;
+  }
+
   @Nullable
   @VisibleForTesting
   CacheAdUnit mapToCacheAdUnit(@Nullable AdUnit adUnit) {
@@ -418,4 +514,48 @@ public class BidManager implements ApplicationStoppedListener {
       // no-op
     }
   }
+
+  /**
+   * Refill the cache of an ad unit one bid at a time, until its target depth is reached.
+   * <p>
+   * The next refill can only start once this one is over, because the ad unit is pending until
+   * then. It stops as soon as a call does not give a bid, so a no-bid or an error does not lead to
+   * a loop of calls.
+   */
+  private class RefillCdbCallListener extends CacheOnlyCdbCallListener {
+
+    @NonNull
+    private final CacheAdUnit cacheAdUnit;
+
+    @NonNull
+    private final ContextData contextData;
+
+    private volatile boolean isBidFetched = false;
+
+    RefillCdbCallListener(@NonNull CacheAdUnit cacheAdUnit, @NonNull ContextData contextData) {
+      this.cacheAdUnit = cacheAdUnit;
+      this.contextData = contextData;
+    }
+
+    @Override
+    public void onCdbResponse(
+        @NonNull CdbRequest cdbRequest,
+        @NonNull CdbResponse cdbResponse
+    ) {
+      super.onCdbResponse(cdbRequest, cdbResponse);
+
+      for (CdbResponseSlot slot : cdbResponse.getSlots()) {
+        if (slot.isValid()) {
+          isBidFetched = true;
+        }
+      }
+    }
+
+    @Override
+    public void onCdbCallEnded() {
+      if (isBidFetched) {
+        continueRefill(cacheAdUnit, contextData);
+      }
+    }
+  }
 }
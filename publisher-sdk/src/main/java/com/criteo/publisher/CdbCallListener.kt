@@ -52,4 +52,12 @@ abstract class CdbCallListener(
   }
 
   abstract fun onTimeBudgetExceeded()
+
+  /**
+   * Called once the call is over, after the response or error was notified. At this point, the
+   * requested ad units are not pending anymore and can be requested again.
+   */
+  fun onCdbCallEnded() {
+    // no-op by default
+  }
 }
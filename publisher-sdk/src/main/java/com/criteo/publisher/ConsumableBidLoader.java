@@ -16,6 +16,7 @@
 
 package com.criteo.publisher;
 
+import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.criteo.publisher.concurrent.RunOnUiThreadExecutor;
@@ -73,7 +74,7 @@ public class ConsumableBidLoader {
       }
 
       private void responseBid(@Nullable Bid bid) {
-        logger.log(BiddingLogMessage.onConsumableBidLoaded(adUnit, bid));
+        logger.log(Log.INFO, BiddingLogMessage::onConsumableBidLoaded, adUnit, bid);
 
         // The bid object is used for AppBidding and InHouse.
         // For MoPub AppBidding, it is mandatory to be on the main thread.
@@ -113,6 +113,11 @@ public abstract class Criteo {
             dependencyProvider.provideConsoleHandler().setMinLogLevel(Log.INFO);
           }
 
+          // Handlers can only tell which levels they log once the application is known
+          dependencyProvider.provideLogLevelGate().watch(
+              dependencyProvider.provideSharedPreferences()
+          );
+
           DeviceUtil deviceUtil = dependencyProvider.provideDeviceUtil();
           if (deviceUtil.isVersionSupported()) {
             criteo = new CriteoInternal(
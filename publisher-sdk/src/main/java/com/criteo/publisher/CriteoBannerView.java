@@ -21,6 +21,7 @@ import static com.criteo.publisher.ErrorLogMessage.onUncaughtErrorAtPublicApi;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.webkit.WebView;
 import androidx.annotation.Keep;
 import androidx.annotation.NonNull;
@@ -101,7 +102,7 @@ public class CriteoBannerView extends WebView {
       a.recycle();
     }
 
-    logger.log(BannerLogMessage.onBannerViewInitialized(bannerAdUnit));
+    logger.log(Log.INFO, BannerLogMessage::onBannerViewInitialized, bannerAdUnit);
   }
 
   /**
@@ -127,7 +128,7 @@ public class CriteoBannerView extends WebView {
     super(context);
     this.bannerAdUnit = bannerAdUnit;
     this.criteo = criteo;
-    logger.log(BannerLogMessage.onBannerViewInitialized(bannerAdUnit));
+    logger.log(Log.INFO, BannerLogMessage::onBannerViewInitialized, bannerAdUnit);
   }
 
   public void setCriteoBannerAdListener(@Nullable CriteoBannerAdListener criteoBannerAdListener) {
@@ -157,7 +158,7 @@ public class CriteoBannerView extends WebView {
   }
 
   private void doLoadAd(@NonNull ContextData contextData) {
-    logger.log(BannerLogMessage.onBannerViewLoading(this));
+    logger.log(Log.INFO, BannerLogMessage::onBannerViewLoading, this);
     getIntegrationRegistry().declare(Integration.STANDALONE);
     getOrCreateController().fetchAdAsync(bannerAdUnit, contextData);
   }
@@ -171,7 +172,7 @@ public class CriteoBannerView extends WebView {
   }
 
   private void doLoadAd(@Nullable Bid bid) {
-    logger.log(BannerLogMessage.onBannerViewLoading(this, bid));
+    logger.log(Log.INFO, BannerLogMessage::onBannerViewLoading, this, bid);
     getIntegrationRegistry().declare(Integration.IN_HOUSE);
     getOrCreateController().fetchAdAsync(bid);
   }
@@ -83,6 +83,8 @@ class CriteoInternal extends Criteo {
     config = dependencyProvider.provideConfig();
 
     bidManager = dependencyProvider.provideBidManager();
+    dependencyProvider.provideBidCacheSweeper().start();
+    dependencyProvider.provideSendingQueueUploadScheduler().start();
     consumableBidLoader = dependencyProvider.provideConsumableBidLoader();
     headerBidding = dependencyProvider.provideHeaderBidding();
 
@@ -100,6 +102,7 @@ class CriteoInternal extends Criteo {
     }
 
     application.registerActivityLifecycleCallbacks(dependencyProvider.provideAppLifecycleUtil());
+    application.registerComponentCallbacks(dependencyProvider.provideAdUnitMapper());
 
     dependencyProvider.provideTopActivityFinder().registerActivityLifecycleFor(application);
 
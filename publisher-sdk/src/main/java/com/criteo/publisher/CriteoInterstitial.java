@@ -17,12 +17,9 @@
 package com.criteo.publisher;
 
 import static com.criteo.publisher.ErrorLogMessage.onUncaughtErrorAtPublicApi;
-import static com.criteo.publisher.interstitial.InterstitialLogMessage.onCheckingIfInterstitialIsLoaded;
-import static com.criteo.publisher.interstitial.InterstitialLogMessage.onInterstitialInitialized;
-import static com.criteo.publisher.interstitial.InterstitialLogMessage.onInterstitialLoading;
-import static com.criteo.publisher.interstitial.InterstitialLogMessage.onInterstitialShowing;
 import static com.criteo.publisher.interstitial.InterstitialLogMessage.onMethodCalledWithNullApplication;
 
+import android.util.Log;
 import androidx.annotation.Keep;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -31,6 +28,7 @@ import com.criteo.publisher.concurrent.RunOnUiThreadExecutor;
 import com.criteo.publisher.context.ContextData;
 import com.criteo.publisher.integration.Integration;
 import com.criteo.publisher.integration.IntegrationRegistry;
+import com.criteo.publisher.interstitial.InterstitialLogMessage;
 import com.criteo.publisher.logging.Logger;
 import com.criteo.publisher.logging.LoggerFactory;
 import com.criteo.publisher.model.InterstitialAdUnit;
@@ -82,7 +80,7 @@ public class CriteoInterstitial {
   ) {
     this.interstitialAdUnit = interstitialAdUnit;
     this.criteo = criteo;
-    logger.log(onInterstitialInitialized(interstitialAdUnit));
+    logger.log(Log.INFO, InterstitialLogMessage::onInterstitialInitialized, interstitialAdUnit);
   }
 
   public void setCriteoInterstitialAdListener(
@@ -109,7 +107,7 @@ public class CriteoInterstitial {
   }
 
   private void doLoadAd(@NonNull ContextData contextData) {
-    logger.log(onInterstitialLoading(this));
+    logger.log(Log.INFO, InterstitialLogMessage::onInterstitialLoading, this);
     getIntegrationRegistry().declare(Integration.STANDALONE);
     getOrCreateController().fetchAdAsync(interstitialAdUnit, contextData);
   }
@@ -137,7 +135,7 @@ public class CriteoInterstitial {
   }
 
   private void doLoadAd(@Nullable Bid bid) {
-    logger.log(onInterstitialLoading(this, bid));
+    logger.log(Log.INFO, InterstitialLogMessage::onInterstitialLoading, this, bid);
     getIntegrationRegistry().declare(Integration.IN_HOUSE);
     getOrCreateController().fetchAdAsync(bid);
   }
@@ -145,7 +143,12 @@ public class CriteoInterstitial {
   public boolean isAdLoaded() {
     try {
       boolean isAdLoaded = getOrCreateController().isAdLoaded();
-      logger.log(onCheckingIfInterstitialIsLoaded(this, isAdLoaded));
+      logger.log(
+          Log.INFO,
+          InterstitialLogMessage::onCheckingIfInterstitialIsLoaded,
+          this,
+          isAdLoaded
+      );
       return isAdLoaded;
     } catch (Throwable tr) {
       logger.log(onUncaughtErrorAtPublicApi(tr));
@@ -167,7 +170,7 @@ public class CriteoInterstitial {
   }
 
   private void doShow() {
-    logger.log(onInterstitialShowing(this));
+    logger.log(Log.INFO, InterstitialLogMessage::onInterstitialShowing, this);
     getOrCreateController().show();
   }
 
@@ -43,8 +43,10 @@ import com.criteo.publisher.bid.BidLifecycleListener;
 import com.criteo.publisher.bid.CompositeBidLifecycleListener;
 import com.criteo.publisher.bid.LoggingBidLifecycleListener;
 import com.criteo.publisher.bid.UniqueIdGenerator;
+import com.criteo.publisher.cache.BidRefillPolicy;
 import com.criteo.publisher.cache.SdkCache;
 import com.criteo.publisher.concurrent.AsyncResources;
+import com.criteo.publisher.concurrent.BackgroundThreadFactory;
 import com.criteo.publisher.concurrent.NoOpAsyncResources;
 import com.criteo.publisher.concurrent.RunOnUiThreadExecutor;
 import com.criteo.publisher.concurrent.ThreadPoolExecutorFactory;
@@ -53,17 +55,21 @@ import com.criteo.publisher.context.ContextProvider;
 import com.criteo.publisher.context.UserDataHolder;
 import com.criteo.publisher.csm.ConcurrentSendingQueue;
 import com.criteo.publisher.csm.CsmBidLifecycleListener;
+import com.criteo.publisher.csm.MetricAggregator;
 import com.criteo.publisher.csm.MetricParser;
 import com.criteo.publisher.csm.MetricRepository;
 import com.criteo.publisher.csm.MetricRepositoryFactory;
+import com.criteo.publisher.csm.MetricSampler;
 import com.criteo.publisher.csm.MetricSendingQueue;
 import com.criteo.publisher.csm.MetricSendingQueue.AdapterMetricSendingQueue;
 import com.criteo.publisher.csm.MetricSendingQueueConfiguration;
-import com.criteo.publisher.csm.MetricSendingQueueConsumer;
 import com.criteo.publisher.csm.MetricSendingQueueProducer;
+import com.criteo.publisher.csm.MetricSendingTask;
+import com.criteo.publisher.csm.MetricSummarySendingTask;
 import com.criteo.publisher.csm.ObjectQueueFactory;
 import com.criteo.publisher.csm.SendingQueueConfiguration;
 import com.criteo.publisher.csm.SendingQueueFactory;
+import com.criteo.publisher.csm.SendingQueueUploadScheduler;
 import com.criteo.publisher.dependency.LazyDependency;
 import com.criteo.publisher.headerbidding.DfpHeaderBidding;
 import com.criteo.publisher.headerbidding.HeaderBidding;
@@ -72,28 +78,38 @@ import com.criteo.publisher.headerbidding.OtherAdServersHeaderBidding;
 import com.criteo.publisher.integration.IntegrationDetector;
 import com.criteo.publisher.integration.IntegrationRegistry;
 import com.criteo.publisher.interstitial.InterstitialActivityHelper;
+import com.criteo.publisher.logging.AsyncLogDispatcher;
 import com.criteo.publisher.logging.ConsoleHandler;
+import com.criteo.publisher.logging.LogHandler;
+import com.criteo.publisher.logging.LogLevelGate;
 import com.criteo.publisher.logging.LoggerFactory;
 import com.criteo.publisher.logging.PublisherCodeRemover;
 import com.criteo.publisher.logging.RemoteHandler;
+import com.criteo.publisher.logging.RemoteLogAggregator;
 import com.criteo.publisher.logging.RemoteLogRecordsFactory;
 import com.criteo.publisher.logging.RemoteLogSendingQueue;
 import com.criteo.publisher.logging.RemoteLogSendingQueue.AdapterRemoteLogSendingQueue;
 import com.criteo.publisher.logging.RemoteLogSendingQueueConfiguration;
-import com.criteo.publisher.logging.RemoteLogSendingQueueConsumer;
+import com.criteo.publisher.logging.RemoteLogSendingTask;
 import com.criteo.publisher.model.AdUnitMapper;
 import com.criteo.publisher.model.CdbRequestFactory;
+import com.criteo.publisher.model.CdbResponseTypeAdapter;
 import com.criteo.publisher.model.Config;
 import com.criteo.publisher.model.DeviceInfo;
 import com.criteo.publisher.model.RemoteConfigRequestFactory;
 import com.criteo.publisher.network.BidRequestSender;
+import com.criteo.publisher.network.HttpTransport;
 import com.criteo.publisher.network.LiveBidRequestSender;
+import com.criteo.publisher.network.OkHttpTransport;
 import com.criteo.publisher.network.PubSdkApi;
+import com.criteo.publisher.network.UrlConnectionTransport;
 import com.criteo.publisher.privacy.ConsentData;
 import com.criteo.publisher.privacy.UserPrivacyUtil;
 import com.criteo.publisher.util.AdvertisingInfo;
 import com.criteo.publisher.util.AndroidUtil;
 import com.criteo.publisher.util.AppLifecycleUtil;
+import com.criteo.publisher.util.ApplicationStartedListener;
+import com.criteo.publisher.util.ApplicationStoppedListener;
 import com.criteo.publisher.util.BuildConfigWrapper;
 import com.criteo.publisher.util.CustomAdapterFactory;
 import com.criteo.publisher.util.DeviceUtil;
@@ -103,7 +119,9 @@ import com.criteo.publisher.util.TextUtils;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.squareup.picasso.Picasso;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
@@ -195,10 +213,23 @@ public class DependencyProvider {
   public PubSdkApi providePubSdkApi() {
     return getOrCreate(PubSdkApi.class, () -> new PubSdkApi(
         provideBuildConfigWrapper(),
-        provideJsonSerializer()
+        provideJsonSerializer(),
+        provideHttpTransport()
     ));
   }
 
+  @NonNull
+  public HttpTransport provideHttpTransport() {
+    return getOrCreate(HttpTransport.class, () -> {
+      BuildConfigWrapper buildConfigWrapper = provideBuildConfigWrapper();
+      if (buildConfigWrapper.isPooledHttpTransportEnabled()) {
+        return new OkHttpTransport(buildConfigWrapper);
+      } else {
+        return new UrlConnectionTransport(buildConfigWrapper);
+      }
+    });
+  }
+
   @NonNull
   public AdvertisingInfo provideAdvertisingInfo() {
     return getOrCreate(AdvertisingInfo.class, () -> new AdvertisingInfo(
@@ -260,19 +291,32 @@ public class DependencyProvider {
   @NonNull
   public BidManager provideBidManager() {
     return getOrCreate(BidManager.class, () -> new BidManager(
-        new SdkCache(provideDeviceUtil()),
+        new SdkCache(provideDeviceUtil(), provideBuildConfigWrapper().getBidCacheDepth()),
         provideConfig(),
         provideClock(),
+        provideBidRefillPolicy(),
         provideAdUnitMapper(),
         provideBidRequestSender(),
         provideLiveBidRequestSender(),
         provideBidLifecycleListener(),
-        provideMetricSendingQueueConsumer(),
-        provideRemoteLogSendingQueueConsumer(),
         provideConsentData()
     ));
   }
 
+  @NonNull
+  public BidRefillPolicy provideBidRefillPolicy() {
+    return getOrCreate(BidRefillPolicy.class, () -> new BidRefillPolicy(provideClock()));
+  }
+
+  @NonNull
+  public BidCacheSweeper provideBidCacheSweeper() {
+    return getOrCreate(BidCacheSweeper.class, () -> new BidCacheSweeper(
+        provideBidManager(),
+        provideScheduledExecutorService(),
+        provideBuildConfigWrapper()
+    ));
+  }
+
   @NonNull
   public DeviceInfo provideDeviceInfo() {
     return getOrCreate(DeviceInfo.class, () -> new DeviceInfo(
@@ -303,10 +347,25 @@ public class DependencyProvider {
 
   @NonNull
   public AppLifecycleUtil provideAppLifecycleUtil() {
-    return getOrCreate(AppLifecycleUtil.class, () -> new AppLifecycleUtil(
-        provideAppEvents(),
-        provideBidManager()
-    ));
+    return getOrCreate(AppLifecycleUtil.class, () -> {
+      List<ApplicationStoppedListener> applicationStoppedListeners = new ArrayList<>();
+      applicationStoppedListeners.add(provideRemoteHandler());
+      applicationStoppedListeners.add(provideSendingQueueUploadScheduler());
+      applicationStoppedListeners.add(provideBidCacheSweeper());
+      if (android.os.Build.VERSION.SDK_INT >= VERSION_CODES.JELLY_BEAN_MR1) {
+        applicationStoppedListeners.add(provideCsmBidLifecycleListener());
+      }
+
+      List<ApplicationStartedListener> applicationStartedListeners = new ArrayList<>();
+      applicationStartedListeners.add(provideBidCacheSweeper());
+
+      return new AppLifecycleUtil(
+          provideAppEvents(),
+          provideBidManager(),
+          applicationStoppedListeners,
+          applicationStartedListeners
+      );
+    });
   }
 
   @NonNull
@@ -355,7 +414,9 @@ public class DependencyProvider {
         provideRemoteConfigRequestFactory(),
         provideClock(),
         providePubSdkApi(),
-        provideThreadPoolExecutor()
+        provideThreadPoolExecutor(),
+        provideScheduledExecutorService(),
+        provideBuildConfigWrapper()
     ));
   }
 
@@ -375,23 +436,40 @@ public class DependencyProvider {
   public BidLifecycleListener provideBidLifecycleListener() {
     return getOrCreate(BidLifecycleListener.class, () -> {
       CompositeBidLifecycleListener listener = new CompositeBidLifecycleListener();
-      listener.add(new LoggingBidLifecycleListener(provideRemoteLogSendingQueueConsumer()));
+      listener.add(new LoggingBidLifecycleListener(provideSendingQueueUploadScheduler()));
 
       if (android.os.Build.VERSION.SDK_INT >= VERSION_CODES.JELLY_BEAN_MR1) {
-        listener.add(new CsmBidLifecycleListener(
-            provideMetricRepository(),
-            provideMetricSendingQueueProducer(),
-            provideClock(),
-            provideConfig(),
-            provideConsentData(),
-            provideThreadPoolExecutor()
-        ));
+        listener.add(provideCsmBidLifecycleListener());
       }
 
       return listener;
     });
   }
 
+  @NonNull
+  @RequiresApi(api = VERSION_CODES.JELLY_BEAN_MR1)
+  public CsmBidLifecycleListener provideCsmBidLifecycleListener() {
+    return getOrCreate(CsmBidLifecycleListener.class, () -> new CsmBidLifecycleListener(
+        provideMetricRepository(),
+        provideMetricSendingQueueProducer(),
+        provideClock(),
+        provideConfig(),
+        provideConsentData(),
+        provideThreadPoolExecutor(),
+        provideScheduledExecutorService(),
+        provideBuildConfigWrapper(),
+        provideMetricSampler()
+    ));
+  }
+
+  @NonNull
+  public MetricSampler provideMetricSampler() {
+    return getOrCreate(MetricSampler.class, () -> new MetricSampler(
+        provideConfig(),
+        provideClock()
+    ));
+  }
+
   @NonNull
   public NativeAdMapper provideNativeAdMapper() {
     return getOrCreate(NativeAdMapper.class, () -> new NativeAdMapper(
@@ -536,23 +614,59 @@ public class DependencyProvider {
   }
 
   @NonNull
-  public MetricSendingQueueConsumer provideMetricSendingQueueConsumer() {
-    return getOrCreate(MetricSendingQueueConsumer.class, () -> new MetricSendingQueueConsumer(
-        provideMetricSendingQueue(),
-        providePubSdkApi(),
-        provideBuildConfigWrapper(),
-        provideConfig(),
-        provideThreadPoolExecutor()
-    ));
+  public SendingQueueUploadScheduler provideSendingQueueUploadScheduler() {
+    return getOrCreate(SendingQueueUploadScheduler.class, () -> {
+      SendingQueueUploadScheduler scheduler = new SendingQueueUploadScheduler(
+          Executors.newSingleThreadScheduledExecutor(
+              new BackgroundThreadFactory("criteo-sending-queue-upload")
+          ),
+          provideClock(),
+          provideBuildConfigWrapper()
+      );
+
+      scheduler.register(provideMetricSendingQueue(), new MetricSendingTask(
+          provideMetricSendingQueue(),
+          providePubSdkApi(),
+          provideBuildConfigWrapper(),
+          provideConfig()
+      ));
+
+      scheduler.register(provideRemoteLogSendingQueue(), new RemoteLogSendingTask(
+          provideRemoteLogSendingQueue(),
+          providePubSdkApi(),
+          provideBuildConfigWrapper(),
+          provideAdvertisingInfo()
+      ));
+
+      if (provideBuildConfigWrapper().isCsmAggregationEnabled()) {
+        MetricAggregator aggregator = provideMetricAggregator();
+        scheduler.register(aggregator::getEstimatedSize, new MetricSummarySendingTask(
+            aggregator,
+            provideMetricRepository(),
+            providePubSdkApi(),
+            provideBuildConfigWrapper(),
+            provideConfig()
+        ));
+      }
+
+      return scheduler;
+    });
   }
 
   @NonNull
   public MetricSendingQueueProducer provideMetricSendingQueueProducer() {
     return getOrCreate(MetricSendingQueueProducer.class, () -> new MetricSendingQueueProducer(
-        provideMetricSendingQueue()
+        provideMetricSendingQueue(),
+        provideMetricAggregator(),
+        provideBuildConfigWrapper()
     ));
   }
 
+  @NonNull
+  public MetricAggregator provideMetricAggregator() {
+    return getOrCreate(MetricAggregator.class, MetricAggregator::new);
+  }
+
 
   @NonNull
   public MetricSendingQueue provideMetricSendingQueue() {
@@ -568,7 +682,8 @@ public class DependencyProvider {
             provideJsonSerializer(),
             configuration
         ),
-        configuration
+        configuration,
+        provideBuildConfigWrapper()
     ).create();
   }
 
@@ -585,7 +700,9 @@ public class DependencyProvider {
     return getOrCreate(MetricRepository.class, new MetricRepositoryFactory(
         provideContext(),
         provideMetricParser(),
-        provideBuildConfigWrapper()
+        provideBuildConfigWrapper(),
+        provideThreadPoolExecutor(),
+        provideScheduledExecutorService()
     ));
   }
 
@@ -607,15 +724,43 @@ public class DependencyProvider {
   public Gson provideGson() {
     return getOrCreate(Gson.class, () -> new GsonBuilder()
         .registerTypeAdapterFactory(CustomAdapterFactory.create())
+        .registerTypeAdapterFactory(CdbResponseTypeAdapter.FACTORY)
         .create());
   }
 
   @NonNull
   public LoggerFactory provideLoggerFactory() {
-    return getOrCreate(LoggerFactory.class, () -> new LoggerFactory(Arrays.asList(
+    return getOrCreate(LoggerFactory.class, () -> new LoggerFactory(
+        createLogHandlers(),
+        provideBuildConfigWrapper().isAsyncLoggingEnabled() ? provideAsyncLogDispatcher() : null,
+        provideLogLevelGate()
+    ));
+  }
+
+  @NonNull
+  public LogLevelGate provideLogLevelGate() {
+    return getOrCreate(LogLevelGate.class, () -> new LogLevelGate(createLogHandlers()));
+  }
+
+  @NonNull
+  private List<LazyDependency<LogHandler>> createLogHandlers() {
+    return Arrays.asList(
         new LazyDependency<>("ConsoleHandler", this::provideConsoleHandler),
         new LazyDependency<>("RemoteHandler", this::provideRemoteHandler)
-    )));
+    );
+  }
+
+  @NonNull
+  public AsyncLogDispatcher provideAsyncLogDispatcher() {
+    return getOrCreate(AsyncLogDispatcher.class, () -> {
+      AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(
+          provideBuildConfigWrapper().getAsyncLoggingRingCapacity(),
+          new BackgroundThreadFactory("criteo-logging"),
+          provideClock()
+      );
+      dispatcher.installShutdownFlushHook();
+      return dispatcher;
+    });
   }
 
   @NonNull
@@ -665,7 +810,8 @@ public class DependencyProvider {
   @NonNull
   public RemoteLogSendingQueueConfiguration provideRemoteLogSendingQueueConfiguration() {
     return getOrCreate(RemoteLogSendingQueueConfiguration.class, () -> new RemoteLogSendingQueueConfiguration(
-        provideBuildConfigWrapper()
+        provideBuildConfigWrapper(),
+        provideContext()
     ));
   }
 
@@ -694,18 +840,16 @@ public class DependencyProvider {
         provideRemoteLogSendingQueue(),
         provideConfig(),
         provideThreadPoolExecutor(),
-        provideConsentData()
+        provideConsentData(),
+        provideRemoteLogAggregator()
     ));
   }
 
   @NonNull
-  public RemoteLogSendingQueueConsumer provideRemoteLogSendingQueueConsumer() {
-    return getOrCreate(RemoteLogSendingQueueConsumer.class, () -> new RemoteLogSendingQueueConsumer(
-        provideRemoteLogSendingQueue(),
-        providePubSdkApi(),
-        provideBuildConfigWrapper(),
-        provideAdvertisingInfo(),
-        provideThreadPoolExecutor()
+  public RemoteLogAggregator provideRemoteLogAggregator() {
+    return getOrCreate(RemoteLogAggregator.class, () -> new RemoteLogAggregator(
+        provideConfig(),
+        provideClock()
     ));
   }
 
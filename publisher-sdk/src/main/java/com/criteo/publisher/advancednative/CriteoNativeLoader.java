@@ -17,6 +17,7 @@
 package com.criteo.publisher.advancednative;
 
 import android.content.Context;
+import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import androidx.annotation.Keep;
@@ -78,7 +79,7 @@ public class CriteoNativeLoader {
     this.adUnit = adUnit;
     this.listener = new LoggingCriteoNativeAdListener(listener, new WeakReference<>(this));
     this.publisherRenderer = renderer;
-    logger.log(NativeLogMessage.onNativeLoaderInitialized(adUnit));
+    logger.log(Log.INFO, NativeLogMessage::onNativeLoaderInitialized, adUnit);
   }
 
   /**
@@ -151,7 +152,7 @@ public class CriteoNativeLoader {
   }
 
   private void doLoad(@NonNull ContextData contextData) {
-    logger.log(NativeLogMessage.onNativeLoading(this));
+    logger.log(Log.INFO, NativeLogMessage::onNativeLoading, this);
     getIntegrationRegistry().declare(Integration.STANDALONE);
 
     getBidManager().getBidForAdUnit(adUnit, contextData, new BidListener() {
@@ -176,7 +177,7 @@ public class CriteoNativeLoader {
   }
 
   private void doLoad(@Nullable Bid bid) {
-    logger.log(NativeLogMessage.onNativeLoading(this, bid));
+    logger.log(Log.INFO, NativeLogMessage::onNativeLoading, this, bid);
     getIntegrationRegistry().declare(Integration.IN_HOUSE);
 
     NativeAssets assets = bid == null ? null : bid.consumeNativeAssets();
@@ -17,9 +17,9 @@
 package com.criteo.publisher.bid;
 
 import androidx.annotation.NonNull;
+import com.criteo.publisher.csm.SendingQueueUploadScheduler;
 import com.criteo.publisher.logging.Logger;
 import com.criteo.publisher.logging.LoggerFactory;
-import com.criteo.publisher.logging.RemoteLogSendingQueueConsumer;
 import com.criteo.publisher.model.CacheAdUnit;
 import com.criteo.publisher.model.CdbRequest;
 import com.criteo.publisher.model.CdbResponse;
@@ -33,16 +33,19 @@ public class LoggingBidLifecycleListener implements BidLifecycleListener {
   private final Logger logger = LoggerFactory.getLogger(LoggingBidLifecycleListener.class);
 
   @NonNull
-  private final RemoteLogSendingQueueConsumer remoteLogSendingQueueConsumer;
+  private final SendingQueueUploadScheduler sendingQueueUploadScheduler;
 
-  public LoggingBidLifecycleListener(@NonNull RemoteLogSendingQueueConsumer remoteLogSendingQueueConsumer) {
-    this.remoteLogSendingQueueConsumer = remoteLogSendingQueueConsumer;
+  public LoggingBidLifecycleListener(
+      @NonNull SendingQueueUploadScheduler sendingQueueUploadScheduler
+  ) {
+    this.sendingQueueUploadScheduler = sendingQueueUploadScheduler;
   }
 
   @Override
   public void onSdkInitialized() {
     logger.debug("onSdkInitialized");
-    remoteLogSendingQueueConsumer.sendRemoteLogBatch();
+    // Upload the remote logs left by the previous session
+    sendingQueueUploadScheduler.requestUpload();
   }
 
   @Override
@@ -0,0 +1,163 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.cache;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import com.criteo.publisher.Clock;
+import com.criteo.publisher.model.CacheAdUnit;
+import com.criteo.publisher.util.MapUtilKt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import kotlin.jvm.functions.Function0;
+
+/**
+ * Decide how many bids should be kept in cache for an ad unit, given its consumption rate.
+ * <p>
+ * Ad units that are rarely consumed only need one bid in cache: it is refilled after each
+ * consumption, long before the next one. Ad units consumed in bursts (for instance native ads in a
+ * scrolling feed) need more bids in cache, so that consecutive consumptions do not wait for the
+ * refill. The target depth is the number of bids expected to be consumed during a {@linkplain
+ * #REFILL_WINDOW_IN_MILLIS refill window}, given the average consumption interval.
+ */
+public class BidRefillPolicy {
+
+  /**
+   * Period of time during which consumed bids are expected to be replaced by new fetched ones. This
+   * covers a CDB call on a slow network.
+   */
+  private static final long REFILL_WINDOW_IN_MILLIS = 5_000;
+
+  /**
+   * Weight of the last observed interval in the average consumption interval.
+   */
+  private static final double SMOOTHING_FACTOR = 0.3;
+
+  @NonNull
+  private final Clock clock;
+
+  @NonNull
+  private final ConcurrentMap<CacheAdUnit, ConsumptionRate> rates = new ConcurrentHashMap<>();
+
+  public BidRefillPolicy(@NonNull Clock clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Indicate that a valid bid of the given ad unit was consumed by the publisher.
+   *
+   * @param cacheAdUnit ad unit of the consumed bid
+   */
+  public void onBidConsumed(@NonNull CacheAdUnit cacheAdUnit) {
+    Function0<ConsumptionRate> newRate = new Function0<ConsumptionRate>() {
+      @Override
+      public ConsumptionRate invoke() {
+        return new ConsumptionRate();
+      }
+    };
+
+    ConsumptionRate rate = MapUtilKt.getOrCompute(rates, cacheAdUnit, newRate);
+
+    rate.onConsumed(clock.getCurrentTimeInMillis());
+  }
+
+  /**
+   * Returns the number of bids that should be in cache for the given ad unit.
+   *
+   * @param cacheAdUnit ad unit to get the target depth of
+   * @param maxDepth maximum number of bids that can be stored for this ad unit
+   * @return target number of bids, between 1 and the given maximum depth
+   */
+  public int getTargetDepth(@NonNull CacheAdUnit cacheAdUnit, int maxDepth) {
+    if (maxDepth <= 1) {
+      return 1;
+    }
+
+    ConsumptionRate rate = rates.get(cacheAdUnit);
+    if (rate == null) {
+      return 1;
+    }
+
+    double averageInterval = rate.getAverageIntervalInMillis(clock.getCurrentTimeInMillis());
+    if (averageInterval <= 0) {
+      return 1;
+    }
+
+    int expectedConsumptions = (int) Math.ceil(REFILL_WINDOW_IN_MILLIS / averageInterval);
+    return Math.max(1, Math.min(maxDepth, expectedConsumptions));
+  }
+
+  /**
+   * Indicate if a valid bid of the given ad unit was consumed recently.
+   *
+   * @param cacheAdUnit ad unit to check
+   * @param periodInMillis period of time, until now, during which a consumption is recent
+   * @return <code>true</code> if a bid of this ad unit was consumed during the given period
+   */
+  public boolean isRecentlyConsumed(@NonNull CacheAdUnit cacheAdUnit, long periodInMillis) {
+    ConsumptionRate rate = rates.get(cacheAdUnit);
+    if (rate == null) {
+      return false;
+    }
+
+    long elapsedInMillis = clock.getCurrentTimeInMillis() - rate.getLastConsumptionTimeInMillis();
+    return elapsedInMillis <= periodInMillis;
+  }
+
+  private static class ConsumptionRate {
+
+    @GuardedBy("this")
+    private long lastConsumptionTimeInMillis = -1;
+
+    /**
+     * Exponential moving average of the intervals between consumptions, or a negative value if
+     * there is not enough data yet.
+     */
+    @GuardedBy("this")
+    private double averageIntervalInMillis = -1;
+
+    synchronized void onConsumed(long currentTimeInMillis) {
+      if (lastConsumptionTimeInMillis >= 0) {
+        double interval = Math.max(1, currentTimeInMillis - lastConsumptionTimeInMillis);
+        if (averageIntervalInMillis < 0) {
+          averageIntervalInMillis = interval;
+        } else {
+          averageIntervalInMillis =
+              SMOOTHING_FACTOR * interval + (1 - SMOOTHING_FACTOR) * averageIntervalInMillis;
+        }
+      }
+
+      lastConsumptionTimeInMillis = currentTimeInMillis;
+    }
+
+    synchronized long getLastConsumptionTimeInMillis() {
+      return lastConsumptionTimeInMillis;
+    }
+
+    /**
+     * The average is bounded by the time since last consumption, so an ad unit that stops being
+     * consumed slowly goes back to a depth of one.
+     */
+    synchronized double getAverageIntervalInMillis(long currentTimeInMillis) {
+      if (averageIntervalInMillis < 0) {
+        return -1;
+      }
+
+      return Math.max(averageIntervalInMillis, currentTimeInMillis - lastConsumptionTimeInMillis);
+    }
+  }
+}
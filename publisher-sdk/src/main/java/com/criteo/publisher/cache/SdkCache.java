@@ -28,24 +28,125 @@ import com.criteo.publisher.model.CacheAdUnit;
 import com.criteo.publisher.model.CdbResponseSlot;
 import com.criteo.publisher.util.AdUnitType;
 import com.criteo.publisher.util.DeviceUtil;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Thread-safe cache of bids indexed by {@link CacheAdUnit}.
+ * <p>
+ * Each ad unit holds a bounded queue of bids, ordered by expiry time: {@link
+ * #peekAdUnit(CacheAdUnit)} and {@link #remove(CacheAdUnit)} operate on the bid expiring first. When
+ * the queue is full, adding a new bid evicts the bids expiring first, so the freshest fetched bid is
+ * always kept. With a depth of one, a new bid simply replaces the previous one.
+ * <p>
+ * Individual operations ({@link #add(CdbResponseSlot)}, {@link #peekAdUnit(CacheAdUnit)}, {@link
+ * #remove(CacheAdUnit)}) are atomic and never block each other on different keys. Compound
+ * operations, such as peeking a slot, checking whether it is silenced and consuming it, should be
+ * done while holding the lock returned by {@link #getLock(CacheAdUnit)} for the key. Locks are
+ * striped: different keys may share the same lock, but a key is always guarded by the same one.
+ */
 public class SdkCache {
 
-  private final Map<CacheAdUnit, CdbResponseSlot> slotMap;
+  /**
+   * Number of locks striping the key space. This should be a power of two.
+   */
+  private static final int LOCK_STRIPES = 16;
+
+  private static final int SECOND_TO_MILLI = 1000;
+
+  /**
+   * Bids per ad unit, ordered by expiry time. Arrays are never mutated once published in this map,
+   * so they can be read without locking. Updates are done while holding the lock of the key.
+   */
+  private final ConcurrentMap<CacheAdUnit, CdbResponseSlot[]> slotMap;
+  private final Object[] locks;
   private final DeviceUtil deviceUtil;
+  private final int maxBidsPerAdUnit;
 
   public SdkCache(@NonNull DeviceUtil deviceUtil) {
-    slotMap = new HashMap<>();
+    this(deviceUtil, 1);
+  }
+
+  public SdkCache(@NonNull DeviceUtil deviceUtil, int maxBidsPerAdUnit) {
+    slotMap = new ConcurrentHashMap<>();
+    locks = new Object[LOCK_STRIPES];
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new Object();
+    }
     this.deviceUtil = deviceUtil;
+    this.maxBidsPerAdUnit = Math.max(1, maxBidsPerAdUnit);
+  }
+
+  /**
+   * Maximum number of bids kept in this cache for a single ad unit.
+   */
+  public int getMaxBidsPerAdUnit() {
+    return maxBidsPerAdUnit;
+  }
+
+  /**
+   * Returns the lock guarding compound operations on the given key.
+   * <p>
+   * Holders of this lock should not try to acquire the lock of another key, as it may be a
+   * different stripe and lead to a dead-lock.
+   *
+   * @param key key to get the lock of (nullable to accommodate slots without placement ID)
+   * @return lock associated to the given key
+   */
+  @NonNull
+  public Object getLock(@Nullable CacheAdUnit key) {
+    if (key == null) {
+      return locks[0];
+    }
+
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    return locks[hash & (LOCK_STRIPES - 1)];
   }
 
   public void add(@NonNull CdbResponseSlot slot) {
     CacheAdUnit key = detectCacheAdUnit(slot);
-    if (key != null) {
-      slotMap.put(key, slot);
+    if (key == null) {
+      return;
+    }
+
+    synchronized (getLock(key)) {
+      slotMap.put(key, insertByExpiryTime(slotMap.get(key), slot));
+    }
+  }
+
+  @NonNull
+  private CdbResponseSlot[] insertByExpiryTime(
+      @Nullable CdbResponseSlot[] slots,
+      @NonNull CdbResponseSlot slot
+  ) {
+    if (slots == null) {
+      return new CdbResponseSlot[]{slot};
+    }
+
+    // Evict bids expiring first to leave room for the new one
+    int evicted = Math.max(0, slots.length - maxBidsPerAdUnit + 1);
+    int kept = slots.length - evicted;
+
+    // Bids with the same expiry time are kept in insertion order
+    long expiryTime = getExpiryTimeInMillis(slot);
+    int index = slots.length;
+    while (index > evicted && getExpiryTimeInMillis(slots[index - 1]) > expiryTime) {
+      index--;
     }
+
+    CdbResponseSlot[] newSlots = new CdbResponseSlot[kept + 1];
+    System.arraycopy(slots, evicted, newSlots, 0, index - evicted);
+    newSlots[index - evicted] = slot;
+    System.arraycopy(slots, index, newSlots, index - evicted + 1, slots.length - index);
+    return newSlots;
+  }
+
+  private static long getExpiryTimeInMillis(@NonNull CdbResponseSlot slot) {
+    return slot.getTtlInSeconds() * (long) SECOND_TO_MILLI + slot.getTimeOfDownload();
   }
 
   @Nullable
@@ -82,7 +183,25 @@ public class SdkCache {
   }
 
   /**
-   * Get the slot corresponding to the given key.
+   * Get the slot expiring first among the ones corresponding to the given key.
+   * <p>
+   * If no slot match the given key, then <code>null</code> is returned.
+   *
+   * @param key of the slot to look for
+   * @return found slot or null if not found
+   */
+  @Nullable
+  public CdbResponseSlot peekAdUnit(@Nullable CacheAdUnit key) {
+    if (key == null) {
+      return null;
+    }
+
+    CdbResponseSlot[] slots = slotMap.get(key);
+    return slots == null ? null : slots[0];
+  }
+
+  /**
+   * Get the slot expiring last among the ones corresponding to the given key.
    * <p>
    * If no slot match the given key, then <code>null</code> is returned.
    *
@@ -90,21 +209,98 @@ public class SdkCache {
    * @return found slot or null if not found
    */
   @Nullable
-  public CdbResponseSlot peekAdUnit(CacheAdUnit key) {
-    return slotMap.get(key);
+  public CdbResponseSlot peekLastAdUnit(@Nullable CacheAdUnit key) {
+    if (key == null) {
+      return null;
+    }
+
+    CdbResponseSlot[] slots = slotMap.get(key);
+    return slots == null ? null : slots[slots.length - 1];
   }
 
-  public void remove(CacheAdUnit key) {
-    slotMap.remove(key);
+  /**
+   * Remove the slot expiring first among the ones corresponding to the given key.
+   * <p>
+   * This is the slot returned by {@link #peekAdUnit(CacheAdUnit)}.
+   *
+   * @param key of the slot to remove
+   */
+  public void remove(@Nullable CacheAdUnit key) {
+    if (key == null) {
+      return;
+    }
+
+    synchronized (getLock(key)) {
+      CdbResponseSlot[] slots = slotMap.get(key);
+      if (slots == null) {
+        return;
+      }
+
+      if (slots.length <= 1) {
+        slotMap.remove(key);
+      } else {
+        slotMap.put(key, Arrays.copyOfRange(slots, 1, slots.length));
+      }
+    }
+  }
+
+  /**
+   * Remove all slots corresponding to the given key.
+   *
+   * @param key of the slots to remove
+   */
+  public void clear(@Nullable CacheAdUnit key) {
+    if (key == null) {
+      return;
+    }
+
+    synchronized (getLock(key)) {
+      slotMap.remove(key);
+    }
+  }
+
+  /**
+   * Returns the number of slots currently cached for the given key.
+   *
+   * @param key of the slots to count
+   * @return number of cached slots, between 0 and {@link #getMaxBidsPerAdUnit()}
+   */
+  public int getBidCount(@Nullable CacheAdUnit key) {
+    if (key == null) {
+      return 0;
+    }
+
+    CdbResponseSlot[] slots = slotMap.get(key);
+    return slots == null ? 0 : slots.length;
+  }
+
+  /**
+   * Returns a snapshot of the keys having at least one slot in this cache.
+   *
+   * @return keys of cached slots
+   */
+  @NonNull
+  public Collection<CacheAdUnit> getAdUnits() {
+    return new ArrayList<>(slotMap.keySet());
   }
 
   @VisibleForTesting
   int getItemCount() {
-    return slotMap.size();
+    int count = 0;
+    for (CdbResponseSlot[] slots : slotMap.values()) {
+      count += slots.length;
+    }
+    return count;
   }
 
   @VisibleForTesting
   public void put(@NonNull CacheAdUnit cacheAdUnit, @Nullable CdbResponseSlot slot) {
-    slotMap.put(cacheAdUnit, slot);
+    synchronized (getLock(cacheAdUnit)) {
+      if (slot == null) {
+        slotMap.remove(cacheAdUnit);
+      } else {
+        slotMap.put(cacheAdUnit, new CdbResponseSlot[]{slot});
+      }
+    }
   }
 }
@@ -0,0 +1,46 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.concurrent;
+
+import android.os.Process;
+import androidx.annotation.NonNull;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Create threads running with the {@linkplain Process#THREAD_PRIORITY_BACKGROUND background}
+ * priority, so that the work they do never competes with the latency-critical threads of the SDK
+ * or of the application.
+ */
+public class BackgroundThreadFactory implements ThreadFactory {
+
+  @NonNull
+  private final String name;
+
+  public BackgroundThreadFactory(@NonNull String name) {
+    this.name = name;
+  }
+
+  @Override
+  public Thread newThread(@NonNull Runnable runnable) {
+    Thread thread = new Thread(() -> {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+      runnable.run();
+    }, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+}
@@ -0,0 +1,425 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * File based FIFO queue of byte arrays, able to add and remove several elements with a single
+ * update of its header.
+ * <p>
+ * The file has the format of the {@link com.squareup.tape.QueueFile} of Tape 1.x, so existing queue
+ * files are read as is. The file is a ring buffer starting with a header made of the file length,
+ * the number of elements, and the positions of the first and last elements. Each element is
+ * prefixed by its length. All numbers are big endian 32-bit integers.
+ * <p>
+ * The file is opened in synchronous mode, so each write costs a disk sync. Tape writes the header
+ * once per added or removed element. Here, the elements of a batch are written with a single write,
+ * and are then committed with a single header update. Until the header is written, it still
+ * describes the previous state: if the process dies in between, the batch is simply not added.
+ * <p>
+ * This class is not thread-safe.
+ */
+class BatchedQueueFile implements Closeable {
+
+  /**
+   * Length of the header of the file.
+   */
+  @VisibleForTesting
+  static final int HEADER_LENGTH = 16;
+
+  /**
+   * Length of the header of each element.
+   */
+  @VisibleForTesting
+  static final int ELEMENT_HEADER_LENGTH = 4;
+
+  /**
+   * Length of a new file, which is one file system block.
+   */
+  private static final int INITIAL_LENGTH = 4096;
+
+  @NonNull
+  private final RandomAccessFile raf;
+
+  /**
+   * Buffer used to read and write the headers.
+   */
+  @NonNull
+  private final byte[] buffer = new byte[HEADER_LENGTH];
+
+  private int fileLength;
+
+  private int elementCount;
+
+  /**
+   * Position of the first element, or <code>0</code> if the queue is empty.
+   */
+  private int firstPosition;
+
+  /**
+   * Position of the last element, or <code>0</code> if the queue is empty.
+   */
+  private int lastPosition;
+
+  private int lastLength;
+
+  BatchedQueueFile(@NonNull File file) throws IOException {
+    if (!file.exists()) {
+      initialize(file);
+    }
+
+    raf = new RandomAccessFile(file, "rwd");
+    try {
+      readHeader();
+    } catch (IOException e) {
+      raf.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Write the header of an empty queue in a temporary file, and then move it, so a partially
+   * initialized file is never seen.
+   */
+  private static void initialize(@NonNull File file) throws IOException {
+    File tempFile = new File(file.getPath() + ".tmp");
+    try (RandomAccessFile tempRaf = new RandomAccessFile(tempFile, "rwd")) {
+      byte[] header = new byte[HEADER_LENGTH];
+      writeInts(header, INITIAL_LENGTH, 0, 0, 0);
+      tempRaf.setLength(INITIAL_LENGTH);
+      tempRaf.seek(0);
+      tempRaf.write(header);
+    }
+
+    if (!tempFile.renameTo(file)) {
+      throw new IOException("Rename failed for " + tempFile);
+    }
+  }
+
+  private void readHeader() throws IOException {
+    raf.seek(0);
+    raf.readFully(buffer);
+
+    fileLength = readInt(buffer, 0);
+    if (fileLength > raf.length()) {
+      throw new IOException("File is truncated. Expected length: " + fileLength
+          + ", actual length: " + raf.length());
+    }
+    if (fileLength <= HEADER_LENGTH) {
+      throw new IOException("File is corrupt, length stored in header is " + fileLength);
+    }
+
+    elementCount = readInt(buffer, 4);
+    firstPosition = readInt(buffer, 8);
+    lastPosition = readInt(buffer, 12);
+    if (elementCount < 0) {
+      throw new IOException("File is corrupt, element count stored in header is " + elementCount);
+    }
+
+    if (elementCount > 0) {
+      checkPosition(firstPosition);
+      checkPosition(lastPosition);
+      lastLength = readElementLength(lastPosition);
+    }
+  }
+
+  private void checkPosition(int position) throws IOException {
+    if (position < HEADER_LENGTH || position >= fileLength) {
+      throw new IOException("File is corrupt, element position stored in header is " + position);
+    }
+  }
+
+  int size() {
+    return elementCount;
+  }
+
+  /**
+   * Returns the number of bytes used by the elements of this queue, including the headers.
+   * <p>
+   * This may be less than the length of the file, as the file grows by power of 2, and is only
+   * shrunk when the queue is cleared.
+   */
+  int getUsedBytes() {
+    if (elementCount == 0) {
+      return HEADER_LENGTH;
+    }
+
+    if (lastPosition >= firstPosition) {
+      return HEADER_LENGTH + getEndOfLastElement() - firstPosition;
+    } else {
+      // The elements wrap around the end of the file
+      return getEndOfLastElement() + fileLength - firstPosition;
+    }
+  }
+
+  /**
+   * Position following the last element, without wrapping it.
+   */
+  private int getEndOfLastElement() {
+    return lastPosition + ELEMENT_HEADER_LENGTH + lastLength;
+  }
+
+  void add(@NonNull byte[] element) throws IOException {
+    addAll(Collections.singletonList(element));
+  }
+
+  /**
+   * Adds the given elements at the end of this queue, in order.
+   * <p>
+   * Either all elements are added, or none of them is if an {@link IOException} is thrown.
+   */
+  void addAll(@NonNull List<byte[]> elements) throws IOException {
+    if (elements.isEmpty()) {
+      return;
+    }
+
+    int batchLength = 0;
+    for (byte[] element : elements) {
+      batchLength += ELEMENT_HEADER_LENGTH + element.length;
+    }
+
+    byte[] batch = new byte[batchLength];
+    int offset = 0;
+    int lastOffset = 0;
+    for (byte[] element : elements) {
+      writeInt(batch, offset, element.length);
+      System.arraycopy(element, 0, batch, offset + ELEMENT_HEADER_LENGTH, element.length);
+      lastOffset = offset;
+      offset += ELEMENT_HEADER_LENGTH + element.length;
+    }
+
+    expandIfNecessary(batchLength);
+
+    boolean wasEmpty = elementCount == 0;
+    int position = wasEmpty ? HEADER_LENGTH : wrapPosition(getEndOfLastElement());
+    ringWrite(position, batch, 0, batchLength);
+
+    int newFirstPosition = wasEmpty ? position : firstPosition;
+    int newLastPosition = wrapPosition(position + lastOffset);
+    writeHeader(fileLength, elementCount + elements.size(), newFirstPosition, newLastPosition);
+
+    elementCount += elements.size();
+    firstPosition = newFirstPosition;
+    lastPosition = newLastPosition;
+    lastLength = elements.get(elements.size() - 1).length;
+  }
+
+  /**
+   * Returns the first element of this queue, or <code>null</code> if it is empty.
+   */
+  @Nullable
+  byte[] peek() throws IOException {
+    List<byte[]> elements = peek(1);
+    return elements.isEmpty() ? null : elements.get(0);
+  }
+
+  /**
+   * Reads up to <code>max</code> elements from the head of this queue, in a single pass, without
+   * removing them.
+   */
+  @NonNull
+  List<byte[]> peek(int max) throws IOException {
+    int count = Math.max(0, Math.min(max, elementCount));
+    List<byte[]> elements = new ArrayList<>(count);
+
+    int position = firstPosition;
+    for (int i = 0; i < count; i++) {
+      int length = readElementLength(position);
+      byte[] element = new byte[length];
+      ringRead(position + ELEMENT_HEADER_LENGTH, element, 0, length);
+      elements.add(element);
+      position = wrapPosition(position + ELEMENT_HEADER_LENGTH + length);
+    }
+
+    return elements;
+  }
+
+  /**
+   * Removes up to <code>count</code> elements from the head of this queue, with a single header
+   * update.
+   */
+  void remove(int count) throws IOException {
+    if (count <= 0 || elementCount == 0) {
+      return;
+    }
+
+    if (count >= elementCount) {
+      clear();
+      return;
+    }
+
+    int position = firstPosition;
+    for (int i = 0; i < count; i++) {
+      position = wrapPosition(position + ELEMENT_HEADER_LENGTH + readElementLength(position));
+    }
+
+    writeHeader(fileLength, elementCount - count, position, lastPosition);
+    elementCount -= count;
+    firstPosition = position;
+  }
+
+  /**
+   * Removes all elements of this queue, and shrinks the file back to its initial length.
+   */
+  void clear() throws IOException {
+    writeHeader(INITIAL_LENGTH, 0, 0, 0);
+    if (fileLength > INITIAL_LENGTH) {
+      raf.setLength(INITIAL_LENGTH);
+    }
+
+    fileLength = INITIAL_LENGTH;
+    elementCount = 0;
+    firstPosition = 0;
+    lastPosition = 0;
+    lastLength = 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    raf.close();
+  }
+
+  /**
+   * Grows the file by power of 2 until the given number of bytes fits after the last element.
+   * <p>
+   * If the elements wrap around the end of the file, the wrapped part is copied after the previous
+   * end, so elements stay contiguous in the ring.
+   */
+  private void expandIfNecessary(int addedLength) throws IOException {
+    int usedBytes = getUsedBytes();
+    if (fileLength - usedBytes >= addedLength) {
+      return;
+    }
+
+    int newLength = fileLength;
+    do {
+      newLength <<= 1;
+    } while (newLength - usedBytes < addedLength);
+
+    raf.setLength(newLength);
+
+    if (elementCount == 0) {
+      writeHeader(newLength, 0, 0, 0);
+      fileLength = newLength;
+      return;
+    }
+
+    int endOfLastElement = getEndOfLastElement();
+    boolean isLastWrapped = lastPosition < firstPosition;
+    if (isLastWrapped || endOfLastElement > fileLength) {
+      int wrappedEnd = isLastWrapped ? endOfLastElement : wrapPosition(endOfLastElement);
+      byte[] wrapped = new byte[wrappedEnd - HEADER_LENGTH];
+      raf.seek(HEADER_LENGTH);
+      raf.readFully(wrapped);
+      raf.seek(fileLength);
+      raf.write(wrapped);
+    }
+
+    int newLastPosition = isLastWrapped ? lastPosition + fileLength - HEADER_LENGTH : lastPosition;
+    writeHeader(newLength, elementCount, firstPosition, newLastPosition);
+    fileLength = newLength;
+    lastPosition = newLastPosition;
+  }
+
+  private int readElementLength(int position) throws IOException {
+    ringRead(position, buffer, 0, ELEMENT_HEADER_LENGTH);
+    int length = readInt(buffer, 0);
+    if (length < 0 || length > fileLength - HEADER_LENGTH - ELEMENT_HEADER_LENGTH) {
+      throw new IOException("File is corrupt, invalid element length at " + position + ": "
+          + length);
+    }
+    return length;
+  }
+
+  private void writeHeader(
+      int fileLength,
+      int elementCount,
+      int firstPosition,
+      int lastPosition
+  ) throws IOException {
+    writeInts(buffer, fileLength, elementCount, firstPosition, lastPosition);
+    raf.seek(0);
+    raf.write(buffer);
+  }
+
+  /**
+   * Wraps the given position if it is after the end of the file.
+   */
+  private int wrapPosition(int position) {
+    return position < fileLength ? position : HEADER_LENGTH + position - fileLength;
+  }
+
+  private void ringWrite(int position, @NonNull byte[] data, int offset, int count)
+      throws IOException {
+    position = wrapPosition(position);
+    if (position + count <= fileLength) {
+      raf.seek(position);
+      raf.write(data, offset, count);
+    } else {
+      int beforeEof = fileLength - position;
+      raf.seek(position);
+      raf.write(data, offset, beforeEof);
+      raf.seek(HEADER_LENGTH);
+      raf.write(data, offset + beforeEof, count - beforeEof);
+    }
+  }
+
+  private void ringRead(int position, @NonNull byte[] data, int offset, int count)
+      throws IOException {
+    position = wrapPosition(position);
+    if (position + count <= fileLength) {
+      raf.seek(position);
+      raf.readFully(data, offset, count);
+    } else {
+      int beforeEof = fileLength - position;
+      raf.seek(position);
+      raf.readFully(data, offset, beforeEof);
+      raf.seek(HEADER_LENGTH);
+      raf.readFully(data, offset + beforeEof, count - beforeEof);
+    }
+  }
+
+  private static void writeInts(@NonNull byte[] data, int... values) {
+    for (int i = 0; i < values.length; i++) {
+      writeInt(data, i * 4, values[i]);
+    }
+  }
+
+  private static void writeInt(@NonNull byte[] data, int offset, int value) {
+    data[offset] = (byte) (value >> 24);
+    data[offset + 1] = (byte) (value >> 16);
+    data[offset + 2] = (byte) (value >> 8);
+    data[offset + 3] = (byte) value;
+  }
+
+  private static int readInt(@NonNull byte[] data, int offset) {
+    return ((data[offset] & 0xff) << 24)
+        + ((data[offset + 1] & 0xff) << 16)
+        + ((data[offset + 2] & 0xff) << 8)
+        + (data[offset + 3] & 0xff);
+  }
+}
@@ -17,6 +17,7 @@
 package com.criteo.publisher.csm;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import com.criteo.publisher.util.BuildConfigWrapper;
 import java.util.Collection;
 
@@ -52,12 +53,23 @@ class BoundedMetricRepository extends MetricRepository {
     delegate.moveById(impressionId, mover);
   }
 
+  @Override
+  int moveByIds(@NonNull Collection<String> impressionIds, @NonNull MetricBatchMover mover) {
+    return delegate.moveByIds(impressionIds, mover);
+  }
+
   @NonNull
   @Override
   Collection<Metric> getAllStoredMetrics() {
     return delegate.getAllStoredMetrics();
   }
 
+  @Nullable
+  @Override
+  Metric getById(@NonNull String impressionId) {
+    return delegate.getById(impressionId);
+  }
+
   @Override
   int getTotalSize() {
     return delegate.getTotalSize();
@@ -67,4 +79,9 @@ class BoundedMetricRepository extends MetricRepository {
   boolean contains(@NonNull String impressionId) {
     return delegate.contains(impressionId);
   }
+
+  @Override
+  void flush() {
+    delegate.flush();
+  }
 }
@@ -18,6 +18,7 @@ package com.criteo.publisher.csm;
 
 import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
+import java.util.Collection;
 import java.util.List;
 
 class BoundedSendingQueue<T> implements ConcurrentSendingQueue<T> {
@@ -50,6 +51,21 @@ class BoundedSendingQueue<T> implements ConcurrentSendingQueue<T> {
     }
   }
 
+  /**
+   * Room is made once for the whole batch. Like {@link #offer(Object)}, this may exceed the bound
+   * by the size of the inserted elements. This is only used to put back polled elements, so the
+   * size of the queue is not expected to grow.
+   */
+  @Override
+  public boolean offerAll(@NonNull Collection<? extends T> elements) {
+    synchronized (delegateLock) {
+      if (getTotalSize() >= sendingQueueConfiguration.getMaxSizeOfSendingQueue()) {
+        delegate.poll(1);
+      }
+      return delegate.offerAll(elements);
+    }
+  }
+
   @NonNull
   @Override
   public List<T> poll(int max) {
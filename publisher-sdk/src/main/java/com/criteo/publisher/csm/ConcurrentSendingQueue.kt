@@ -30,6 +30,18 @@ internal interface ConcurrentSendingQueue<T> {
    */
   fun offer(element: T): Boolean
 
+  /**
+   * Inserts all the specified elements at once into this queue, in the given order.
+   *
+   * This is cheaper than offering elements one by one, as the queue is locked and checked only
+   * once. Either all elements are inserted or none of them is: in case of failure, `false` is
+   * returned and none of the given elements is in the queue.
+   *
+   * @param elements new elements to insert into this queue
+   * @return `true` if all elements were successfully inserted, else `false`
+   */
+  fun offerAll(elements: Collection<T>): Boolean
+
   /**
    * Retrieves and removes up to `max` elements from this queue.
    *
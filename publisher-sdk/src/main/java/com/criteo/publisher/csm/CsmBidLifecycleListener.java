@@ -21,6 +21,8 @@ import com.criteo.publisher.Clock;
 import com.criteo.publisher.SafeRunnable;
 import com.criteo.publisher.bid.BidLifecycleListener;
 import com.criteo.publisher.csm.MetricRepository.MetricUpdater;
+import com.criteo.publisher.logging.Logger;
+import com.criteo.publisher.logging.LoggerFactory;
 import com.criteo.publisher.model.CacheAdUnit;
 import com.criteo.publisher.model.CdbRequest;
 import com.criteo.publisher.model.CdbRequestSlot;
@@ -28,9 +30,14 @@ import com.criteo.publisher.model.CdbResponse;
 import com.criteo.publisher.model.CdbResponseSlot;
 import com.criteo.publisher.model.Config;
 import com.criteo.publisher.privacy.ConsentData;
+import com.criteo.publisher.util.ApplicationStoppedListener;
+import com.criteo.publisher.util.BuildConfigWrapper;
 
 import java.io.InterruptedIOException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Update metrics files accordingly to received events.
@@ -38,7 +45,8 @@ import java.util.concurrent.Executor;
  * This follows specifications given by <a href="https://go.crto.in/publisher-sdk-csm">Client Side
  * Metrics</a>.
  */
-public class CsmBidLifecycleListener implements BidLifecycleListener {
+public class CsmBidLifecycleListener implements BidLifecycleListener,
+    ApplicationStoppedListener {
 
   @NonNull
   private final MetricRepository repository;
@@ -58,13 +66,35 @@ public class CsmBidLifecycleListener implements BidLifecycleListener {
   @NonNull
   private final Executor executor;
 
+  @NonNull
+  private final ScheduledExecutorService scheduledExecutorService;
+
+  @NonNull
+  private final BuildConfigWrapper buildConfigWrapper;
+
+  @NonNull
+  private final MetricSampler sampler;
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /**
+   * Indicate that metrics stored before the SDK initialization are waiting to be recovered.
+   */
+  @NonNull
+  private final AtomicBoolean isRecoveryPending = new AtomicBoolean(false);
+
+  private volatile long sdkInitializationTimeInMillis;
+
   public CsmBidLifecycleListener(
       @NonNull MetricRepository repository,
       @NonNull MetricSendingQueueProducer sendingQueueProducer,
       @NonNull Clock clock,
       @NonNull Config config,
       @NonNull ConsentData consentData,
-      @NonNull Executor executor
+      @NonNull Executor executor,
+      @NonNull ScheduledExecutorService scheduledExecutorService,
+      @NonNull BuildConfigWrapper buildConfigWrapper,
+      @NonNull MetricSampler sampler
   ) {
     this.repository = repository;
     this.sendingQueueProducer = sendingQueueProducer;
@@ -72,6 +102,9 @@ public class CsmBidLifecycleListener implements BidLifecycleListener {
     this.config = config;
     this.consentData = consentData;
     this.executor = executor;
+    this.scheduledExecutorService = scheduledExecutorService;
+    this.buildConfigWrapper = buildConfigWrapper;
+    this.sampler = sampler;
   }
 
   /**
@@ -79,6 +112,10 @@ public class CsmBidLifecycleListener implements BidLifecycleListener {
    * the in-memory bid-cache is lost and the metrics associated to the previously cached bids will
    * never be updated again. In this case, all previously stored metrics are moved to the sending
    * queue.
+   * <p>
+   * As they may be numerous after crashes, this recovery is deferred so it does not compete with
+   * the prefetch: it starts once the first CDB call is over, or after a maximum delay. Metrics of
+   * the CDB calls started after the initialization are left untouched.
    */
   @Override
   public void onSdkInitialized() {
@@ -86,10 +123,37 @@ public class CsmBidLifecycleListener implements BidLifecycleListener {
       return;
     }
 
+    sdkInitializationTimeInMillis = clock.getCurrentTimeInMillis();
+    isRecoveryPending.set(true);
+
+    scheduledExecutorService.schedule(new SafeRunnable() {
+      @Override
+      public void runSafely() {
+        // Do not run the recovery on the scheduler thread, other tasks are waiting for it
+        executor.execute(new SafeRunnable() {
+          @Override
+          public void runSafely() {
+            recoverStoredMetricsIfPending();
+          }
+        });
+      }
+    }, buildConfigWrapper.getCsmRecoveryMaxDelayInMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * When the application is stopped, it may be killed at any time. Metric updates that are still
+   * buffered in memory are written to the storage, so they are not lost.
+   */
+  @Override
+  public void onApplicationStopped() {
+    if (isCsmDisabled()) {
+      return;
+    }
+
     executor.execute(new SafeRunnable() {
       @Override
       public void runSafely() {
-        sendingQueueProducer.pushAllInQueue(repository);
+        repository.flush();
       }
     });
   }
@@ -97,6 +161,10 @@ public class CsmBidLifecycleListener implements BidLifecycleListener {
   /**
    * On CDB call start, each requested slot is tracked by a new metric. The metrics marks the
    * timestamp of this event and wait for further updates.
+   * <p>
+   * Only the slots {@linkplain MetricSampler sampled} are tracked, the others do not cost any
+   * storage. Metrics of sampled slots carry their sampling weight. This is the only sampling
+   * decision: later events only update the metrics stored here.
    *
    * @param request Request sent to CDB
    */
@@ -111,11 +179,21 @@ public class CsmBidLifecycleListener implements BidLifecycleListener {
       public void runSafely() {
         long currentTimeInMillis = clock.getCurrentTimeInMillis();
 
-        updateByCdbRequestIds(request, builder -> {
-          builder.setRequestGroupId(request.getId());
-          builder.setCdbCallStartTimestamp(currentTimeInMillis);
-          builder.setProfileId(request.getProfileId());
-        });
+        for (CdbRequestSlot requestSlot : request.getSlots()) {
+          int samplingWeight = sampler.sample(requestSlot.getImpressionId());
+          if (samplingWeight <= 0) {
+            continue;
+          }
+
+          repository.addOrUpdateById(requestSlot.getImpressionId(), builder -> {
+            builder.setRequestGroupId(request.getId());
+            builder.setCdbCallStartTimestamp(currentTimeInMillis);
+            builder.setProfileId(request.getProfileId());
+            if (samplingWeight > 1) {
+              builder.setSamplingWeight(samplingWeight);
+            }
+          });
+        }
       }
     });
   }
@@ -154,6 +232,10 @@ public class CsmBidLifecycleListener implements BidLifecycleListener {
           boolean isNoBid = responseSlot == null;
           boolean isInvalidBid = responseSlot != null && !responseSlot.isValid();
 
+          if (!isTracked(impressionId)) {
+            continue;
+          }
+
           repository.addOrUpdateById(impressionId, builder -> {
             if (isNoBid) {
               builder.setCdbCallEndTimestamp(currentTimeInMillis);
@@ -170,6 +252,8 @@ public class CsmBidLifecycleListener implements BidLifecycleListener {
             sendingQueueProducer.pushInQueue(repository, impressionId);
           }
         }
+
+        recoverStoredMetricsIfPending();
       }
     });
   }
@@ -205,8 +289,12 @@ public class CsmBidLifecycleListener implements BidLifecycleListener {
 
         for (CdbRequestSlot slot : request.getSlots()) {
           String impressionId = slot.getImpressionId();
-          sendingQueueProducer.pushInQueue(repository, impressionId);
+          if (isTracked(impressionId)) {
+            sendingQueueProducer.pushInQueue(repository, impressionId);
+          }
         }
+
+        recoverStoredMetricsIfPending();
       }
     });
   }
@@ -248,6 +336,10 @@ public class CsmBidLifecycleListener implements BidLifecycleListener {
           return;
         }
 
+        if (!isTracked(impressionId)) {
+          return;
+        }
+
         boolean isNotExpired = !consumedBid.isExpired(clock);
         long currentTimeInMillis = clock.getCurrentTimeInMillis();
 
@@ -278,7 +370,7 @@ public class CsmBidLifecycleListener implements BidLifecycleListener {
           return;
         }
 
-        if (!bidCached.isValid()) {
+        if (!bidCached.isValid() || !isTracked(impressionId)) {
           return;
         }
 
@@ -287,12 +379,38 @@ public class CsmBidLifecycleListener implements BidLifecycleListener {
     });
   }
 
+  private void recoverStoredMetricsIfPending() {
+    if (!isRecoveryPending.compareAndSet(true, false)) {
+      return;
+    }
+
+    long startTimeInMillis = clock.getCurrentTimeInMillis();
+    int recoveredCount = sendingQueueProducer.pushAllInQueue(
+        repository,
+        sdkInitializationTimeInMillis
+    );
+    long durationInMillis = clock.getCurrentTimeInMillis() - startTimeInMillis;
+
+    logger.log(SendingQueueLogMessage.onStoredMetricsRecovered(recoveredCount, durationInMillis));
+  }
+
   private void updateByCdbRequestIds(@NonNull CdbRequest request, @NonNull MetricUpdater updater) {
     for (CdbRequestSlot requestSlot : request.getSlots()) {
-      repository.addOrUpdateById(requestSlot.getImpressionId(), updater);
+      String impressionId = requestSlot.getImpressionId();
+      if (isTracked(impressionId)) {
+        repository.addOrUpdateById(impressionId, updater);
+      }
     }
   }
 
+  /**
+   * Indicate if the given impression, whose lifecycle already started, is tracked: only the
+   * impressions sampled when their CDB call started have a stored metric.
+   */
+  private boolean isTracked(@NonNull String impressionId) {
+    return repository.contains(impressionId);
+  }
+
   private boolean isCsmDisabled() {
     return !config.isCsmEnabled() || !consentData.isConsentGiven();
   }
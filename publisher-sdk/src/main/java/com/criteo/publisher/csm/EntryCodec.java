@@ -0,0 +1,52 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import androidx.annotation.NonNull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary format of the elements stored in a sending queue.
+ * <p>
+ * Each stored element is prefixed by the {@link #getVersion() version} of the format, so the
+ * format can evolve while old elements stay readable.
+ *
+ * @param <T> type of the elements
+ */
+public interface EntryCodec<T> {
+
+  /**
+   * Version of the format written by this codec.
+   * <p>
+   * This must not be <code>'{'</code>, which is the first byte of legacy elements stored in JSON.
+   */
+  byte getVersion();
+
+  void write(@NonNull T element, @NonNull DataOutput output) throws IOException;
+
+  /**
+   * Read an element written with the given version of the format.
+   *
+   * @param input input positioned just after the version
+   * @param version version of the format prefixing the element
+   * @throws IOException if the version is not supported or if the element is malformed
+   */
+  @NonNull
+  T read(@NonNull DataInput input, byte version) throws IOException;
+}
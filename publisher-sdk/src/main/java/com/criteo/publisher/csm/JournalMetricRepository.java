@@ -0,0 +1,622 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import android.os.Build.VERSION_CODES;
+import android.util.AtomicFile;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
+import com.criteo.publisher.logging.Logger;
+import com.criteo.publisher.logging.LoggerFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metric repository backed by a single append-only journal.
+ * <p>
+ * Each update of a metric appends its new version to the journal, and each move appends a removal
+ * of the metric. Live metrics are also indexed in memory by impression ID, so reads never touch
+ * the disk. The journal is replayed on first access, the last record of an impression ID wins.
+ * <p>
+ * Superseded records are garbage. Once they represent more than half of the journal, live records
+ * are rewritten in a new journal through an {@link AtomicFile}. So a crash during compaction
+ * leaves either the old journal or the new one. A record torn by a crash during an append is
+ * ignored on replay.
+ * <p>
+ * Appends are not synced to disk, they survive a crash of the application but not necessarily a
+ * power loss. Removals are the exception: they are synced before the metric is given to its
+ * destination, so that a moved metric is never found again after a restart (see
+ * {@link MetricRepository#moveById(String, MetricMover)}).
+ * <p>
+ * Each record is a type byte followed by the length of its payload on 4 bytes and by the payload
+ * itself. Metrics are written with the compact binary format of {@link MetricCodec}.
+ * <p>
+ * Metrics stored by a previous version of the SDK, in one file per impression (see
+ * {@link FileMetricRepository}), are moved into the journal on first access.
+ */
+@RequiresApi(api = VERSION_CODES.JELLY_BEAN_MR1)
+class JournalMetricRepository extends MetricRepository {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final byte UPSERT_RECORD = 'U';
+  private static final byte REMOVE_RECORD = 'D';
+
+  /**
+   * Size in bytes of the type and of the payload length preceding each payload.
+   */
+  private static final int RECORD_HEADER_LENGTH = 5;
+
+  /**
+   * Payloads are far smaller than this. A greater length can only be read from a corrupted record.
+   */
+  private static final int MAX_PAYLOAD_LENGTH = 64 * 1024;
+
+  /**
+   * Size in bytes under which the journal is never compacted, so small journals are not rewritten
+   * again and again.
+   */
+  @VisibleForTesting
+  static final int MIN_COMPACTION_SIZE = 16 * 1024;
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  @NonNull
+  private final AtomicFile journalFile;
+
+  @NonNull
+  private final EntryCodec<Metric> codec;
+
+  @NonNull
+  private final MetricRepository legacyRepository;
+
+  @NonNull
+  private final Object journalLock = new Object();
+
+  /**
+   * Live metrics indexed by impression ID.
+   * <p>
+   * This is only modified under {@link #journalLock}, at the same time the journal is, so a
+   * compaction always sees the index matching the journal. Reads are done without lock.
+   */
+  @NonNull
+  private final ConcurrentMap<String, Entry> entryById = new ConcurrentHashMap<>();
+
+  /**
+   * IDs of the metrics being offered to their destination. Updates and moves of those metrics
+   * wait for the end of the current move.
+   */
+  @GuardedBy("journalLock")
+  @NonNull
+  private final Set<String> movingIds = new HashSet<>();
+
+  @GuardedBy("journalLock")
+  @Nullable
+  private FileOutputStream journalOutput;
+
+  /**
+   * Indicate that the journal contains records that could not be read, or that an append failed
+   * in the middle of a record. The journal is then compacted before any new append.
+   */
+  @GuardedBy("journalLock")
+  private boolean isJournalDirty = false;
+
+  @GuardedBy("journalLock")
+  private long journalSize = 0;
+
+  /**
+   * Size in bytes of the live records. Only modified under {@link #journalLock}.
+   */
+  private volatile int liveSize = 0;
+
+  private volatile boolean isLoaded = false;
+
+  JournalMetricRepository(
+      @NonNull AtomicFile journalFile,
+      @NonNull EntryCodec<Metric> codec,
+      @NonNull MetricRepository legacyRepository
+  ) {
+    this.journalFile = journalFile;
+    this.codec = codec;
+    this.legacyRepository = legacyRepository;
+  }
+
+  @Override
+  void addOrUpdateById(@NonNull String impressionId, @NonNull MetricUpdater updater) {
+    loadIfNeeded();
+
+    while (true) {
+      Entry entry = entryById.get(impressionId);
+      Metric metric = entry == null ? Metric.builder(impressionId).build() : entry.metric;
+
+      Metric.Builder builder = metric.toBuilder();
+      updater.update(builder);
+      Metric newMetric = builder.build();
+
+      synchronized (journalLock) {
+        try {
+          if (movingIds.contains(impressionId)) {
+            awaitEndOfMove(impressionId);
+            continue;
+          }
+
+          if (entryById.get(impressionId) != entry) {
+            // Concurrently updated: try again on the new version
+            continue;
+          }
+
+          byte[] record = encodeUpsert(newMetric);
+          append(record, false);
+          putEntry(impressionId, new Entry(newMetric, record));
+          compactIfNeeded();
+        } catch (IOException e) {
+          logger.debug("Error while updating metric", e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          logger.debug("Interrupted while updating metric", e);
+        }
+        return;
+      }
+    }
+  }
+
+  @Override
+  void moveById(@NonNull String impressionId, @NonNull MetricMover mover) {
+    loadIfNeeded();
+
+    Entry entry;
+    synchronized (journalLock) {
+      try {
+        awaitEndOfMove(impressionId);
+
+        entry = entryById.get(impressionId);
+        if (entry != null) {
+          // The removal is synced, so this metric is not read again after a restart
+          append(encodeRemove(impressionId), true);
+          removeEntry(impressionId);
+        }
+      } catch (IOException e) {
+        logger.debug("Error while moving metric", e);
+        return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        logger.debug("Interrupted while moving metric", e);
+        return;
+      }
+
+      movingIds.add(impressionId);
+    }
+
+    Metric metric = entry == null ? Metric.builder(impressionId).build() : entry.metric;
+    boolean success = false;
+    try {
+      success = mover.offerToDestination(metric);
+    } finally {
+      synchronized (journalLock) {
+        if (!success) {
+          rollback(impressionId, metric, entry);
+        }
+
+        movingIds.remove(impressionId);
+        journalLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Removals of the whole batch are appended at once, with a single sync. Metrics being moved
+   * concurrently are skipped.
+   */
+  @Override
+  int moveByIds(@NonNull Collection<String> impressionIds, @NonNull MetricBatchMover mover) {
+    loadIfNeeded();
+
+    List<String> ids = new ArrayList<>();
+    List<Entry> entries = new ArrayList<>();
+    synchronized (journalLock) {
+      ByteArrayOutputStream removals = new ByteArrayOutputStream();
+      for (String impressionId : impressionIds) {
+        Entry entry = entryById.get(impressionId);
+        if (entry == null || movingIds.contains(impressionId)) {
+          continue;
+        }
+
+        ids.add(impressionId);
+        entries.add(entry);
+        byte[] removal = encodeRemove(impressionId);
+        removals.write(removal, 0, removal.length);
+      }
+
+      if (ids.isEmpty()) {
+        return 0;
+      }
+
+      try {
+        // The removals are synced, so those metrics are not read again after a restart
+        append(removals.toByteArray(), true);
+      } catch (IOException e) {
+        logger.debug("Error while moving metrics", e);
+        return 0;
+      }
+
+      for (String impressionId : ids) {
+        removeEntry(impressionId);
+      }
+      movingIds.addAll(ids);
+    }
+
+    List<Metric> metrics = new ArrayList<>(entries.size());
+    for (Entry entry : entries) {
+      metrics.add(entry.metric);
+    }
+
+    boolean success = false;
+    try {
+      success = mover.offerToDestination(metrics);
+    } finally {
+      synchronized (journalLock) {
+        if (!success) {
+          for (int i = 0; i < ids.size(); i++) {
+            rollback(ids.get(i), entries.get(i).metric, entries.get(i));
+          }
+        }
+
+        movingIds.removeAll(ids);
+        journalLock.notifyAll();
+      }
+    }
+
+    return success ? ids.size() : 0;
+  }
+
+  @NonNull
+  @Override
+  Collection<Metric> getAllStoredMetrics() {
+    loadIfNeeded();
+
+    List<Metric> metrics = new ArrayList<>(entryById.size());
+    for (Entry entry : entryById.values()) {
+      metrics.add(entry.metric);
+    }
+    return metrics;
+  }
+
+  @Nullable
+  @Override
+  Metric getById(@NonNull String impressionId) {
+    loadIfNeeded();
+
+    Entry entry = entryById.get(impressionId);
+    return entry == null ? null : entry.metric;
+  }
+
+  @Override
+  int getTotalSize() {
+    loadIfNeeded();
+    return liveSize;
+  }
+
+  @Override
+  boolean contains(@NonNull String impressionId) {
+    loadIfNeeded();
+    return entryById.containsKey(impressionId);
+  }
+
+  @GuardedBy("journalLock")
+  private void rollback(
+      @NonNull String impressionId,
+      @NonNull Metric metric,
+      @Nullable Entry entry
+  ) {
+    try {
+      Entry rollbackEntry = entry == null ? new Entry(metric, encodeUpsert(metric)) : entry;
+      append(rollbackEntry.record, false);
+      putEntry(impressionId, rollbackEntry);
+    } catch (IOException e) {
+      logger.debug("Error while moving metric", e);
+    }
+  }
+
+  @GuardedBy("journalLock")
+  private void awaitEndOfMove(@NonNull String impressionId) throws InterruptedException {
+    while (movingIds.contains(impressionId)) {
+      journalLock.wait();
+    }
+  }
+
+  private void loadIfNeeded() {
+    if (isLoaded) {
+      return;
+    }
+
+    synchronized (journalLock) {
+      if (isLoaded) {
+        return;
+      }
+
+      try {
+        replayJournal();
+      } catch (IOException e) {
+        logger.debug("Error while reading metric journal", e);
+      }
+
+      moveLegacyMetrics();
+
+      if (isJournalDirty) {
+        try {
+          compact();
+        } catch (IOException e) {
+          logger.debug("Error while compacting metric journal", e);
+        }
+      }
+
+      isLoaded = true;
+    }
+  }
+
+  @GuardedBy("journalLock")
+  private void replayJournal() throws IOException {
+    InputStream journalInput;
+    try {
+      journalInput = journalFile.openRead();
+    } catch (FileNotFoundException e) {
+      // There is no journal yet
+      return;
+    }
+
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(journalInput))) {
+      int type;
+      while ((type = input.read()) != -1) {
+        byte[] record;
+        try {
+          int payloadLength = input.readInt();
+          if (payloadLength < 0 || payloadLength > MAX_PAYLOAD_LENGTH) {
+            // Next records can not be delimited anymore
+            isJournalDirty = true;
+            return;
+          }
+
+          record = newRecord((byte) type, payloadLength);
+          input.readFully(record, RECORD_HEADER_LENGTH, payloadLength);
+        } catch (EOFException e) {
+          // Record torn by a crash during an append
+          isJournalDirty = true;
+          return;
+        }
+
+        journalSize += record.length;
+        replayRecord(record);
+      }
+    }
+  }
+
+  @GuardedBy("journalLock")
+  private void replayRecord(@NonNull byte[] record) {
+    int payloadLength = record.length - RECORD_HEADER_LENGTH;
+
+    if (record[0] == UPSERT_RECORD) {
+      try {
+        Metric metric = decodeUpsert(record);
+        putEntry(metric.getImpressionId(), new Entry(metric, record));
+      } catch (IOException | RuntimeException e) {
+        // Runtime exceptions come from payloads that are not valid metrics
+        logger.debug("Error while reading metric", e);
+        isJournalDirty = true;
+      }
+    } else if (record[0] == REMOVE_RECORD) {
+      removeEntry(new String(record, RECORD_HEADER_LENGTH, payloadLength, UTF_8));
+    } else {
+      isJournalDirty = true;
+    }
+  }
+
+  @GuardedBy("journalLock")
+  private void moveLegacyMetrics() {
+    for (Metric legacyMetric : legacyRepository.getAllStoredMetrics()) {
+      legacyRepository.moveById(legacyMetric.getImpressionId(), metric -> {
+        try {
+          byte[] record = encodeUpsert(metric);
+          append(record, false);
+          putEntry(metric.getImpressionId(), new Entry(metric, record));
+          return true;
+        } catch (IOException e) {
+          logger.debug("Error while moving legacy metric", e);
+          return false;
+        }
+      });
+    }
+  }
+
+  @GuardedBy("journalLock")
+  private void append(@NonNull byte[] record, boolean sync) throws IOException {
+    if (isJournalDirty) {
+      compact();
+    }
+
+    if (journalOutput == null) {
+      journalOutput = new FileOutputStream(journalFile.getBaseFile(), true);
+    }
+
+    try {
+      journalOutput.write(record);
+      if (sync) {
+        journalOutput.getFD().sync();
+      }
+    } catch (IOException e) {
+      // Part of the record may have been written, the next append should not be glued to it
+      isJournalDirty = true;
+      closeJournalOutput();
+      throw e;
+    }
+
+    journalSize += record.length;
+  }
+
+  @GuardedBy("journalLock")
+  private void compactIfNeeded() {
+    if (journalSize < MIN_COMPACTION_SIZE || journalSize < 2L * liveSize) {
+      return;
+    }
+
+    try {
+      compact();
+    } catch (IOException e) {
+      logger.debug("Error while compacting metric journal", e);
+    }
+  }
+
+  /**
+   * Rewrite the journal with only the live records.
+   * <p>
+   * The new journal is written beside the current one and then atomically replaces it. If this
+   * fails, the current journal is kept.
+   */
+  @GuardedBy("journalLock")
+  private void compact() throws IOException {
+    closeJournalOutput();
+
+    FileOutputStream fos = journalFile.startWrite();
+    long newJournalSize = 0;
+    try {
+      BufferedOutputStream bos = new BufferedOutputStream(fos);
+      for (Entry entry : entryById.values()) {
+        bos.write(entry.record);
+        newJournalSize += entry.record.length;
+      }
+      bos.flush();
+      journalFile.finishWrite(fos);
+    } catch (IOException e) {
+      journalFile.failWrite(fos);
+      throw e;
+    }
+
+    journalSize = newJournalSize;
+    isJournalDirty = false;
+  }
+
+  @GuardedBy("journalLock")
+  private void closeJournalOutput() {
+    if (journalOutput == null) {
+      return;
+    }
+
+    try {
+      journalOutput.close();
+    } catch (IOException e) {
+      logger.debug("Error while closing metric journal", e);
+    }
+    journalOutput = null;
+  }
+
+  @GuardedBy("journalLock")
+  private void putEntry(@NonNull String impressionId, @NonNull Entry entry) {
+    Entry previousEntry = entryById.put(impressionId, entry);
+    int previousSize = previousEntry == null ? 0 : previousEntry.record.length;
+    liveSize += entry.record.length - previousSize;
+  }
+
+  @GuardedBy("journalLock")
+  private void removeEntry(@NonNull String impressionId) {
+    Entry previousEntry = entryById.remove(impressionId);
+    if (previousEntry != null) {
+      liveSize -= previousEntry.record.length;
+    }
+  }
+
+  @NonNull
+  private byte[] encodeUpsert(@NonNull Metric metric) throws IOException {
+    ByteArrayOutputStream binary = new ByteArrayOutputStream();
+    DataOutputStream binaryOutput = new DataOutputStream(binary);
+    binaryOutput.writeByte(codec.getVersion());
+    codec.write(metric, binaryOutput);
+    binaryOutput.flush();
+
+    byte[] payload = binary.toByteArray();
+    byte[] record = newRecord(UPSERT_RECORD, payload.length);
+    System.arraycopy(payload, 0, record, RECORD_HEADER_LENGTH, payload.length);
+    return record;
+  }
+
+  @NonNull
+  private Metric decodeUpsert(@NonNull byte[] record) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(
+        record,
+        RECORD_HEADER_LENGTH,
+        record.length - RECORD_HEADER_LENGTH
+    ));
+    return codec.read(input, input.readByte());
+  }
+
+  @NonNull
+  private byte[] encodeRemove(@NonNull String impressionId) {
+    byte[] id = impressionId.getBytes(UTF_8);
+    byte[] record = newRecord(REMOVE_RECORD, id.length);
+    System.arraycopy(id, 0, record, RECORD_HEADER_LENGTH, id.length);
+    return record;
+  }
+
+  /**
+   * Create a record with the given type and payload length, ready to receive the payload.
+   */
+  @NonNull
+  private static byte[] newRecord(byte type, int payloadLength) {
+    byte[] record = new byte[RECORD_HEADER_LENGTH + payloadLength];
+    record[0] = type;
+    record[1] = (byte) (payloadLength >>> 24);
+    record[2] = (byte) (payloadLength >>> 16);
+    record[3] = (byte) (payloadLength >>> 8);
+    record[4] = (byte) payloadLength;
+    return record;
+  }
+
+  private static final class Entry {
+
+    @NonNull
+    private final Metric metric;
+
+    /**
+     * Record of this metric as written in the journal, rewritten as is on compaction.
+     */
+    @NonNull
+    private final byte[] record;
+
+    private Entry(@NonNull Metric metric, @NonNull byte[] record) {
+      this.metric = metric;
+      this.record = record;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import com.criteo.publisher.csm.MetricSummaryRequest.Histogram;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Histogram of durations in milliseconds, with log-linear buckets in the spirit of HDR histograms.
+ * <p>
+ * Durations below 16ms are recorded exactly. Above, each power of two is split into 8 buckets, so
+ * the relative error of a recorded duration is at most 12.5%. Negative durations are recorded as 0,
+ * and durations above {@link #MAX_TRACKABLE_VALUE} are recorded in the last bucket.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int EXACT_BUCKET_COUNT = 2 * SUB_BUCKET_COUNT;
+
+  @VisibleForTesting
+  static final long MAX_TRACKABLE_VALUE = (1L << 20) - 1;
+
+  @VisibleForTesting
+  static final int BUCKET_COUNT = getBucketIndex(MAX_TRACKABLE_VALUE) + 1;
+
+  @NonNull
+  private final long[] counts = new long[BUCKET_COUNT];
+
+  private long totalCount = 0;
+
+  public void record(long durationInMillis) {
+    record(durationInMillis, 1);
+  }
+
+  /**
+   * Record the given duration as many times as the given weight.
+   */
+  public void record(long durationInMillis, long weight) {
+    counts[getBucketIndex(durationInMillis)] += weight;
+    totalCount += weight;
+  }
+
+  public void add(@NonNull LatencyHistogram other) {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  /**
+   * Return the non-empty buckets of this histogram, identified by their lower bound.
+   */
+  @NonNull
+  Histogram toSummary() {
+    List<Long> lowerBounds = new ArrayList<>();
+    List<Long> bucketCounts = new ArrayList<>();
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      if (counts[i] > 0) {
+        lowerBounds.add(getBucketLowerBound(i));
+        bucketCounts.add(counts[i]);
+      }
+    }
+    return Histogram.create(lowerBounds, bucketCounts);
+  }
+
+  @VisibleForTesting
+  static int getBucketIndex(long durationInMillis) {
+    long value = Math.max(0, Math.min(durationInMillis, MAX_TRACKABLE_VALUE));
+    if (value < EXACT_BUCKET_COUNT) {
+      return (int) value;
+    }
+
+    // The SUB_BUCKET_BITS bits following the most significant one select the sub-bucket
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift << SUB_BUCKET_BITS) + (int) (value >> shift);
+  }
+
+  @VisibleForTesting
+  static long getBucketLowerBound(int bucketIndex) {
+    if (bucketIndex < EXACT_BUCKET_COUNT) {
+      return bucketIndex;
+    }
+
+    int shift = (bucketIndex >> SUB_BUCKET_BITS) - 1;
+    long mostSignificantBits = SUB_BUCKET_COUNT + (bucketIndex & (SUB_BUCKET_COUNT - 1));
+    return mostSignificantBits << shift;
+  }
+}
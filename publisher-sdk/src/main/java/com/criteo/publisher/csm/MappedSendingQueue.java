@@ -0,0 +1,433 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import static com.criteo.publisher.csm.SendingQueueLogMessage.onErrorWhenPollingQueueFile;
+import static com.criteo.publisher.csm.SendingQueueLogMessage.onRecoveringFromStaleQueueFile;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.criteo.publisher.logging.Logger;
+import com.criteo.publisher.logging.LoggerFactory;
+import com.criteo.publisher.util.PreconditionsUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Sending queue stored in a fixed-size ring buffer, in a memory-mapped file.
+ * <p>
+ * Contrary to {@link TapeSendingQueue}, reads and writes are plain memory copies without any system
+ * call: the OS writes the mapped pages back to the file by itself, even if the application process
+ * is killed. The file never grows: when a new element does not fit, the oldest elements are
+ * overwritten, as {@link BoundedSendingQueue} does.
+ * <p>
+ * The file starts with two header slots, followed by the ring of records. The head and tail are
+ * logical positions that only grow, so the used size is their difference. Each header update is
+ * written in the slot not holding the latest state, with a sequence number and a checksum, so a
+ * torn write only loses this update. Each record holds its length, the CRC32 of its payload, then
+ * the payload (the version of the {@link EntryCodec} followed by the element), so records that did
+ * not reach the storage are detected.
+ */
+class MappedSendingQueue<T> implements ConcurrentSendingQueue<T> {
+
+  private static final int HEADER_SLOT_SIZE = 32;
+  private static final int HEADER_CHECKSUMMED_SIZE = 24;
+
+  @VisibleForTesting
+  static final int HEADER_SIZE = 2 * HEADER_SLOT_SIZE;
+
+  @VisibleForTesting
+  static final int RECORD_HEADER_SIZE = 8;
+
+  @NonNull
+  private final Logger logger = LoggerFactory.getLogger(MappedSendingQueue.class);
+
+  @NonNull
+  private final File file;
+
+  private final int capacity;
+
+  @NonNull
+  private final EntryCodec<T> codec;
+
+  /**
+   * Factory of the Tape queue used before this one, whose elements are moved here on first use.
+   */
+  @Nullable
+  private final ObjectQueueFactory<T> legacyQueueFactory;
+
+  @NonNull
+  private final Object lock = new Object();
+
+  @Nullable
+  @GuardedBy("lock")
+  private ByteBuffer buffer;
+
+  @GuardedBy("lock")
+  private long sequence;
+
+  @NonNull
+  @GuardedBy("lock")
+  private final byte[] intBytes = new byte[4];
+
+  /**
+   * Written under the lock, but read without it to get the size in O(1).
+   */
+  private volatile long head;
+  private volatile long tail;
+  private volatile boolean isInitialized;
+
+  MappedSendingQueue(
+      @NonNull File file,
+      int capacity,
+      @NonNull EntryCodec<T> codec,
+      @Nullable ObjectQueueFactory<T> legacyQueueFactory
+  ) {
+    this.file = file;
+    this.capacity = capacity;
+    this.codec = codec;
+    this.legacyQueueFactory = legacyQueueFactory;
+  }
+
+  @Override
+  public boolean offer(@NonNull T element) {
+    return offerAll(Collections.singletonList(element));
+  }
+
+  /**
+   * Elements are encoded before taking the lock. A batch bigger than the ring is rejected as a
+   * whole. Else the header is written once for the whole batch, so a crash in the middle of the
+   * batch does not expose part of it.
+   */
+  @Override
+  public boolean offerAll(@NonNull Collection<? extends T> elements) {
+    List<byte[]> payloads = new ArrayList<>(elements.size());
+    long batchSize = 0;
+    try {
+      for (T element : elements) {
+        byte[] payload = encode(element);
+        payloads.add(payload);
+        batchSize += RECORD_HEADER_SIZE + payload.length;
+      }
+    } catch (IOException e) {
+      PreconditionsUtil.throwOrLog(e);
+      return false;
+    }
+
+    if (batchSize > capacity) {
+      return false;
+    }
+
+    synchronized (lock) {
+      initializeIfNeeded();
+
+      for (byte[] payload : payloads) {
+        append(payload);
+      }
+      writeHeader();
+      return true;
+    }
+  }
+
+  @NonNull
+  @Override
+  public List<T> poll(int max) {
+    synchronized (lock) {
+      initializeIfNeeded();
+
+      List<T> elements = new ArrayList<>();
+      List<Exception> exceptions = new ArrayList<>();
+      long initialHead = head;
+
+      while (elements.size() + exceptions.size() < max && head < tail) {
+        byte[] payload;
+        try {
+          payload = readNextPayload();
+        } catch (IOException e) {
+          // The ring is corrupted from here, so there is no way to find the next record
+          exceptions.add(e);
+          head = tail;
+          break;
+        }
+
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload))) {
+          elements.add(codec.read(input, input.readByte()));
+        } catch (IOException | RuntimeException e) {
+          exceptions.add(e);
+        }
+      }
+
+      if (head != initialHead) {
+        writeHeader();
+      }
+
+      if (!exceptions.isEmpty()) {
+        Exception exception = exceptions.get(0);
+        for (int i = 1; i < exceptions.size(); i++) {
+          exception.addSuppressed(exceptions.get(i));
+        }
+        logger.log(onErrorWhenPollingQueueFile(exception));
+      }
+
+      return elements;
+    }
+  }
+
+  /**
+   * Size of the used part of the ring, including the headers of the records. Once initialized, this
+   * is read without locking.
+   */
+  @Override
+  public int getTotalSize() {
+    if (!isInitialized) {
+      synchronized (lock) {
+        initializeIfNeeded();
+      }
+    }
+
+    // The head is read first: the tail only grows, and the head never goes beyond it
+    long currentHead = head;
+    return (int) (tail - currentHead);
+  }
+
+  @NonNull
+  private byte[] encode(@NonNull T element) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.writeByte(codec.getVersion());
+    codec.write(element, output);
+    output.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Append the given payload, skipping the oldest records if needed. The record should fit in the
+   * ring.
+   */
+  @GuardedBy("lock")
+  private void append(@NonNull byte[] payload) {
+    int recordSize = RECORD_HEADER_SIZE + payload.length;
+    while (capacity - (tail - head) < recordSize) {
+      skipOldest();
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+
+    long position = tail;
+    position = writeInt(position, payload.length);
+    position = writeInt(position, (int) crc.getValue());
+    write(position, payload, payload.length);
+    tail += recordSize;
+  }
+
+  @GuardedBy("lock")
+  private void skipOldest() {
+    int length = readInt(head);
+    if (length < 0 || RECORD_HEADER_SIZE + length > tail - head) {
+      head = tail;
+    } else {
+      head += RECORD_HEADER_SIZE + length;
+    }
+  }
+
+  @GuardedBy("lock")
+  @NonNull
+  private byte[] readNextPayload() throws IOException {
+    int length = readInt(head);
+    if (length < 0 || RECORD_HEADER_SIZE + length > tail - head) {
+      throw new IOException("Invalid record length: " + length);
+    }
+
+    int expectedCrc = readInt(head + 4);
+    byte[] payload = new byte[length];
+    read(head + RECORD_HEADER_SIZE, payload, length);
+    head += RECORD_HEADER_SIZE + length;
+
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, length);
+    if ((int) crc.getValue() != expectedCrc) {
+      throw new IOException("Invalid record checksum");
+    }
+    return payload;
+  }
+
+  @GuardedBy("lock")
+  private long writeInt(long position, int value) {
+    intBytes[0] = (byte) (value >>> 24);
+    intBytes[1] = (byte) (value >>> 16);
+    intBytes[2] = (byte) (value >>> 8);
+    intBytes[3] = (byte) value;
+    write(position, intBytes, 4);
+    return position + 4;
+  }
+
+  @GuardedBy("lock")
+  private int readInt(long position) {
+    read(position, intBytes, 4);
+    return (intBytes[0] & 0xFF) << 24
+        | (intBytes[1] & 0xFF) << 16
+        | (intBytes[2] & 0xFF) << 8
+        | (intBytes[3] & 0xFF);
+  }
+
+  @GuardedBy("lock")
+  private void write(long position, @NonNull byte[] bytes, int length) {
+    int offset = (int) (position % capacity);
+    int firstPart = Math.min(length, capacity - offset);
+    buffer.position(HEADER_SIZE + offset);
+    buffer.put(bytes, 0, firstPart);
+    if (firstPart < length) {
+      buffer.position(HEADER_SIZE);
+      buffer.put(bytes, firstPart, length - firstPart);
+    }
+  }
+
+  @GuardedBy("lock")
+  private void read(long position, @NonNull byte[] bytes, int length) {
+    int offset = (int) (position % capacity);
+    int firstPart = Math.min(length, capacity - offset);
+    buffer.position(HEADER_SIZE + offset);
+    buffer.get(bytes, 0, firstPart);
+    if (firstPart < length) {
+      buffer.position(HEADER_SIZE);
+      buffer.get(bytes, firstPart, length - firstPart);
+    }
+  }
+
+  @GuardedBy("lock")
+  private void writeHeader() {
+    sequence++;
+    int slotOffset = (int) (sequence & 1) * HEADER_SLOT_SIZE;
+    buffer.putLong(slotOffset, sequence);
+    buffer.putLong(slotOffset + 8, head);
+    buffer.putLong(slotOffset + 16, tail);
+    buffer.putInt(slotOffset + HEADER_CHECKSUMMED_SIZE, getHeaderChecksum(slotOffset));
+  }
+
+  /**
+   * Restore the latest valid header slot. If none is valid, the queue is empty.
+   */
+  @GuardedBy("lock")
+  private void readHeader() {
+    for (int slot = 0; slot < 2; slot++) {
+      int slotOffset = slot * HEADER_SLOT_SIZE;
+      long slotSequence = buffer.getLong(slotOffset);
+      long slotHead = buffer.getLong(slotOffset + 8);
+      long slotTail = buffer.getLong(slotOffset + 16);
+
+      boolean isValid = buffer.getInt(slotOffset + HEADER_CHECKSUMMED_SIZE)
+          == getHeaderChecksum(slotOffset)
+          && slotHead >= 0
+          && slotTail >= slotHead
+          && slotTail - slotHead <= capacity;
+
+      if (isValid && slotSequence > sequence) {
+        sequence = slotSequence;
+        head = slotHead;
+        tail = slotTail;
+      }
+    }
+  }
+
+  @GuardedBy("lock")
+  private int getHeaderChecksum(int slotOffset) {
+    byte[] slotBytes = new byte[HEADER_CHECKSUMMED_SIZE];
+    buffer.position(slotOffset);
+    buffer.get(slotBytes);
+
+    CRC32 crc = new CRC32();
+    crc.update(slotBytes, 0, slotBytes.length);
+    return (int) crc.getValue();
+  }
+
+  @GuardedBy("lock")
+  private void initializeIfNeeded() {
+    if (buffer != null) {
+      return;
+    }
+
+    buffer = mapFile();
+    readHeader();
+    moveLegacyElements();
+    isInitialized = true;
+  }
+
+  /**
+   * Map the queue file. If it can not be done, the queue is kept in memory only.
+   */
+  @NonNull
+  private ByteBuffer mapFile() {
+    int fileSize = HEADER_SIZE + capacity;
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      if (randomAccessFile.length() != fileSize) {
+        // New file, or file of a different capacity: start from an empty queue full of zero
+        randomAccessFile.setLength(0);
+        randomAccessFile.setLength(fileSize);
+      }
+
+      // The mapping stays valid once the file is closed
+      return randomAccessFile.getChannel().map(MapMode.READ_WRITE, 0, fileSize);
+    } catch (IOException e) {
+      logger.log(onRecoveringFromStaleQueueFile(e));
+      return ByteBuffer.allocate(fileSize);
+    }
+  }
+
+  @GuardedBy("lock")
+  private void moveLegacyElements() {
+    if (legacyQueueFactory == null) {
+      return;
+    }
+
+    File legacyFile = legacyQueueFactory.getQueueFile();
+    if (!legacyFile.exists()) {
+      return;
+    }
+
+    List<T> legacyElements = new TapeSendingQueue<>(legacyQueueFactory).poll(Integer.MAX_VALUE);
+    for (T element : legacyElements) {
+      try {
+        byte[] payload = encode(element);
+        if (RECORD_HEADER_SIZE + payload.length <= capacity) {
+          append(payload);
+        }
+      } catch (IOException e) {
+        logger.log(onErrorWhenPollingQueueFile(e));
+      }
+    }
+    writeHeader();
+
+    if (!legacyFile.delete()) {
+      logger.debug("Could not delete legacy queue file %s", legacyFile);
+    }
+  }
+}
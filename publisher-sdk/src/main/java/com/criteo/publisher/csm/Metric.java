@@ -84,6 +84,16 @@ public abstract class Metric {
   @Nullable // For retro-compat
   abstract Integer getProfileId();
 
+  /**
+   * Number of impressions this metric stands for, as only a sample of the impressions is tracked.
+   * <p>
+   * This is absent when all impressions are tracked.
+   *
+   * @see MetricSampler
+   */
+  @Nullable
+  abstract Integer getSamplingWeight();
+
   abstract boolean isReadyToSend();
 
   @NonNull
@@ -105,6 +115,8 @@ public abstract class Metric {
 
     abstract Builder setZoneId(Integer zoneId);
 
+    abstract Builder setSamplingWeight(Integer samplingWeight);
+
     abstract Metric build();
 
     /**
@@ -0,0 +1,157 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Counters and latency histograms of all the metrics of a profile and a zone.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class MetricAggregate {
+
+  private final int profileId;
+
+  @Nullable
+  private final Integer zoneId;
+
+  private long count = 0;
+  private long timeoutCount = 0;
+  private long noBidCount = 0;
+  private long cachedBidUsedCount = 0;
+  private long consumedCount = 0;
+
+  @NonNull
+  private final LatencyHistogram cdbCallLatency = new LatencyHistogram();
+
+  @NonNull
+  private final LatencyHistogram elapsed = new LatencyHistogram();
+
+  /**
+   * IDs of the recorded metrics, to remove them from the repository once the summary is sent.
+   */
+  @NonNull
+  private final Set<String> impressionIds = new HashSet<>();
+
+  MetricAggregate(int profileId, @Nullable Integer zoneId) {
+    this.profileId = profileId;
+    this.zoneId = zoneId;
+  }
+
+  /**
+   * Record the given metric as many times as its sampling weight, so counters and histograms
+   * estimate all the impressions, tracked or not. A metric already recorded is ignored.
+   */
+  void record(@NonNull Metric metric) {
+    if (!impressionIds.add(metric.getImpressionId())) {
+      return;
+    }
+
+    Integer samplingWeight = metric.getSamplingWeight();
+    long weight = samplingWeight == null ? 1 : samplingWeight;
+
+    count += weight;
+
+    Long cdbCallStart = metric.getCdbCallStartTimestamp();
+    Long cdbCallEnd = metric.getCdbCallEndTimestamp();
+    Long elapsedTimestamp = metric.getElapsedTimestamp();
+
+    if (metric.isCdbCallTimeout()) {
+      timeoutCount += weight;
+    }
+
+    // Only valid bids are tagged with a zone ID when the CDB call ends, no-bids are not
+    if (cdbCallEnd != null && metric.getZoneId() == null) {
+      noBidCount += weight;
+    }
+
+    if (metric.isCachedBidUsed()) {
+      cachedBidUsedCount += weight;
+    }
+
+    if (elapsedTimestamp != null) {
+      consumedCount += weight;
+    }
+
+    if (cdbCallStart != null && cdbCallEnd != null) {
+      cdbCallLatency.record(cdbCallEnd - cdbCallStart, weight);
+    }
+
+    if (cdbCallStart != null && elapsedTimestamp != null) {
+      elapsed.record(elapsedTimestamp - cdbCallStart, weight);
+    }
+  }
+
+  void add(@NonNull MetricAggregate other) {
+    count += other.count;
+    timeoutCount += other.timeoutCount;
+    noBidCount += other.noBidCount;
+    cachedBidUsedCount += other.cachedBidUsedCount;
+    consumedCount += other.consumedCount;
+    cdbCallLatency.add(other.cdbCallLatency);
+    elapsed.add(other.elapsed);
+    impressionIds.addAll(other.impressionIds);
+  }
+
+  int getProfileId() {
+    return profileId;
+  }
+
+  @Nullable
+  Integer getZoneId() {
+    return zoneId;
+  }
+
+  long getCount() {
+    return count;
+  }
+
+  long getTimeoutCount() {
+    return timeoutCount;
+  }
+
+  long getNoBidCount() {
+    return noBidCount;
+  }
+
+  long getCachedBidUsedCount() {
+    return cachedBidUsedCount;
+  }
+
+  long getConsumedCount() {
+    return consumedCount;
+  }
+
+  @NonNull
+  LatencyHistogram getCdbCallLatency() {
+    return cdbCallLatency;
+  }
+
+  @NonNull
+  LatencyHistogram getElapsed() {
+    return elapsed;
+  }
+
+  @NonNull
+  Set<String> getImpressionIds() {
+    return impressionIds;
+  }
+}
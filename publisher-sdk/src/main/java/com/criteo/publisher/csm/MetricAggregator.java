@@ -0,0 +1,122 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.criteo.publisher.integration.Integration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregate finished metrics in memory, per profile ID and per zone ID, so that they can be sent as
+ * compact summaries instead of one feedback per impression.
+ * <p>
+ * Aggregates are only kept in memory, but the recorded metrics stay in the repository until their
+ * summary is sent (see {@link MetricSummarySendingTask}). If the application is killed before, the
+ * metrics are recorded again by the recovery of the next session.
+ */
+public class MetricAggregator {
+
+  /**
+   * Rough size of a serialized {@link MetricSummaryRequest.MetricSummary}, with a dozen of non-empty
+   * buckets in each histogram.
+   */
+  private static final int ESTIMATED_SUMMARY_SIZE_IN_BYTES = 400;
+
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  @NonNull
+  private Map<Integer, Map<Integer, MetricAggregate>> aggregatesByProfileAndZone =
+      new HashMap<>();
+
+  @GuardedBy("lock")
+  private int aggregateCount = 0;
+
+  public void record(@NonNull Metric metric) {
+    Integer profileId = metric.getProfileId();
+    if (profileId == null) {
+      profileId = Integration.FALLBACK.getProfileId();
+    }
+
+    synchronized (lock) {
+      getOrCreateAggregate(profileId, metric.getZoneId()).record(metric);
+    }
+  }
+
+  /**
+   * Remove and return all the aggregates.
+   */
+  @NonNull
+  public List<MetricAggregate> drain() {
+    Map<Integer, Map<Integer, MetricAggregate>> drained;
+    synchronized (lock) {
+      drained = aggregatesByProfileAndZone;
+      aggregatesByProfileAndZone = new HashMap<>();
+      aggregateCount = 0;
+    }
+
+    List<MetricAggregate> aggregates = new ArrayList<>();
+    for (Map<Integer, MetricAggregate> aggregatesByZone : drained.values()) {
+      aggregates.addAll(aggregatesByZone.values());
+    }
+    return aggregates;
+  }
+
+  /**
+   * Merge back aggregates that were drained but could not be sent.
+   */
+  public void restore(@NonNull Collection<MetricAggregate> aggregates) {
+    synchronized (lock) {
+      for (MetricAggregate aggregate : aggregates) {
+        getOrCreateAggregate(aggregate.getProfileId(), aggregate.getZoneId()).add(aggregate);
+      }
+    }
+  }
+
+  /**
+   * Return an estimation of the size in bytes of the summaries of the current aggregates.
+   */
+  public int getEstimatedSize() {
+    synchronized (lock) {
+      return aggregateCount * ESTIMATED_SUMMARY_SIZE_IN_BYTES;
+    }
+  }
+
+  @GuardedBy("lock")
+  @NonNull
+  private MetricAggregate getOrCreateAggregate(int profileId, @Nullable Integer zoneId) {
+    Map<Integer, MetricAggregate> aggregatesByZone = aggregatesByProfileAndZone.get(profileId);
+    if (aggregatesByZone == null) {
+      aggregatesByZone = new HashMap<>();
+      aggregatesByProfileAndZone.put(profileId, aggregatesByZone);
+    }
+
+    MetricAggregate aggregate = aggregatesByZone.get(zoneId);
+    if (aggregate == null) {
+      aggregate = new MetricAggregate(profileId, zoneId);
+      aggregatesByZone.put(zoneId, aggregate);
+      aggregateCount++;
+    }
+    return aggregate;
+  }
+}
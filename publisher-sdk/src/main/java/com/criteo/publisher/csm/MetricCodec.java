@@ -0,0 +1,157 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import static com.criteo.publisher.util.CompactEncoding.readId;
+import static com.criteo.publisher.util.CompactEncoding.readSignedVarLong;
+import static com.criteo.publisher.util.CompactEncoding.readVarInt;
+import static com.criteo.publisher.util.CompactEncoding.readVarLong;
+import static com.criteo.publisher.util.CompactEncoding.writeId;
+import static com.criteo.publisher.util.CompactEncoding.writeSignedVarLong;
+import static com.criteo.publisher.util.CompactEncoding.writeVarInt;
+import static com.criteo.publisher.util.CompactEncoding.writeVarLong;
+
+import androidx.annotation.NonNull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact binary format of a {@link Metric}.
+ * <p>
+ * A first byte holds the boolean fields and which optional fields are present. Then come the IDs
+ * and the present fields. The CDB call start is written as is, other timestamps are written as a
+ * delta from it, which takes a few bytes instead of a dozen of characters.
+ * <p>
+ * Since the second version, the sampling weight is written at the end, <code>0</code> meaning that
+ * it is absent. Elements of the first version are still readable.
+ */
+class MetricCodec implements EntryCodec<Metric> {
+
+  private static final byte VERSION = 2;
+  private static final byte VERSION_WITHOUT_SAMPLING_WEIGHT = 1;
+
+  private static final int CDB_CALL_TIMEOUT = 1;
+  private static final int CACHED_BID_USED = 1 << 1;
+  private static final int READY_TO_SEND = 1 << 2;
+  private static final int HAS_CDB_CALL_START = 1 << 3;
+  private static final int HAS_CDB_CALL_END = 1 << 4;
+  private static final int HAS_ELAPSED = 1 << 5;
+  private static final int HAS_ZONE_ID = 1 << 6;
+  private static final int HAS_PROFILE_ID = 1 << 7;
+
+  @Override
+  public byte getVersion() {
+    return VERSION;
+  }
+
+  @Override
+  public void write(@NonNull Metric metric, @NonNull DataOutput output) throws IOException {
+    Long start = metric.getCdbCallStartTimestamp();
+    Long end = metric.getCdbCallEndTimestamp();
+    Long elapsed = metric.getElapsedTimestamp();
+    Integer zoneId = metric.getZoneId();
+    Integer profileId = metric.getProfileId();
+
+    int flags = 0;
+    flags |= metric.isCdbCallTimeout() ? CDB_CALL_TIMEOUT : 0;
+    flags |= metric.isCachedBidUsed() ? CACHED_BID_USED : 0;
+    flags |= metric.isReadyToSend() ? READY_TO_SEND : 0;
+    flags |= start != null ? HAS_CDB_CALL_START : 0;
+    flags |= end != null ? HAS_CDB_CALL_END : 0;
+    flags |= elapsed != null ? HAS_ELAPSED : 0;
+    flags |= zoneId != null ? HAS_ZONE_ID : 0;
+    flags |= profileId != null ? HAS_PROFILE_ID : 0;
+    output.writeByte(flags);
+
+    writeId(output, metric.getImpressionId());
+    writeId(output, metric.getRequestGroupId());
+
+    long origin = start == null ? 0 : start;
+    if (start != null) {
+      writeVarLong(output, start);
+    }
+    if (end != null) {
+      writeSignedVarLong(output, end - origin);
+    }
+    if (elapsed != null) {
+      writeSignedVarLong(output, elapsed - origin);
+    }
+    if (zoneId != null) {
+      writeSignedVarLong(output, zoneId);
+    }
+    if (profileId != null) {
+      writeSignedVarLong(output, profileId);
+    }
+
+    Integer samplingWeight = metric.getSamplingWeight();
+    writeVarInt(output, samplingWeight == null ? 0 : samplingWeight);
+  }
+
+  @NonNull
+  @Override
+  public Metric read(@NonNull DataInput input, byte version) throws IOException {
+    if (version != VERSION && version != VERSION_WITHOUT_SAMPLING_WEIGHT) {
+      throw new IOException("Unsupported version: " + version);
+    }
+
+    int flags = input.readByte() & 0xFF;
+
+    String impressionId = readId(input);
+    if (impressionId == null) {
+      throw new IOException("Missing impression ID");
+    }
+
+    Metric.Builder builder = Metric.builder(impressionId)
+        .setRequestGroupId(readId(input))
+        .setCdbCallTimeout(isSet(flags, CDB_CALL_TIMEOUT))
+        .setCachedBidUsed(isSet(flags, CACHED_BID_USED))
+        .setReadyToSend(isSet(flags, READY_TO_SEND));
+
+    long origin = 0;
+    if (isSet(flags, HAS_CDB_CALL_START)) {
+      origin = readVarLong(input);
+      builder.setCdbCallStartTimestamp(origin);
+    }
+    if (isSet(flags, HAS_CDB_CALL_END)) {
+      builder.setCdbCallEndTimestamp(origin + readSignedVarLong(input));
+    }
+    if (isSet(flags, HAS_ELAPSED)) {
+      builder.setElapsedTimestamp(origin + readSignedVarLong(input));
+    }
+    if (isSet(flags, HAS_ZONE_ID)) {
+      builder.setZoneId(readInt(input));
+    }
+    if (isSet(flags, HAS_PROFILE_ID)) {
+      builder.setProfileId(readInt(input));
+    }
+    if (version != VERSION_WITHOUT_SAMPLING_WEIGHT) {
+      int samplingWeight = readVarInt(input);
+      builder.setSamplingWeight(samplingWeight == 0 ? null : samplingWeight);
+    }
+
+    return builder.build();
+  }
+
+  private static boolean isSet(int flags, int flag) {
+    return (flags & flag) != 0;
+  }
+
+  private static int readInt(@NonNull DataInput input) throws IOException {
+    return (int) readSignedVarLong(input);
+  }
+}
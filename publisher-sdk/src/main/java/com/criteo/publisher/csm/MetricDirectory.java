@@ -32,6 +32,7 @@ import java.util.Collections;
 class MetricDirectory {
 
   private static final String METRIC_FILE_EXTENSION = ".csm";
+  private static final String METRIC_JOURNAL_FILENAME = "metrics.journal";
 
   @NonNull
   private final Context context;
@@ -73,6 +74,17 @@ class MetricDirectory {
     return new File(getDirectoryFile(), metricFilename);
   }
 
+  /**
+   * Returns the file of the metric journal.
+   * <p>
+   * It is stored beside the metric files, but it is not listed by {@link #listFiles()} since it
+   * does not have their extension.
+   */
+  @NonNull
+  File createJournalFile() {
+    return new File(getDirectoryFile(), METRIC_JOURNAL_FILENAME);
+  }
+
   @NonNull
   @RequiresApi(api = VERSION_CODES.JELLY_BEAN_MR1)
   SyncMetricFile createSyncMetricFile(@NonNull File metricFile) {
@@ -17,7 +17,9 @@
 package com.criteo.publisher.csm;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import java.util.Collection;
+import java.util.Collections;
 
 public abstract class MetricRepository {
 
@@ -49,6 +51,39 @@ public abstract class MetricRepository {
    */
   abstract void moveById(@NonNull String impressionId, @NonNull MetricMover mover);
 
+  /**
+   * Atomically move the metrics matching the given ids, as a single batch, with the given mover.
+   * <p>
+   * This has the same semantic as {@link #moveById(String, MetricMover)}, but the whole batch is
+   * deleted, moved or rollback at once. IDs without a matching metric are ignored.
+   * <p>
+   * By default, metrics are moved one by one. Repositories able to delete many metrics at once
+   * should override this.
+   *
+   * @param impressionIds IDs of the metrics to move
+   * @param mover the definition of the move to handle
+   * @return the number of moved metrics
+   */
+  int moveByIds(@NonNull Collection<String> impressionIds, @NonNull MetricBatchMover mover) {
+    int movedCount = 0;
+    for (String impressionId : impressionIds) {
+      if (!contains(impressionId)) {
+        continue;
+      }
+
+      boolean[] isMoved = { false };
+      moveById(impressionId, metric -> {
+        isMoved[0] = mover.offerToDestination(Collections.singletonList(metric));
+        return isMoved[0];
+      });
+
+      if (isMoved[0]) {
+        movedCount++;
+      }
+    }
+    return movedCount;
+  }
+
   /**
    * Returns all stored metric into this repository.
    * <p>
@@ -60,6 +95,25 @@ public abstract class MetricRepository {
   @NonNull
   abstract Collection<Metric> getAllStoredMetrics();
 
+  /**
+   * Return the metric matching the given ID, if any.
+   * <p>
+   * By default, all stored metrics are read. Repositories indexing their metrics by ID should
+   * override this.
+   *
+   * @param impressionId ID of the metric to read
+   * @return the matching metric, or <code>null</code> if there is none
+   */
+  @Nullable
+  Metric getById(@NonNull String impressionId) {
+    for (Metric metric : getAllStoredMetrics()) {
+      if (metric.getImpressionId().equals(impressionId)) {
+        return metric;
+      }
+    }
+    return null;
+  }
+
   /**
    * Return the size in bytes of all metric elements stored in this repository.
    *
@@ -75,6 +129,15 @@ public abstract class MetricRepository {
    */
   abstract boolean contains(@NonNull String impressionId);
 
+  /**
+   * Write pending updates, if any, to the underlying storage.
+   * <p>
+   * Repositories writing updates directly do not have anything to do.
+   */
+  void flush() {
+    // Nothing is pending by default
+  }
+
   interface MetricUpdater {
 
     void update(@NonNull Metric.Builder metricBuilder);
@@ -18,10 +18,13 @@ package com.criteo.publisher.csm;
 
 import android.content.Context;
 import android.os.Build.VERSION_CODES;
+import android.util.AtomicFile;
 import androidx.annotation.NonNull;
 import androidx.annotation.RequiresApi;
 import com.criteo.publisher.DependencyProvider.Factory;
 import com.criteo.publisher.util.BuildConfigWrapper;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 @RequiresApi(api = VERSION_CODES.JELLY_BEAN_MR1)
 public class MetricRepositoryFactory implements Factory<MetricRepository> {
@@ -35,21 +38,50 @@ public class MetricRepositoryFactory implements Factory<MetricRepository> {
   @NonNull
   private final BuildConfigWrapper buildConfigWrapper;
 
+  @NonNull
+  private final Executor executor;
+
+  @NonNull
+  private final ScheduledExecutorService scheduledExecutorService;
+
   public MetricRepositoryFactory(
       @NonNull Context context,
       @NonNull MetricParser metricParser,
-      @NonNull BuildConfigWrapper buildConfigWrapper
+      @NonNull BuildConfigWrapper buildConfigWrapper,
+      @NonNull Executor executor,
+      @NonNull ScheduledExecutorService scheduledExecutorService
   ) {
     this.context = context;
     this.metricParser = metricParser;
     this.buildConfigWrapper = buildConfigWrapper;
+    this.executor = executor;
+    this.scheduledExecutorService = scheduledExecutorService;
   }
 
   @NonNull
   @Override
   public MetricRepository create() {
     MetricDirectory directory = new MetricDirectory(context, buildConfigWrapper, metricParser);
-    MetricRepository fileMetricRepository = new FileMetricRepository(directory);
-    return new BoundedMetricRepository(fileMetricRepository, buildConfigWrapper);
+    MetricRepository legacyMetricRepository = new FileMetricRepository(directory);
+    MetricRepository journalMetricRepository = new JournalMetricRepository(
+        new AtomicFile(directory.createJournalFile()),
+        new MetricCodec(),
+        legacyMetricRepository
+    );
+    MetricRepository boundedMetricRepository = new BoundedMetricRepository(
+        journalMetricRepository,
+        buildConfigWrapper
+    );
+
+    if (buildConfigWrapper.getCsmWriteBehindDelayInMillis() <= 0) {
+      return boundedMetricRepository;
+    }
+
+    return new WriteBehindMetricRepository(
+        boundedMetricRepository,
+        executor,
+        scheduledExecutorService,
+        buildConfigWrapper
+    );
   }
 }
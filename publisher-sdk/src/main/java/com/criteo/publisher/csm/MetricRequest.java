@@ -91,7 +91,8 @@ public abstract class MetricRequest {
           metric.isCdbCallTimeout(),
           0L,
           cdbCallEndElapsed,
-          metric.getRequestGroupId()
+          metric.getRequestGroupId(),
+          metric.getSamplingWeight()
       );
     }
 
@@ -126,6 +127,13 @@ public abstract class MetricRequest {
 
     @Nullable
     abstract String getRequestGroupId();
+
+    /**
+     * Number of impressions this feedback stands for. This is absent when all impressions are
+     * tracked.
+     */
+    @Nullable
+    abstract Integer getSamplingWeight();
   }
 
   @AutoValue
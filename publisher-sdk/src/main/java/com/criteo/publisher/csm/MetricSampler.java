@@ -0,0 +1,137 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import com.criteo.publisher.Clock;
+import com.criteo.publisher.model.Config;
+
+/**
+ * Decide which impressions are tracked by the CSM feature.
+ * <p>
+ * One impression out of the {@linkplain Config#getCsmSamplingWeight() sampling weight} is tracked.
+ * The metric of a tracked impression stands for this weight, so the aggregates computed from them
+ * stay unbiased. On top of that, a token bucket caps the
+ * {@linkplain Config#getCsmMaxMetricsPerMinute() number of new metrics per minute}.
+ * <p>
+ * The decision is taken once, when the lifecycle of the impression starts. Only tracked impressions
+ * get a stored metric, carrying its weight, and later events only update stored metrics. So a
+ * change of the sampling weight does not affect the impressions already started.
+ */
+public class MetricSampler {
+
+  private static final long ONE_MINUTE_IN_MILLIS = 60_000L;
+
+  /**
+   * Salt of the tracking decision given to {@link #bucket(String, int, int)}.
+   */
+  private static final int TRACKING_SALT = 0;
+
+  @NonNull
+  private final Config config;
+
+  @NonNull
+  private final Clock clock;
+
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private double availableTokens = -1;
+
+  @GuardedBy("lock")
+  private long lastRefillTimeInMillis;
+
+  public MetricSampler(@NonNull Config config, @NonNull Clock clock) {
+    this.config = config;
+    this.clock = clock;
+  }
+
+  /**
+   * Decide if the given new impression is tracked.
+   *
+   * @param impressionId ID of the impression starting its lifecycle
+   * @return the sampling weight of the impression if it is tracked, else <code>0</code>
+   */
+  int sample(@NonNull String impressionId) {
+    int samplingWeight = config.getCsmSamplingWeight();
+    if (!isSelected(impressionId, samplingWeight)) {
+      return 0;
+    }
+
+    synchronized (lock) {
+      if (!tryAcquireToken()) {
+        return 0;
+      }
+    }
+
+    return samplingWeight;
+  }
+
+  @GuardedBy("lock")
+  private boolean tryAcquireToken() {
+    int maxMetricsPerMinute = config.getCsmMaxMetricsPerMinute();
+    if (maxMetricsPerMinute <= 0) {
+      return true;
+    }
+
+    long currentTimeInMillis = clock.getCurrentTimeInMillis();
+    if (availableTokens < 0) {
+      availableTokens = maxMetricsPerMinute;
+    } else {
+      long elapsedInMillis = Math.max(0, currentTimeInMillis - lastRefillTimeInMillis);
+      double refill = (double) elapsedInMillis * maxMetricsPerMinute / ONE_MINUTE_IN_MILLIS;
+      availableTokens = Math.min(maxMetricsPerMinute, availableTokens + refill);
+    }
+    lastRefillTimeInMillis = currentTimeInMillis;
+
+    if (availableTokens < 1) {
+      return false;
+    }
+
+    availableTokens--;
+    return true;
+  }
+
+  private static boolean isSelected(@NonNull String impressionId, int samplingWeight) {
+    if (samplingWeight <= 1) {
+      return true;
+    }
+
+    return bucket(impressionId, TRACKING_SALT, samplingWeight) == 0;
+  }
+
+  /**
+   * Bucket of the given impression, in <code>[0, bucketCount)</code>, for a sampling decision based
+   * on the impression ID.
+   * <p>
+   * The hash of the impression ID is salted and then mixed. Samplings using different salts are not
+   * correlated, even if they use the same ID, such as the tracking decision of this class and the
+   * feedback sampling of {@link MetricSendingQueueProducer}.
+   *
+   * @param salt distinguish the samplings done on the same impression
+   */
+  static int bucket(@NonNull String impressionId, int salt, int bucketCount) {
+    int hash = impressionId.hashCode() ^ salt;
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return (hash & Integer.MAX_VALUE) % bucketCount;
+  }
+}
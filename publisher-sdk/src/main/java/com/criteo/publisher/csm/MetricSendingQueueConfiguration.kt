@@ -28,4 +28,5 @@ internal class MetricSendingQueueConfiguration(
   override val queueFilename: String
     get() = buildConfigWrapper.csmQueueFilename
   override val elementClass = Metric::class.java
+  override val codec: EntryCodec<Metric> = MetricCodec()
 }
@@ -17,32 +17,130 @@
 package com.criteo.publisher.csm;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import com.criteo.publisher.util.BuildConfigWrapper;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MetricSendingQueueProducer {
 
+  /**
+   * Salt of the feedback sampling, distinct from the one of the tracking decision of
+   * {@link MetricSampler}.
+   */
+  @VisibleForTesting
+  static final int FEEDBACK_SAMPLING_SALT = 0x9e3779b9;
+
   @NonNull
   private final MetricSendingQueue queue;
 
-  public MetricSendingQueueProducer(@NonNull MetricSendingQueue queue) {
+  @NonNull
+  private final MetricAggregator aggregator;
+
+  @NonNull
+  private final BuildConfigWrapper buildConfigWrapper;
+
+  public MetricSendingQueueProducer(
+      @NonNull MetricSendingQueue queue,
+      @NonNull MetricAggregator aggregator,
+      @NonNull BuildConfigWrapper buildConfigWrapper
+  ) {
     this.queue = queue;
+    this.aggregator = aggregator;
+    this.buildConfigWrapper = buildConfigWrapper;
   }
 
-  public void pushAllInQueue(@NonNull MetricRepository repository) {
+  /**
+   * Move all stored metrics to the sending queue, by batches.
+   *
+   * @param repository repository to move metrics from
+   * @return number of metrics moved to the queue or recorded for a summary
+   */
+  public int pushAllInQueue(@NonNull MetricRepository repository) {
+    return pushAllInQueue(repository, Long.MAX_VALUE);
+  }
+
+  /**
+   * Move the stored metrics whose CDB call started before the given time to the sending queue, by
+   * batches. Metrics without CDB call are moved too. In aggregation mode, metrics that are not
+   * sampled for feedback are recorded for a summary instead, and stay in the repository.
+   * <p>
+   * The removals of a batch are synced at once in the repository, then the batch is offered to the
+   * queue at once. The queue inserts either the whole batch or none of it, so a batch failing to
+   * reach the queue is put back in the repository and never sent twice.
+   *
+   * @param repository repository to move metrics from
+   * @param startedBeforeTimeInMillis metrics of CDB calls started after this time are kept
+   * @return number of metrics moved to the queue or recorded for a summary
+   */
+  public int pushAllInQueue(
+      @NonNull MetricRepository repository,
+      long startedBeforeTimeInMillis
+  ) {
+    List<String> impressionIds = new ArrayList<>();
+    int recordedCount = 0;
     for (Metric metric : repository.getAllStoredMetrics()) {
-      pushInQueue(repository, metric.getImpressionId());
+      Long cdbCallStartTimestamp = metric.getCdbCallStartTimestamp();
+      if (cdbCallStartTimestamp != null && cdbCallStartTimestamp >= startedBeforeTimeInMillis) {
+        continue;
+      }
+
+      if (isSentInSummary(metric.getImpressionId())) {
+        aggregator.record(metric);
+        recordedCount++;
+      } else {
+        impressionIds.add(metric.getImpressionId());
+      }
+    }
+
+    int batchSize = Math.max(1, buildConfigWrapper.getCsmRecoveryBatchSize());
+    int movedCount = 0;
+    for (int i = 0; i < impressionIds.size(); i += batchSize) {
+      List<String> batch = impressionIds.subList(i, Math.min(i + batchSize, impressionIds.size()));
+      movedCount += repository.moveByIds(batch, queue::offerAll);
     }
+    return movedCount + recordedCount;
   }
 
+  /**
+   * Move the metric matching the given ID to the sending queue.
+   * <p>
+   * In aggregation mode, a metric that is not sampled for feedback is recorded for a summary
+   * instead. It stays in the repository until its summary is sent (see
+   * {@link MetricSummarySendingTask}), so it is not lost if the application is killed before: the
+   * recovery of the next session records it again.
+   */
   void pushInQueue(
       @NonNull MetricRepository repository,
       @NonNull String impressionId
   ) {
-    repository.moveById(impressionId, new MetricMover() {
-      @Override
-      public boolean offerToDestination(@NonNull Metric metric) {
-        return queue.offer(metric);
-      }
-    });
+    if (!isSentInSummary(impressionId)) {
+      repository.moveById(impressionId, queue::offer);
+      return;
+    }
+
+    Metric metric = repository.getById(impressionId);
+    if (metric != null) {
+      aggregator.record(metric);
+    }
+  }
+
+  /**
+   * Indicate if the given metric is sent in a summary rather than as an individual feedback.
+   * <p>
+   * In aggregation mode, a sample of the metrics is still sent as individual feedbacks. A sampled
+   * metric is only sent as a feedback and is not recorded in the summaries, so the backend counts
+   * each metric once, either in a feedback or in a summary.
+   * <p>
+   * The decision only depends on the impression ID, so it is the same each time a metric is moved.
+   */
+  private boolean isSentInSummary(@NonNull String impressionId) {
+    if (!buildConfigWrapper.isCsmAggregationEnabled()) {
+      return false;
+    }
+
+    int bucket = MetricSampler.bucket(impressionId, FEEDBACK_SAMPLING_SALT, 100);
+    return bucket >= buildConfigWrapper.getCsmAggregationFeedbackSamplePercent();
   }
 
 }
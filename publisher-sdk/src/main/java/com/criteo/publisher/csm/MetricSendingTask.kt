@@ -17,16 +17,22 @@ package com.criteo.publisher.csm
 
 import com.criteo.publisher.SafeRunnable
 import com.criteo.publisher.integration.Integration
+import com.criteo.publisher.model.Config
 import com.criteo.publisher.network.PubSdkApi
 import com.criteo.publisher.util.BuildConfigWrapper
 
 internal class MetricSendingTask(
     private val queue: MetricSendingQueue,
     private val api: PubSdkApi,
-    private val buildConfigWrapper: BuildConfigWrapper
+    private val buildConfigWrapper: BuildConfigWrapper,
+    private val config: Config
 ) : SafeRunnable() {
 
   override fun runSafely() {
+    if (!config.isCsmEnabled) {
+      return
+    }
+
     val metrics: Collection<Metric> = queue.poll(buildConfigWrapper.csmBatchSize)
     if (metrics.isEmpty()) {
       return
@@ -63,8 +69,6 @@ internal class MetricSendingTask(
   }
 
   private fun rollback(metrics: Collection<Metric>) {
-    metrics.forEach {
-      queue.offer(it)
-    }
+    queue.offerAll(metrics)
   }
 }
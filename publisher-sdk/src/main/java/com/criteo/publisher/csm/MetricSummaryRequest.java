@@ -0,0 +1,139 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.auto.value.AutoValue;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.SerializedName;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Aggregated counterpart of {@link MetricRequest}: instead of one feedback per impression, it holds
+ * one summary per zone of a profile.
+ */
+@AutoValue
+public abstract class MetricSummaryRequest {
+
+  @NonNull
+  static MetricSummaryRequest create(
+      @NonNull Collection<MetricAggregate> aggregates,
+      @NonNull String sdkVersion,
+      int profileId
+  ) {
+    List<MetricSummary> summaries = new ArrayList<>();
+    for (MetricAggregate aggregate : aggregates) {
+      summaries.add(MetricSummary.create(aggregate));
+    }
+
+    return new AutoValue_MetricSummaryRequest(
+        summaries,
+        sdkVersion,
+        profileId
+    );
+  }
+
+  public static TypeAdapter<MetricSummaryRequest> typeAdapter(Gson gson) {
+    return new AutoValue_MetricSummaryRequest.GsonTypeAdapter(gson);
+  }
+
+  @NonNull
+  abstract List<MetricSummary> getSummaries();
+
+  @SerializedName("wrapper_version")
+  @NonNull
+  abstract String getWrapperVersion();
+
+  @SerializedName("profile_id")
+  abstract int getProfileId();
+
+  @AutoValue
+  public abstract static class MetricSummary {
+
+    @NonNull
+    static MetricSummary create(@NonNull MetricAggregate aggregate) {
+      return new AutoValue_MetricSummaryRequest_MetricSummary(
+          aggregate.getZoneId(),
+          aggregate.getCount(),
+          aggregate.getTimeoutCount(),
+          aggregate.getNoBidCount(),
+          aggregate.getCachedBidUsedCount(),
+          aggregate.getConsumedCount(),
+          aggregate.getCdbCallLatency().toSummary(),
+          aggregate.getElapsed().toSummary()
+      );
+    }
+
+    public static TypeAdapter<MetricSummary> typeAdapter(Gson gson) {
+      return new AutoValue_MetricSummaryRequest_MetricSummary.GsonTypeAdapter(gson);
+    }
+
+    @Nullable
+    abstract Integer getZoneId();
+
+    abstract long getCount();
+
+    abstract long getTimeoutCount();
+
+    abstract long getNoBidCount();
+
+    abstract long getCachedBidUsedCount();
+
+    abstract long getConsumedCount();
+
+    /**
+     * Histogram of the durations between the start and the end of the CDB calls
+     */
+    @NonNull
+    abstract Histogram getCdbCallEndElapsed();
+
+    /**
+     * Histogram of the durations between the start of the CDB calls and the consumption of bids
+     */
+    @NonNull
+    abstract Histogram getElapsed();
+  }
+
+  @AutoValue
+  public abstract static class Histogram {
+
+    @NonNull
+    static Histogram create(@NonNull List<Long> lowerBounds, @NonNull List<Long> counts) {
+      return new AutoValue_MetricSummaryRequest_Histogram(lowerBounds, counts);
+    }
+
+    public static TypeAdapter<Histogram> typeAdapter(Gson gson) {
+      return new AutoValue_MetricSummaryRequest_Histogram.GsonTypeAdapter(gson);
+    }
+
+    /**
+     * Lower bounds in milliseconds of the non-empty buckets, in increasing order
+     */
+    @NonNull
+    abstract List<Long> getLowerBounds();
+
+    /**
+     * Number of recorded durations in each bucket, in the same order as the lower bounds
+     */
+    @NonNull
+    abstract List<Long> getCounts();
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm
+
+import com.criteo.publisher.SafeRunnable
+import com.criteo.publisher.model.Config
+import com.criteo.publisher.network.PubSdkApi
+import com.criteo.publisher.util.BuildConfigWrapper
+
+/**
+ * Send the summaries of the aggregated metrics, one request per profile.
+ *
+ * The metrics of a summary are removed from the repository at once, with a single synced write,
+ * just before the summary is sent. If sending fails, they are put back in the repository and the
+ * aggregates are restored. So a metric is never counted twice, and is only lost if the application
+ * is killed while its summary is being sent.
+ */
+internal class MetricSummarySendingTask(
+    private val aggregator: MetricAggregator,
+    private val repository: MetricRepository,
+    private val api: PubSdkApi,
+    private val buildConfigWrapper: BuildConfigWrapper,
+    private val config: Config
+) : SafeRunnable() {
+
+  override fun runSafely() {
+    if (!config.isCsmEnabled) {
+      return
+    }
+
+    val aggregates = aggregator.drain()
+    if (aggregates.isEmpty()) {
+      return
+    }
+
+    val aggregatesToRestore = aggregates.toMutableList()
+    try {
+      val sdkVersion = buildConfigWrapper.sdkVersion
+      aggregates.groupBy { it.profileId }.forEach {
+        val request = MetricSummaryRequest.create(it.value, sdkVersion, it.key)
+        val impressionIds = it.value.flatMap { aggregate -> aggregate.impressionIds }
+
+        repository.moveByIds(impressionIds) {
+          api.postCsmSummary(request)
+          true
+        }
+        aggregatesToRestore.removeAll(it.value)
+      }
+    } finally {
+      if (aggregatesToRestore.isNotEmpty()) {
+        aggregator.restore(aggregatesToRestore)
+      }
+    }
+  }
+}
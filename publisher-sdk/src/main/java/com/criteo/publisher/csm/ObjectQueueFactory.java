@@ -29,6 +29,8 @@ import com.squareup.tape.FileObjectQueue;
 import com.squareup.tape.InMemoryObjectQueue;
 import com.squareup.tape.ObjectQueue;
 import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -63,7 +65,7 @@ public class ObjectQueueFactory<T> {
     return createTapeObjectQueue(file);
   }
 
-  @VisibleForTesting
+  @NonNull
   public File getQueueFile() {
     return new File(context.getFilesDir(), sendingQueueConfiguration.getQueueFilename());
   }
@@ -71,9 +73,10 @@ public class ObjectQueueFactory<T> {
   private ObjectQueue<T> createTapeObjectQueue(@NonNull File file) {
     Exception exception;
     try {
-      FileObjectQueue<T> queue = new FileObjectQueue<>(file, new AdapterConverter<>(
+      SizedFileObjectQueue<T> queue = new SizedFileObjectQueue<>(file, new AdapterConverter<>(
           jsonSerializer,
-          sendingQueueConfiguration.getElementClass()
+          sendingQueueConfiguration.getElementClass(),
+          sendingQueueConfiguration.getCodec()
       ));
 
       // Try to peek to be sure that the queue is not corrupted.
@@ -90,9 +93,10 @@ public class ObjectQueueFactory<T> {
 
     if (isDeleted) {
       try {
-        return new FileObjectQueue<>(file, new AdapterConverter<>(
+        return new SizedFileObjectQueue<>(file, new AdapterConverter<>(
             jsonSerializer,
-            sendingQueueConfiguration.getElementClass()
+            sendingQueueConfiguration.getElementClass(),
+            sendingQueueConfiguration.getCodec()
         ));
       } catch (IOException e) {
         exception.addSuppressed(e);
@@ -119,21 +123,34 @@ public class ObjectQueueFactory<T> {
     return file.delete();
   }
 
+  /**
+   * Store elements with the compact binary format of the {@link EntryCodec}.
+   * <p>
+   * Elements written by previous versions of the SDK are in JSON. They are still read, so queue
+   * files are migrated transparently as their elements are polled.
+   */
   @VisibleForTesting
   static class AdapterConverter<T> implements FileObjectQueue.Converter<T> {
 
+    private static final byte JSON_START = '{';
+
     @NonNull
     private final JsonSerializer jsonSerializer;
 
     @NonNull
     private final Class<T> elementClass;
 
+    @NonNull
+    private final EntryCodec<T> codec;
+
     AdapterConverter(
         @NonNull JsonSerializer jsonSerializer,
-        @NonNull Class<T> elementClass
+        @NonNull Class<T> elementClass,
+        @NonNull EntryCodec<T> codec
     ) {
       this.jsonSerializer = jsonSerializer;
       this.elementClass = elementClass;
+      this.codec = codec;
     }
 
     @Nullable
@@ -143,15 +160,26 @@ public class ObjectQueueFactory<T> {
         return null;
       }
 
-      try (ByteArrayInputStream input = new ByteArrayInputStream(bytes)) {
-        return jsonSerializer.read(elementClass, input);
+      if (bytes.length > 0 && bytes[0] == JSON_START) {
+        try (ByteArrayInputStream input = new ByteArrayInputStream(bytes)) {
+          return jsonSerializer.read(elementClass, input);
+        }
+      }
+
+      try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+        return codec.read(input, input.readByte());
+      } catch (RuntimeException e) {
+        throw new IOException(e);
       }
     }
 
     @Override
     public void toStream(@Nullable T element, @Nullable OutputStream outputStream) throws IOException {
       if (element != null && outputStream != null) {
-        jsonSerializer.write(element, outputStream);
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeByte(codec.getVersion());
+        codec.write(element, output);
+        output.flush();
       }
     }
   }
@@ -32,4 +32,9 @@ internal interface SendingQueueConfiguration<T> {
    * Runtime class of the elements contained in the sending queue.
    */
   val elementClass: Class<T>
+
+  /**
+   * Binary format of the elements stored in the sending queue.
+   */
+  val codec: EntryCodec<T>
 }
@@ -18,26 +18,46 @@ package com.criteo.publisher.csm;
 
 import androidx.annotation.NonNull;
 import com.criteo.publisher.DependencyProvider.Factory;
+import com.criteo.publisher.util.BuildConfigWrapper;
+import java.io.File;
 
 public class SendingQueueFactory<T> implements Factory<ConcurrentSendingQueue<T>> {
 
+  private static final String RING_BUFFER_FILE_SUFFIX = ".ring";
+
   @NonNull
   private final ObjectQueueFactory<T> objectQueueFactory;
 
   @NonNull
   private final SendingQueueConfiguration<T> sendingQueueConfiguration;
 
+  @NonNull
+  private final BuildConfigWrapper buildConfigWrapper;
+
   public SendingQueueFactory(
       @NonNull ObjectQueueFactory<T> objectQueueFactory,
-      @NonNull SendingQueueConfiguration<T> sendingQueueConfiguration
+      @NonNull SendingQueueConfiguration<T> sendingQueueConfiguration,
+      @NonNull BuildConfigWrapper buildConfigWrapper
   ) {
     this.objectQueueFactory = objectQueueFactory;
     this.sendingQueueConfiguration = sendingQueueConfiguration;
+    this.buildConfigWrapper = buildConfigWrapper;
   }
 
   @NonNull
   @Override
   public ConcurrentSendingQueue<T> create() {
+    if (buildConfigWrapper.isSendingQueueMappedRingBufferEnabled()) {
+      // The ring buffer is bounded by itself, it does not need a bounded queue around it
+      File tapeFile = objectQueueFactory.getQueueFile();
+      return new MappedSendingQueue<>(
+          new File(tapeFile.getPath() + RING_BUFFER_FILE_SUFFIX),
+          sendingQueueConfiguration.getMaxSizeOfSendingQueue(),
+          sendingQueueConfiguration.getCodec(),
+          objectQueueFactory
+      );
+    }
+
     ConcurrentSendingQueue<T> tapeQueue = new TapeSendingQueue<>(objectQueueFactory);
     return new BoundedSendingQueue<>(tapeQueue, sendingQueueConfiguration);
   }
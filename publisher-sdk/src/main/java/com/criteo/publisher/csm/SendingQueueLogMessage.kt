@@ -36,4 +36,10 @@ internal object SendingQueueLogMessage {
       exception,
       "onErrorWhenPollingQueueFile"
   )
+
+  @JvmStatic
+  fun onStoredMetricsRecovered(count: Int, durationInMillis: Long) = LogMessage(
+      Log.DEBUG,
+      "$count stored metrics moved to the sending queue in ${durationInMillis}ms"
+  )
 }
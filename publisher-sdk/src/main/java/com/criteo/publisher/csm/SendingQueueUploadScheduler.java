@@ -0,0 +1,244 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import com.criteo.publisher.Clock;
+import com.criteo.publisher.SafeRunnable;
+import com.criteo.publisher.util.ApplicationStoppedListener;
+import com.criteo.publisher.util.BuildConfigWrapper;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Periodically upload the content of the sending queues, independently of the bid requests.
+ * <p>
+ * A queue is uploaded when its size reaches a threshold, when it was not uploaded for a while, or
+ * when the application goes in background. After a failed upload, the queue is left untouched for
+ * an exponentially growing delay.
+ * <p>
+ * All the uploads are run on the given executor, which is expected to be a single-threaded
+ * low-priority one: so there is at most one upload in flight per queue, and telemetry never
+ * competes with bid requests.
+ */
+public class SendingQueueUploadScheduler implements ApplicationStoppedListener {
+
+  @NonNull
+  private final ScheduledExecutorService scheduledExecutorService;
+
+  @NonNull
+  private final Clock clock;
+
+  @NonNull
+  private final BuildConfigWrapper buildConfigWrapper;
+
+  @NonNull
+  private final List<QueueUploader> uploaders = new CopyOnWriteArrayList<>();
+
+  @NonNull
+  private final AtomicBoolean isStarted = new AtomicBoolean(false);
+
+  @NonNull
+  private final AtomicBoolean isFlushRequested = new AtomicBoolean(false);
+
+  public SendingQueueUploadScheduler(
+      @NonNull ScheduledExecutorService scheduledExecutorService,
+      @NonNull Clock clock,
+      @NonNull BuildConfigWrapper buildConfigWrapper
+  ) {
+    this.scheduledExecutorService = scheduledExecutorService;
+    this.clock = clock;
+    this.buildConfigWrapper = buildConfigWrapper;
+  }
+
+  /**
+   * Register a queue to upload with the given task.
+   * <p>
+   * The task is expected to poll a batch from the queue and to send it. It should throw if the
+   * batch could not be sent, so the next uploads of this queue are backed off.
+   *
+   * @param queue queue to watch
+   * @param uploadTask task sending a batch of the queue
+   */
+  public void register(
+      @NonNull ConcurrentSendingQueue<?> queue,
+      @NonNull SafeRunnable uploadTask
+  ) {
+    register(queue::getTotalSize, uploadTask);
+  }
+
+  /**
+   * Register a source of data, other than a sending queue, to upload with the given task.
+   *
+   * @param source source to watch
+   * @param uploadTask task sending a batch of the source
+   * @see #register(ConcurrentSendingQueue, SafeRunnable)
+   */
+  public void register(@NonNull Source source, @NonNull SafeRunnable uploadTask) {
+    uploaders.add(new QueueUploader(source, uploadTask, clock.getCurrentTimeInMillis()));
+  }
+
+  /**
+   * Start checking the queues periodically. Only the first call has an effect.
+   */
+  public void start() {
+    if (!isStarted.compareAndSet(false, true)) {
+      return;
+    }
+
+    long intervalInMillis = buildConfigWrapper.getSendingQueueUploadCheckIntervalInMillis();
+    scheduledExecutorService.scheduleWithFixedDelay(new SafeRunnable() {
+      @Override
+      public void runSafely() {
+        uploadDueQueues(false);
+      }
+    }, intervalInMillis, intervalInMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Upload all the non-empty queues that are not backed off, as the process may be killed at any
+   * time once in background.
+   */
+  @Override
+  public void onApplicationStopped() {
+    requestUpload();
+  }
+
+  /**
+   * Asynchronously upload all the non-empty queues that are not backed off, without waiting for
+   * them to reach their size threshold or upload interval.
+   * <p>
+   * Requests made while a previous one is still waiting to be run are merged with it.
+   */
+  public void requestUpload() {
+    if (!isFlushRequested.compareAndSet(false, true)) {
+      return;
+    }
+
+    scheduledExecutorService.execute(new SafeRunnable() {
+      @Override
+      public void runSafely() {
+        isFlushRequested.set(false);
+        uploadDueQueues(true);
+      }
+    });
+  }
+
+  public interface Source {
+
+    /**
+     * Return the size in bytes of the data waiting to be uploaded, or 0 if there is nothing to
+     * upload.
+     */
+    int getPendingSize();
+  }
+
+  @VisibleForTesting
+  void uploadDueQueues(boolean isFlush) {
+    for (QueueUploader uploader : uploaders) {
+      uploader.uploadIfDue(isFlush);
+    }
+  }
+
+  /**
+   * State of the uploads of a single queue. It is only accessed from the scheduler thread.
+   */
+  private class QueueUploader {
+
+    @NonNull
+    private final Source source;
+
+    @NonNull
+    private final SafeRunnable uploadTask;
+
+    private long lastUploadTimeInMillis;
+
+    private long backoffInMillis = 0;
+
+    private long backoffEndTimeInMillis = 0;
+
+    QueueUploader(
+        @NonNull Source source,
+        @NonNull SafeRunnable uploadTask,
+        long registrationTimeInMillis
+    ) {
+      this.source = source;
+      this.uploadTask = uploadTask;
+      this.lastUploadTimeInMillis = registrationTimeInMillis;
+    }
+
+    void uploadIfDue(boolean isFlush) {
+      long now = clock.getCurrentTimeInMillis();
+      if (now < backoffEndTimeInMillis) {
+        return;
+      }
+
+      int pendingSize = source.getPendingSize();
+      if (pendingSize <= 0) {
+        return;
+      }
+
+      long elapsedInMillis = now - lastUploadTimeInMillis;
+      boolean isDue = isFlush
+          || pendingSize >= buildConfigWrapper.getSendingQueueUploadThresholdInBytes()
+          || elapsedInMillis >= buildConfigWrapper.getSendingQueueUploadIntervalInMillis();
+
+      if (isDue) {
+        upload(now);
+      }
+    }
+
+    private void upload(long now) {
+      lastUploadTimeInMillis = now;
+
+      new SafeRunnable() {
+        @Override
+        public void runSafely() throws Throwable {
+          boolean isSuccessful = false;
+          try {
+            uploadTask.runSafely();
+            isSuccessful = true;
+          } finally {
+            onUploadCompleted(isSuccessful);
+          }
+        }
+      }.run();
+    }
+
+    private void onUploadCompleted(boolean isSuccessful) {
+      if (isSuccessful) {
+        backoffInMillis = 0;
+        backoffEndTimeInMillis = 0;
+        return;
+      }
+
+      if (backoffInMillis == 0) {
+        backoffInMillis = buildConfigWrapper.getSendingQueueUploadIntervalInMillis();
+      } else {
+        backoffInMillis = Math.min(
+            backoffInMillis * 2,
+            buildConfigWrapper.getSendingQueueUploadMaxBackoffInMillis()
+        );
+      }
+      backoffEndTimeInMillis = clock.getCurrentTimeInMillis() + backoffInMillis;
+    }
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.squareup.tape.FileException;
+import com.squareup.tape.FileObjectQueue.Converter;
+import com.squareup.tape.ObjectQueue;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Same as the Tape {@link com.squareup.tape.FileObjectQueue}, but backed by a
+ * {@link BatchedQueueFile}, so elements can be added and removed by batches, and the number of
+ * bytes used in the queue file is cheap to read.
+ */
+class SizedFileObjectQueue<T> implements ObjectQueue<T> {
+
+  @NonNull
+  private final File file;
+
+  @NonNull
+  private final BatchedQueueFile queueFile;
+
+  @NonNull
+  private final Converter<T> converter;
+
+  @NonNull
+  private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+  @Nullable
+  private Listener<T> listener;
+
+  SizedFileObjectQueue(@NonNull File file, @NonNull Converter<T> converter) throws IOException {
+    this.file = file;
+    this.queueFile = new BatchedQueueFile(file);
+    this.converter = converter;
+  }
+
+  /**
+   * Returns the number of bytes used by this queue, including the metadata.
+   * <p>
+   * This may be less than the length of the file, as the file grows by power of 2, and is only
+   * shrunk when it is cleared.
+   */
+  int getUsedBytes() {
+    return queueFile.getUsedBytes();
+  }
+
+  @Override
+  public int size() {
+    return queueFile.size();
+  }
+
+  @Override
+  public void add(T entry) {
+    try {
+      queueFile.add(toBytes(entry));
+    } catch (IOException e) {
+      throw new FileException("Failed to add entry.", e, file);
+    }
+
+    if (listener != null) {
+      listener.onAdd(this, entry);
+    }
+  }
+
+  /**
+   * Adds all the given entries at the end of this queue, in order, with a single write of the
+   * elements and a single header update.
+   *
+   * @throws FileException if the entries could not be added. In this case no entry is added.
+   */
+  void addAll(@NonNull Collection<? extends T> entries) {
+    try {
+      List<byte[]> elementsBytes = new ArrayList<>(entries.size());
+      for (T entry : entries) {
+        elementsBytes.add(toBytes(entry));
+      }
+      queueFile.addAll(elementsBytes);
+    } catch (IOException e) {
+      throw new FileException("Failed to add entries.", e, file);
+    }
+
+    if (listener != null) {
+      for (T entry : entries) {
+        listener.onAdd(this, entry);
+      }
+    }
+  }
+
+  @NonNull
+  private byte[] toBytes(T entry) throws IOException {
+    bytes.reset();
+    converter.toStream(entry, bytes);
+    return bytes.toByteArray();
+  }
+
+  @Nullable
+  @Override
+  public T peek() {
+    try {
+      byte[] elementBytes = queueFile.peek();
+      if (elementBytes == null) {
+        return null;
+      }
+      return converter.from(elementBytes);
+    } catch (IOException e) {
+      throw new FileException("Failed to peek.", e, file);
+    }
+  }
+
+  @Override
+  public void remove() {
+    if (queueFile.size() == 0) {
+      return;
+    }
+
+    try {
+      queueFile.remove(1);
+    } catch (IOException e) {
+      throw new FileException("Failed to remove.", e, file);
+    }
+
+    if (listener != null) {
+      listener.onRemove(this);
+    }
+  }
+
+  /**
+   * Retrieves and removes up to <code>max</code> elements from the head of this queue.
+   * <p>
+   * Elements are read in a single sequential pass over the file, and are then removed with a single
+   * header update.
+   * <p>
+   * Elements that cannot be converted (for instance the byte arrays full of 0 that Tape sometimes
+   * writes) are removed anyway, so they do not block the queue. Their errors are added to the given
+   * collection.
+   *
+   * @param max max number of elements to poll
+   * @param errors collection receiving the errors of elements that could not be converted
+   * @return elements successfully read and removed from this queue
+   * @throws FileException if the queue could not be read. In this case no element is removed.
+   */
+  @NonNull
+  List<T> poll(int max, @NonNull List<Exception> errors) {
+    List<byte[]> elementsBytes;
+    try {
+      elementsBytes = queueFile.peek(max);
+    } catch (IOException e) {
+      throw new FileException("Failed to read entries.", e, file);
+    }
+
+    List<T> elements = new ArrayList<>(elementsBytes.size());
+    for (byte[] elementBytes : elementsBytes) {
+      try {
+        elements.add(converter.from(elementBytes));
+      } catch (IOException e) {
+        errors.add(new FileException("Failed to convert entry.", e, file));
+      }
+    }
+
+    if (elementsBytes.isEmpty()) {
+      return elements;
+    }
+
+    try {
+      queueFile.remove(elementsBytes.size());
+    } catch (IOException e) {
+      errors.add(new FileException("Failed to remove.", e, file));
+      return elements;
+    }
+
+    if (listener != null) {
+      for (int i = 0; i < elementsBytes.size(); i++) {
+        listener.onRemove(this);
+      }
+    }
+
+    return elements;
+  }
+
+  @Override
+  public void setListener(@Nullable Listener<T> listener) {
+    if (listener != null) {
+      try {
+        for (byte[] elementBytes : queueFile.peek(queueFile.size())) {
+          listener.onAdd(this, converter.from(elementBytes));
+        }
+      } catch (IOException e) {
+        throw new FileException("Unable to iterate over QueueFile contents.", e, file);
+      }
+    }
+    this.listener = listener;
+  }
+
+  @NonNull
+  @VisibleForTesting
+  BatchedQueueFile getQueueFile() {
+    return queueFile;
+  }
+}
@@ -21,17 +21,13 @@ import static com.criteo.publisher.csm.SendingQueueLogMessage.onErrorWhenPolling
 import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.annotation.VisibleForTesting;
 import com.criteo.publisher.logging.Logger;
 import com.criteo.publisher.logging.LoggerFactory;
 import com.criteo.publisher.util.PreconditionsUtil;
 import com.squareup.tape.FileException;
-import com.squareup.tape.FileObjectQueue;
 import com.squareup.tape.ObjectQueue;
-import com.squareup.tape.QueueFile;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 class TapeSendingQueue<T> implements ConcurrentSendingQueue<T> {
@@ -46,19 +42,11 @@ class TapeSendingQueue<T> implements ConcurrentSendingQueue<T> {
   @GuardedBy("queueLock")
   private ObjectQueue<T> queue;
 
-  @Nullable
-  private Method usedBytesMethod;
-
-  @Nullable
-  private QueueFile queueFile;
-
   @NonNull
   private final ObjectQueueFactory<T> queueFactory;
 
   TapeSendingQueue(@NonNull ObjectQueueFactory<T> queueFactory) {
     this.queueFactory = queueFactory;
-    this.usedBytesMethod = null;
-    this.queueFile = null;
   }
 
   @Override
@@ -76,51 +64,58 @@ class TapeSendingQueue<T> implements ConcurrentSendingQueue<T> {
     }
   }
 
+  /**
+   * With a queue file, the elements are written at once and committed with a single header update.
+   * Else, they are added one by one to the in-memory fallback queue.
+   */
+  @Override
+  public boolean offerAll(@NonNull Collection<? extends T> elements) {
+    synchronized (queueLock) {
+      ObjectQueue<T> queue = createQueueIfNecessary();
+
+      try {
+        if (queue instanceof SizedFileObjectQueue) {
+          ((SizedFileObjectQueue<T>) queue).addAll(elements);
+        } else {
+          for (T element : elements) {
+            queue.add(element);
+          }
+        }
+        return true;
+      } catch (FileException e) {
+        PreconditionsUtil.throwOrLog(e);
+        return false;
+      }
+    }
+  }
+
   @NonNull
   @Override
   public List<T> poll(int max) {
     synchronized (queueLock) {
       ObjectQueue<T> queue = createQueueIfNecessary();
 
-      List<T> elements = new ArrayList<>();
-      Exception exception = null;
+      List<T> elements = null;
+      List<Exception> exceptions = new ArrayList<>();
 
-      for (int i = 0; i < max; i++) {
+      if (max > 0 && queue instanceof SizedFileObjectQueue) {
         try {
-          T element = queue.peek();
-
-          if (element == null) {
-            break;
-          }
-
-          elements.add(element);
+          elements = ((SizedFileObjectQueue<T>) queue).poll(max, exceptions);
         } catch (FileException e) {
-          if (exception == null) {
-            exception = e;
-          } else {
-            exception.addSuppressed(e);
-          }
-        } finally {
-          try {
-            // There is a bug in tape queue implementation making byte array full of 0 written. To
-            // recover and not block the queue at this point, we always remove the first element
-            // even in case of error.
-            // It is not possible to detect this in the offer method, because elements are added at
-            // the end of the queue and we can only peek at the beginning of it.
-            if (queue.size() > 0) {
-              queue.remove();
-            }
-          } catch (FileException e) {
-            if (exception == null) {
-              exception = e;
-            } else {
-              exception.addSuppressed(e);
-            }
-          }
+          // Nothing was removed, fallback on the element by element polling to recover
+          exceptions.add(e);
         }
       }
 
-      if (exception != null) {
+      if (elements == null) {
+        elements = pollOneByOne(queue, max, exceptions);
+      }
+
+      if (!exceptions.isEmpty()) {
+        Exception exception = exceptions.get(0);
+        for (int i = 1; i < exceptions.size(); i++) {
+          exception.addSuppressed(exceptions.get(i));
+        }
         logger.log(onErrorWhenPollingQueueFile(exception));
       }
 
@@ -128,6 +123,45 @@ class TapeSendingQueue<T> implements ConcurrentSendingQueue<T> {
     }
   }
 
+  @GuardedBy("queueLock")
+  @NonNull
+  private List<T> pollOneByOne(
+      @NonNull ObjectQueue<T> queue,
+      int max,
+      @NonNull List<Exception> exceptions
+  ) {
+    List<T> elements = new ArrayList<>();
+
+    for (int i = 0; i < max; i++) {
+      try {
+        T element = queue.peek();
+
+        if (element == null) {
+          break;
+        }
+
+        elements.add(element);
+      } catch (FileException e) {
+        exceptions.add(e);
+      } finally {
+        try {
+          // There is a bug in tape queue implementation making byte array full of 0 written. To
+          // recover and not block the queue at this point, we always remove the first element
+          // even in case of error.
+          // It is not possible to detect this in the offer method, because elements are added at
+          // the end of the queue and we can only peek at the beginning of it.
+          if (queue.size() > 0) {
+            queue.remove();
+          }
+        } catch (FileException e) {
+          exceptions.add(e);
+        }
+      }
+    }
+
+    return elements;
+  }
+
   @Override
   public int getTotalSize() {
     synchronized (queueLock) {
@@ -138,47 +172,16 @@ class TapeSendingQueue<T> implements ConcurrentSendingQueue<T> {
       // the capacity of the queue.
       // Moreover the file is shrinked after some removal. This is a detail of the implementation.
       // And even if we make some room in the queue, we will not see it.
-      // There is a usedBytes method in the internal queueFile of the file object queue. This method
-      // is used to get the real size of the queue.
+      // The sized queue keeps track of the bytes really used in the file, so this is cheap.
 
       ObjectQueue<T> queue = createQueueIfNecessary();
 
-      if (!(queue instanceof FileObjectQueue)) {
+      if (!(queue instanceof SizedFileObjectQueue)) {
         return 0;
       }
 
-      try {
-        Method usedBytesMethod = getUsedBytesMethod();
-        QueueFile queueFile = getQueueFile((FileObjectQueue) queue);
-        return (Integer) usedBytesMethod.invoke(queueFile);
-      } catch (Exception e) {
-        PreconditionsUtil.throwOrLog(e);
-        return 0;
-      }
-    }
-  }
-
-  @NonNull
-  private Method getUsedBytesMethod() throws ReflectiveOperationException {
-    if (usedBytesMethod == null) {
-      usedBytesMethod = QueueFile.class.getDeclaredMethod("usedBytes");
-      usedBytesMethod.setAccessible(true);
+      return ((SizedFileObjectQueue<T>) queue).getUsedBytes();
     }
-
-    return usedBytesMethod;
-  }
-
-  @NonNull
-  @VisibleForTesting
-  QueueFile getQueueFile(@NonNull FileObjectQueue<?> fileObjectQueue)
-      throws ReflectiveOperationException, ClassCastException {
-    if (queueFile == null) {
-      Field queueFileField = FileObjectQueue.class.getDeclaredField("queueFile");
-      queueFileField.setAccessible(true);
-      queueFile = (QueueFile) queueFileField.get(fileObjectQueue);
-    }
-
-    return queueFile;
   }
 
   private ObjectQueue<T> createQueueIfNecessary() {
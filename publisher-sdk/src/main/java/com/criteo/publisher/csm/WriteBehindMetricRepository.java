@@ -0,0 +1,231 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.criteo.publisher.SafeRunnable;
+import com.criteo.publisher.util.BuildConfigWrapper;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep metric updates in memory and write them later in the delegate repository.
+ * <p>
+ * The state of a metric changes several times within a few hundred milliseconds after its CDB call
+ * (call start, call end, cached bid). Updates of the same impression are merged and written at once
+ * in the delegate:
+ * <ul>
+ *   <li>after a delay (see {@link BuildConfigWrapper#getCsmWriteBehindDelayInMillis()}),</li>
+ *   <li>when too many metrics are pending (see
+ *   {@link BuildConfigWrapper#getCsmWriteBehindMaxPendingMetrics()}),</li>
+ *   <li>when an update makes a metric ready to send,</li>
+ *   <li>before a metric is moved or read,</li>
+ *   <li>on explicit {@link #flush()}, for instance when the application is stopped.</li>
+ * </ul>
+ * Pending updates are lost if the application is killed before they are written. This is the same
+ * as if the events were received a bit later.
+ */
+class WriteBehindMetricRepository extends MetricRepository {
+
+  @NonNull
+  private final MetricRepository delegate;
+
+  @NonNull
+  private final Executor executor;
+
+  @NonNull
+  private final ScheduledExecutorService scheduledExecutorService;
+
+  @NonNull
+  private final BuildConfigWrapper buildConfigWrapper;
+
+  @NonNull
+  private final Object pendingLock = new Object();
+
+  /**
+   * Updates not yet written in the delegate, by impression ID and in order of arrival.
+   */
+  @GuardedBy("pendingLock")
+  @NonNull
+  private final Map<String, List<MetricUpdater>> pendingUpdatersById = new LinkedHashMap<>();
+
+  @GuardedBy("pendingLock")
+  private boolean isFlushScheduled = false;
+
+  /**
+   * Serialize writes in the delegate, so updates of a same metric are applied in order even when
+   * flushes are concurrent.
+   */
+  @NonNull
+  private final Object flushLock = new Object();
+
+  WriteBehindMetricRepository(
+      @NonNull MetricRepository delegate,
+      @NonNull Executor executor,
+      @NonNull ScheduledExecutorService scheduledExecutorService,
+      @NonNull BuildConfigWrapper buildConfigWrapper
+  ) {
+    this.delegate = delegate;
+    this.executor = executor;
+    this.scheduledExecutorService = scheduledExecutorService;
+    this.buildConfigWrapper = buildConfigWrapper;
+  }
+
+  @Override
+  void addOrUpdateById(@NonNull String impressionId, @NonNull MetricUpdater updater) {
+    // Updaters only set fields, so this tells if this update ends the lifecycle of the metric
+    Metric.Builder builder = Metric.builder(impressionId);
+    updater.update(builder);
+    boolean isReadyToSend = builder.build().isReadyToSend();
+
+    int pendingMetrics;
+    synchronized (pendingLock) {
+      List<MetricUpdater> pendingUpdaters = pendingUpdatersById.get(impressionId);
+      if (pendingUpdaters == null) {
+        pendingUpdaters = new ArrayList<>();
+        pendingUpdatersById.put(impressionId, pendingUpdaters);
+      }
+      pendingUpdaters.add(updater);
+      pendingMetrics = pendingUpdatersById.size();
+
+      if (!isReadyToSend && !isFlushScheduled) {
+        isFlushScheduled = true;
+        scheduleFlush();
+      }
+    }
+
+    if (isReadyToSend) {
+      flush(impressionId);
+    } else if (pendingMetrics >= buildConfigWrapper.getCsmWriteBehindMaxPendingMetrics()) {
+      flush();
+    }
+  }
+
+  @Override
+  void moveById(@NonNull String impressionId, @NonNull MetricMover mover) {
+    synchronized (flushLock) {
+      flush(impressionId);
+      delegate.moveById(impressionId, mover);
+    }
+  }
+
+  @Override
+  int moveByIds(@NonNull Collection<String> impressionIds, @NonNull MetricBatchMover mover) {
+    synchronized (flushLock) {
+      for (String impressionId : impressionIds) {
+        flush(impressionId);
+      }
+      return delegate.moveByIds(impressionIds, mover);
+    }
+  }
+
+  @NonNull
+  @Override
+  Collection<Metric> getAllStoredMetrics() {
+    flush();
+    return delegate.getAllStoredMetrics();
+  }
+
+  @Nullable
+  @Override
+  Metric getById(@NonNull String impressionId) {
+    flush(impressionId);
+    return delegate.getById(impressionId);
+  }
+
+  /**
+   * Returns the size of the metrics written in the delegate. Pending updates are not counted.
+   */
+  @Override
+  int getTotalSize() {
+    return delegate.getTotalSize();
+  }
+
+  @Override
+  boolean contains(@NonNull String impressionId) {
+    synchronized (pendingLock) {
+      if (pendingUpdatersById.containsKey(impressionId)) {
+        return true;
+      }
+    }
+    return delegate.contains(impressionId);
+  }
+
+  @Override
+  void flush() {
+    synchronized (flushLock) {
+      Map<String, List<MetricUpdater>> pendingUpdaters;
+      synchronized (pendingLock) {
+        pendingUpdaters = new LinkedHashMap<>(pendingUpdatersById);
+        pendingUpdatersById.clear();
+      }
+
+      for (Entry<String, List<MetricUpdater>> entry : pendingUpdaters.entrySet()) {
+        write(entry.getKey(), entry.getValue());
+      }
+
+      delegate.flush();
+    }
+  }
+
+  private void flush(@NonNull String impressionId) {
+    synchronized (flushLock) {
+      List<MetricUpdater> pendingUpdaters;
+      synchronized (pendingLock) {
+        pendingUpdaters = pendingUpdatersById.remove(impressionId);
+      }
+
+      if (pendingUpdaters != null) {
+        write(impressionId, pendingUpdaters);
+      }
+    }
+  }
+
+  @GuardedBy("flushLock")
+  private void write(@NonNull String impressionId, @NonNull List<MetricUpdater> updaters) {
+    delegate.addOrUpdateById(impressionId, builder -> {
+      for (MetricUpdater updater : updaters) {
+        updater.update(builder);
+      }
+    });
+  }
+
+  @GuardedBy("pendingLock")
+  private void scheduleFlush() {
+    int delayInMillis = buildConfigWrapper.getCsmWriteBehindDelayInMillis();
+
+    // The scheduled executor is shared, so the actual write is done on the executor
+    scheduledExecutorService.schedule(() -> executor.execute(new SafeRunnable() {
+      @Override
+      public void runSafely() {
+        synchronized (pendingLock) {
+          isFlushScheduled = false;
+        }
+        flush();
+      }
+    }), delayInMillis, TimeUnit.MILLISECONDS);
+  }
+}
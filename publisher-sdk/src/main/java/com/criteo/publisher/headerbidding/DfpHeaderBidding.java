@@ -18,6 +18,7 @@ package com.criteo.publisher.headerbidding;
 
 import android.content.res.Configuration;
 import android.util.Base64;
+import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
@@ -123,7 +124,12 @@ public class DfpHeaderBidding implements HeaderBiddingHandler {
         break;
     }
 
-    logger.log(AppBiddingLogMessage.onAdObjectEnrichedSuccessfully(getIntegration(), builder.getDescription()));
+    if (logger.isLoggable(Log.INFO)) {
+      String description = builder.getDescription();
+      logger.log(
+          AppBiddingLogMessage.onAdObjectEnrichedSuccessfully(getIntegration(), description)
+      );
+    }
   }
 
   /**
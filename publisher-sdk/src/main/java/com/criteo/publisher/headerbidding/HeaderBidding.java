@@ -16,6 +16,7 @@
 
 package com.criteo.publisher.headerbidding;
 
+import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.criteo.publisher.Bid;
@@ -44,7 +45,7 @@ public class HeaderBidding {
   }
 
   public void enrichBid(@Nullable Object object, @Nullable Bid bid) {
-    logger.log(AppBiddingLogMessage.onTryingToEnrichAdObjectFromBid(bid));
+    logger.log(Log.INFO, AppBiddingLogMessage::onTryingToEnrichAdObjectFromBid, bid);
 
     if (object != null) {
       for (HeaderBiddingHandler handler : handlers) {
@@ -55,7 +56,11 @@ public class HeaderBidding {
           handler.cleanPreviousBid(object);
 
           if (slot == null) {
-            logger.log(AppBiddingLogMessage.onAdObjectEnrichedWithNoBid(handler.getIntegration()));
+            logger.log(
+                Log.INFO,
+                AppBiddingLogMessage::onAdObjectEnrichedWithNoBid,
+                handler.getIntegration()
+            );
             return;
           }
 
@@ -65,7 +70,7 @@ public class HeaderBidding {
       }
     }
 
-    logger.log(AppBiddingLogMessage.onUnknownAdObjectEnriched(object));
+    logger.log(Log.ERROR, AppBiddingLogMessage::onUnknownAdObjectEnriched, object);
   }
 
 }
@@ -18,6 +18,7 @@ package com.criteo.publisher.headerbidding;
 
 import static com.criteo.publisher.util.ReflectionUtil.isInstanceOf;
 
+import android.util.Log;
 import androidx.annotation.NonNull;
 import com.criteo.publisher.integration.Integration;
 import com.criteo.publisher.logging.Logger;
@@ -128,7 +129,12 @@ public class MoPubHeaderBidding implements HeaderBiddingHandler {
 
     ReflectionUtil.callMethodOnObject(object, "setKeywords", newKeywords);
 
-    logger.log(AppBiddingLogMessage.onAdObjectEnrichedSuccessfully(getIntegration(), keywords.toString()));
+    if (logger.isLoggable(Log.INFO)) {
+      String description = keywords.toString();
+      logger.log(
+          AppBiddingLogMessage.onAdObjectEnrichedSuccessfully(getIntegration(), description)
+      );
+    }
   }
 
 }
@@ -16,6 +16,7 @@
 
 package com.criteo.publisher.headerbidding;
 
+import android.util.Log;
 import androidx.annotation.NonNull;
 import com.criteo.publisher.integration.Integration;
 import com.criteo.publisher.logging.Logger;
@@ -71,15 +72,22 @@ public class OtherAdServersHeaderBidding implements HeaderBiddingHandler {
     map.put(CRT_DISPLAY_URL, slot.getDisplayUrl());
     map.put(CRT_CPM, slot.getCpm());
 
-    String description = CRT_DISPLAY_URL + "=" + slot.getDisplayUrl() + "," + CRT_CPM + "=" + slot.getCpm();
-
+    String size = null;
     if (adUnitType == AdUnitType.CRITEO_BANNER) {
-      String size = slot.getWidth() + "x" + slot.getHeight();
+      size = slot.getWidth() + "x" + slot.getHeight();
       map.put(CRT_SIZE, size);
-      description = description + "," + CRT_SIZE + "=" + size;
     }
 
-    logger.log(AppBiddingLogMessage.onAdObjectEnrichedSuccessfully(getIntegration(), description));
+    if (logger.isLoggable(Log.INFO)) {
+      String description = CRT_DISPLAY_URL + "=" + slot.getDisplayUrl()
+          + "," + CRT_CPM + "=" + slot.getCpm();
+      if (size != null) {
+        description = description + "," + CRT_SIZE + "=" + size;
+      }
+      logger.log(
+          AppBiddingLogMessage.onAdObjectEnrichedSuccessfully(getIntegration(), description)
+      );
+    }
   }
 
 }
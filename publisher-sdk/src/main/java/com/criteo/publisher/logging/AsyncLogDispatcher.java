@@ -0,0 +1,308 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.criteo.publisher.logging;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.criteo.publisher.Clock;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Move the handling of log messages out of the calling threads.
+ * <p>
+ * Callers publish their message in a bounded ring, and a single background thread gives them to
+ * the handlers of their logger. Publishing does not take any lock: a caller claims a slot by
+ * incrementing the producer sequence, fills it, and then publishes it by updating the sequence of
+ * the slot. If the ring is full, the message is dropped and counted, so callers are never blocked
+ * by a slow handler. The number of dropped messages is reported once the ring drains.
+ * <p>
+ * As handling is delayed, the name of the calling thread and the time of the call are captured in
+ * the slot when the message is published. They are attached to the message on the background
+ * thread, so publishing does not allocate.
+ */
+public class AsyncLogDispatcher {
+
+  private static final String TAG = LogTag.with("AsyncLogDispatcher");
+
+  /**
+   * Maximum duration that the shutdown of the VM waits for pending messages to be handled.
+   */
+  private static final long SHUTDOWN_FLUSH_TIMEOUT_IN_MILLIS = 500;
+
+  @NonNull
+  private final ThreadFactory threadFactory;
+
+  @NonNull
+  private final Clock clock;
+
+  private final int mask;
+
+  /**
+   * Slots are allocated once and reused, so publishing a message does not allocate.
+   */
+  @NonNull
+  private final Slot[] slots;
+
+  /**
+   * For a slot at index <code>i</code>, a sequence <code>s</code> such that
+   * <code>s % capacity == i</code> means that the slot is free for the producer at position
+   * <code>s</code>, and <code>s + 1</code> means that it holds the message published at position
+   * <code>s</code>.
+   */
+  @NonNull
+  private final AtomicLongArray slotSequences;
+
+  @NonNull
+  private final AtomicLong producerSequence = new AtomicLong(0);
+
+  /**
+   * Only written by the consumer thread.
+   */
+  private volatile long consumerSequence = 0;
+
+  @NonNull
+  private final AtomicLong droppedCount = new AtomicLong(0);
+
+  private long reportedDroppedCount = 0;
+
+  @NonNull
+  private final AtomicBoolean isStarted = new AtomicBoolean(false);
+
+  @Nullable
+  private volatile Thread consumerThread;
+
+  /**
+   * Set by the consumer before it checks the ring a last time and parks, read by producers after
+   * they publish. So either the consumer sees the new message, or the producer sees the consumer
+   * parked and wakes it up: the consumer never sleeps with a pending message.
+   */
+  private volatile boolean isConsumerParked = false;
+
+  /**
+   * @param capacity number of messages that can be pending, rounded up to a power of 2
+   * @param threadFactory factory of the consumer thread, started on the first message
+   * @param clock clock giving the time of the calls
+   */
+  public AsyncLogDispatcher(
+      int capacity,
+      @NonNull ThreadFactory threadFactory,
+      @NonNull Clock clock
+  ) {
+    int roundedCapacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+    this.threadFactory = threadFactory;
+    this.clock = clock;
+    this.mask = roundedCapacity - 1;
+    this.slots = new Slot[roundedCapacity];
+    this.slotSequences = new AtomicLongArray(roundedCapacity);
+    for (int i = 0; i < roundedCapacity; i++) {
+      slots[i] = new Slot();
+      slotSequences.set(i, i);
+    }
+  }
+
+  /**
+   * Publish the given message, to be handled by the handlers of the given logger on the consumer
+   * thread.
+   *
+   * @return <code>false</code> if the ring is full and the message is dropped
+   */
+  public boolean offer(@NonNull Logger logger, @NonNull LogMessage logMessage) {
+    startIfNeeded();
+
+    long sequence;
+    while (true) {
+      sequence = producerSequence.get();
+      long slotSequence = slotSequences.get(index(sequence));
+      if (slotSequence < sequence) {
+        // The consumer did not free this slot yet: the ring is full
+        droppedCount.incrementAndGet();
+        return false;
+      }
+
+      if (slotSequence == sequence && producerSequence.compareAndSet(sequence, sequence + 1)) {
+        break;
+      }
+      // Another producer claimed this position first, retry with the next one
+    }
+
+    Slot slot = slots[index(sequence)];
+    slot.logger = logger;
+    slot.logMessage = logMessage;
+    slot.threadName = Thread.currentThread().getName();
+    slot.timestamp = clock.getCurrentTimeInMillis();
+    slotSequences.set(index(sequence), sequence + 1);
+
+    if (isConsumerParked) {
+      LockSupport.unpark(consumerThread);
+    }
+    return true;
+  }
+
+  /**
+   * Indicate if the current thread is the consumer thread. Messages logged while handling a message
+   * should be handled directly, else a handler logging on each message would never let the ring
+   * drain.
+   */
+  public boolean isConsumerThread() {
+    return Thread.currentThread() == consumerThread;
+  }
+
+  /**
+   * Number of messages dropped since the creation of this dispatcher because the ring was full.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Wait until all the messages published before this call are handled, or until the timeout
+   * expires.
+   *
+   * @return <code>true</code> if all messages were handled
+   */
+  public boolean flush(long timeoutInMillis) {
+    long targetSequence = producerSequence.get();
+    if (consumerSequence >= targetSequence) {
+      return true;
+    }
+
+    if (isConsumerThread() || consumerThread == null) {
+      // The consumer can not make progress while we wait for it
+      return false;
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMillis);
+    while (consumerSequence < targetSequence) {
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      LockSupport.unpark(consumerThread);
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    return true;
+  }
+
+  /**
+   * Handle the pending messages, for a bounded time, when the VM shuts down.
+   * <p>
+   * The default uncaught exception handler belongs to the application, so the SDK does not replace
+   * it: messages still pending when the application crashes may be lost.
+   */
+  public void installShutdownFlushHook() {
+    Runtime.getRuntime().addShutdownHook(
+        new Thread(() -> flush(SHUTDOWN_FLUSH_TIMEOUT_IN_MILLIS), "criteo-logging-shutdown")
+    );
+  }
+
+  private void startIfNeeded() {
+    if (consumerThread != null || !isStarted.compareAndSet(false, true)) {
+      return;
+    }
+
+    Thread thread = threadFactory.newThread(this::consume);
+    consumerThread = thread;
+    thread.start();
+  }
+
+  @SuppressWarnings("InfiniteLoopStatement")
+  private void consume() {
+    while (true) {
+      if (!handleNext()) {
+        reportDroppedMessages();
+        park();
+      }
+    }
+  }
+
+  /**
+   * Handle the message at the consumer position if it is published.
+   *
+   * @return <code>false</code> if there is no such message
+   */
+  @VisibleForTesting
+  boolean handleNext() {
+    long sequence = consumerSequence;
+    int index = index(sequence);
+    if (slotSequences.get(index) != sequence + 1) {
+      return false;
+    }
+
+    Slot slot = slots[index];
+    Logger logger = slot.logger;
+    LogMessage logMessage = slot.logMessage;
+    String threadName = slot.threadName;
+    long timestamp = slot.timestamp;
+    slot.logger = null;
+    slot.logMessage = null;
+    slot.threadName = null;
+
+    // Free the slot for the producer coming one lap later
+    slotSequences.set(index, sequence + slots.length);
+    consumerSequence = sequence + 1;
+
+    if (logger != null && logMessage != null && threadName != null) {
+      logger.handle(logMessage.withCallerContext(threadName, timestamp));
+    }
+    return true;
+  }
+
+  private void park() {
+    isConsumerParked = true;
+    try {
+      // Check again after announcing the park, a producer may have published in between
+      if (slotSequences.get(index(consumerSequence)) != consumerSequence + 1) {
+        LockSupport.park(this);
+      }
+    } finally {
+      isConsumerParked = false;
+    }
+  }
+
+  private void reportDroppedMessages() {
+    long currentDroppedCount = droppedCount.get();
+    long newlyDroppedCount = currentDroppedCount - reportedDroppedCount;
+    if (newlyDroppedCount > 0) {
+      reportedDroppedCount = currentDroppedCount;
+      Log.w(TAG, newlyDroppedCount + " log messages were dropped because too many were pending");
+    }
+  }
+
+  private int index(long sequence) {
+    return (int) (sequence & mask);
+  }
+
+  private static class Slot {
+    @Nullable
+    Logger logger;
+
+    @Nullable
+    LogMessage logMessage;
+
+    @Nullable
+    String threadName;
+
+    long timestamp;
+  }
+}
@@ -20,4 +20,10 @@ internal interface LogHandler {
 
   @Throws(Exception::class)
   fun log(tag: String, logMessage: LogMessage)
+
+  /**
+   * Indicate if a message with the given level would be logged by this handler. This lets callers
+   * skip building expensive messages that would be dropped anyway.
+   */
+  fun isLoggable(level: Int): Boolean = true
 }
@@ -0,0 +1,103 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.criteo.publisher.logging;
+
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.criteo.publisher.dependency.LazyDependency;
+import java.util.List;
+
+/**
+ * Lowest level of messages that at least one handler logs, so loggers can skip other messages
+ * before building them. Checking a level only costs a volatile read.
+ * <p>
+ * The gate never drops a message that a handler would log. Until the SDK is initialized, handlers
+ * can not tell what they log, so all levels are considered loggable. Then, the gate is computed
+ * again each time the inputs of the handlers may change: the console level is set during the
+ * initialization, while the remote log level and the consent are stored in the shared preferences
+ * of the SDK.
+ */
+public class LogLevelGate implements OnSharedPreferenceChangeListener {
+
+  @NonNull
+  private final List<LazyDependency<LogHandler>> handlers;
+
+  private volatile int minLoggableLevel = Log.VERBOSE;
+
+  public LogLevelGate(@NonNull List<LazyDependency<LogHandler>> handlers) {
+    this.handlers = handlers;
+  }
+
+  /**
+   * @param level Android log level of a message
+   * @return <code>false</code> if no handler would log a message of this level
+   */
+  public boolean isLoggable(int level) {
+    return level >= minLoggableLevel;
+  }
+
+  /**
+   * Compute the gate now, and again each time the given preferences change.
+   * <p>
+   * The preferences keep a weak reference on their listeners, so this gate should be kept alive by
+   * its owner.
+   */
+  public void watch(@NonNull SharedPreferences sharedPreferences) {
+    sharedPreferences.registerOnSharedPreferenceChangeListener(this);
+    refresh();
+  }
+
+  @Override
+  public void onSharedPreferenceChanged(
+      @NonNull SharedPreferences sharedPreferences,
+      @Nullable String key
+  ) {
+    refresh();
+  }
+
+  /**
+   * Compute the lowest level logged by the handlers.
+   * <p>
+   * Handlers filter messages with a minimum level, so only the lowest level logged by each handler
+   * matters.
+   */
+  public synchronized void refresh() {
+    int newMinLoggableLevel = Log.ASSERT + 1;
+
+    for (LazyDependency<LogHandler> handler : handlers) {
+      try {
+        LogHandler logHandler = handler.get();
+        for (int level = Log.VERBOSE; level < newMinLoggableLevel; level++) {
+          if (logHandler.isLoggable(level)) {
+            newMinLoggableLevel = level;
+            break;
+          }
+        }
+      } catch (Exception e) {
+        // In doubt, consider that all messages are loggable
+        newMinLoggableLevel = Log.VERBOSE;
+        break;
+      }
+    }
+
+    minLoggableLevel = newMinLoggableLevel;
+  }
+}
@@ -18,9 +18,28 @@ package com.criteo.publisher.logging
 
 import android.util.Log
 
-internal data class LogMessage(
+internal data class LogMessage @JvmOverloads constructor(
     val level: Int = Log.INFO,
     val message: String?,
     val throwable: Throwable? = null,
-    val logId: String? = null
-)
+    val logId: String? = null,
+
+    /**
+     * Name of the thread that logged this message, if it is handled on another thread.
+     */
+    val threadName: String? = null,
+
+    /**
+     * Time in milliseconds at which this message was logged, if it is handled later.
+     */
+    val timestamp: Long? = null
+) {
+
+  /**
+   * Capture the context of the caller, before handing this message over to another thread.
+   */
+  fun withCallerContext(threadName: String, timestamp: Long) = copy(
+      threadName = threadName,
+      timestamp = timestamp
+  )
+}
@@ -18,7 +18,7 @@ package com.criteo.publisher.logging;
 
 import android.util.Log;
 import androidx.annotation.NonNull;
-import androidx.annotation.VisibleForTesting;
+import androidx.annotation.Nullable;
 import com.criteo.publisher.dependency.LazyDependency;
 import java.util.List;
 
@@ -32,6 +32,12 @@ public class Logger {
   @NonNull
   private final List<LazyDependency<LogHandler>> handlers;
 
+  @Nullable
+  private final AsyncLogDispatcher asyncLogDispatcher;
+
+  @Nullable
+  private final LogLevelGate logLevelGate;
+
   /**
    * Indicate if one handler is logging another message and prevent infinite recursive loop.
    *
@@ -72,35 +78,134 @@ public class Logger {
     }
   };
 
-  public Logger(
-      @NonNull Class<?> klass,
-      @NonNull List<LazyDependency<LogHandler>> handlers
-  ) {
-    this(klass.getSimpleName(), handlers);
-  }
-
-  @VisibleForTesting
+  /**
+   * Loggers are created by the {@link LoggerFactory}.
+   */
   Logger(
       @NonNull String tag,
-      @NonNull List<LazyDependency<LogHandler>> handlers
+      @NonNull List<LazyDependency<LogHandler>> handlers,
+      @Nullable AsyncLogDispatcher asyncLogDispatcher,
+      @Nullable LogLevelGate logLevelGate
   ) {
     this.tag = tag;
     this.handlers = handlers;
+    this.asyncLogDispatcher = asyncLogDispatcher;
+    this.logLevelGate = logLevelGate;
   }
 
   public void debug(Throwable thrown) {
-    log(new LogMessage(Log.DEBUG, null, thrown, null));
+    if (isEnabled(Log.DEBUG)) {
+      log(new LogMessage(Log.DEBUG, null, thrown, null));
+    }
   }
 
   public void debug(String message, Throwable thrown) {
-    log(new LogMessage(Log.DEBUG, message, thrown, null));
+    if (isEnabled(Log.DEBUG)) {
+      log(new LogMessage(Log.DEBUG, message, thrown, null));
+    }
   }
 
+  /**
+   * Same as {@link #debug(String, Object...)} without allocating an array for the argument.
+   */
+  public void debug(String message, Object arg) {
+    if (isEnabled(Log.DEBUG)) {
+      log(new LogMessage(Log.DEBUG, String.format(message, arg), null, null));
+    }
+  }
+
+  /**
+   * Log a debug message formatted with the given arguments. The message is only formatted if debug
+   * messages are loggable.
+   */
   public void debug(String message, Object... args) {
-    log(new LogMessage(Log.DEBUG, String.format(message, args), null, null));
+    if (isEnabled(Log.DEBUG)) {
+      log(new LogMessage(Log.DEBUG, String.format(message, args), null, null));
+    }
+  }
+
+  /**
+   * Log the message built by the given factory, only if the given level is loggable.
+   * <p>
+   * When the level is not loggable, this costs a volatile read and no allocation, as long as the
+   * factory does not capture anything: prefer a reference to a static method, such as
+   * <code>BannerLogMessage::onBannerViewLoading</code>, with the argument given separately.
+   *
+   * @param level level of the message built by the factory
+   * @param factory factory of the message
+   * @param arg argument given to the factory
+   */
+  public <T> void log(int level, @NonNull MessageFactory<T> factory, T arg) {
+    if (isEnabled(level)) {
+      log(factory.create(arg));
+    }
   }
 
+  /**
+   * Same as {@link #log(int, MessageFactory, Object)} with a factory taking two arguments.
+   */
+  public <T, U> void log(int level, @NonNull BiMessageFactory<T, U> factory, T arg1, U arg2) {
+    if (isEnabled(level)) {
+      log(factory.create(arg1, arg2));
+    }
+  }
+
+  /**
+   * Indicate if a message with the given level would be logged by at least one handler.
+   * <p>
+   * This should be used to avoid building expensive messages that would be dropped anyway.
+   *
+   * @param level Android log level of the message
+   * @return <code>true</code> if the message would be logged
+   */
+  public boolean isLoggable(int level) {
+    if (logLevelGate != null) {
+      return logLevelGate.isLoggable(level);
+    }
+
+    for (LazyDependency<LogHandler> handler : handlers) {
+      try {
+        if (handler.get().isLoggable(level)) {
+          return true;
+        }
+      } catch (Exception e) {
+        // In doubt, consider that the message is loggable
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Give the message to the handlers.
+   * <p>
+   * If this logger has an {@link AsyncLogDispatcher}, the message is only published here, and is
+   * handled later on the thread of the dispatcher. Handlers only run on this thread, so messages
+   * they log are handled directly there, and the recursion protection below keeps working.
+   */
   public void log(@NonNull LogMessage logMessage) {
+    if (!isEnabled(logMessage.getLevel())) {
+      return;
+    }
+
+    if (asyncLogDispatcher != null && !asyncLogDispatcher.isConsumerThread()) {
+      // If the ring is full, the message is dropped and counted by the dispatcher
+      asyncLogDispatcher.offer(this, logMessage);
+      return;
+    }
+
+    handle(logMessage);
+  }
+
+  /**
+   * Fast check of the level: without any {@link LogLevelGate}, messages are given to the handlers,
+   * and they filter them.
+   */
+  private boolean isEnabled(int level) {
+    return logLevelGate == null || logLevelGate.isLoggable(level);
+  }
+
+  void handle(@NonNull LogMessage logMessage) {
     int depth = logRecursionDepth.get();
     if (depth > 1) {
       return;
@@ -123,4 +228,14 @@ public class Logger {
     }
   }
 
+  public interface MessageFactory<T> {
+    @NonNull
+    LogMessage create(T arg);
+  }
+
+  public interface BiMessageFactory<T, U> {
+    @NonNull
+    LogMessage create(T arg1, U arg2);
+  }
+
 }
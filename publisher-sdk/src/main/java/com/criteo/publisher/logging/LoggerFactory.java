@@ -17,6 +17,7 @@
 package com.criteo.publisher.logging;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import com.criteo.publisher.DependencyProvider;
 import com.criteo.publisher.dependency.LazyDependency;
 import java.util.List;
@@ -26,8 +27,30 @@ public class LoggerFactory {
   @NonNull
   private final List<LazyDependency<LogHandler>> logHandlers;
 
+  @Nullable
+  private final AsyncLogDispatcher asyncLogDispatcher;
+
+  @Nullable
+  private final LogLevelGate logLevelGate;
+
   public LoggerFactory(@NonNull List<LazyDependency<LogHandler>> logHandlers) {
+    this(logHandlers, null, null);
+  }
+
+  /**
+   * @param asyncLogDispatcher if not <code>null</code>, messages are handled on its thread instead
+   *                           of the calling one
+   * @param logLevelGate if not <code>null</code>, messages that no handler logs are skipped before
+   *                     being built
+   */
+  public LoggerFactory(
+      @NonNull List<LazyDependency<LogHandler>> logHandlers,
+      @Nullable AsyncLogDispatcher asyncLogDispatcher,
+      @Nullable LogLevelGate logLevelGate
+  ) {
     this.logHandlers = logHandlers;
+    this.asyncLogDispatcher = asyncLogDispatcher;
+    this.logLevelGate = logLevelGate;
   }
 
   @NonNull
@@ -36,7 +59,7 @@ public class LoggerFactory {
   }
 
   public Logger createLogger(@NonNull Class<?> klass) {
-    return new Logger(klass, logHandlers);
+    return new Logger(klass.getSimpleName(), logHandlers, asyncLogDispatcher, logLevelGate);
   }
 
 }
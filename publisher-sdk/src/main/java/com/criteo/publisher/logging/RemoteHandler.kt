@@ -21,6 +21,7 @@ import com.criteo.publisher.csm.ConcurrentSendingQueue
 import com.criteo.publisher.logging.RemoteLogRecords.RemoteLogLevel.Companion.fromAndroidLogLevel
 import com.criteo.publisher.model.Config
 import com.criteo.publisher.privacy.ConsentData
+import com.criteo.publisher.util.ApplicationStoppedListener
 import java.util.concurrent.Executor
 
 internal class RemoteHandler(
@@ -28,21 +29,49 @@ internal class RemoteHandler(
     private val sendingQueue: ConcurrentSendingQueue<RemoteLogRecords>,
     private val config: Config,
     private val executor: Executor,
-    private val consentData: ConsentData
-) : LogHandler {
+    private val consentData: ConsentData,
+    private val remoteLogAggregator: RemoteLogAggregator
+) : LogHandler, ApplicationStoppedListener {
   override fun log(tag: String, logMessage: LogMessage) {
-    if (!consentData.isConsentGiven()) {
+    if (!isLoggable(logMessage.level)) {
       return
     }
 
-    fromAndroidLogLevel(logMessage.level)?.takeIf { it >= config.remoteLogLevel } ?: return
-    remoteLogRecordsFactory.createLogRecords(logMessage)?.let {
-      // Asynchronously post log to avoid doing IO on the current thread
-      executor.execute(object : SafeRunnable() {
-        override fun runSafely() {
-          sendingQueue.offer(it)
-        }
-      })
+    if (remoteLogAggregator.aggregate(logMessage)) {
+      remoteLogRecordsFactory.createLogRecords(logMessage)?.let { enqueue(it) }
+    }
+
+    sendAggregatedLogs(remoteLogAggregator.pollClosedWindows())
+  }
+
+  /**
+   * Send the logs being aggregated, as the application may be killed before their window is over.
+   */
+  override fun onApplicationStopped() {
+    sendAggregatedLogs(remoteLogAggregator.closeAllWindows())
+  }
+
+  private fun sendAggregatedLogs(aggregatedLogMessages: List<AggregatedLogMessage>) {
+    aggregatedLogMessages.forEach { aggregatedLogMessage ->
+      remoteLogRecordsFactory.createAggregatedLogRecords(aggregatedLogMessage)?.let { enqueue(it) }
+    }
+  }
+
+  private fun enqueue(logRecords: RemoteLogRecords) {
+    // Asynchronously post log to avoid doing IO on the current thread
+    executor.execute(object : SafeRunnable() {
+      override fun runSafely() {
+        sendingQueue.offer(logRecords)
+      }
+    })
+  }
+
+  override fun isLoggable(level: Int): Boolean {
+    if (!consentData.isConsentGiven()) {
+      return false
     }
+
+    val remoteLogLevel = fromAndroidLogLevel(level) ?: return false
+    return remoteLogLevel >= config.remoteLogLevel
   }
 }
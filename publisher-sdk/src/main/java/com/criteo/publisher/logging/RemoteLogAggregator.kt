@@ -0,0 +1,228 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.logging
+
+import androidx.annotation.GuardedBy
+import com.criteo.publisher.Clock
+import com.criteo.publisher.annotation.OpenForTesting
+import com.criteo.publisher.model.Config
+
+/**
+ * Fold identical remote logs together, so a recurring log does not flood the sending queue.
+ *
+ * Logs are identical when they share the same [LogMessage.logId], level, exception type and
+ * message template, where the template is the message without its numbers. The first log of a kind
+ * opens a window, during which the next identical logs are only counted. Once the window is over,
+ * they are sent as a single [AggregatedLogMessage].
+ *
+ * The duration of windows and the number of windows opened at the same time are given by the
+ * remote config. When there are too many open windows, the oldest one is closed early.
+ */
+@OpenForTesting
+internal class RemoteLogAggregator(
+    private val config: Config,
+    private val clock: Clock
+) {
+
+  private val lock = Any()
+
+  /**
+   * Open windows, in the order they were opened, which is also the order they expire in.
+   */
+  @GuardedBy("lock")
+  private val windows = LinkedHashMap<AggregationKey, Window>()
+
+  @GuardedBy("lock")
+  private val closedWindows = mutableListOf<AggregatedLogMessage>()
+
+  /**
+   * Indicate if the given message should be sent as is.
+   *
+   * If it is the first of its kind, a window is opened and `true` is returned. Else it is counted in
+   * the window already open for its kind, and it will be part of the [AggregatedLogMessage] returned
+   * by [pollClosedWindows] once this window is over.
+   */
+  fun aggregate(logMessage: LogMessage): Boolean {
+    val windowInMillis = config.remoteLogAggregationWindowInMillis
+    if (windowInMillis <= 0) {
+      return true
+    }
+
+    val now = clock.currentTimeInMillis
+    val key = AggregationKey(logMessage)
+
+    synchronized(lock) {
+      closeWindowsOpenedBefore(now - windowInMillis)
+
+      val window = windows[key]
+      if (window != null) {
+        window.add(logMessage.withCallerContext(
+            logMessage.threadName ?: Thread.currentThread().name,
+            logMessage.timestamp ?: now
+        ))
+        return false
+      }
+
+      val maxKeys = config.remoteLogAggregationMaxKeys
+      while (windows.size >= maxKeys) {
+        closeOldestWindow()
+      }
+
+      windows[key] = Window(now)
+      return true
+    }
+  }
+
+  /**
+   * Close the windows that are over and return the logs they aggregated.
+   *
+   * Windows without any aggregated log are closed silently, as their first log was already sent.
+   */
+  fun pollClosedWindows(): List<AggregatedLogMessage> {
+    val windowInMillis = config.remoteLogAggregationWindowInMillis
+
+    synchronized(lock) {
+      if (windowInMillis <= 0) {
+        closeWindowsOpenedBefore(Long.MAX_VALUE)
+      } else {
+        closeWindowsOpenedBefore(clock.currentTimeInMillis - windowInMillis)
+      }
+
+      return pollClosedWindowsLocked()
+    }
+  }
+
+  /**
+   * Close all the windows, even the ones that are not over, and return the logs they aggregated.
+   */
+  fun closeAllWindows(): List<AggregatedLogMessage> {
+    synchronized(lock) {
+      closeWindowsOpenedBefore(Long.MAX_VALUE)
+      return pollClosedWindowsLocked()
+    }
+  }
+
+  @GuardedBy("lock")
+  private fun pollClosedWindowsLocked(): List<AggregatedLogMessage> {
+    if (closedWindows.isEmpty()) {
+      return emptyList()
+    }
+
+    val polled = closedWindows.toList()
+    closedWindows.clear()
+    return polled
+  }
+
+  @GuardedBy("lock")
+  private fun closeWindowsOpenedBefore(timestamp: Long) {
+    val iterator = windows.values.iterator()
+    while (iterator.hasNext()) {
+      val window = iterator.next()
+      if (window.openedAt > timestamp) {
+        return
+      }
+
+      iterator.remove()
+      window.close()?.let { closedWindows.add(it) }
+    }
+  }
+
+  @GuardedBy("lock")
+  private fun closeOldestWindow() {
+    val iterator = windows.values.iterator()
+    if (iterator.hasNext()) {
+      val window = iterator.next()
+      iterator.remove()
+      window.close()?.let { closedWindows.add(it) }
+    }
+  }
+
+  private data class AggregationKey(
+      val logId: String?,
+      val level: Int,
+      val exceptionType: String?,
+      val messageTemplate: String?
+  ) {
+    constructor(logMessage: LogMessage) : this(
+        logMessage.logId,
+        logMessage.level,
+        logMessage.throwable?.javaClass?.name,
+        logMessage.message?.let { toTemplate(it) }
+    )
+
+    private companion object {
+      /**
+       * Replace each run of digits by a single `#`, so messages only differing by their ids,
+       * durations or counters share the same template.
+       */
+      fun toTemplate(message: String): String {
+        val template = StringBuilder(message.length)
+        var inDigits = false
+        for (char in message) {
+          if (char in '0'..'9') {
+            if (!inDigits) {
+              template.append('#')
+            }
+            inDigits = true
+          } else {
+            template.append(char)
+            inDigits = false
+          }
+        }
+        return template.toString()
+      }
+    }
+  }
+
+  private class Window(val openedAt: Long) {
+    private var occurrences = 0
+    private var firstTimestamp = 0L
+    private var latestLogMessage: LogMessage? = null
+
+    fun add(logMessage: LogMessage) {
+      if (occurrences == 0) {
+        firstTimestamp = logMessage.timestamp ?: openedAt
+      }
+      occurrences++
+      latestLogMessage = logMessage
+    }
+
+    fun close(): AggregatedLogMessage? {
+      return latestLogMessage?.let { AggregatedLogMessage(it, occurrences, firstTimestamp) }
+    }
+  }
+}
+
+/**
+ * Logs that were folded together by the [RemoteLogAggregator].
+ */
+internal data class AggregatedLogMessage(
+    /**
+     * Latest of the aggregated logs, with its caller context.
+     */
+    val logMessage: LogMessage,
+
+    /**
+     * Number of aggregated logs. This does not count the first log of the window, sent on its own.
+     */
+    val occurrences: Int,
+
+    /**
+     * Time in milliseconds at which the first of the aggregated logs was logged.
+     */
+    val firstTimestamp: Long
+)
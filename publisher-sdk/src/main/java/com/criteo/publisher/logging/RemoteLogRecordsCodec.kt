@@ -0,0 +1,106 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.logging
+
+import com.criteo.publisher.csm.EntryCodec
+import com.criteo.publisher.logging.RemoteLogRecords.RemoteLogContext
+import com.criteo.publisher.logging.RemoteLogRecords.RemoteLogLevel
+import com.criteo.publisher.logging.RemoteLogRecords.RemoteLogRecord
+import com.criteo.publisher.util.CompactEncoding.readId
+import com.criteo.publisher.util.CompactEncoding.readSignedVarLong
+import com.criteo.publisher.util.CompactEncoding.readString
+import com.criteo.publisher.util.CompactEncoding.readVarInt
+import com.criteo.publisher.util.CompactEncoding.writeId
+import com.criteo.publisher.util.CompactEncoding.writeSignedVarLong
+import com.criteo.publisher.util.CompactEncoding.writeString
+import com.criteo.publisher.util.CompactEncoding.writeVarInt
+import java.io.DataInput
+import java.io.DataOutput
+import java.io.IOException
+
+/**
+ * Compact binary format of [RemoteLogRecords].
+ *
+ * The context is written field by field, without their names. Levels are written as a single
+ * byte. Session and log IDs generated by the SDK take their raw 16 bytes.
+ *
+ * Only the part of the context that is specific to the records is stored:
+ * - the bundle ID is written only when it is not the one of this application, which is always the
+ * case for records logged by this application;
+ * - the device ID is not written, it is injected when the records are sent.
+ *
+ * Records written in version 1 held the full context, they are still readable.
+ */
+internal class RemoteLogRecordsCodec(
+    private val bundleId: String
+) : EntryCodec<RemoteLogRecords> {
+
+  override fun getVersion(): Byte = VERSION
+
+  override fun write(element: RemoteLogRecords, output: DataOutput) {
+    val context = element.context
+    writeString(output, context.version)
+    writeString(output, context.bundleId.takeIf { it != bundleId })
+    writeId(output, context.sessionId)
+    writeSignedVarLong(output, context.profileId.toLong())
+    writeString(output, context.exceptionType)
+    writeId(output, context.logId)
+
+    writeVarInt(output, element.logRecords.size)
+    element.logRecords.forEach { logRecord ->
+      output.writeByte(logRecord.level.ordinal)
+      writeVarInt(output, logRecord.messages.size)
+      logRecord.messages.forEach { writeString(output, it) }
+    }
+  }
+
+  override fun read(input: DataInput, version: Byte): RemoteLogRecords {
+    if (version != VERSION && version != VERSION_WITH_FULL_CONTEXT) {
+      throw IOException("Unsupported version: $version")
+    }
+
+    val hasFullContext = version == VERSION_WITH_FULL_CONTEXT
+    val context = RemoteLogContext(
+        version = readString(input).orMissing("version"),
+        bundleId = readString(input) ?: bundleId,
+        deviceId = if (hasFullContext) readId(input) else null,
+        sessionId = readId(input).orMissing("sessionId"),
+        profileId = readSignedVarLong(input).toInt(),
+        exceptionType = readString(input),
+        logId = readId(input)
+    )
+
+    val logRecords = List(readVarInt(input)) {
+      val level = LEVELS.getOrNull(input.readByte().toInt()) ?: throw IOException("Unknown level")
+      val messages = List(readVarInt(input)) { readString(input).orMissing("message") }
+      RemoteLogRecord(level, messages)
+    }
+
+    return RemoteLogRecords(context, logRecords)
+  }
+
+  private fun String?.orMissing(field: String): String {
+    return this ?: throw IOException("Missing $field")
+  }
+
+  private companion object {
+    const val VERSION_WITH_FULL_CONTEXT: Byte = 1
+    const val VERSION: Byte = 2
+
+    val LEVELS = RemoteLogLevel.values()
+  }
+}
@@ -28,10 +28,6 @@ import com.criteo.publisher.logging.RemoteLogRecords.RemoteLogLevel
 import com.criteo.publisher.logging.RemoteLogRecords.RemoteLogRecord
 import com.criteo.publisher.util.AdvertisingInfo
 import com.criteo.publisher.util.BuildConfigWrapper
-import java.text.SimpleDateFormat
-import java.util.Date
-import java.util.Locale
-import java.util.TimeZone
 
 @Suppress("LongParameterList")
 @OpenForTesting
@@ -45,8 +41,11 @@ internal class RemoteLogRecordsFactory(
     private val publisherCodeRemover: PublisherCodeRemover
 ) {
 
-  private val iso8601Format = SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT).apply {
-    timeZone = TimeZone.getTimeZone("UTC")
+  /**
+   * Builder of message bodies, confined to each thread creating records so it can be reused.
+   */
+  private val messageBuilder = object : ThreadLocal<StringBuilder>() {
+    override fun initialValue() = StringBuilder(INITIAL_MESSAGE_CAPACITY)
   }
 
   /**
@@ -56,8 +55,23 @@ internal class RemoteLogRecordsFactory(
    * If given message has a log level that does not match any [RemoteLogLevel], then `null` is returned.
    */
   fun createLogRecords(logMessage: LogMessage): RemoteLogRecords? {
+    return createLogRecords(logMessage, createMessageBody(logMessage, null))
+  }
+
+  /**
+   * Try to create a new payload for remote logging from the given aggregated messages.
+   *
+   * The payload is the one of the latest aggregated message, with the number of aggregated
+   * messages and the date of the first one appended to its body. As for [createLogRecords], `null`
+   * may be returned.
+   */
+  fun createAggregatedLogRecords(aggregatedLogMessage: AggregatedLogMessage): RemoteLogRecords? {
+    val logMessage = aggregatedLogMessage.logMessage
+    return createLogRecords(logMessage, createMessageBody(logMessage, aggregatedLogMessage))
+  }
+
+  private fun createLogRecords(logMessage: LogMessage, message: String?): RemoteLogRecords? {
     val remoteLogLevel = RemoteLogLevel.fromAndroidLogLevel(logMessage.level)
-    val message = createMessageBody(logMessage)
 
     if (remoteLogLevel == null || message == null) {
       return null
@@ -79,22 +93,42 @@ internal class RemoteLogRecordsFactory(
   }
 
   @VisibleForTesting
-  fun createMessageBody(logMessage: LogMessage): String? {
+  fun createMessageBody(logMessage: LogMessage): String? = createMessageBody(logMessage, null)
+
+  private fun createMessageBody(
+      logMessage: LogMessage,
+      aggregatedLogMessage: AggregatedLogMessage?
+  ): String? {
     if (logMessage.message == null && logMessage.throwable == null) {
       return null
     }
 
-    val currentDate = Date(clock.currentTimeInMillis)
-    val formattedDate = iso8601Format.format(currentDate)
+    // Computed before taking the builder, in case they log something on this thread
+    val stacktrace = logMessage.throwable?.stacktraceString
+    val threadName = logMessage.threadName ?: getCurrentThreadName()
 
-    val messageParts = listOfNotNull(
-        logMessage.message,
-        logMessage.throwable?.stacktraceString,
-        "threadId:${getCurrentThreadName()}",
-        formattedDate
-    )
+    val builder = messageBuilder.get()!!
+    builder.setLength(0)
+
+    logMessage.message?.let { builder.append(it).append(',') }
+    stacktrace?.let { builder.append(it).append(',') }
+    builder.append("threadId:").append(threadName).append(',')
+    UtcTimestampEncoder.appendTo(builder, logMessage.timestamp ?: clock.currentTimeInMillis)
+
+    if (aggregatedLogMessage != null) {
+      builder.append(",occurrences:").append(aggregatedLogMessage.occurrences)
+      builder.append(",firstOccurrence:")
+      UtcTimestampEncoder.appendTo(builder, aggregatedLogMessage.firstTimestamp)
+    }
+
+    val messageBody = builder.toString()
 
-    return messageParts.takeIf { it.isNotEmpty() }?.joinToString(",")
+    if (builder.capacity() > MAX_RETAINED_MESSAGE_CAPACITY) {
+      // Do not retain the memory of a huge stacktrace in each thread
+      messageBuilder.remove()
+    }
+
+    return messageBody
   }
 
   @VisibleForTesting
@@ -107,4 +141,9 @@ internal class RemoteLogRecordsFactory(
    */
   @VisibleForTesting
   fun getStackTraceString(throwable: Throwable): String? = Log.getStackTraceString(throwable)
+
+  private companion object {
+    const val INITIAL_MESSAGE_CAPACITY = 256
+    const val MAX_RETAINED_MESSAGE_CAPACITY = 8192
+  }
 }
@@ -16,15 +16,19 @@
 
 package com.criteo.publisher.logging
 
+import android.content.Context
+import com.criteo.publisher.csm.EntryCodec
 import com.criteo.publisher.csm.SendingQueueConfiguration
 import com.criteo.publisher.util.BuildConfigWrapper
 
 class RemoteLogSendingQueueConfiguration(
-    private val buildConfigWrapper: BuildConfigWrapper
+    private val buildConfigWrapper: BuildConfigWrapper,
+    context: Context
 ) : SendingQueueConfiguration<RemoteLogRecords> {
   override val maxSizeOfSendingQueue: Int
     get() = buildConfigWrapper.maxSizeOfRemoteLogSendingQueue
   override val queueFilename: String
     get() = buildConfigWrapper.remoteLogQueueFilename
   override val elementClass = RemoteLogRecords::class.java
+  override val codec: EntryCodec<RemoteLogRecords> = RemoteLogRecordsCodec(context.packageName)
 }
@@ -0,0 +1,101 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.logging
+
+/**
+ * Encoder of timestamps in the ISO-8601 UTC format with milliseconds, e.g.
+ * `2042-06-22T13:37:28.123Z`.
+ *
+ * Contrary to [java.text.SimpleDateFormat], this is stateless, so it is thread-safe, and it writes
+ * into the given [StringBuilder] without allocating anything: the date is computed with integer
+ * arithmetic (see the `civil_from_days` algorithm of Howard Hinnant) and digits are appended one by
+ * one.
+ */
+internal object UtcTimestampEncoder {
+
+  private const val MILLIS_PER_DAY = 86_400_000L
+
+  /**
+   * Number of days from 0000-03-01, start of the era used for the computation, to 1970-01-01.
+   */
+  private const val DAYS_FROM_ERA_START_TO_EPOCH = 719_468L
+  private const val DAYS_PER_ERA = 146_097L
+
+  /**
+   * Append the given timestamp, in milliseconds since the epoch, to the given builder.
+   */
+  fun appendTo(builder: StringBuilder, timestampInMillis: Long): StringBuilder {
+    var days = timestampInMillis / MILLIS_PER_DAY
+    var millisOfDay = timestampInMillis - days * MILLIS_PER_DAY
+    if (millisOfDay < 0) {
+      // Floor division, as Math.floorDiv is not available on all supported API levels
+      days--
+      millisOfDay += MILLIS_PER_DAY
+    }
+
+    val shiftedDays = days + DAYS_FROM_ERA_START_TO_EPOCH
+    val era = (if (shiftedDays >= 0) shiftedDays else shiftedDays - DAYS_PER_ERA + 1) / DAYS_PER_ERA
+    val dayOfEra = (shiftedDays - era * DAYS_PER_ERA).toInt()
+    val yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365
+    val dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100)
+    val shiftedMonth = (5 * dayOfYear + 2) / 153
+    val day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1
+    val month = if (shiftedMonth < 10) shiftedMonth + 3 else shiftedMonth - 9
+    val year = yearOfEra + era * 400 + if (month <= 2) 1 else 0
+
+    val millis = millisOfDay.toInt()
+
+    if (year in 0L..9999L) {
+      appendDigits(builder, year.toInt(), 4)
+    } else {
+      builder.append(year)
+    }
+    builder.append('-')
+    appendDigits(builder, month, 2)
+    builder.append('-')
+    appendDigits(builder, day, 2)
+    builder.append('T')
+    appendDigits(builder, millis / 3_600_000, 2)
+    builder.append(':')
+    appendDigits(builder, millis / 60_000 % 60, 2)
+    builder.append(':')
+    appendDigits(builder, millis / 1000 % 60, 2)
+    builder.append('.')
+    appendDigits(builder, millis % 1000, 3)
+    builder.append('Z')
+    return builder
+  }
+
+  /**
+   * Return the given timestamp, in milliseconds since the epoch, as a new string.
+   */
+  fun format(timestampInMillis: Long): String {
+    return appendTo(StringBuilder(24), timestampInMillis).toString()
+  }
+
+  private fun appendDigits(builder: StringBuilder, value: Int, digitCount: Int) {
+    var divisor = 1
+    repeat(digitCount - 1) { divisor *= 10 }
+
+    var remaining = value
+    while (divisor > 0) {
+      builder.append('0' + remaining / divisor)
+      remaining %= divisor
+      divisor /= 10
+    }
+  }
+}
@@ -18,6 +18,8 @@ package com.criteo.publisher.model;
 
 import static com.criteo.publisher.BiddingLogMessage.onInvalidAdUnit;
 
+import android.content.ComponentCallbacks;
+import android.content.res.Configuration;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
@@ -29,9 +31,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class AdUnitMapper {
+public class AdUnitMapper implements ComponentCallbacks {
 
   /**
    * Ad units are grouped into chunks so bid request size stay reasonable and this may improve the
@@ -45,19 +49,38 @@ public class AdUnitMapper {
    * <p>
    * Although, the reason may change over time and it would require a proper study.
    */
-  private static final int CHUNK_SIZE = 8;
+  public static final int CHUNK_SIZE = 8;
 
   /**
    * Special size representing a native ad.
    */
   private static final AdSize NATIVE_SIZE = new AdSize(2, 2);
 
+  /**
+   * Maximum number of ad units kept by {@link #map(AdUnit)}.
+   * <p>
+   * Publishers declare a handful of ad units, this bound only protects against integrations
+   * creating a new ad unit for each bid.
+   */
+  @VisibleForTesting
+  static final int MAX_RESOLVED_AD_UNITS = 64;
+
   @NonNull
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   @NonNull
   private final DeviceUtil deviceUtil;
 
+  /**
+   * Valid ad units already mapped by {@link #map(AdUnit)}.
+   * <p>
+   * The mapping of interstitials depends on the screen size, so this is replaced by an empty map
+   * on each configuration change. A mapping computed concurrently to a replacement ends up in the
+   * discarded map and is never read.
+   */
+  @NonNull
+  private volatile Map<AdUnit, CacheAdUnit> resolvedAdUnits = new ConcurrentHashMap<>();
+
   public AdUnitMapper(@NonNull DeviceUtil deviceUtil) {
     this.deviceUtil = deviceUtil;
   }
@@ -114,18 +137,46 @@ public class AdUnitMapper {
    * </ul>
    * <p>
    * If the ad unit is not valid, then <code>null</code> is returned instead.
+   * <p>
+   * Valid ad units are memoized, so this is a lookup without allocation once an ad unit was
+   * mapped. Memoized ad units are forgotten on {@linkplain #onConfigurationChanged(Configuration)
+   * configuration changes}, because the size of interstitials depends on the screen orientation.
    *
    * @param adUnit to transform
    * @return internal ad unit representation or <code>null</code> if given ad unit is invalid
    */
   @Nullable
   public CacheAdUnit map(@Nullable AdUnit adUnit) {
+    if (adUnit == null) {
+      return null;
+    }
+
+    Map<AdUnit, CacheAdUnit> resolvedAdUnits = this.resolvedAdUnits;
+    CacheAdUnit cacheAdUnit = resolvedAdUnits.get(adUnit);
+    if (cacheAdUnit != null) {
+      return cacheAdUnit;
+    }
+
     List<List<CacheAdUnit>> validAdUnits = mapToChunks(Collections.singletonList(adUnit));
     if (validAdUnits.isEmpty() || validAdUnits.get(0).isEmpty()) {
       return null;
-    } else {
-      return validAdUnits.get(0).get(0);
     }
+
+    cacheAdUnit = validAdUnits.get(0).get(0);
+    if (resolvedAdUnits.size() < MAX_RESOLVED_AD_UNITS) {
+      resolvedAdUnits.put(adUnit, cacheAdUnit);
+    }
+    return cacheAdUnit;
+  }
+
+  @Override
+  public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    resolvedAdUnits = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public void onLowMemory() {
+    resolvedAdUnits = new ConcurrentHashMap<>();
   }
 
   private List<CacheAdUnit> filterInvalidCacheAdUnits(Collection<CacheAdUnit> cacheAdUnits) {
@@ -50,6 +50,13 @@ public class CdbResponse {
     this.consentGiven = consentGiven;
   }
 
+  /**
+   * Read a CDB response from an already parsed JSON.
+   * <p>
+   * This is only kept for tests and benchmarks. Responses coming from the network are read directly
+   * from their stream with the {@link com.criteo.publisher.util.JsonSerializer}, see {@link
+   * CdbResponseTypeAdapter}.
+   */
   @NonNull
   public static CdbResponse fromJson(@NonNull JSONObject json) {
     Logger logger = LoggerFactory.getLogger(CdbResponse.class);
@@ -0,0 +1,197 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.criteo.publisher.logging.Logger;
+import com.criteo.publisher.logging.LoggerFactory;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read a {@link CdbResponse} in a single pass over the JSON stream, and write it back in the same
+ * format.
+ * <p>
+ * A CDB response is tolerant to errors: an invalid slot is ignored and does not prevent reading the
+ * other slots, and an invalid time to next call or consent is replaced by its default value. To
+ * keep this tolerance, each slot is first read as a tree, which is then bound to a {@link
+ * CdbResponseSlot}.
+ */
+public class CdbResponseTypeAdapter extends TypeAdapter<CdbResponse> {
+
+  public static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+      if (type.getRawType() != CdbResponse.class) {
+        return null;
+      }
+
+      return (TypeAdapter<T>) new CdbResponseTypeAdapter(
+          gson.getAdapter(JsonElement.class),
+          gson.getAdapter(CdbResponseSlot.class)
+      );
+    }
+  };
+
+  private static final String TIME_TO_NEXT_CALL = "timeToNextCall";
+  private static final String SLOTS = "slots";
+  private static final String CONSENT_GIVEN = "consentGiven";
+
+  @NonNull
+  private final Logger logger = LoggerFactory.getLogger(CdbResponseTypeAdapter.class);
+
+  @NonNull
+  private final TypeAdapter<JsonElement> elementAdapter;
+
+  @NonNull
+  private final TypeAdapter<CdbResponseSlot> slotAdapter;
+
+  CdbResponseTypeAdapter(
+      @NonNull TypeAdapter<JsonElement> elementAdapter,
+      @NonNull TypeAdapter<CdbResponseSlot> slotAdapter
+  ) {
+    this.elementAdapter = elementAdapter;
+    this.slotAdapter = slotAdapter;
+  }
+
+  @Override
+  public void write(JsonWriter out, CdbResponse value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+
+    out.beginObject();
+
+    out.name(SLOTS);
+    out.beginArray();
+    for (CdbResponseSlot slot : value.getSlots()) {
+      slotAdapter.write(out, slot);
+    }
+    out.endArray();
+
+    out.name(TIME_TO_NEXT_CALL).value(value.getTimeToNextCall());
+
+    if (value.getConsentGiven() != null) {
+      out.name(CONSENT_GIVEN).value(value.getConsentGiven());
+    }
+
+    out.endObject();
+  }
+
+  @Override
+  public CdbResponse read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+
+    int timeToNextCall = 0;
+    List<CdbResponseSlot> slots = new ArrayList<>();
+    Boolean consentGiven = null;
+
+    in.beginObject();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      switch (name) {
+        case TIME_TO_NEXT_CALL:
+          timeToNextCall = readTimeToNextCall(in);
+          break;
+        case SLOTS:
+          readSlots(in, slots);
+          break;
+        case CONSENT_GIVEN:
+          consentGiven = readConsentGiven(in);
+          break;
+        default:
+          in.skipValue();
+          break;
+      }
+    }
+    in.endObject();
+
+    return new CdbResponse(slots, timeToNextCall, consentGiven);
+  }
+
+  private int readTimeToNextCall(@NonNull JsonReader in) throws IOException {
+    JsonElement element = elementAdapter.read(in);
+    try {
+      return element.getAsInt();
+    } catch (RuntimeException e) {
+      logger.debug("Exception while reading cdb time to next call", e);
+      return 0;
+    }
+  }
+
+  private void readSlots(
+      @NonNull JsonReader in,
+      @NonNull List<CdbResponseSlot> slots
+  ) throws IOException {
+    if (in.peek() != JsonToken.BEGIN_ARRAY) {
+      logger.debug("Exception while reading slots array: %s", in.peek());
+      in.skipValue();
+      return;
+    }
+
+    in.beginArray();
+    while (in.hasNext()) {
+      JsonElement element = elementAdapter.read(in);
+      try {
+        CdbResponseSlot slot = element.isJsonObject() ? slotAdapter.fromJsonTree(element) : null;
+        if (slot != null) {
+          slots.add(slot);
+        } else {
+          logger.debug("Exception while reading slot from slots array: %s", element);
+        }
+      } catch (RuntimeException e) {
+        logger.debug("Exception while reading slot from slots array", e);
+      }
+    }
+    in.endArray();
+  }
+
+  @Nullable
+  private Boolean readConsentGiven(@NonNull JsonReader in) throws IOException {
+    JsonElement element = elementAdapter.read(in);
+    if (element.isJsonPrimitive()) {
+      JsonPrimitive primitive = element.getAsJsonPrimitive();
+      if (primitive.isBoolean()) {
+        return primitive.getAsBoolean();
+      } else if (primitive.isString() && "true".equalsIgnoreCase(primitive.getAsString())) {
+        return true;
+      } else if (primitive.isString() && "false".equalsIgnoreCase(primitive.getAsString())) {
+        return false;
+      }
+    }
+
+    logger.debug("Exception while reading consentGiven: %s", element);
+    return null;
+  }
+}
@@ -52,6 +52,10 @@ public class Config {
     private static final int LIVE_BIDDING_TIME_BUDGET_IN_MILLIS = 8_000;
     private static final boolean PREFETCH_ON_INIT_ENABLED = true;
     private static final RemoteLogLevel REMOTE_LOG_LEVEL = RemoteLogLevel.WARNING;
+    private static final int CSM_SAMPLING_WEIGHT = 1;
+    private static final int CSM_MAX_METRICS_PER_MINUTE = 600;
+    private static final int REMOTE_LOG_AGGREGATION_WINDOW_IN_MILLIS = 60_000;
+    private static final int REMOTE_LOG_AGGREGATION_MAX_KEYS = 64;
 
   }
 
@@ -156,6 +160,22 @@ public class Config {
         getOrElse(
             overrideRemoteConfig.getRemoteLogLevel(),
             baseRemoteConfig.getRemoteLogLevel()
+        ),
+        getOrElse(
+            overrideRemoteConfig.getCsmSamplingWeight(),
+            baseRemoteConfig.getCsmSamplingWeight()
+        ),
+        getOrElse(
+            overrideRemoteConfig.getCsmMaxMetricsPerMinute(),
+            baseRemoteConfig.getCsmMaxMetricsPerMinute()
+        ),
+        getOrElse(
+            overrideRemoteConfig.getRemoteLogAggregationWindowInMillis(),
+            baseRemoteConfig.getRemoteLogAggregationWindowInMillis()
+        ),
+        getOrElse(
+            overrideRemoteConfig.getRemoteLogAggregationMaxKeys(),
+            baseRemoteConfig.getRemoteLogAggregationMaxKeys()
         )
     );
   }
@@ -279,4 +299,52 @@ public class Config {
     );
   }
 
+  /**
+   * Return the sampling weight of the CSM feature: one impression out of this weight is tracked.
+   * <p>
+   * This is at least 1, meaning that all impressions are tracked.
+   */
+  public int getCsmSamplingWeight() {
+    return Math.max(1, getOrElse(
+        cachedRemoteConfig.getCsmSamplingWeight(),
+        DefaultConfig.CSM_SAMPLING_WEIGHT
+    ));
+  }
+
+  /**
+   * Return the maximum number of new metrics tracked per minute by the CSM feature.
+   * <p>
+   * A non-positive value means that there is no limit.
+   */
+  public int getCsmMaxMetricsPerMinute() {
+    return getOrElse(
+        cachedRemoteConfig.getCsmMaxMetricsPerMinute(),
+        DefaultConfig.CSM_MAX_METRICS_PER_MINUTE
+    );
+  }
+
+  /**
+   * Return the duration of the window during which identical remote logs are aggregated.
+   * <p>
+   * A non-positive value means that remote logs are not aggregated.
+   */
+  public int getRemoteLogAggregationWindowInMillis() {
+    return getOrElse(
+        cachedRemoteConfig.getRemoteLogAggregationWindowInMillis(),
+        DefaultConfig.REMOTE_LOG_AGGREGATION_WINDOW_IN_MILLIS
+    );
+  }
+
+  /**
+   * Return the maximum number of distinct remote logs aggregated at the same time.
+   * <p>
+   * This is at least 1.
+   */
+  public int getRemoteLogAggregationMaxKeys() {
+    return Math.max(1, getOrElse(
+        cachedRemoteConfig.getRemoteLogAggregationMaxKeys(),
+        DefaultConfig.REMOTE_LOG_AGGREGATION_MAX_KEYS
+    ));
+  }
+
 }
@@ -38,7 +38,11 @@ public abstract class RemoteConfigResponse {
       @Nullable Boolean liveBiddingEnabled,
       @Nullable Integer liveBiddingTimeBudgetInMillis,
       @Nullable Boolean prefetchOnInitEnabled,
-      @Nullable RemoteLogLevel remoteLogLevel
+      @Nullable RemoteLogLevel remoteLogLevel,
+      @Nullable Integer csmSamplingWeight,
+      @Nullable Integer csmMaxMetricsPerMinute,
+      @Nullable Integer remoteLogAggregationWindowInMillis,
+      @Nullable Integer remoteLogAggregationMaxKeys
   ) {
     return new AutoValue_RemoteConfigResponse(
         killSwitch,
@@ -50,7 +54,11 @@ public abstract class RemoteConfigResponse {
         liveBiddingEnabled,
         liveBiddingTimeBudgetInMillis,
         prefetchOnInitEnabled,
-        remoteLogLevel
+        remoteLogLevel,
+        csmSamplingWeight,
+        csmMaxMetricsPerMinute,
+        remoteLogAggregationWindowInMillis,
+        remoteLogAggregationMaxKeys
     );
   }
 
@@ -66,6 +74,10 @@ public abstract class RemoteConfigResponse {
         null,
         null,
         null,
+        null,
+        null,
+        null,
+        null,
         null
     );
   }
@@ -82,7 +94,11 @@ public abstract class RemoteConfigResponse {
         getLiveBiddingEnabled(),
         getLiveBiddingTimeBudgetInMillis(),
         getPrefetchOnInitEnabled(),
-        getRemoteLogLevel()
+        getRemoteLogLevel(),
+        getCsmSamplingWeight(),
+        getCsmMaxMetricsPerMinute(),
+        getRemoteLogAggregationWindowInMillis(),
+        getRemoteLogAggregationMaxKeys()
     );
   }
 
@@ -205,4 +221,49 @@ public abstract class RemoteConfigResponse {
    */
   @Nullable
   public abstract RemoteLogLevel getRemoteLogLevel();
+
+  /**
+   * Sampling of the impressions tracked by the CSM feature: one impression out of this weight is
+   * tracked, and its metric stands for this number of impressions.
+   * <p>
+   * If this value is <code>null</code>, then the previous persisted value is taken. If there is no
+   * previous value, this means that this is a fresh start of a new application, then a default
+   * value is taken.
+   */
+  @Nullable
+  public abstract Integer getCsmSamplingWeight();
+
+  /**
+   * Maximum number of new metrics tracked by the CSM feature per minute. Impressions beyond this
+   * cap are not tracked.
+   * <p>
+   * If this value is <code>null</code>, then the previous persisted value is taken. If there is no
+   * previous value, this means that this is a fresh start of a new application, then a default
+   * value is taken.
+   */
+  @Nullable
+  public abstract Integer getCsmMaxMetricsPerMinute();
+
+  /**
+   * Duration (in milliseconds) of the window during which identical remote logs are aggregated:
+   * the first one is sent as is, the next ones are folded into a single record holding their count.
+   * A non-positive value deactivates the aggregation.
+   * <p>
+   * If this value is <code>null</code>, then the previous persisted value is taken. If there is no
+   * previous value, this means that this is a fresh start of a new application, then a default
+   * value is taken.
+   */
+  @Nullable
+  public abstract Integer getRemoteLogAggregationWindowInMillis();
+
+  /**
+   * Maximum number of distinct remote logs aggregated at the same time. When this limit is reached,
+   * the oldest aggregation is closed and sent to make room for the new one.
+   * <p>
+   * If this value is <code>null</code>, then the previous persisted value is taken. If there is no
+   * previous value, this means that this is a fresh start of a new application, then a default
+   * value is taken.
+   */
+  @Nullable
+  public abstract Integer getRemoteLogAggregationMaxKeys();
 }
@@ -18,26 +18,35 @@ package com.criteo.publisher.network;
 
 import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import com.criteo.publisher.CdbCallListener;
 import com.criteo.publisher.Clock;
 import com.criteo.publisher.SafeRunnable;
 import com.criteo.publisher.context.ContextData;
+import com.criteo.publisher.model.AdUnitMapper;
 import com.criteo.publisher.model.CacheAdUnit;
 import com.criteo.publisher.model.CdbRequestFactory;
 import com.criteo.publisher.model.Config;
 import com.criteo.publisher.model.RemoteConfigRequest;
 import com.criteo.publisher.model.RemoteConfigRequestFactory;
 import com.criteo.publisher.model.RemoteConfigResponse;
+import com.criteo.publisher.network.CdbCall.BidRequest;
+import com.criteo.publisher.util.BuildConfigWrapper;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class BidRequestSender {
 
@@ -56,23 +65,48 @@ public class BidRequestSender {
   @NonNull
   private final Executor executor;
 
+  @NonNull
+  private final ScheduledExecutorService scheduledExecutorService;
+
+  @NonNull
+  private final BuildConfigWrapper buildConfigWrapper;
+
   @NonNull
   @GuardedBy("pendingTasksLock")
   private final Map<CacheAdUnit, Future<?>> pendingTasks;
   private final Object pendingTasksLock = new Object();
 
+  /**
+   * Bid requests received during the current coalescing window. They are all sent when the window
+   * ends.
+   */
+  @NonNull
+  @GuardedBy("pendingTasksLock")
+  private final List<BidRequest> coalescingBidRequests = new ArrayList<>();
+
+  /**
+   * Task ending the current coalescing window, or <code>null</code> if there is no opened window.
+   */
+  @Nullable
+  @GuardedBy("pendingTasksLock")
+  private Future<?> coalescingFlushTask = null;
+
   public BidRequestSender(
       @NonNull CdbRequestFactory cdbRequestFactory,
       @NonNull RemoteConfigRequestFactory remoteConfigRequestFactory,
       @NonNull Clock clock,
       @NonNull PubSdkApi api,
-      @NonNull Executor executor
+      @NonNull Executor executor,
+      @NonNull ScheduledExecutorService scheduledExecutorService,
+      @NonNull BuildConfigWrapper buildConfigWrapper
   ) {
     this.cdbRequestFactory = cdbRequestFactory;
     this.remoteConfigRequestFactory = remoteConfigRequestFactory;
     this.clock = clock;
     this.api = api;
     this.executor = executor;
+    this.scheduledExecutorService = scheduledExecutorService;
+    this.buildConfigWrapper = buildConfigWrapper;
     this.pendingTasks = new ConcurrentHashMap<>();
   }
 
@@ -102,6 +136,15 @@ public class BidRequestSender {
    * (successful or not). While an ad unit is pending, it cannot be requested again. So if in given
    * ones, some are pending, they will be ignored from the request. If all given ad units are
    * pending, then no call is done and listener is not notified.
+   * <p>
+   * If a {@linkplain BuildConfigWrapper#getBidRequestCoalescingWindowInMillis() coalescing window}
+   * is configured, the request is not sent directly. All requests received during the window are
+   * merged into multi-slot requests (given the same context data and up to {@link
+   * AdUnitMapper#CHUNK_SIZE} slots per request) that are sent when the window ends. Each listener
+   * is still notified only about the slots it requested.
+   * <p>
+   * Once the call is over and its ad units are not pending anymore, the listener is notified with
+   * {@link CdbCallListener#onCdbCallEnded()}, so it may request them again.
    *
    * @param adUnits ad units to request
    * @param listener listener to notify
@@ -110,6 +153,19 @@ public class BidRequestSender {
       @NonNull List<CacheAdUnit> adUnits,
       @NonNull ContextData contextData,
       @NonNull CdbCallListener listener
+  ) {
+    int coalescingWindowInMillis = buildConfigWrapper.getBidRequestCoalescingWindowInMillis();
+    if (coalescingWindowInMillis > 0) {
+      coalesceBidRequest(adUnits, contextData, listener, coalescingWindowInMillis);
+    } else {
+      sendBidRequestNow(adUnits, contextData, listener);
+    }
+  }
+
+  private void sendBidRequestNow(
+      @NonNull List<CacheAdUnit> adUnits,
+      @NonNull ContextData contextData,
+      @NonNull CdbCallListener listener
   ) {
     List<CacheAdUnit> requestedAdUnits = new ArrayList<>(adUnits);
     FutureTask<Void> task;
@@ -139,6 +195,122 @@ public class BidRequestSender {
     }
   }
 
+  private void coalesceBidRequest(
+      @NonNull List<CacheAdUnit> adUnits,
+      @NonNull ContextData contextData,
+      @NonNull CdbCallListener listener,
+      int coalescingWindowInMillis
+  ) {
+    List<CacheAdUnit> requestedAdUnits = new ArrayList<>(adUnits);
+
+    synchronized (pendingTasksLock) {
+      requestedAdUnits.removeAll(pendingTasks.keySet());
+      if (requestedAdUnits.isEmpty()) {
+        return;
+      }
+
+      if (coalescingFlushTask == null) {
+        FutureTask<Void> flushTask = new FutureTask<>(new Runnable() {
+          @Override
+          public void run() {
+            flushCoalescedBidRequests();
+          }
+        }, null);
+
+        scheduledExecutorService.schedule(flushTask, coalescingWindowInMillis, TimeUnit.MILLISECONDS);
+        coalescingFlushTask = flushTask;
+      }
+
+      coalescingBidRequests.add(new BidRequest(requestedAdUnits, contextData, listener));
+
+      // Coalesced ad units are pending until the end of their future call. They may be cancelled
+      // through the flush task until the window ends.
+      for (CacheAdUnit requestedAdUnit : requestedAdUnits) {
+        pendingTasks.put(requestedAdUnit, coalescingFlushTask);
+      }
+    }
+  }
+
+  private void flushCoalescedBidRequests() {
+    List<FutureTask<Void>> tasks = new ArrayList<>();
+
+    synchronized (pendingTasksLock) {
+      coalescingFlushTask = null;
+
+      for (List<BidRequest> chunk : chunkByContextData(coalescingBidRequests)) {
+        CdbCall call = new CdbCall(
+            api,
+            cdbRequestFactory,
+            clock,
+            chunk,
+            chunk.get(0).contextData
+        );
+
+        List<CacheAdUnit> requestedAdUnits = call.getRequestedAdUnits();
+        List<CdbCallListener> listeners = new ArrayList<>();
+        for (BidRequest bidRequest : chunk) {
+          listeners.add(bidRequest.listener);
+        }
+
+        FutureTask<Void> task = withRemovedPendingTasksAfterExecution(
+            call,
+            requestedAdUnits,
+            listeners
+        );
+        for (CacheAdUnit requestedAdUnit : requestedAdUnits) {
+          pendingTasks.put(requestedAdUnit, task);
+        }
+        tasks.add(task);
+      }
+
+      coalescingBidRequests.clear();
+    }
+
+    for (FutureTask<Void> task : tasks) {
+      executor.execute(task);
+    }
+  }
+
+  /**
+   * Group the given bid requests so that each group has the same context data and, as long as the
+   * bid requests are not bigger, at most {@link AdUnitMapper#CHUNK_SIZE} requested ad units. A bid
+   * request is never split between groups, so its listener is notified about a single call.
+   */
+  @NonNull
+  private static List<List<BidRequest>> chunkByContextData(@NonNull List<BidRequest> bidRequests) {
+    Map<ContextData, List<BidRequest>> byContextData = new LinkedHashMap<>();
+    for (BidRequest bidRequest : bidRequests) {
+      List<BidRequest> group = byContextData.get(bidRequest.contextData);
+      if (group == null) {
+        group = new ArrayList<>();
+        byContextData.put(bidRequest.contextData, group);
+      }
+      group.add(bidRequest);
+    }
+
+    List<List<BidRequest>> chunks = new ArrayList<>();
+    for (Entry<ContextData, List<BidRequest>> entry : byContextData.entrySet()) {
+      List<BidRequest> chunk = new ArrayList<>();
+      int chunkSize = 0;
+
+      for (BidRequest bidRequest : entry.getValue()) {
+        int size = bidRequest.adUnits.size();
+        if (!chunk.isEmpty() && chunkSize + size > AdUnitMapper.CHUNK_SIZE) {
+          chunks.add(chunk);
+          chunk = new ArrayList<>();
+          chunkSize = 0;
+        }
+
+        chunk.add(bidRequest);
+        chunkSize += size;
+      }
+
+      chunks.add(chunk);
+    }
+
+    return chunks;
+  }
+
   @NonNull
   private FutureTask<Void> createCdbCallTask(
       @NonNull List<CacheAdUnit> requestedAdUnits,
@@ -146,7 +318,19 @@ public class BidRequestSender {
       @NonNull CdbCallListener listener
   ) {
     CdbCall task = new CdbCall(api, cdbRequestFactory, clock, requestedAdUnits, contextData, listener);
+    return withRemovedPendingTasksAfterExecution(
+        task,
+        requestedAdUnits,
+        Collections.singletonList(listener)
+    );
+  }
 
+  @NonNull
+  private FutureTask<Void> withRemovedPendingTasksAfterExecution(
+      @NonNull Runnable task,
+      @NonNull List<CacheAdUnit> requestedAdUnits,
+      @NonNull List<CdbCallListener> listeners
+  ) {
     Runnable withRemovedPendingTasksAfterExecution = new Runnable() {
       @Override
       public void run() {
@@ -154,6 +338,10 @@ public class BidRequestSender {
           task.run();
         } finally {
           removePendingTasksWithAdUnits(requestedAdUnits);
+
+          for (CdbCallListener listener : listeners) {
+            listener.onCdbCallEnded();
+          }
         }
       }
     };
@@ -176,6 +364,12 @@ public class BidRequestSender {
         task.cancel(true);
       }
       pendingTasks.clear();
+
+      if (coalescingFlushTask != null) {
+        coalescingFlushTask.cancel(true);
+        coalescingFlushTask = null;
+      }
+      coalescingBidRequests.clear();
     }
   }
 
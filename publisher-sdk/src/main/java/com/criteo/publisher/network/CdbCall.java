@@ -17,6 +17,7 @@
 package com.criteo.publisher.network;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import com.criteo.publisher.CdbCallListener;
 import com.criteo.publisher.Clock;
 import com.criteo.publisher.SafeRunnable;
@@ -24,11 +25,28 @@ import com.criteo.publisher.context.ContextData;
 import com.criteo.publisher.model.CacheAdUnit;
 import com.criteo.publisher.model.CdbRequest;
 import com.criteo.publisher.model.CdbRequestFactory;
+import com.criteo.publisher.model.CdbRequestSlot;
 import com.criteo.publisher.model.CdbResponse;
 import com.criteo.publisher.model.CdbResponseSlot;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
+/**
+ * CDB call serving one or several bid requests, each with its own listener, in a single HTTP call.
+ * <p>
+ * A single bid request is the one-element case of a coalesced call: its listener sees the whole
+ * request and response. When several bid requests are coalesced, each listener only sees its part
+ * of the call: the request given to a listener only contains the slots it requested, and the
+ * response only contains the slots answering them. Response slots are matched to request slots by
+ * impression ID, or by placement ID if CDB did not provide one.
+ * <p>
+ * If a listener throws while handling the response, it is notified of the error instead, as if the
+ * call had failed for it. Other listeners are not affected.
+ */
 class CdbCall extends SafeRunnable {
 
   @NonNull
@@ -41,14 +59,11 @@ class CdbCall extends SafeRunnable {
   private final Clock clock;
 
   @NonNull
-  private final List<CacheAdUnit> requestedAdUnits;
+  private final List<BidRequest> bidRequests;
 
   @NonNull
   private final ContextData contextData;
 
-  @NonNull
-  private final CdbCallListener listener;
-
   CdbCall(
       @NonNull PubSdkApi pubSdkApi,
       @NonNull CdbRequestFactory cdbRequestFactory,
@@ -56,29 +71,170 @@ class CdbCall extends SafeRunnable {
       @NonNull List<CacheAdUnit> requestedAdUnits,
       @NonNull ContextData contextData,
       @NonNull CdbCallListener listener
+  ) {
+    this(
+        pubSdkApi,
+        cdbRequestFactory,
+        clock,
+        Collections.singletonList(new BidRequest(requestedAdUnits, contextData, listener)),
+        contextData
+    );
+  }
+
+  CdbCall(
+      @NonNull PubSdkApi pubSdkApi,
+      @NonNull CdbRequestFactory cdbRequestFactory,
+      @NonNull Clock clock,
+      @NonNull List<BidRequest> bidRequests,
+      @NonNull ContextData contextData
   ) {
     this.pubSdkApi = pubSdkApi;
     this.cdbRequestFactory = cdbRequestFactory;
     this.clock = clock;
-    this.requestedAdUnits = requestedAdUnits;
+    this.bidRequests = bidRequests;
     this.contextData = contextData;
-    this.listener = listener;
+  }
+
+  @NonNull
+  List<CacheAdUnit> getRequestedAdUnits() {
+    List<CacheAdUnit> adUnits = new ArrayList<>();
+    for (BidRequest bidRequest : bidRequests) {
+      adUnits.addAll(bidRequest.adUnits);
+    }
+    return adUnits;
   }
 
   @Override
   public void runSafely() throws ExecutionException, InterruptedException {
-    CdbRequest cdbRequest = cdbRequestFactory.createRequest(requestedAdUnits, contextData);
+    CdbRequest cdbRequest = cdbRequestFactory.createRequest(getRequestedAdUnits(), contextData);
     String userAgent = cdbRequestFactory.getUserAgent().get();
 
-    listener.onCdbRequest(cdbRequest);
+    List<CdbRequest> subRequests = splitRequest(cdbRequest);
+    for (int i = 0; i < bidRequests.size(); i++) {
+      bidRequests.get(i).listener.onCdbRequest(subRequests.get(i));
+    }
 
+    CdbResponse cdbResponse;
     try {
-      CdbResponse cdbResponse = pubSdkApi.loadCdb(cdbRequest, userAgent);
-      setTimeOfDownload(cdbResponse);
-      listener.onCdbResponse(cdbRequest, cdbResponse);
+      cdbResponse = pubSdkApi.loadCdb(cdbRequest, userAgent);
     } catch (Exception e) {
-      listener.onCdbError(cdbRequest, e);
+      for (int i = 0; i < bidRequests.size(); i++) {
+        bidRequests.get(i).listener.onCdbError(subRequests.get(i), e);
+      }
+      return;
+    }
+
+    setTimeOfDownload(cdbResponse);
+
+    List<CdbResponse> subResponses = splitResponse(cdbResponse, subRequests);
+    for (int i = 0; i < bidRequests.size(); i++) {
+      CdbCallListener listener = bidRequests.get(i).listener;
+      try {
+        listener.onCdbResponse(subRequests.get(i), subResponses.get(i));
+      } catch (Exception e) {
+        listener.onCdbError(subRequests.get(i), e);
+      }
+    }
+  }
+
+  /**
+   * Request slots are created in the same order than the requested ad units, so each bid request
+   * gets the slice of slots matching its ad units.
+   */
+  @NonNull
+  private List<CdbRequest> splitRequest(@NonNull CdbRequest cdbRequest) {
+    if (bidRequests.size() == 1) {
+      return Collections.singletonList(cdbRequest);
+    }
+
+    List<CdbRequest> subRequests = new ArrayList<>(bidRequests.size());
+    int from = 0;
+    for (BidRequest bidRequest : bidRequests) {
+      int to = from + bidRequest.adUnits.size();
+      subRequests.add(withSlots(cdbRequest, cdbRequest.getSlots().subList(from, to)));
+      from = to;
+    }
+    return subRequests;
+  }
+
+  @NonNull
+  private List<CdbResponse> splitResponse(
+      @NonNull CdbResponse cdbResponse,
+      @NonNull List<CdbRequest> subRequests
+  ) {
+    if (bidRequests.size() == 1) {
+      return Collections.singletonList(cdbResponse);
+    }
+
+    List<List<CdbResponseSlot>> responseSlotsByRequest = dispatch(cdbResponse, subRequests);
+    List<CdbResponse> subResponses = new ArrayList<>(subRequests.size());
+    for (List<CdbResponseSlot> responseSlots : responseSlotsByRequest) {
+      subResponses.add(new CdbResponse(
+          responseSlots,
+          cdbResponse.getTimeToNextCall(),
+          cdbResponse.getConsentGiven()
+      ));
+    }
+    return subResponses;
+  }
+
+  @NonNull
+  private List<List<CdbResponseSlot>> dispatch(
+      @NonNull CdbResponse cdbResponse,
+      @NonNull List<CdbRequest> subRequests
+  ) {
+    Map<String, Integer> indexByImpressionId = new HashMap<>();
+    Map<String, Integer> indexByPlacementId = new HashMap<>();
+    List<List<CdbResponseSlot>> responseSlotsByRequest = new ArrayList<>(subRequests.size());
+
+    for (int i = 0; i < subRequests.size(); i++) {
+      responseSlotsByRequest.add(new ArrayList<>());
+
+      for (CdbRequestSlot slot : subRequests.get(i).getSlots()) {
+        indexByImpressionId.put(slot.getImpressionId(), i);
+        if (!indexByPlacementId.containsKey(slot.getPlacementId())) {
+          indexByPlacementId.put(slot.getPlacementId(), i);
+        }
+      }
+    }
+
+    for (CdbResponseSlot responseSlot : cdbResponse.getSlots()) {
+      Integer index = findIndex(responseSlot, indexByImpressionId, indexByPlacementId);
+      if (index != null) {
+        responseSlotsByRequest.get(index).add(responseSlot);
+      }
+    }
+
+    return responseSlotsByRequest;
+  }
+
+  @Nullable
+  private Integer findIndex(
+      @NonNull CdbResponseSlot responseSlot,
+      @NonNull Map<String, Integer> indexByImpressionId,
+      @NonNull Map<String, Integer> indexByPlacementId
+  ) {
+    String impressionId = responseSlot.getImpressionId();
+    if (impressionId != null && indexByImpressionId.containsKey(impressionId)) {
+      return indexByImpressionId.get(impressionId);
     }
+    return indexByPlacementId.get(responseSlot.getPlacementId());
+  }
+
+  @NonNull
+  private static CdbRequest withSlots(
+      @NonNull CdbRequest cdbRequest,
+      @NonNull List<CdbRequestSlot> slots
+  ) {
+    return CdbRequest.create(
+        cdbRequest.getId(),
+        cdbRequest.getPublisher(),
+        cdbRequest.getUser(),
+        cdbRequest.getSdkVersion(),
+        cdbRequest.getProfileId(),
+        cdbRequest.getGdprData(),
+        new ArrayList<>(slots)
+    );
   }
 
   private void setTimeOfDownload(@NonNull CdbResponse cdbResponse) {
@@ -87,4 +243,29 @@ class CdbCall extends SafeRunnable {
       slot.setTimeOfDownload(instant);
     }
   }
+
+  /**
+   * Bid request served by a CDB call, possibly coalesced with other ones.
+   */
+  static class BidRequest {
+
+    @NonNull
+    final List<CacheAdUnit> adUnits;
+
+    @NonNull
+    final ContextData contextData;
+
+    @NonNull
+    final CdbCallListener listener;
+
+    BidRequest(
+        @NonNull List<CacheAdUnit> adUnits,
+        @NonNull ContextData contextData,
+        @NonNull CdbCallListener listener
+    ) {
+      this.adUnits = adUnits;
+      this.contextData = contextData;
+      this.listener = listener;
+    }
+  }
 }
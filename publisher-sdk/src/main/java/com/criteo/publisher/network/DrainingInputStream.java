@@ -0,0 +1,52 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.network;
+
+import androidx.annotation.NonNull;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream reading the whole remaining content of the delegate before closing it.
+ * <p>
+ * HTTP clients only reuse a keep-alive connection once the body of its previous response was fully
+ * read. Callers not interested in the body (or stopping in the middle of it) would then force the
+ * opening of a new connection for the next call.
+ */
+class DrainingInputStream extends FilterInputStream {
+
+  private static final int BUFFER_SIZE = 4096;
+
+  DrainingInputStream(@NonNull InputStream delegate) {
+    super(delegate);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      while (in.read(buffer) != -1) {
+        // Drain the stream
+      }
+    } catch (IOException ignored) {
+      // The connection is broken anyway and will not be reused
+    } finally {
+      super.close();
+    }
+  }
+}
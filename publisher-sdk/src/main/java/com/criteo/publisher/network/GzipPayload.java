@@ -0,0 +1,76 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Payload compressing another one with gzip while it is written.
+ */
+class GzipPayload implements HttpTransport.Payload {
+
+  static final String GZIP_ENCODING = "gzip";
+
+  @NonNull
+  private final HttpTransport.Payload delegate;
+
+  GzipPayload(@NonNull HttpTransport.Payload delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void writeTo(@NonNull OutputStream outputStream) throws IOException {
+    // The given output should not be closed, but finishing the gzip stream requires to close it.
+    OutputStream nonClosingOutputStream = new NonClosingOutputStream(outputStream);
+    GZIPOutputStream gzipOutputStream = new GZIPOutputStream(nonClosingOutputStream);
+    delegate.writeTo(gzipOutputStream);
+    gzipOutputStream.close();
+  }
+
+  @Nullable
+  @Override
+  public String getContentEncoding() {
+    return GZIP_ENCODING;
+  }
+
+  @Override
+  public long getContentLength() {
+    return -1;
+  }
+
+  private static class NonClosingOutputStream extends FilterOutputStream {
+
+    NonClosingOutputStream(@NonNull OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
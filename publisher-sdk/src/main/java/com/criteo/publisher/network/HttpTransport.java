@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+
+/**
+ * Low level layer executing the HTTP calls of the {@link PubSdkApi}.
+ */
+public interface HttpTransport {
+
+  /**
+   * Execute the given HTTP call and returns the body of its response.
+   * <p>
+   * The returned stream should always be {@linkplain InputStream#close() closed} by the caller:
+   * closing it drains the remaining bytes of the body so the underlying connection can be reused
+   * by next calls.
+   * <p>
+   * Compressed responses are transparently decompressed.
+   *
+   * @param method HTTP method of the call, such as <code>GET</code> or <code>POST</code>
+   * @param url URL to call
+   * @param userAgent user agent to indicate, or <code>null</code> to let the default one
+   * @param payload body of the request, or <code>null</code> if there is no body
+   * @return body of the response
+   * @throws HttpResponseException if the response status is neither 200 nor 204
+   * @throws IOException if any network error occurs
+   */
+  @NonNull
+  InputStream execute(
+      @NonNull String method,
+      @NonNull URL url,
+      @Nullable String userAgent,
+      @Nullable Payload payload
+  ) throws IOException;
+
+  /**
+   * Body of a request, written lazily once the connection is opened.
+   */
+  interface Payload {
+
+    /**
+     * Write this payload in the given output.
+     * <p>
+     * The given output should not be closed: it is the responsibility of the transport.
+     *
+     * @param outputStream output where to write in
+     * @throws IOException if any error occurs
+     */
+    void writeTo(@NonNull OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns the encoding of the written payload (such as <code>gzip</code>), or
+     * <code>null</code> if it is not encoded.
+     */
+    @Nullable
+    String getContentEncoding();
+
+    /**
+     * Returns the number of bytes that will be written, or <code>-1</code> if it is not known in
+     * advance. In this case, the payload is streamed in chunks.
+     */
+    long getContentLength();
+  }
+}
@@ -16,17 +16,23 @@
 
 package com.criteo.publisher.network
 
+import android.util.Log
 import com.criteo.publisher.logging.LogMessage
 
 internal object NetworkLogMessage {
 
+  /**
+   * Level of the messages logging CDB payloads. Payloads are only copied if this level is loggable.
+   */
+  const val CDB_CALL_LOG_LEVEL = Log.INFO
+
   @JvmStatic
-  fun onCdbCallStarted(requestPayload: String) = LogMessage(message =
+  fun onCdbCallStarted(requestPayload: String) = LogMessage(level = CDB_CALL_LOG_LEVEL, message =
     "CDB Request initiated: $requestPayload"
   )
 
   @JvmStatic
-  fun onCdbCallFinished(responsePayload: String) = LogMessage(message =
+  fun onCdbCallFinished(responsePayload: String) = LogMessage(level = CDB_CALL_LOG_LEVEL, message =
     "CDB Response received: $responsePayload"
   )
 }
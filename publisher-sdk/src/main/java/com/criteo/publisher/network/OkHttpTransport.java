@@ -0,0 +1,233 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.network;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.criteo.publisher.util.BuildConfigWrapper;
+import com.criteo.publisher.util.MapUtilKt;
+import com.criteo.publisher.util.TextUtils;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import kotlin.jvm.functions.Function0;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+
+/**
+ * Transport executing calls through a pooled OkHttp client.
+ * <p>
+ * Connections are kept alive between calls, so consecutive calls to the same host (bids, CSM,
+ * remote logs, ...) do not pay a new TCP and TLS handshake. The number of concurrent calls to a
+ * single host is bounded, and if HTTP/2 is enabled, concurrent calls are multiplexed on a single
+ * connection.
+ * <p>
+ * A call holds its host permit until its response stream is closed, as its connection cannot serve
+ * another call before. A call waiting for a permit fails once the network timeout elapses, so a
+ * response that is never closed does not block the other calls forever.
+ */
+public class OkHttpTransport implements HttpTransport {
+
+  @NonNull
+  private final BuildConfigWrapper buildConfigWrapper;
+
+  @NonNull
+  private final OkHttpClient client;
+
+  @NonNull
+  private final ConcurrentMap<String, Semaphore> permitsByHost = new ConcurrentHashMap<>();
+
+  public OkHttpTransport(@NonNull BuildConfigWrapper buildConfigWrapper) {
+    this.buildConfigWrapper = buildConfigWrapper;
+    this.client = createClient(buildConfigWrapper);
+  }
+
+  @NonNull
+  private static OkHttpClient createClient(@NonNull BuildConfigWrapper buildConfigWrapper) {
+    ConnectionPool connectionPool = new ConnectionPool(
+        buildConfigWrapper.getHttpMaxIdleConnections(),
+        buildConfigWrapper.getHttpKeepAliveDurationInMillis(),
+        MILLISECONDS
+    );
+
+    List<Protocol> protocols;
+    if (buildConfigWrapper.isHttp2Enabled()) {
+      protocols = Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1);
+    } else {
+      protocols = Collections.singletonList(Protocol.HTTP_1_1);
+    }
+
+    int timeoutInMillis = buildConfigWrapper.getNetworkTimeoutInMillis();
+
+    return new OkHttpClient.Builder()
+        .connectionPool(connectionPool)
+        .protocols(protocols)
+        .connectTimeout(timeoutInMillis, MILLISECONDS)
+        .readTimeout(timeoutInMillis, MILLISECONDS)
+        .writeTimeout(timeoutInMillis, MILLISECONDS)
+        .build();
+  }
+
+  @NonNull
+  @Override
+  public InputStream execute(
+      @NonNull String method,
+      @NonNull URL url,
+      @Nullable String userAgent,
+      @Nullable Payload payload
+  ) throws IOException {
+    Semaphore permits = getPermits(url.getHost());
+    int timeoutInMillis = buildConfigWrapper.getNetworkTimeoutInMillis();
+    try {
+      if (!permits.tryAcquire(timeoutInMillis, MILLISECONDS)) {
+        throw new SocketTimeoutException("Too many concurrent calls to " + url.getHost());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+
+    try {
+      InputStream inputStream = executeWithPermit(method, url, userAgent, payload);
+      return new PermitReleasingInputStream(inputStream, permits);
+    } catch (IOException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  @NonNull
+  private InputStream executeWithPermit(
+      @NonNull String method,
+      @NonNull URL url,
+      @Nullable String userAgent,
+      @Nullable Payload payload
+  ) throws IOException {
+    Request.Builder request = new Request.Builder()
+        .url(url)
+        .header("Content-Type", "text/plain")
+        .method(method, payload == null ? null : new PayloadRequestBody(payload));
+
+    if (!TextUtils.isEmpty(userAgent)) {
+      request.header("User-Agent", userAgent);
+    }
+
+    // Gzip responses are requested and decompressed transparently by OkHttp
+    String contentEncoding = payload == null ? null : payload.getContentEncoding();
+    if (contentEncoding != null) {
+      request.header("Content-Encoding", contentEncoding);
+    }
+
+    Response response = client.newCall(request.build()).execute();
+    ResponseBody body = response.body();
+
+    int status = response.code();
+    boolean isSuccess = status == HttpURLConnection.HTTP_OK
+        || status == HttpURLConnection.HTTP_NO_CONTENT;
+
+    if (body == null || !isSuccess) {
+      response.close();
+      throw new HttpResponseException(status);
+    }
+
+    return new DrainingInputStream(body.byteStream());
+  }
+
+  @NonNull
+  private Semaphore getPermits(@NonNull String host) {
+    Function0<Semaphore> newPermits = new Function0<Semaphore>() {
+      @Override
+      public Semaphore invoke() {
+        return new Semaphore(buildConfigWrapper.getHttpMaxConnectionsPerHost());
+      }
+    };
+
+    return MapUtilKt.getOrCompute(permitsByHost, host, newPermits);
+  }
+
+  private static class PayloadRequestBody extends RequestBody {
+
+    @NonNull
+    private final Payload payload;
+
+    PayloadRequestBody(@NonNull Payload payload) {
+      this.payload = payload;
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+      // Content type is given explicitly in headers
+      return null;
+    }
+
+    @Override
+    public long contentLength() {
+      return payload.getContentLength();
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+      payload.writeTo(sink.outputStream());
+    }
+  }
+
+  private static class PermitReleasingInputStream extends FilterInputStream {
+
+    @NonNull
+    private final Semaphore permits;
+
+    @NonNull
+    private final AtomicBoolean isReleased = new AtomicBoolean(false);
+
+    PermitReleasingInputStream(@NonNull InputStream delegate, @NonNull Semaphore permits) {
+      super(delegate);
+      this.permits = permits;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (isReleased.compareAndSet(false, true)) {
+          permits.release();
+        }
+      }
+    }
+  }
+}
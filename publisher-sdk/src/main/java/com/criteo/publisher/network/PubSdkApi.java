@@ -19,11 +19,13 @@ package com.criteo.publisher.network;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.criteo.publisher.csm.MetricRequest;
+import com.criteo.publisher.csm.MetricSummaryRequest;
 import com.criteo.publisher.logging.Logger;
 import com.criteo.publisher.logging.LoggerFactory;
 import com.criteo.publisher.logging.RemoteLogRecords;
 import com.criteo.publisher.model.CdbRequest;
 import com.criteo.publisher.model.CdbResponse;
+import com.criteo.publisher.model.CdbResponseSlot;
 import com.criteo.publisher.model.RemoteConfigRequest;
 import com.criteo.publisher.model.RemoteConfigResponse;
 import com.criteo.publisher.util.BuildConfigWrapper;
@@ -34,13 +36,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
+import java.io.PushbackInputStream;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -51,6 +56,7 @@ public class PubSdkApi {
   private static final String EVENT_TYPE = "eventType";
   private static final String LIMITED_AD_TRACKING = "limitedAdTracking";
   private static final String GDPR_CONSENT = "gdpr_consent";
+  private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
 
   @NonNull
   private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -61,43 +67,84 @@ public class PubSdkApi {
   @NonNull
   private final JsonSerializer jsonSerializer;
 
+  @NonNull
+  private final HttpTransport httpTransport;
+
+  /**
+   * API paths of endpoints that rejected a gzip request. Next requests to those endpoints are sent
+   * without compression.
+   */
+  @NonNull
+  private final Set<String> gzipRejectingApiPaths = Collections.newSetFromMap(
+      new ConcurrentHashMap<String, Boolean>()
+  );
+
   public PubSdkApi(
       @NonNull BuildConfigWrapper buildConfigWrapper,
-      @NonNull JsonSerializer jsonSerializer
+      @NonNull JsonSerializer jsonSerializer,
+      @NonNull HttpTransport httpTransport
   ) {
     this.buildConfigWrapper = buildConfigWrapper;
     this.jsonSerializer = jsonSerializer;
+    this.httpTransport = httpTransport;
   }
 
   @NonNull
   public RemoteConfigResponse loadConfig(@NonNull RemoteConfigRequest request) throws IOException {
     URL url = new URL(buildConfigWrapper.getCdbUrl() + "/config/app");
-    HttpURLConnection urlConnection = prepareConnection(url, null, "POST");
-    writePayload(urlConnection, request);
 
-    try (InputStream inputStream = readResponseStreamIfSuccess(urlConnection)) {
+    try (InputStream inputStream = httpTransport.execute("POST", url, null, jsonPayload(request))) {
       return jsonSerializer.read(RemoteConfigResponse.class, inputStream);
     }
   }
 
   @NonNull
   public CdbResponse loadCdb(@NonNull CdbRequest request, @NonNull String userAgent) throws Exception {
-    URL url = new URL(buildConfigWrapper.getCdbUrl() + "/inapp/v2");
-    HttpURLConnection urlConnection = prepareConnection(url, userAgent, "POST");
-    urlConnection.setDoOutput(true);
-    try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-      jsonSerializer.write(request, baos);
-      logger.log(NetworkLogMessage.onCdbCallStarted(baos.toString("UTF-8")));
-      urlConnection.getOutputStream().write(baos.toByteArray());
+    // Payloads are only copied to be logged if needed. Else they are streamed directly.
+    boolean isPayloadLogged = logger.isLoggable(NetworkLogMessage.CDB_CALL_LOG_LEVEL);
+
+    HttpTransport.Payload payload;
+    if (isPayloadLogged) {
+      byte[] serializedRequest;
+      try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+        jsonSerializer.write(request, baos);
+        serializedRequest = baos.toByteArray();
+      }
+
+      logger.log(NetworkLogMessage.onCdbCallStarted(new String(serializedRequest, "UTF-8")));
+      payload = bytesPayload(serializedRequest);
+    } else {
+      payload = jsonPayload(request);
     }
 
-    try (InputStream inputStream = readResponseStreamIfSuccess(urlConnection)) {
-      String response = StreamUtil.readStream(inputStream);
-      logger.log(NetworkLogMessage.onCdbCallFinished(response));
-      return CdbResponse.fromJson(readJson(response));
+    try (InputStream inputStream = postToCdb("/inapp/v2", userAgent, payload)) {
+      if (!isPayloadLogged) {
+        return readCdbResponse(inputStream);
+      }
+
+      ByteArrayOutputStream rawResponse = new ByteArrayOutputStream();
+      CdbResponse cdbResponse = readCdbResponse(new TeeInputStream(inputStream, rawResponse));
+      logger.log(NetworkLogMessage.onCdbCallFinished(rawResponse.toString("UTF-8")));
+      return cdbResponse;
     }
   }
 
+  /**
+   * Read the CDB response directly from the given stream. An empty body (such as a
+   * <code>204 No Content</code>) is read as an empty response.
+   */
+  @NonNull
+  private CdbResponse readCdbResponse(@NonNull InputStream inputStream) throws IOException {
+    PushbackInputStream pushbackInputStream = new PushbackInputStream(inputStream);
+    int firstByte = pushbackInputStream.read();
+    if (firstByte == -1) {
+      return new CdbResponse(Collections.<CdbResponseSlot>emptyList(), 0, null);
+    }
+
+    pushbackInputStream.unread(firstByte);
+    return jsonSerializer.read(CdbResponse.class, pushbackInputStream);
+  }
+
   @NonNull
   public JSONObject postAppEvent(
       int senderId,
@@ -139,45 +186,53 @@ public class PubSdkApi {
     postToCdb("/csm", request);
   }
 
+  public void postCsmSummary(@NonNull MetricSummaryRequest request) throws IOException {
+    postToCdb("/csm/summary", request);
+  }
+
   public void postLogs(@NonNull List<RemoteLogRecords> request) throws IOException {
     postToCdb("/inapp/logs", request);
   }
 
   private void postToCdb(@NonNull String apiPath, @NonNull Object request) throws IOException {
-    URL url = new URL(buildConfigWrapper.getCdbUrl() + apiPath);
-    HttpURLConnection urlConnection = prepareConnection(url, null, "POST");
-    writePayload(urlConnection, request);
-    readResponseStreamIfSuccess(urlConnection).close();
+    postToCdb(apiPath, null, jsonPayload(request)).close();
   }
 
+  /**
+   * Post the given payload to CDB, compressed with gzip if it is enabled.
+   * <p>
+   * Support of compressed requests is negotiated per endpoint: if an endpoint rejects a compressed
+   * request with a <code>415 Unsupported Media Type</code>, the request is sent again without
+   * compression, and so are next requests to this endpoint.
+   */
   @NonNull
-  public InputStream executeRawGet(URL url, @Nullable String userAgent) throws IOException {
-    HttpURLConnection urlConnection = prepareConnection(url, userAgent, "GET");
-    return readResponseStreamIfSuccess(urlConnection);
-  }
+  private InputStream postToCdb(
+      @NonNull String apiPath,
+      @Nullable String userAgent,
+      @NonNull HttpTransport.Payload payload
+  ) throws IOException {
+    URL url = new URL(buildConfigWrapper.getCdbUrl() + apiPath);
 
-  @NonNull
-  private HttpURLConnection prepareConnection(@NonNull URL url,
-      @Nullable String userAgent, String method) throws IOException {
-    HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-    urlConnection.setRequestMethod(method);
-    urlConnection.setReadTimeout(buildConfigWrapper.getNetworkTimeoutInMillis());
-    urlConnection.setConnectTimeout(buildConfigWrapper.getNetworkTimeoutInMillis());
-    urlConnection.setRequestProperty("Content-Type", "text/plain");
-    if (!TextUtils.isEmpty(userAgent)) {
-      urlConnection.setRequestProperty("User-Agent", userAgent);
+    if (!buildConfigWrapper.isGzipRequestEnabled() || gzipRejectingApiPaths.contains(apiPath)) {
+      return httpTransport.execute("POST", url, userAgent, payload);
+    }
+
+    try {
+      return httpTransport.execute("POST", url, userAgent, new GzipPayload(payload));
+    } catch (HttpResponseException e) {
+      if (e.getStatus() != HTTP_UNSUPPORTED_MEDIA_TYPE) {
+        throw e;
+      }
+
+      logger.debug("Gzip requests are not supported by " + apiPath, e);
+      gzipRejectingApiPaths.add(apiPath);
+      return httpTransport.execute("POST", url, userAgent, payload);
     }
-    return urlConnection;
   }
 
   @NonNull
-  private static InputStream readResponseStreamIfSuccess(@NonNull HttpURLConnection urlConnection) throws IOException {
-    int status = urlConnection.getResponseCode();
-    if (status == HttpURLConnection.HTTP_OK || status == HttpURLConnection.HTTP_NO_CONTENT) {
-      return urlConnection.getInputStream();
-    } else {
-      throw new HttpResponseException(status);
-    }
+  public InputStream executeRawGet(URL url, @Nullable String userAgent) throws IOException {
+    return httpTransport.execute("GET", url, userAgent, null);
   }
 
   @NonNull
@@ -193,13 +248,46 @@ public class PubSdkApi {
     return new JSONObject(json);
   }
 
-  private void writePayload(
-      @NonNull HttpURLConnection urlConnection,
-      @NonNull Object request) throws IOException {
-    urlConnection.setDoOutput(true);
-    try (OutputStream outputStream = urlConnection.getOutputStream()) {
-      jsonSerializer.write(request, outputStream);
-    }
+  @NonNull
+  private HttpTransport.Payload jsonPayload(@NonNull final Object request) {
+    return new HttpTransport.Payload() {
+      @Override
+      public void writeTo(@NonNull OutputStream outputStream) throws IOException {
+        jsonSerializer.write(request, outputStream);
+      }
+
+      @Nullable
+      @Override
+      public String getContentEncoding() {
+        return null;
+      }
+
+      @Override
+      public long getContentLength() {
+        return -1;
+      }
+    };
+  }
+
+  @NonNull
+  private static HttpTransport.Payload bytesPayload(@NonNull final byte[] payload) {
+    return new HttpTransport.Payload() {
+      @Override
+      public void writeTo(@NonNull OutputStream outputStream) throws IOException {
+        outputStream.write(payload);
+      }
+
+      @Nullable
+      @Override
+      public String getContentEncoding() {
+        return null;
+      }
+
+      @Override
+      public long getContentLength() {
+        return payload.length;
+      }
+    };
   }
 
   private String getParamsString(Map<String, String> params) {
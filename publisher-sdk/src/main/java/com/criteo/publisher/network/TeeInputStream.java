@@ -0,0 +1,70 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.network;
+
+import androidx.annotation.NonNull;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Input stream copying all the bytes read from the delegate into an output.
+ * <p>
+ * This allows logging a raw payload while it is parsed, without reading it first into a string.
+ */
+class TeeInputStream extends FilterInputStream {
+
+  @NonNull
+  private final OutputStream copy;
+
+  TeeInputStream(@NonNull InputStream delegate, @NonNull OutputStream copy) {
+    super(delegate);
+    this.copy = copy;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int read = in.read();
+    if (read != -1) {
+      copy.write(read);
+    }
+    return read;
+  }
+
+  @Override
+  public int read(@NonNull byte[] b, int off, int len) throws IOException {
+    int read = in.read(b, off, len);
+    if (read > 0) {
+      copy.write(b, off, read);
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    // Skipped bytes should also be copied
+    byte[] buffer = new byte[(int) Math.min(n, 4096)];
+    int read = read(buffer, 0, buffer.length);
+    return Math.max(read, 0);
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.criteo.publisher.util.BuildConfigWrapper;
+import com.criteo.publisher.util.TextUtils;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Transport opening a new {@link HttpURLConnection} for each call.
+ * <p>
+ * The platform may still reuse a kept alive connection if the previous response was fully read,
+ * hence the response bodies are drained when closed. Gzip responses are explicitly accepted and
+ * decompressed, because not all platforms do it transparently.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+  @NonNull
+  private final BuildConfigWrapper buildConfigWrapper;
+
+  public UrlConnectionTransport(@NonNull BuildConfigWrapper buildConfigWrapper) {
+    this.buildConfigWrapper = buildConfigWrapper;
+  }
+
+  @NonNull
+  @Override
+  public InputStream execute(
+      @NonNull String method,
+      @NonNull URL url,
+      @Nullable String userAgent,
+      @Nullable Payload payload
+  ) throws IOException {
+    HttpURLConnection urlConnection = prepareConnection(url, userAgent, method);
+
+    if (payload != null) {
+      String contentEncoding = payload.getContentEncoding();
+      if (contentEncoding != null) {
+        urlConnection.setRequestProperty("Content-Encoding", contentEncoding);
+      }
+
+      // Without a streaming mode, the connection would buffer the whole payload in memory
+      long contentLength = payload.getContentLength();
+      if (contentLength >= 0 && contentLength <= Integer.MAX_VALUE) {
+        urlConnection.setFixedLengthStreamingMode((int) contentLength);
+      } else {
+        urlConnection.setChunkedStreamingMode(0);
+      }
+
+      urlConnection.setDoOutput(true);
+      try (OutputStream outputStream = new BufferedOutputStream(urlConnection.getOutputStream())) {
+        payload.writeTo(outputStream);
+      }
+    }
+
+    return readResponseStreamIfSuccess(urlConnection);
+  }
+
+  @NonNull
+  private HttpURLConnection prepareConnection(@NonNull URL url,
+      @Nullable String userAgent, String method) throws IOException {
+    HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+    urlConnection.setRequestMethod(method);
+    urlConnection.setReadTimeout(buildConfigWrapper.getNetworkTimeoutInMillis());
+    urlConnection.setConnectTimeout(buildConfigWrapper.getNetworkTimeoutInMillis());
+    urlConnection.setRequestProperty("Content-Type", "text/plain");
+    urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+    if (!TextUtils.isEmpty(userAgent)) {
+      urlConnection.setRequestProperty("User-Agent", userAgent);
+    }
+    return urlConnection;
+  }
+
+  @NonNull
+  private static InputStream readResponseStreamIfSuccess(@NonNull HttpURLConnection urlConnection) throws IOException {
+    int status = urlConnection.getResponseCode();
+    if (status == HttpURLConnection.HTTP_NO_CONTENT) {
+      return new DrainingInputStream(urlConnection.getInputStream());
+    } else if (status == HttpURLConnection.HTTP_OK) {
+      InputStream inputStream = new DrainingInputStream(urlConnection.getInputStream());
+      if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+        return new GZIPInputStream(inputStream);
+      }
+      return inputStream;
+    } else {
+      InputStream errorStream = urlConnection.getErrorStream();
+      if (errorStream != null) {
+        new DrainingInputStream(errorStream).close();
+      }
+      throw new HttpResponseException(status);
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.criteo.publisher.tasks;
 
+import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.criteo.publisher.CriteoBannerAdListener;
@@ -59,9 +60,9 @@ public class CriteoBannerListenerCallTask implements Runnable {
     CriteoBannerView bannerView = bannerViewRef.get();
 
     if (code == CriteoListenerCode.INVALID) {
-      logger.log(BannerLogMessage.onBannerViewFailedToLoad(bannerView));
+      logger.log(Log.INFO, BannerLogMessage::onBannerViewFailedToLoad, bannerView);
     } else if (code == CriteoListenerCode.VALID) {
-      logger.log(BannerLogMessage.onBannerViewLoaded(bannerView));
+      logger.log(Log.INFO, BannerLogMessage::onBannerViewLoaded, bannerView);
     }
 
     // If banner is null, it means that publisher released it.
@@ -22,19 +22,29 @@ import android.os.Bundle;
 import androidx.annotation.NonNull;
 import com.criteo.publisher.AppEvents.AppEvents;
 import com.criteo.publisher.BidManager;
+import java.util.Collection;
 
 public class AppLifecycleUtil implements Application.ActivityLifecycleCallbacks {
 
   private final AppEvents appEvents;
   private final BidManager bidManager;
+  private final Collection<ApplicationStoppedListener> applicationStoppedListeners;
+  private final Collection<ApplicationStartedListener> applicationStartedListeners;
   private int started;
   private int resumed;
   private boolean transitionPossible;
   private boolean created;
 
-  public AppLifecycleUtil(AppEvents appEvents, BidManager bidmanager) {
+  public AppLifecycleUtil(
+      AppEvents appEvents,
+      BidManager bidmanager,
+      Collection<ApplicationStoppedListener> applicationStoppedListeners,
+      Collection<ApplicationStartedListener> applicationStartedListeners
+  ) {
     this.appEvents = appEvents;
     this.bidManager = bidmanager;
+    this.applicationStoppedListeners = applicationStoppedListeners;
+    this.applicationStartedListeners = applicationStartedListeners;
     started = 0;
     resumed = 0;
     transitionPossible = false;
@@ -51,6 +61,11 @@ public class AppLifecycleUtil implements Application.ActivityLifecycleCallbacks
 
   @Override
   public void onActivityStarted(@NonNull Activity activity) {
+    if (started == 0) {
+      for (ApplicationStartedListener listener : applicationStartedListeners) {
+        listener.onApplicationStarted();
+      }
+    }
     started += 1;
   }
 
@@ -78,6 +93,9 @@ public class AppLifecycleUtil implements Application.ActivityLifecycleCallbacks
       }
       appEvents.onApplicationStopped();
       bidManager.onApplicationStopped();
+      for (ApplicationStoppedListener listener : applicationStoppedListeners) {
+        listener.onApplicationStopped();
+      }
     }
     transitionPossible = false;
     started -= 1;
@@ -48,6 +48,43 @@ public class BuildConfigWrapper {
     return BuildConfig.preconditionThrowsOnException;
   }
 
+  /**
+   * Maximum number of bids kept in cache for a single ad unit.
+   */
+  public int getBidCacheDepth() {
+    return BuildConfig.bidCacheDepth;
+  }
+
+  /**
+   * Interval in milliseconds between two sweeps of the bid cache.
+   */
+  public int getBidCacheSweepIntervalInMillis() {
+    return BuildConfig.bidCacheSweepIntervalInMillis;
+  }
+
+  /**
+   * Percentage of the TTL of a cached bid under which a new bid is fetched ahead of its expiry.
+   */
+  public int getBidRefreshAheadPercent() {
+    return BuildConfig.bidRefreshAheadPercent;
+  }
+
+  /**
+   * Period of time in milliseconds during which an ad unit must have had a bid consumed for its
+   * cached bids to be refreshed ahead.
+   */
+  public int getBidRefreshAheadConsumptionWindowInMillis() {
+    return BuildConfig.bidRefreshAheadConsumptionWindowInMillis;
+  }
+
+  /**
+   * Window during which bid requests are merged into a single CDB call, or 0 if requests should be
+   * sent directly.
+   */
+  public int getBidRequestCoalescingWindowInMillis() {
+    return BuildConfig.bidRequestCoalescingWindowInMillis;
+  }
+
   public int getCsmBatchSize() {
     return BuildConfig.csmBatchSize;
   }
@@ -66,6 +103,52 @@ public class BuildConfigWrapper {
     return BuildConfig.maxSizeOfCsmMetricSendingQueue;
   }
 
+  /**
+   * Delay during which metric updates are kept in memory before being written, or 0 if they should
+   * be written directly.
+   */
+  public int getCsmWriteBehindDelayInMillis() {
+    return BuildConfig.csmWriteBehindDelayInMillis;
+  }
+
+  /**
+   * Number of metrics with pending updates above which they are written without waiting.
+   */
+  public int getCsmWriteBehindMaxPendingMetrics() {
+    return BuildConfig.csmWriteBehindMaxPendingMetrics;
+  }
+
+  /**
+   * Indicate if finished metrics are aggregated on device and sent as summaries instead of
+   * individual feedbacks.
+   */
+  public boolean isCsmAggregationEnabled() {
+    return BuildConfig.csmAggregationEnabled;
+  }
+
+  /**
+   * Percentage of the metrics still sent as individual feedbacks when aggregation is enabled. Those
+   * metrics are not counted in the summaries.
+   */
+  public int getCsmAggregationFeedbackSamplePercent() {
+    return BuildConfig.csmAggregationFeedbackSamplePercent;
+  }
+
+  /**
+   * Number of metrics moved at once to the sending queue when recovering metrics of a previous
+   * session.
+   */
+  public int getCsmRecoveryBatchSize() {
+    return BuildConfig.csmRecoveryBatchSize;
+  }
+
+  /**
+   * Maximum delay in milliseconds before recovering metrics of a previous session.
+   */
+  public int getCsmRecoveryMaxDelayInMillis() {
+    return BuildConfig.csmRecoveryMaxDelayInMillis;
+  }
+
   /**
    * The relative path in application folder of the sending queue file for CSM
    */
@@ -89,6 +172,49 @@ public class BuildConfigWrapper {
     return BuildConfig.networkTimeoutInMillis;
   }
 
+  /**
+   * Indicate if HTTP calls are done through a pooled keep-alive client instead of a new {@link
+   * java.net.HttpURLConnection} per call.
+   */
+  public boolean isPooledHttpTransportEnabled() {
+    return BuildConfig.pooledHttpTransportEnabled;
+  }
+
+  /**
+   * Maximum number of concurrent calls to a single host with the pooled HTTP client.
+   */
+  public int getHttpMaxConnectionsPerHost() {
+    return BuildConfig.httpMaxConnectionsPerHost;
+  }
+
+  /**
+   * Maximum number of idle connections, all hosts together, kept alive by the pooled HTTP client.
+   */
+  public int getHttpMaxIdleConnections() {
+    return BuildConfig.httpMaxIdleConnections;
+  }
+
+  /**
+   * Duration in milliseconds an idle connection is kept alive by the pooled HTTP client.
+   */
+  public int getHttpKeepAliveDurationInMillis() {
+    return BuildConfig.httpKeepAliveDurationInMillis;
+  }
+
+  /**
+   * Indicate if the pooled HTTP client may negotiate HTTP/2 to multiplex concurrent calls.
+   */
+  public boolean isHttp2Enabled() {
+    return BuildConfig.http2Enabled;
+  }
+
+  /**
+   * Indicate if bodies of CDB, CSM and remote logs requests are compressed with gzip.
+   */
+  public boolean isGzipRequestEnabled() {
+    return BuildConfig.gzipRequestEnabled;
+  }
+
   /**
    * Included default minimum level of logs to print
    * Values are from {@link android.util.Log}:
@@ -130,6 +256,58 @@ public class BuildConfigWrapper {
     return BuildConfig.maxSizeOfRemoteLogSendingQueue;
   }
 
+  /**
+   * Interval in milliseconds between two checks of the sending queues to upload.
+   */
+  public int getSendingQueueUploadCheckIntervalInMillis() {
+    return BuildConfig.sendingQueueUploadCheckIntervalInMillis;
+  }
+
+  /**
+   * Duration in milliseconds after which a non-empty sending queue is uploaded. This is also the
+   * first backoff delay after a failed upload.
+   */
+  public int getSendingQueueUploadIntervalInMillis() {
+    return BuildConfig.sendingQueueUploadIntervalInMillis;
+  }
+
+  /**
+   * Size in bytes above which a sending queue is uploaded without waiting for the upload interval.
+   */
+  public int getSendingQueueUploadThresholdInBytes() {
+    return BuildConfig.sendingQueueUploadThresholdInBytes;
+  }
+
+  /**
+   * Indicate if log messages are handled on a background thread instead of the calling thread.
+   */
+  public boolean isAsyncLoggingEnabled() {
+    return BuildConfig.asyncLoggingEnabled;
+  }
+
+  /**
+   * Number of log messages that can wait for the background logging thread before new ones are
+   * dropped.
+   */
+  public int getAsyncLoggingRingCapacity() {
+    return BuildConfig.asyncLoggingRingCapacity;
+  }
+
+  /**
+   * Maximum backoff delay in milliseconds between two failed uploads of a sending queue.
+   */
+  public int getSendingQueueUploadMaxBackoffInMillis() {
+    return BuildConfig.sendingQueueUploadMaxBackoffInMillis;
+  }
+
+  /**
+   * Indicate if the sending queues are stored in a ring buffer in a memory-mapped file, instead of a
+   * Tape queue file.
+   */
+  public boolean isSendingQueueMappedRingBufferEnabled() {
+    return BuildConfig.sendingQueueMappedRingBufferEnabled;
+  }
+
   /**
    * The relative path in application folder of the sending queue file for remote logs
    */
@@ -0,0 +1,167 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Primitives of the compact binary format used to persist SDK data.
+ * <p>
+ * Integers are written as variable length quantities (7 bits per byte, least significant group
+ * first), so small values and deltas only take one or two bytes. Signed values are zigzag encoded
+ * before, so small negative values are small too.
+ * <p>
+ * IDs generated by the SDK are 32 lowercase hexadecimal characters. They are written as their 16
+ * raw bytes. Other IDs are written as strings.
+ */
+public final class CompactEncoding {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int NULL_ID = 0;
+  private static final int HEX_ID = 1;
+  private static final int STRING_ID = 2;
+
+  private static final int HEX_ID_LENGTH = 32;
+
+  private CompactEncoding() {
+  }
+
+  public static void writeVarLong(@NonNull DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  public static long readVarLong(@NonNull DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length quantity");
+  }
+
+  public static void writeSignedVarLong(@NonNull DataOutput out, long value) throws IOException {
+    writeVarLong(out, (value << 1) ^ (value >> 63));
+  }
+
+  public static long readSignedVarLong(@NonNull DataInput in) throws IOException {
+    long value = readVarLong(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  public static void writeVarInt(@NonNull DataOutput out, int value) throws IOException {
+    writeVarLong(out, value & 0xFFFFFFFFL);
+  }
+
+  public static int readVarInt(@NonNull DataInput in) throws IOException {
+    return (int) readVarLong(in);
+  }
+
+  /**
+   * Write the given string, prefixed by its length. <code>null</code> is supported and takes one
+   * byte.
+   */
+  public static void writeString(@NonNull DataOutput out, @Nullable String value)
+      throws IOException {
+    if (value == null) {
+      writeVarInt(out, 0);
+      return;
+    }
+
+    byte[] bytes = value.getBytes(UTF_8);
+    writeVarInt(out, bytes.length + 1);
+    out.write(bytes);
+  }
+
+  @Nullable
+  public static String readString(@NonNull DataInput in) throws IOException {
+    int length = readVarInt(in) - 1;
+    if (length < 0) {
+      return null;
+    }
+
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Write the given ID. IDs generated by the SDK take 17 bytes instead of 33 for a string.
+   */
+  public static void writeId(@NonNull DataOutput out, @Nullable String id) throws IOException {
+    if (id == null) {
+      out.writeByte(NULL_ID);
+    } else if (isLowerHex(id)) {
+      out.writeByte(HEX_ID);
+      for (int i = 0; i < HEX_ID_LENGTH; i += 2) {
+        int high = Character.digit(id.charAt(i), 16);
+        int low = Character.digit(id.charAt(i + 1), 16);
+        out.writeByte(high << 4 | low);
+      }
+    } else {
+      out.writeByte(STRING_ID);
+      writeString(out, id);
+    }
+  }
+
+  @Nullable
+  public static String readId(@NonNull DataInput in) throws IOException {
+    int type = in.readByte();
+    switch (type) {
+      case NULL_ID:
+        return null;
+      case HEX_ID:
+        char[] chars = new char[HEX_ID_LENGTH];
+        for (int i = 0; i < HEX_ID_LENGTH; i += 2) {
+          int b = in.readByte() & 0xFF;
+          chars[i] = Character.forDigit(b >>> 4, 16);
+          chars[i + 1] = Character.forDigit(b & 0xF, 16);
+        }
+        return new String(chars);
+      case STRING_ID:
+        return readString(in);
+      default:
+        throw new IOException("Unknown ID type: " + type);
+    }
+  }
+
+  private static boolean isLowerHex(@NonNull String id) {
+    if (id.length() != HEX_ID_LENGTH) {
+      return false;
+    }
+
+    for (int i = 0; i < HEX_ID_LENGTH; i++) {
+      char c = id.charAt(i);
+      if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -20,6 +20,7 @@ import androidx.annotation.NonNull;
 import com.google.gson.Gson;
 import com.google.gson.JsonIOException;
 import com.google.gson.JsonParseException;
+import java.io.BufferedWriter;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -27,9 +28,13 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
 
 public class JsonSerializer {
 
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
   @NonNull
   private final Gson gson;
 
@@ -53,7 +58,8 @@ public class JsonSerializer {
       @NonNull Object object,
       @NonNull OutputStream outputStream
   ) throws IOException {
-    OutputStreamWriter writer = new OutputStreamWriter(outputStream);
+    // Gson emits many small strings: buffer them before encoding them in the output
+    Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, UTF_8));
 
     try {
       gson.toJson(object, writer);
@@ -0,0 +1,149 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher
+
+import com.criteo.publisher.mock.MockedDependenciesRule
+import com.criteo.publisher.util.BuildConfigWrapper
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.argumentCaptor
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.eq
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.never
+import com.nhaarman.mockitokotlin2.times
+import com.nhaarman.mockitokotlin2.verify
+import com.nhaarman.mockitokotlin2.whenever
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.mockito.Mock
+import org.mockito.MockitoAnnotations
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+class BidCacheSweeperTest {
+
+  @Rule
+  @JvmField
+  var mockedDependenciesRule = MockedDependenciesRule()
+
+  @Mock
+  private lateinit var bidManager: BidManager
+
+  @Mock
+  private lateinit var scheduledExecutorService: ScheduledExecutorService
+
+  @Mock
+  private lateinit var buildConfigWrapper: BuildConfigWrapper
+
+  private lateinit var sweepFuture: ScheduledFuture<*>
+
+  private lateinit var sweeper: BidCacheSweeper
+
+  @Before
+  fun setUp() {
+    MockitoAnnotations.initMocks(this)
+
+    whenever(buildConfigWrapper.bidCacheSweepIntervalInMillis).thenReturn(42)
+    whenever(buildConfigWrapper.bidRefreshAheadPercent).thenReturn(10)
+    whenever(buildConfigWrapper.bidRefreshAheadConsumptionWindowInMillis).thenReturn(1337)
+
+    sweepFuture = mock()
+    doReturn(sweepFuture).whenever(scheduledExecutorService)
+        .scheduleWithFixedDelay(any(), any(), any(), any())
+
+    sweeper = BidCacheSweeper(bidManager, scheduledExecutorService, buildConfigWrapper)
+  }
+
+  @Test
+  fun start_CalledTwice_ScheduleSweepOnlyOnceWithConfiguredInterval() {
+    sweeper.start()
+    sweeper.start()
+
+    verify(scheduledExecutorService, times(1)).scheduleWithFixedDelay(
+        any(),
+        eq(42L),
+        eq(42L),
+        eq(TimeUnit.MILLISECONDS)
+    )
+  }
+
+  @Test
+  fun start_WhenScheduledTaskIsRun_SweepCacheWithConfiguredRefreshAheadParameters() {
+    sweeper.start()
+
+    argumentCaptor<Runnable>().apply {
+      verify(scheduledExecutorService).scheduleWithFixedDelay(capture(), any(), any(), any())
+      firstValue.run()
+    }
+
+    verify(bidManager).sweepCache(10, 1337L)
+  }
+
+  @Test
+  fun onApplicationStopped_GivenStartedSweeper_CancelSweeps() {
+    sweeper.start()
+
+    sweeper.onApplicationStopped()
+
+    verify(sweepFuture).cancel(false)
+  }
+
+  @Test
+  fun onApplicationStarted_GivenStoppedApplication_ResumeSweeps() {
+    sweeper.start()
+    sweeper.onApplicationStopped()
+
+    sweeper.onApplicationStarted()
+
+    verify(scheduledExecutorService, times(2)).scheduleWithFixedDelay(
+        any(),
+        eq(42L),
+        eq(42L),
+        eq(TimeUnit.MILLISECONDS)
+    )
+  }
+
+  @Test
+  fun onApplicationStarted_GivenRunningSweeps_DoNotScheduleThemAgain() {
+    sweeper.start()
+
+    sweeper.onApplicationStarted()
+
+    verify(scheduledExecutorService, times(1)).scheduleWithFixedDelay(any(), any(), any(), any())
+  }
+
+  @Test
+  fun onApplicationStarted_GivenNotStartedSweeper_DoNotSchedule() {
+    sweeper.onApplicationStarted()
+
+    verify(scheduledExecutorService, never()).scheduleWithFixedDelay(any(), any(), any(), any())
+  }
+
+  @Test
+  fun start_GivenApplicationInBackground_ScheduleSweepsOnlyOnceInForeground() {
+    sweeper.onApplicationStopped()
+    sweeper.start()
+
+    verify(scheduledExecutorService, never()).scheduleWithFixedDelay(any(), any(), any(), any())
+
+    sweeper.onApplicationStarted()
+
+    verify(scheduledExecutorService).scheduleWithFixedDelay(any(), any(), any(), any())
+  }
+}
@@ -16,18 +16,34 @@
 
 package com.criteo.publisher
 
+import com.criteo.publisher.bid.BidLifecycleListener
+import com.criteo.publisher.cache.BidRefillPolicy
+import com.criteo.publisher.cache.SdkCache
 import com.criteo.publisher.context.ContextData
 import com.criteo.publisher.mock.MockedDependenciesRule
 import com.criteo.publisher.mock.SpyBean
 import com.criteo.publisher.model.AdUnit
+import com.criteo.publisher.model.AdUnitMapper
+import com.criteo.publisher.model.CacheAdUnit
+import com.criteo.publisher.model.CdbResponse
 import com.criteo.publisher.model.CdbResponseSlot
 import com.criteo.publisher.model.Config
+import com.criteo.publisher.network.BidRequestSender
+import com.criteo.publisher.network.LiveBidRequestSender
+import com.criteo.publisher.privacy.ConsentData
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.anyOrNull
+import com.nhaarman.mockitokotlin2.argumentCaptor
 import com.nhaarman.mockitokotlin2.doAnswer
 import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.eq
 import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.never
+import com.nhaarman.mockitokotlin2.times
 import com.nhaarman.mockitokotlin2.verify
 import com.nhaarman.mockitokotlin2.verifyNoMoreInteractions
 import com.nhaarman.mockitokotlin2.whenever
+import org.assertj.core.api.Assertions.assertThat
 import org.junit.Rule
 import org.junit.Test
 
@@ -112,4 +128,225 @@ class BidManagerTest {
     verify(bidListener).onNoBid()
     verifyNoMoreInteractions(bidListener)
   }
+
+  @Test
+  fun getBidForAdUnitAndPrefetch_GivenExpiredBidsBeforeValidOne_ConsumeThemAndReturnValidOne() {
+    val adUnit = mock<AdUnit>()
+    val cacheAdUnit = mock<CacheAdUnit>()
+    val contextData = mock<ContextData>()
+    val expiredSlot1 = givenSlot(isExpired = true)
+    val expiredSlot2 = givenSlot(isExpired = true)
+    val validSlot = givenSlot(isExpired = false)
+    val lifecycleListener = mock<BidLifecycleListener>()
+    val refillPolicy = mock<BidRefillPolicy>()
+    val cache = givenCache(targetDepth = 3, refillPolicy = refillPolicy)
+
+    // First peek is for the silence check
+    whenever(cache.peekAdUnit(cacheAdUnit))
+        .doReturn(expiredSlot1, expiredSlot1, expiredSlot2, validSlot)
+
+    val bidManager = createBidManager(
+        adUnit,
+        cacheAdUnit,
+        cache,
+        refillPolicy,
+        lifecycleListener = lifecycleListener
+    )
+    val slot = bidManager.getBidForAdUnitAndPrefetch(adUnit, contextData)
+
+    assertThat(slot).isEqualTo(validSlot)
+    verify(cache, times(3)).remove(cacheAdUnit)
+    verify(lifecycleListener).onBidConsumed(cacheAdUnit, expiredSlot1)
+    verify(lifecycleListener).onBidConsumed(cacheAdUnit, expiredSlot2)
+    verify(lifecycleListener).onBidConsumed(cacheAdUnit, validSlot)
+    verify(refillPolicy).onBidConsumed(cacheAdUnit)
+  }
+
+  @Test
+  fun getBidForAdUnitAndPrefetch_GivenOnlyExpiredBids_ConsumeThemAndReturnNull() {
+    val adUnit = mock<AdUnit>()
+    val cacheAdUnit = mock<CacheAdUnit>()
+    val expiredSlot = givenSlot(isExpired = true)
+    val refillPolicy = mock<BidRefillPolicy>()
+    val cache = givenCache(targetDepth = 3, refillPolicy = refillPolicy)
+
+    // First peek is for the silence check
+    whenever(cache.peekAdUnit(cacheAdUnit)).doReturn(expiredSlot, expiredSlot, null)
+
+    val bidManager = createBidManager(adUnit, cacheAdUnit, cache, refillPolicy)
+    val slot = bidManager.getBidForAdUnitAndPrefetch(adUnit, mock())
+
+    assertThat(slot).isNull()
+    verify(cache).remove(cacheAdUnit)
+    verify(refillPolicy, never()).onBidConsumed(any())
+  }
+
+  @Test
+  fun getBidForAdUnitAndPrefetch_GivenCacheBelowTargetDepth_RefillWithASingleSlot() {
+    val adUnit = mock<AdUnit>()
+    val cacheAdUnit = mock<CacheAdUnit>()
+    val contextData = mock<ContextData>()
+    val refillPolicy = mock<BidRefillPolicy>()
+    val cache = givenCache(targetDepth = 3, refillPolicy = refillPolicy)
+    val bidRequestSender = mock<BidRequestSender>()
+
+    whenever(cache.getBidCount(cacheAdUnit)).doReturn(1)
+
+    val bidManager = createBidManager(adUnit, cacheAdUnit, cache, refillPolicy, bidRequestSender)
+    bidManager.getBidForAdUnitAndPrefetch(adUnit, contextData)
+
+    verify(bidRequestSender).sendBidRequest(eq(listOf(cacheAdUnit)), eq(contextData), any())
+  }
+
+  @Test
+  fun getBidForAdUnitAndPrefetch_GivenCacheAtTargetDepth_DoNotRefill() {
+    val adUnit = mock<AdUnit>()
+    val cacheAdUnit = mock<CacheAdUnit>()
+    val refillPolicy = mock<BidRefillPolicy>()
+    val cache = givenCache(targetDepth = 3, refillPolicy = refillPolicy)
+    val bidRequestSender = mock<BidRequestSender>()
+
+    whenever(cache.getBidCount(cacheAdUnit)).doReturn(3)
+
+    val bidManager = createBidManager(adUnit, cacheAdUnit, cache, refillPolicy, bidRequestSender)
+    bidManager.getBidForAdUnitAndPrefetch(adUnit, mock())
+
+    verify(bidRequestSender, never()).sendBidRequest(any(), any(), any())
+  }
+
+  @Test
+  fun getBidForAdUnitAndPrefetch_GivenRefillFetchingABid_RefillAgainUntilTargetDepth() {
+    val adUnit = mock<AdUnit>()
+    val cacheAdUnit = mock<CacheAdUnit>()
+    val contextData = mock<ContextData>()
+    val refillPolicy = mock<BidRefillPolicy>()
+    val cache = givenCache(targetDepth = 3, refillPolicy = refillPolicy)
+    val bidRequestSender = mock<BidRequestSender>()
+    val response = givenResponse(givenSlot(isExpired = false))
+
+    whenever(cache.getBidCount(cacheAdUnit)).doReturn(1, 2, 3)
+
+    val bidManager = createBidManager(adUnit, cacheAdUnit, cache, refillPolicy, bidRequestSender)
+    bidManager.getBidForAdUnitAndPrefetch(adUnit, contextData)
+
+    argumentCaptor<CdbCallListener>().apply {
+      verify(bidRequestSender).sendBidRequest(eq(listOf(cacheAdUnit)), eq(contextData), capture())
+      lastValue.onCdbResponse(mock(), response)
+      lastValue.onCdbCallEnded()
+
+      verify(bidRequestSender, times(2))
+          .sendBidRequest(eq(listOf(cacheAdUnit)), eq(contextData), capture())
+      lastValue.onCdbResponse(mock(), response)
+      lastValue.onCdbCallEnded()
+    }
+
+    verify(bidRequestSender, times(2)).sendBidRequest(any(), any(), any())
+  }
+
+  @Test
+  fun getBidForAdUnitAndPrefetch_GivenRefillFetchingNoBid_DoNotRefillAgain() {
+    val adUnit = mock<AdUnit>()
+    val cacheAdUnit = mock<CacheAdUnit>()
+    val refillPolicy = mock<BidRefillPolicy>()
+    val cache = givenCache(targetDepth = 3, refillPolicy = refillPolicy)
+    val bidRequestSender = mock<BidRequestSender>()
+
+    whenever(cache.getBidCount(cacheAdUnit)).doReturn(1)
+
+    val bidManager = createBidManager(adUnit, cacheAdUnit, cache, refillPolicy, bidRequestSender)
+    bidManager.getBidForAdUnitAndPrefetch(adUnit, mock())
+
+    argumentCaptor<CdbCallListener>().apply {
+      verify(bidRequestSender).sendBidRequest(any(), any(), capture())
+      firstValue.onCdbResponse(mock(), givenResponse())
+      firstValue.onCdbCallEnded()
+    }
+
+    verify(bidRequestSender).sendBidRequest(any(), any(), any())
+  }
+
+  @Test
+  fun sweepCache_GivenRecentlyConsumedAdUnitAboutToExpire_RefreshItWithLastContextData() {
+    val adUnit = mock<AdUnit>()
+    val cacheAdUnit = mock<CacheAdUnit>()
+    val contextData = mock<ContextData>()
+    val slot = givenSlot(isExpired = false)
+    val refillPolicy = mock<BidRefillPolicy>()
+    val cache = givenCache(targetDepth = 1, refillPolicy = refillPolicy)
+    val bidRequestSender = mock<BidRequestSender>()
+
+    whenever(cache.adUnits).doReturn(listOf(cacheAdUnit))
+    whenever(cache.getBidCount(cacheAdUnit)).doReturn(1)
+    whenever(cache.peekAdUnit(cacheAdUnit)).doReturn(slot)
+    whenever(cache.peekLastAdUnit(cacheAdUnit)).doReturn(slot)
+    whenever(refillPolicy.isRecentlyConsumed(cacheAdUnit, 1337L)).doReturn(true)
+
+    val bidManager = createBidManager(adUnit, cacheAdUnit, cache, refillPolicy, bidRequestSender)
+    bidManager.getBidForAdUnitAndPrefetch(adUnit, contextData)
+    bidManager.sweepCache(100, 1337L)
+
+    verify(bidRequestSender).sendBidRequest(eq(listOf(cacheAdUnit)), eq(contextData), any())
+  }
+
+  @Test
+  fun sweepCache_GivenNotRecentlyConsumedAdUnitAboutToExpire_DoNotRefreshIt() {
+    val adUnit = mock<AdUnit>()
+    val cacheAdUnit = mock<CacheAdUnit>()
+    val slot = givenSlot(isExpired = false)
+    val refillPolicy = mock<BidRefillPolicy>()
+    val cache = givenCache(targetDepth = 1, refillPolicy = refillPolicy)
+    val bidRequestSender = mock<BidRequestSender>()
+
+    whenever(cache.adUnits).doReturn(listOf(cacheAdUnit))
+    whenever(cache.peekAdUnit(cacheAdUnit)).doReturn(slot)
+    whenever(cache.peekLastAdUnit(cacheAdUnit)).doReturn(slot)
+    whenever(refillPolicy.isRecentlyConsumed(cacheAdUnit, 1337L)).doReturn(false)
+
+    val bidManager = createBidManager(adUnit, cacheAdUnit, cache, refillPolicy, bidRequestSender)
+    bidManager.sweepCache(100, 1337L)
+
+    verify(bidRequestSender, never()).sendBidRequest(any(), any(), any())
+  }
+
+  private fun givenCache(targetDepth: Int, refillPolicy: BidRefillPolicy): SdkCache {
+    val cache = mock<SdkCache>()
+    whenever(cache.getLock(anyOrNull())).doReturn(Any())
+    whenever(cache.maxBidsPerAdUnit).doReturn(3)
+    whenever(refillPolicy.getTargetDepth(any(), eq(3))).doReturn(targetDepth)
+    return cache
+  }
+
+  private fun givenSlot(isExpired: Boolean): CdbResponseSlot = mock {
+    on { isValid() } doReturn true
+    on { isExpired(any()) } doReturn isExpired
+  }
+
+  private fun givenResponse(vararg slots: CdbResponseSlot): CdbResponse = mock {
+    on { this.slots } doReturn slots.toList()
+  }
+
+  private fun createBidManager(
+      adUnit: AdUnit,
+      cacheAdUnit: CacheAdUnit,
+      cache: SdkCache,
+      refillPolicy: BidRefillPolicy,
+      bidRequestSender: BidRequestSender = mock(),
+      lifecycleListener: BidLifecycleListener = mock()
+  ): BidManager {
+    val adUnitMapper = mock<AdUnitMapper> {
+      on { map(adUnit) } doReturn cacheAdUnit
+    }
+
+    return BidManager(
+        cache,
+        mock(),
+        mock(),
+        refillPolicy,
+        adUnitMapper,
+        bidRequestSender,
+        mock<LiveBidRequestSender>(),
+        lifecycleListener,
+        mock<ConsentData>()
+    )
+  }
 }
@@ -34,8 +34,10 @@ import com.criteo.publisher.activity.TopActivityFinder;
 import com.criteo.publisher.bid.BidLifecycleListener;
 import com.criteo.publisher.concurrent.DirectMockRunOnUiThreadExecutor;
 import com.criteo.publisher.context.ContextData;
+import com.criteo.publisher.csm.SendingQueueUploadScheduler;
 import com.criteo.publisher.headerbidding.HeaderBidding;
 import com.criteo.publisher.model.AdUnit;
+import com.criteo.publisher.model.AdUnitMapper;
 import com.criteo.publisher.model.Config;
 import com.criteo.publisher.model.DeviceInfo;
 import com.criteo.publisher.privacy.UserPrivacyUtil;
@@ -95,6 +97,26 @@ public class CriteoInternalUnitTest {
     inOrder.verify(bidManager).prefetch(any());
   }
 
+  @Test
+  public void whenCreatingNewCriteo_GivenBidCacheSweeper_ShouldStartIt() throws Exception {
+    BidCacheSweeper sweeper = mock(BidCacheSweeper.class);
+    when(dependencyProvider.provideBidCacheSweeper()).thenReturn(sweeper);
+
+    createCriteo();
+
+    verify(sweeper).start();
+  }
+
+  @Test
+  public void whenCreatingNewCriteo_GivenSendingQueueUploadScheduler_ShouldStartIt() throws Exception {
+    SendingQueueUploadScheduler scheduler = mock(SendingQueueUploadScheduler.class);
+    when(dependencyProvider.provideSendingQueueUploadScheduler()).thenReturn(scheduler);
+
+    createCriteo();
+
+    verify(scheduler).start();
+  }
+
   @Test
   public void whenCreatingNewCriteo_GivenBidManagerAndAdUnits_ShouldCallPrefetchWithAdUnits()
       throws Exception {
@@ -214,6 +236,17 @@ public class CriteoInternalUnitTest {
     verify(application).registerActivityLifecycleCallbacks(any(AppLifecycleUtil.class));
   }
 
+  @Test
+  public void whenCreatingNewCriteo_GivenApplication_RegisterAdUnitMapperForConfigurationChanges()
+      throws Exception {
+    AdUnitMapper adUnitMapper = mock(AdUnitMapper.class);
+    doReturn(adUnitMapper).when(dependencyProvider).provideAdUnitMapper();
+
+    createCriteo();
+
+    verify(application).registerComponentCallbacks(adUnitMapper);
+  }
+
   @Test
   public void whenCreatingNewCriteo_GivenApplication_RegisterLastActivityTracker()
       throws Exception {
@@ -0,0 +1,128 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.cache
+
+import com.criteo.publisher.Clock
+import com.criteo.publisher.model.AdSize
+import com.criteo.publisher.model.CacheAdUnit
+import com.criteo.publisher.util.AdUnitType.CRITEO_CUSTOM_NATIVE
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.whenever
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Test
+
+class BidRefillPolicyTest {
+
+  private lateinit var clock: Clock
+
+  private lateinit var policy: BidRefillPolicy
+
+  private val adUnit = CacheAdUnit(AdSize(2, 2), "adUnit", CRITEO_CUSTOM_NATIVE)
+
+  @Before
+  fun setUp() {
+    clock = mock {
+      on { currentTimeInMillis } doReturn 0L
+    }
+
+    policy = BidRefillPolicy(clock)
+  }
+
+  @Test
+  fun getTargetDepth_GivenNeverConsumedAdUnit_ReturnOne() {
+    assertThat(policy.getTargetDepth(adUnit, 5)).isEqualTo(1)
+  }
+
+  @Test
+  fun getTargetDepth_GivenOnlyOneConsumption_ReturnOne() {
+    policy.onBidConsumed(adUnit)
+
+    assertThat(policy.getTargetDepth(adUnit, 5)).isEqualTo(1)
+  }
+
+  @Test
+  fun getTargetDepth_GivenRapidConsumptions_ReturnMaxDepth() {
+    givenConsumptionsEvery(100L, 10)
+
+    assertThat(policy.getTargetDepth(adUnit, 5)).isEqualTo(5)
+  }
+
+  @Test
+  fun getTargetDepth_GivenConsumptionsEveryTwoSeconds_ReturnNumberOfConsumptionsInRefillWindow() {
+    givenConsumptionsEvery(2_000L, 10)
+
+    assertThat(policy.getTargetDepth(adUnit, 5)).isEqualTo(3)
+  }
+
+  @Test
+  fun getTargetDepth_GivenSlowConsumptions_ReturnOne() {
+    givenConsumptionsEvery(60_000L, 10)
+
+    assertThat(policy.getTargetDepth(adUnit, 5)).isEqualTo(1)
+  }
+
+  @Test
+  fun getTargetDepth_GivenRapidConsumptionsThatStopped_ReturnOne() {
+    val lastConsumption = givenConsumptionsEvery(100L, 10)
+
+    whenever(clock.currentTimeInMillis).doReturn(lastConsumption + 60_000L)
+
+    assertThat(policy.getTargetDepth(adUnit, 5)).isEqualTo(1)
+  }
+
+  @Test
+  fun getTargetDepth_GivenMaxDepthOfOne_ReturnOne() {
+    givenConsumptionsEvery(100L, 10)
+
+    assertThat(policy.getTargetDepth(adUnit, 1)).isEqualTo(1)
+  }
+
+  @Test
+  fun isRecentlyConsumed_GivenNeverConsumedAdUnit_ReturnFalse() {
+    assertThat(policy.isRecentlyConsumed(adUnit, 1_000L)).isFalse()
+  }
+
+  @Test
+  fun isRecentlyConsumed_GivenConsumptionWithinPeriod_ReturnTrue() {
+    val lastConsumption = givenConsumptionsEvery(100L, 1)
+
+    whenever(clock.currentTimeInMillis).doReturn(lastConsumption + 1_000L)
+
+    assertThat(policy.isRecentlyConsumed(adUnit, 1_000L)).isTrue()
+  }
+
+  @Test
+  fun isRecentlyConsumed_GivenConsumptionBeforePeriod_ReturnFalse() {
+    val lastConsumption = givenConsumptionsEvery(100L, 1)
+
+    whenever(clock.currentTimeInMillis).doReturn(lastConsumption + 1_001L)
+
+    assertThat(policy.isRecentlyConsumed(adUnit, 1_000L)).isFalse()
+  }
+
+  private fun givenConsumptionsEvery(intervalInMillis: Long, count: Int): Long {
+    var now = 0L
+    repeat(count) {
+      now += intervalInMillis
+      whenever(clock.currentTimeInMillis).doReturn(now)
+      policy.onBidConsumed(adUnit)
+    }
+    return now
+  }
+}
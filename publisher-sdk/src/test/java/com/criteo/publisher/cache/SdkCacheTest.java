@@ -32,6 +32,14 @@ import com.criteo.publisher.model.AdSize;
 import com.criteo.publisher.model.CacheAdUnit;
 import com.criteo.publisher.model.CdbResponseSlot;
 import com.criteo.publisher.util.DeviceUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import junit.framework.Assert;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -327,6 +335,214 @@ public class SdkCacheTest {
     assertThat(slot).isNull();
   }
 
+  @Test
+  public void peekAdUnit_GivenNullKey_ReturnNull() throws Exception {
+    assertThat(cache.peekAdUnit(null)).isNull();
+  }
+
+  @Test
+  public void put_GivenNullSlot_RemoveExistingSlot() throws Exception {
+    AdSize size = new AdSize(1, 2);
+    CdbResponseSlot slot = givenNativeSlot(size, "myAdUnit");
+    CacheAdUnit key = new CacheAdUnit(size, "myAdUnit", CRITEO_CUSTOM_NATIVE);
+
+    cache.add(slot);
+    cache.put(key, null);
+
+    assertThat(cache.peekAdUnit(key)).isNull();
+    assertThat(cache.getItemCount()).isZero();
+  }
+
+  @Test
+  public void getLock_GivenEqualKeys_ReturnSameLock() throws Exception {
+    CacheAdUnit key1 = new CacheAdUnit(new AdSize(1, 2), "myAdUnit", CRITEO_BANNER);
+    CacheAdUnit key2 = new CacheAdUnit(new AdSize(1, 2), "myAdUnit", CRITEO_BANNER);
+
+    assertThat(cache.getLock(key1)).isSameAs(cache.getLock(key2));
+    assertThat(cache.getLock(null)).isNotNull();
+  }
+
+  @Test
+  public void consume_GivenManyThreadsConsumingUnderLock_EachSlotIsConsumedOnce() throws Exception {
+    int adUnitCount = 50;
+    int threadCount = 8;
+
+    List<CacheAdUnit> keys = new ArrayList<>();
+    for (int i = 0; i < adUnitCount; i++) {
+      AdSize size = new AdSize(1, 2);
+      CdbResponseSlot slot = givenNativeSlot(size, "adUnit" + i);
+      keys.add(new CacheAdUnit(size, "adUnit" + i, CRITEO_CUSTOM_NATIVE));
+      cache.add(slot);
+    }
+
+    AtomicInteger consumed = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threadCount; i++) {
+        futures.add(executor.submit((Callable<Void>) () -> {
+          for (CacheAdUnit key : keys) {
+            synchronized (cache.getLock(key)) {
+              if (cache.peekAdUnit(key) != null) {
+                cache.remove(key);
+                consumed.incrementAndGet();
+              }
+            }
+          }
+          return null;
+        }));
+      }
+
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(consumed.get()).isEqualTo(adUnitCount);
+    assertThat(cache.getItemCount()).isZero();
+  }
+
+  @Test
+  public void add_GivenSeveralSlotsForSameAdUnit_PeekAndRemoveThemByExpiryTime() throws Exception {
+    cache = new SdkCache(deviceUtil, 3);
+    AdSize size = new AdSize(1, 2);
+    CacheAdUnit key = new CacheAdUnit(size, "myAdUnit", CRITEO_CUSTOM_NATIVE);
+
+    CdbResponseSlot slot1 = givenNativeSlot(size, "myAdUnit", 60, 1000);
+    CdbResponseSlot slot2 = givenNativeSlot(size, "myAdUnit", 30, 1000);
+    CdbResponseSlot slot3 = givenNativeSlot(size, "myAdUnit", 60, 2000);
+
+    cache.add(slot1);
+    cache.add(slot2);
+    cache.add(slot3);
+
+    assertThat(cache.getBidCount(key)).isEqualTo(3);
+    assertThat(cache.peekAdUnit(key)).isSameAs(slot2);
+    cache.remove(key);
+    assertThat(cache.peekAdUnit(key)).isSameAs(slot1);
+    cache.remove(key);
+    assertThat(cache.peekAdUnit(key)).isSameAs(slot3);
+    cache.remove(key);
+    assertThat(cache.peekAdUnit(key)).isNull();
+    assertThat(cache.getBidCount(key)).isZero();
+  }
+
+  @Test
+  public void add_GivenFullQueue_EvictSlotExpiringFirstAndKeepNewOne() throws Exception {
+    cache = new SdkCache(deviceUtil, 2);
+    AdSize size = new AdSize(1, 2);
+    CacheAdUnit key = new CacheAdUnit(size, "myAdUnit", CRITEO_CUSTOM_NATIVE);
+
+    CdbResponseSlot slot1 = givenNativeSlot(size, "myAdUnit", 60, 1000);
+    CdbResponseSlot slot2 = givenNativeSlot(size, "myAdUnit", 30, 1000);
+    CdbResponseSlot slot3 = givenNativeSlot(size, "myAdUnit", 10, 1000);
+
+    cache.add(slot1);
+    cache.add(slot2);
+    cache.add(slot3);
+
+    assertThat(cache.getBidCount(key)).isEqualTo(2);
+    assertThat(cache.peekAdUnit(key)).isSameAs(slot3);
+    cache.remove(key);
+    assertThat(cache.peekAdUnit(key)).isSameAs(slot1);
+  }
+
+  @Test
+  public void add_GivenDefaultDepth_NewSlotReplacePreviousOne() throws Exception {
+    AdSize size = new AdSize(1, 2);
+    CacheAdUnit key = new CacheAdUnit(size, "myAdUnit", CRITEO_CUSTOM_NATIVE);
+
+    CdbResponseSlot slot1 = givenNativeSlot(size, "myAdUnit", 60, 1000);
+    CdbResponseSlot slot2 = givenNativeSlot(size, "myAdUnit", 10, 1000);
+
+    cache.add(slot1);
+    cache.add(slot2);
+
+    assertThat(cache.getMaxBidsPerAdUnit()).isEqualTo(1);
+    assertThat(cache.getBidCount(key)).isEqualTo(1);
+    assertThat(cache.peekAdUnit(key)).isSameAs(slot2);
+  }
+
+  @Test
+  public void peekLastAdUnit_GivenSeveralSlots_ReturnSlotExpiringLast() throws Exception {
+    cache = new SdkCache(deviceUtil, 3);
+    AdSize size = new AdSize(1, 2);
+    CacheAdUnit key = new CacheAdUnit(size, "myAdUnit", CRITEO_CUSTOM_NATIVE);
+
+    CdbResponseSlot slot1 = givenNativeSlot(size, "myAdUnit", 60, 1000);
+    CdbResponseSlot slot2 = givenNativeSlot(size, "myAdUnit", 30, 1000);
+
+    cache.add(slot1);
+    cache.add(slot2);
+
+    assertThat(cache.peekLastAdUnit(key)).isSameAs(slot1);
+    assertThat(cache.peekLastAdUnit(null)).isNull();
+  }
+
+  @Test
+  public void getAdUnits_GivenCachedSlots_ReturnTheirKeys() throws Exception {
+    AdSize size = new AdSize(1, 2);
+    cache.add(givenNativeSlot(size, "myAdUnit1"));
+    cache.add(givenNativeSlot(size, "myAdUnit2"));
+
+    assertThat(cache.getAdUnits()).containsExactlyInAnyOrder(
+        new CacheAdUnit(size, "myAdUnit1", CRITEO_CUSTOM_NATIVE),
+        new CacheAdUnit(size, "myAdUnit2", CRITEO_CUSTOM_NATIVE)
+    );
+  }
+
+  @Test
+  public void clear_GivenSeveralSlots_RemoveAllOfThem() throws Exception {
+    cache = new SdkCache(deviceUtil, 3);
+    AdSize size = new AdSize(1, 2);
+    CacheAdUnit key = new CacheAdUnit(size, "myAdUnit", CRITEO_CUSTOM_NATIVE);
+
+    cache.add(givenNativeSlot(size, "myAdUnit", 60, 1000));
+    cache.add(givenNativeSlot(size, "myAdUnit", 30, 1000));
+    cache.clear(key);
+
+    assertThat(cache.getBidCount(key)).isZero();
+    assertThat(cache.peekAdUnit(key)).isNull();
+  }
+
+  @Test
+  public void clear_GivenLockHeldByAnotherThread_WaitForIt() throws Exception {
+    AdSize size = new AdSize(1, 2);
+    CacheAdUnit key = new CacheAdUnit(size, "myAdUnit", CRITEO_CUSTOM_NATIVE);
+    cache.add(givenNativeSlot(size, "myAdUnit"));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> future;
+      synchronized (cache.getLock(key)) {
+        future = executor.submit(() -> cache.clear(key));
+        Thread.sleep(100);
+
+        assertThat(future.isDone()).isFalse();
+        assertThat(cache.getBidCount(key)).isEqualTo(1);
+      }
+
+      future.get(1, TimeUnit.SECONDS);
+      assertThat(cache.getBidCount(key)).isZero();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static CdbResponseSlot givenNativeSlot(
+      AdSize size,
+      String placementId,
+      int ttlInSeconds,
+      long timeOfDownload
+  ) {
+    CdbResponseSlot slot = givenNativeSlot(size, placementId);
+    when(slot.getTtlInSeconds()).thenReturn(ttlInSeconds);
+    when(slot.getTimeOfDownload()).thenReturn(timeOfDownload);
+    return slot;
+  }
+
   private static CdbResponseSlot givenNativeSlot(AdSize size, String placementId) {
     CdbResponseSlot slot = mock(CdbResponseSlot.class);
     when(slot.isNative()).thenReturn(true);
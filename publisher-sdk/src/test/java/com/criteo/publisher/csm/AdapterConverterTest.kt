@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.criteo.publisher.csm
+
+import com.criteo.publisher.csm.ObjectQueueFactory.AdapterConverter
+import com.criteo.publisher.mock.MockedDependenciesRule
+import com.criteo.publisher.util.JsonSerializer
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatCode
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import javax.inject.Inject
+
+class AdapterConverterTest {
+
+  @Rule
+  @JvmField
+  val mockedDependenciesRule = MockedDependenciesRule()
+
+  @Inject
+  private lateinit var jsonSerializer: JsonSerializer
+
+  private lateinit var converter: AdapterConverter<Metric>
+
+  @Before
+  fun setUp() {
+    converter = AdapterConverter(jsonSerializer, Metric::class.java, MetricCodec())
+  }
+
+  @Test
+  fun toStream_GivenMetric_WriteVersionAndBinary() {
+    val bytes = toBytes(Metric.builder("id").build())
+
+    assertThat(bytes[0]).isEqualTo(MetricCodec().version)
+    assertThat(converter.from(bytes)).isEqualTo(Metric.builder("id").build())
+  }
+
+  @Test
+  fun from_GivenJsonWrittenByPreviousVersion_ReadIt() {
+    val metric = Metric.builder("id")
+        .setCdbCallStartTimestamp(42L)
+        .setReadyToSend(true)
+        .build()
+
+    val json = ByteArrayOutputStream()
+    jsonSerializer.write(metric, json)
+
+    assertThat(converter.from(json.toByteArray())).isEqualTo(metric)
+  }
+
+  @Test
+  fun from_GivenUnknownVersion_ThrowIOException() {
+    val bytes = toBytes(Metric.builder("id").build())
+    bytes[0] = 42
+
+    assertThatCode { converter.from(bytes) }.isInstanceOf(IOException::class.java)
+  }
+
+  @Test
+  fun from_GivenBytesFullOfZero_ThrowIOException() {
+    assertThatCode { converter.from(ByteArray(42)) }.isInstanceOf(IOException::class.java)
+    assertThatCode { converter.from(ByteArray(0)) }.isInstanceOf(IOException::class.java)
+  }
+
+  private fun toBytes(metric: Metric): ByteArray {
+    val bytes = ByteArrayOutputStream()
+    converter.toStream(metric, bytes)
+    return bytes.toByteArray()
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm
+
+import com.criteo.publisher.csm.BatchedQueueFile.ELEMENT_HEADER_LENGTH
+import com.criteo.publisher.csm.BatchedQueueFile.HEADER_LENGTH
+import com.squareup.tape.QueueFile
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.DataInputStream
+import java.io.File
+
+class BatchedQueueFileTest {
+
+  @Rule
+  @JvmField
+  val tempFolder = TemporaryFolder()
+
+  private lateinit var file: File
+
+  private lateinit var queueFile: BatchedQueueFile
+
+  @Before
+  fun setUp() {
+    file = tempFolder.newFile().apply {
+      delete()
+    }
+
+    queueFile = BatchedQueueFile(file)
+  }
+
+  @Test
+  fun new_GivenNoFile_CreateEmptyQueue() {
+    assertThat(queueFile.size()).isZero()
+    assertThat(queueFile.usedBytes).isEqualTo(HEADER_LENGTH)
+    assertThat(queueFile.peek()).isNull()
+  }
+
+  @Test
+  fun addAll_GivenElements_AddThemInOrder() {
+    queueFile.add(element(0, 10))
+    queueFile.addAll(listOf(element(1, 20), element(2, 30)))
+
+    assertThat(queueFile.size()).isEqualTo(3)
+    assertThat(queueFile.peek(10)).containsExactly(element(0, 10), element(1, 20), element(2, 30))
+    assertThat(queueFile.usedBytes).isEqualTo(HEADER_LENGTH + 3 * ELEMENT_HEADER_LENGTH + 60)
+  }
+
+  @Test
+  fun addAll_GivenReopenedFile_ElementsArePersisted() {
+    queueFile.addAll(listOf(element(0, 10), element(1, 20)))
+    queueFile.close()
+
+    val reopenedQueueFile = BatchedQueueFile(file)
+
+    assertThat(reopenedQueueFile.peek(10)).containsExactly(element(0, 10), element(1, 20))
+    assertThat(reopenedQueueFile.usedBytes).isEqualTo(queueFile.usedBytes)
+  }
+
+  @Test
+  fun remove_GivenLessThanSize_RemoveFirstElementsOnly() {
+    queueFile.addAll((0 until 5).map { element(it, 10) })
+
+    queueFile.remove(2)
+
+    assertThat(queueFile.size()).isEqualTo(3)
+    assertThat(queueFile.peek(10)).containsExactlyElementsOf((2 until 5).map { element(it, 10) })
+    assertThat(queueFile.usedBytes).isEqualTo(HEADER_LENGTH + 3 * (ELEMENT_HEADER_LENGTH + 10))
+  }
+
+  @Test
+  fun remove_GivenMoreThanSize_ClearQueue() {
+    queueFile.addAll((0 until 5).map { element(it, 10) })
+
+    queueFile.remove(10)
+
+    assertThat(queueFile.size()).isZero()
+    assertThat(queueFile.usedBytes).isEqualTo(HEADER_LENGTH)
+  }
+
+  @Test
+  fun addAll_GivenElementsWrappingAroundEndOfFile_KeepThemInOrder() {
+    // Fill most of the initial file, then free its start so next elements wrap around
+    queueFile.addAll((0 until 30).map { element(it, 100) })
+    queueFile.remove(20)
+    queueFile.addAll((30 until 45).map { element(it, 100) })
+
+    assertThat(queueFile.peek(100))
+        .containsExactlyElementsOf((20 until 45).map { element(it, 100) })
+
+    // Grow the file while elements are wrapped
+    queueFile.addAll((45 until 100).map { element(it, 100) })
+    queueFile.close()
+
+    val reopenedQueueFile = BatchedQueueFile(file)
+    assertThat(reopenedQueueFile.peek(100))
+        .containsExactlyElementsOf((20 until 100).map { element(it, 100) })
+  }
+
+  @Test
+  fun new_GivenFileWrittenByTape_ReadIt() {
+    queueFile.close()
+    file.delete()
+    QueueFile(file).apply {
+      add(element(0, 10))
+      add(element(1, 20))
+      remove()
+      add(element(2, 30))
+      close()
+    }
+
+    val batchedQueueFile = BatchedQueueFile(file)
+
+    assertThat(batchedQueueFile.peek(10)).containsExactly(element(1, 20), element(2, 30))
+  }
+
+  @Test
+  fun addAll_GivenFileReadByTape_TapeReadsSameElements() {
+    queueFile.addAll((0 until 50).map { element(it, 100) })
+    queueFile.remove(10)
+    queueFile.close()
+
+    val elements = mutableListOf<ByteArray>()
+    QueueFile(file).forEach { input, length ->
+      elements.add(ByteArray(length).also { DataInputStream(input).readFully(it) })
+    }
+
+    assertThat(elements).containsExactlyElementsOf((10 until 50).map { element(it, 100) })
+  }
+
+  private fun element(id: Int, length: Int): ByteArray {
+    return ByteArray(length) { (id + it).toByte() }
+  }
+}
@@ -75,6 +75,18 @@ class BoundedMetricRepositoryTest {
     assertThat(size).isEqualTo(42)
   }
 
+  @Test
+  fun getById_GivenDelegate_DelegateToIt() {
+    val metric = mock<Metric>()
+    delegate.stub {
+      on { getById("id") } doReturn metric
+    }
+
+    val readMetric = repository.getById("id")
+
+    assertThat(readMetric).isSameAs(metric)
+  }
+
   @Test
   fun contains_GivenDelegate_DelegateToIt() {
     delegate.stub {
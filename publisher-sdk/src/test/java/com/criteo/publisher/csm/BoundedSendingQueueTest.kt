@@ -16,8 +16,10 @@
 
 package com.criteo.publisher.csm
 
+import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.doReturn
 import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.never
 import com.nhaarman.mockitokotlin2.stub
 import com.nhaarman.mockitokotlin2.verify
 import org.assertj.core.api.Assertions.assertThat
@@ -105,4 +107,44 @@ class BoundedSendingQueueTest {
     verify(delegate).offer(metric)
     verify(delegate).poll(1)
   }
+
+  @Test
+  fun offerAll_GivenDelegateWithSizeBelowThreshold_DelegateToIt() {
+    val metrics = listOf(mock<Metric>(), mock())
+
+    delegate.stub {
+      on { totalSize } doReturn 42
+      on { offerAll(metrics) } doReturn true
+    }
+
+    sendingQueueConfiguration.stub {
+      on { maxSizeOfSendingQueue } doReturn 1337
+    }
+
+    val success = queue.offerAll(metrics)
+
+    assertThat(success).isTrue()
+    verify(delegate).offerAll(metrics)
+    verify(delegate, never()).poll(any())
+  }
+
+  @Test
+  fun offerAll_GivenDelegateWithMaxCapacity_PollDelegateToMakeRoomAndThenOfferAll() {
+    val metrics = listOf(mock<Metric>(), mock())
+
+    delegate.stub {
+      on { totalSize } doReturn 42
+      on { offerAll(metrics) } doReturn true
+    }
+
+    sendingQueueConfiguration.stub {
+      on { maxSizeOfSendingQueue } doReturn 42
+    }
+
+    val success = queue.offerAll(metrics)
+
+    assertThat(success).isTrue()
+    verify(delegate).offerAll(metrics)
+    verify(delegate).poll(1)
+  }
 }
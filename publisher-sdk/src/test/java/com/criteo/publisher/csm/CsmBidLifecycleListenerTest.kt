@@ -17,6 +17,7 @@
 package com.criteo.publisher.csm
 
 import com.criteo.publisher.Clock
+import com.criteo.publisher.mock.MockedDependenciesRule
 import com.criteo.publisher.model.AdSize
 import com.criteo.publisher.model.CacheAdUnit
 import com.criteo.publisher.model.CdbRequest
@@ -26,6 +27,7 @@ import com.criteo.publisher.model.CdbResponseSlot
 import com.criteo.publisher.model.Config
 import com.criteo.publisher.privacy.ConsentData
 import com.criteo.publisher.util.AdUnitType.CRITEO_BANNER
+import com.criteo.publisher.util.BuildConfigWrapper
 import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.argumentCaptor
 import com.nhaarman.mockitokotlin2.check
@@ -41,6 +43,7 @@ import com.nhaarman.mockitokotlin2.verifyZeroInteractions
 import com.nhaarman.mockitokotlin2.whenever
 import org.assertj.core.api.Assertions.assertThat
 import org.junit.Before
+import org.junit.Rule
 import org.junit.Test
 import org.mockito.Mock
 import org.mockito.MockitoAnnotations
@@ -48,9 +51,15 @@ import java.io.IOException
 import java.io.InterruptedIOException
 import java.net.SocketTimeoutException
 import java.util.concurrent.Executor
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
 
 class CsmBidLifecycleListenerTest {
 
+  @Rule
+  @JvmField
+  var mockedDependenciesRule = MockedDependenciesRule()
+
   @Mock
   private lateinit var repository: MetricRepository
 
@@ -66,6 +75,15 @@ class CsmBidLifecycleListenerTest {
   @Mock
   private lateinit var consentData: ConsentData
 
+  @Mock
+  private lateinit var scheduledExecutorService: ScheduledExecutorService
+
+  @Mock
+  private lateinit var buildConfigWrapper: BuildConfigWrapper
+
+  @Mock
+  private lateinit var sampler: MetricSampler
+
   private lateinit var executor: Executor
 
   private lateinit var listener: CsmBidLifecycleListener
@@ -82,21 +100,85 @@ class CsmBidLifecycleListenerTest {
 
     whenever(consentData.isConsentGiven()).thenReturn(true)
 
+    buildConfigWrapper.stub {
+      on { csmRecoveryMaxDelayInMillis } doReturn 42
+    }
+
+    sampler.stub {
+      on { sample(any()) } doReturn 1
+    }
+
+    repository.stub {
+      on { contains(any()) } doReturn true
+    }
+
     listener = CsmBidLifecycleListener(
         repository,
         sendingQueueProducer,
         clock,
         config,
         consentData,
-        executor
+        executor,
+        scheduledExecutorService,
+        buildConfigWrapper,
+        sampler
     )
   }
 
   @Test
-  fun onSdkInitialized_PushAllMetricsInQueue() {
+  fun onSdkInitialized_DoNotPushMetricsInQueueImmediately() {
+    listener.onSdkInitialized()
+
+    verify(sendingQueueProducer, never()).pushAllInQueue(any(), any())
+  }
+
+  @Test
+  fun onSdkInitialized_AfterMaxDelay_PushMetricsStoredBeforeInitializationInQueue() {
+    whenever(clock.currentTimeInMillis).thenReturn(1337L)
+
+    listener.onSdkInitialized()
+
+    argumentCaptor<Runnable>().apply {
+      verify(scheduledExecutorService).schedule(capture(), eq(42L), eq(TimeUnit.MILLISECONDS))
+      firstValue.run()
+    }
+
+    verify(sendingQueueProducer).pushAllInQueue(repository, 1337L)
+  }
+
+  @Test
+  fun onSdkInitialized_GivenFirstCdbCallFinished_PushMetricsStoredBeforeInitializationInQueueOnce() {
+    whenever(clock.currentTimeInMillis).thenReturn(1337L)
+    val request = givenCdbRequestWithSlots("id")
+    val response = mock<CdbResponse>()
+
     listener.onSdkInitialized()
+    listener.onCdbCallFinished(request, response)
+    listener.onCdbCallFinished(request, response)
+
+    argumentCaptor<Runnable>().apply {
+      verify(scheduledExecutorService).schedule(capture(), any(), any())
+      firstValue.run()
+    }
+
+    verify(sendingQueueProducer, times(1)).pushAllInQueue(repository, 1337L)
+  }
+
+  @Test
+  fun onSdkInitialized_GivenFirstCdbCallFailed_PushMetricsStoredBeforeInitializationInQueue() {
+    whenever(clock.currentTimeInMillis).thenReturn(1337L)
+
+    listener.onSdkInitialized()
+    listener.onCdbCallFailed(givenCdbRequestWithSlots("id"), IOException())
+
+    verify(sendingQueueProducer).pushAllInQueue(repository, 1337L)
+  }
+
+  @Test
+  fun onCdbCallFinished_GivenSdkNotInitialized_DoNotPushStoredMetricsInQueue() {
+    listener.onCdbCallFinished(givenCdbRequestWithSlots("id"), mock())
 
-    verify(sendingQueueProducer).pushAllInQueue(repository)
+    verify(sendingQueueProducer, never()).pushAllInQueue(any(), any())
   }
 
   @Test
@@ -117,6 +199,22 @@ class CsmBidLifecycleListenerTest {
     verifyFeatureIsDeactivated()
   }
 
+  @Test
+  fun onApplicationStopped_FlushRepository() {
+    listener.onApplicationStopped()
+
+    verify(repository).flush()
+  }
+
+  @Test
+  fun onApplicationStopped_GivenDeactivatedFeature_DoNothing() {
+    givenDeactivatedFeature()
+
+    listener.onApplicationStopped()
+
+    verifyFeatureIsDeactivated()
+  }
+
   @Test
   fun onCdbCallStarted_GivenDeactivatedFeature_DoNothing() {
     givenDeactivatedFeature()
@@ -155,6 +253,33 @@ class CsmBidLifecycleListenerTest {
     }
   }
 
+  @Test
+  fun onCdbCallStarted_GivenSampledSlot_SetSamplingWeight() {
+    val request = givenCdbRequestWithSlots("id")
+    sampler.stub {
+      on { sample("id") } doReturn 10
+    }
+
+    listener.onCdbCallStarted(request)
+
+    assertRepositoryIsUpdatedById("id") {
+      verify(it).setSamplingWeight(10)
+    }
+  }
+
+  @Test
+  fun onCdbCallStarted_GivenNotSampledSlot_DoNotTrackIt() {
+    val request = givenCdbRequestWithSlots("sampled", "notSampled")
+    sampler.stub {
+      on { sample("notSampled") } doReturn 0
+    }
+
+    listener.onCdbCallStarted(request)
+
+    verify(repository).addOrUpdateById(eq("sampled"), any())
+    verify(repository, never()).addOrUpdateById(eq("notSampled"), any())
+  }
+
   @Test
   fun onCdbCallFinished_GivenDeactivatedFeature_DoNothing() {
     givenDeactivatedFeature()
@@ -194,6 +319,19 @@ class CsmBidLifecycleListenerTest {
     verify(sendingQueueProducer).pushInQueue(repository, "id")
   }
 
+  @Test
+  fun onCdbCallFinished_GivenNotTrackedNoBid_IgnoreIt() {
+    val request = givenCdbRequestWithSlots("id")
+    repository.stub {
+      on { contains("id") } doReturn false
+    }
+
+    listener.onCdbCallFinished(request, mock())
+
+    verify(repository, never()).addOrUpdateById(any(), any())
+    verify(sendingQueueProducer, never()).pushInQueue(any(), any())
+  }
+
   @Test
   fun onCdbCallFinished_GivenOnlyValidBid_DoNotPushReadyToSendInQueue() {
     val request = givenCdbRequestWithSlots("id")
@@ -310,6 +448,19 @@ class CsmBidLifecycleListenerTest {
     verify(sendingQueueProducer).pushInQueue(repository, "id2")
   }
 
+  @Test
+  fun onCdbCallFailed_GivenNotTrackedSlot_IgnoreIt() {
+    val request = givenCdbRequestWithSlots("id")
+    repository.stub {
+      on { contains("id") } doReturn false
+    }
+
+    listener.onCdbCallFailed(request, mock<IOException>())
+
+    verify(repository, never()).addOrUpdateById(any(), any())
+    verify(sendingQueueProducer, never()).pushInQueue(any(), any())
+  }
+
   @Test
   fun onBidConsumed_GivenDeactivatedFeature_DoNothing() {
     givenDeactivatedFeature()
@@ -373,6 +524,24 @@ class CsmBidLifecycleListenerTest {
     verify(sendingQueueProducer).pushInQueue(repository, "id")
   }
 
+  @Test
+  fun onBidConsumed_GivenNotTrackedBid_IgnoreIt() {
+    val adUnit = CacheAdUnit(AdSize(1, 2), "myAdUnit", CRITEO_BANNER)
+
+    val slot = mock<CdbResponseSlot>() {
+      on { impressionId } doReturn "id"
+    }
+
+    repository.stub {
+      on { contains("id") } doReturn false
+    }
+
+    listener.onBidConsumed(adUnit, slot)
+
+    verify(repository, never()).addOrUpdateById(any(), any())
+    verifyZeroInteractions(sendingQueueProducer)
+  }
+
   @Test
   fun onBidConsumed_GivenBidWithoutImpressionId_DoNothing() {
     val adUnit = CacheAdUnit(AdSize(1, 2), "myAdUnit", CRITEO_BANNER)
@@ -524,5 +693,6 @@ class CsmBidLifecycleListenerTest {
     verifyZeroInteractions(repository)
     verifyZeroInteractions(clock)
     verifyZeroInteractions(sendingQueueProducer)
+    verifyZeroInteractions(scheduledExecutorService)
   }
 }
@@ -0,0 +1,89 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm
+
+import com.criteo.publisher.csm.LatencyHistogram.BUCKET_COUNT
+import com.criteo.publisher.csm.LatencyHistogram.MAX_TRACKABLE_VALUE
+import com.criteo.publisher.csm.LatencyHistogram.getBucketIndex
+import com.criteo.publisher.csm.LatencyHistogram.getBucketLowerBound
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+
+class LatencyHistogramTest {
+
+  @Test
+  fun getBucketIndex_GivenSmallDurations_RecordThemExactly() {
+    (0L until 16L).forEach {
+      assertThat(getBucketLowerBound(getBucketIndex(it))).isEqualTo(it)
+    }
+  }
+
+  @Test
+  fun getBucketIndex_GivenAnyDuration_BucketContainsItWithBoundedRelativeError() {
+    var value = 0L
+    while (value <= MAX_TRACKABLE_VALUE) {
+      val index = getBucketIndex(value)
+      val lowerBound = getBucketLowerBound(index)
+      val upperBound = if (index + 1 < BUCKET_COUNT) {
+        getBucketLowerBound(index + 1)
+      } else {
+        MAX_TRACKABLE_VALUE + 1
+      }
+
+      assertThat(value).isBetween(lowerBound, upperBound - 1)
+      assertThat(upperBound - lowerBound).isLessThanOrEqualTo(maxOf(1L, lowerBound / 8))
+
+      value = value * 9 / 8 + 1
+    }
+  }
+
+  @Test
+  fun getBucketIndex_GivenOutOfRangeDurations_ClampThem() {
+    assertThat(getBucketIndex(-42)).isEqualTo(0)
+    assertThat(getBucketIndex(Long.MAX_VALUE)).isEqualTo(BUCKET_COUNT - 1)
+  }
+
+  @Test
+  fun toSummary_GivenRecordedDurations_ReturnNonEmptyBucketsInOrder() {
+    val histogram = LatencyHistogram()
+    histogram.record(300)
+    histogram.record(3)
+    histogram.record(3)
+    histogram.record(310)
+
+    val summary = histogram.toSummary()
+
+    assertThat(histogram.totalCount).isEqualTo(4)
+    assertThat(summary.lowerBounds).containsExactly(3L, 288L)
+    assertThat(summary.counts).containsExactly(2L, 2L)
+  }
+
+  @Test
+  fun add_GivenOtherHistogram_SumBuckets() {
+    val histogram1 = LatencyHistogram()
+    histogram1.record(3)
+    histogram1.record(1000)
+
+    val histogram2 = LatencyHistogram()
+    histogram2.record(3)
+
+    histogram1.add(histogram2)
+
+    assertThat(histogram1.totalCount).isEqualTo(3)
+    assertThat(histogram1.toSummary().counts).containsExactly(2L, 1L)
+  }
+}
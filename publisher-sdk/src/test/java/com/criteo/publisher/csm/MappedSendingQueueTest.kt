@@ -0,0 +1,240 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.criteo.publisher.csm
+
+import com.criteo.publisher.csm.MappedSendingQueue.HEADER_SIZE
+import com.criteo.publisher.csm.ObjectQueueFactory.AdapterConverter
+import com.criteo.publisher.mock.MockedDependenciesRule
+import com.criteo.publisher.util.JsonSerializer
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.RandomAccessFile
+import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executors
+import javax.inject.Inject
+
+class MappedSendingQueueTest {
+
+  @Rule
+  @JvmField
+  val mockedDependenciesRule = MockedDependenciesRule()
+
+  @Rule
+  @JvmField
+  val tempFolder = TemporaryFolder()
+
+  @Inject
+  private lateinit var jsonSerializer: JsonSerializer
+
+  private lateinit var file: File
+
+  private lateinit var queue: MappedSendingQueue<Metric>
+
+  @Before
+  fun setUp() {
+    file = File(tempFolder.root, "queue.ring")
+    queue = createQueue()
+  }
+
+  @Test
+  fun getTotalSize_GivenNewQueue_ReturnZero() {
+    assertThat(queue.totalSize).isEqualTo(0)
+    assertThat(file.length()).isEqualTo(HEADER_SIZE + 1024L)
+  }
+
+  @Test
+  fun offerAll_GivenMetrics_PollThemInOrder() {
+    val metrics = (0 until 10).map { mockMetric(it) }
+
+    assertThat(queue.offerAll(metrics)).isTrue()
+
+    assertThat(queue.totalSize).isGreaterThan(0)
+    assertThat(queue.poll(10)).containsExactlyElementsOf(metrics)
+    assertThat(queue.totalSize).isEqualTo(0)
+  }
+
+  @Test
+  fun poll_GivenMoreElementsThanMax_KeepRemainingElementsInOrder() {
+    (0 until 10).forEach {
+      queue.offer(mockMetric(it))
+    }
+
+    val firstMetrics = queue.poll(4)
+    val nextMetrics = queue.poll(10)
+
+    assertThat(firstMetrics).containsExactlyElementsOf((0 until 4).map { mockMetric(it) })
+    assertThat(nextMetrics).containsExactlyElementsOf((4 until 10).map { mockMetric(it) })
+  }
+
+  @Test
+  fun poll_AfterReopeningQueue_ReturnElementsOfPreviousQueueWithSameSize() {
+    (0 until 10).forEach {
+      queue.offer(mockMetric(it))
+    }
+    queue.poll(3)
+    val size = queue.totalSize
+
+    queue = createQueue()
+
+    assertThat(queue.totalSize).isEqualTo(size)
+    assertThat(queue.poll(10)).containsExactlyElementsOf((3 until 10).map { mockMetric(it) })
+  }
+
+  @Test
+  fun offer_GivenFullQueue_OverwriteOldestElements() {
+    // IDs of same length so all records have the same size
+    queue.offer(mockMetric(100))
+    val recordSize = queue.totalSize
+    val capacityInRecords = 1024 / recordSize
+
+    (101 until 100 + 3 * capacityInRecords).forEach {
+      assertThat(queue.offer(mockMetric(it))).isTrue()
+    }
+
+    val lastMetrics = (100 + 2 * capacityInRecords until 100 + 3 * capacityInRecords)
+        .map { mockMetric(it) }
+    assertThat(queue.totalSize).isEqualTo(capacityInRecords * recordSize)
+    assertThat(queue.poll(Int.MAX_VALUE)).containsExactlyElementsOf(lastMetrics)
+  }
+
+  @Test
+  fun offer_GivenElementLargerThanCapacity_ReturnFalse() {
+    queue = createQueue(capacity = 16)
+
+    assertThat(queue.offer(mockMetric())).isFalse()
+    assertThat(queue.totalSize).isEqualTo(0)
+  }
+
+  @Test
+  fun offerAll_GivenBatchLargerThanCapacity_InsertNoneOfIt() {
+    queue.offer(mockMetric(1))
+    val size = queue.totalSize
+    val batch = (100 until 100 + 1024 / size + 1).map { mockMetric(it) }
+
+    assertThat(queue.offerAll(batch)).isFalse()
+
+    assertThat(queue.poll(Int.MAX_VALUE)).containsExactly(mockMetric(1))
+  }
+
+  @Test
+  fun poll_GivenCorruptedRecord_DropRemainingElements() {
+    queue.offer(mockMetric(1))
+    queue.offer(mockMetric(2))
+
+    // Corrupt the payload of the first record
+    RandomAccessFile(file, "rw").use {
+      it.seek(HEADER_SIZE + MappedSendingQueue.RECORD_HEADER_SIZE + 2L)
+      it.writeByte(it.readByte().toInt().inv())
+    }
+    queue = createQueue()
+
+    assertThat(queue.poll(10)).isEmpty()
+    assertThat(queue.totalSize).isEqualTo(0)
+  }
+
+  @Test
+  fun new_GivenTornLatestHeader_RestorePreviousState() {
+    queue.offer(mockMetric(1))
+    queue.offer(mockMetric(2))
+
+    // The second update of the header is written in the first slot
+    RandomAccessFile(file, "rw").use {
+      it.seek(8)
+      it.writeLong(42)
+    }
+    queue = createQueue()
+
+    assertThat(queue.poll(10)).containsExactly(mockMetric(1))
+  }
+
+  @Test
+  fun new_GivenLegacyTapeQueueFile_MoveItsElementsAndDeleteIt() {
+    val legacyFile = tempFolder.newFile("queue").apply { delete() }
+    val legacyQueue = SizedFileObjectQueue(
+        legacyFile,
+        AdapterConverter(jsonSerializer, Metric::class.java, MetricCodec())
+    )
+    legacyQueue.add(mockMetric(1))
+    legacyQueue.add(mockMetric(2))
+
+    val legacyQueueFactory = mock<ObjectQueueFactory<Metric>> {
+      on { queueFile } doReturn legacyFile
+      on { create() } doReturn legacyQueue
+    }
+    queue = createQueue(legacyQueueFactory = legacyQueueFactory)
+    queue.offer(mockMetric(3))
+
+    assertThat(queue.poll(10)).containsExactly(mockMetric(1), mockMetric(2), mockMetric(3))
+    assertThat(legacyFile).doesNotExist()
+  }
+
+  @Test
+  fun poll_GivenManyWorkersInParallel_ShouldNotProduceDuplicate() {
+    queue = createQueue(capacity = 1024 * 1024)
+    for (id in 0 until 2000) {
+      queue.offer(mockMetric(id))
+    }
+
+    val polledMetric = Collections.newSetFromMap(ConcurrentHashMap<Metric, Boolean>())
+
+    val nbWorkers = 10
+    val executor = Executors.newFixedThreadPool(nbWorkers)
+    val allAreReadyToWork = CyclicBarrier(nbWorkers)
+    val allAreDone = CountDownLatch(nbWorkers)
+
+    for (i in 0 until nbWorkers) {
+      executor.execute {
+        allAreReadyToWork.await()
+        val metrics = queue.poll(100)
+        polledMetric.addAll(metrics)
+        allAreDone.countDown()
+      }
+    }
+
+    allAreDone.await()
+
+    assertThat(polledMetric).hasSize(100 * nbWorkers)
+  }
+
+  private fun createQueue(
+      capacity: Int = 1024,
+      legacyQueueFactory: ObjectQueueFactory<Metric>? = null
+  ): MappedSendingQueue<Metric> {
+    return MappedSendingQueue(file, capacity, MetricCodec(), legacyQueueFactory).apply {
+      // Force the mapping of the file
+      totalSize
+    }
+  }
+
+  private fun mockMetric(id: Int = 1): Metric {
+    return Metric.builder("id$id")
+        .setCdbCallStartTimestamp(42L)
+        .setCdbCallEndTimestamp(1337L)
+        .setElapsedTimestamp(1024L)
+        .build()
+  }
+}
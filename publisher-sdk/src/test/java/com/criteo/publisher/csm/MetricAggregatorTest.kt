@@ -0,0 +1,178 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm
+
+import com.criteo.publisher.integration.Integration
+import com.criteo.publisher.mock.MockedDependenciesRule
+import com.criteo.publisher.util.JsonSerializer
+import com.criteo.publisher.util.writeIntoString
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Rule
+import org.junit.Test
+import javax.inject.Inject
+
+class MetricAggregatorTest {
+
+  @Rule
+  @JvmField
+  val mockedDependenciesRule = MockedDependenciesRule()
+
+  @Inject
+  private lateinit var serializer: JsonSerializer
+
+  private val aggregator = MetricAggregator()
+
+  @Test
+  fun drain_GivenNoMetric_ReturnNothing() {
+    assertThat(aggregator.drain()).isEmpty()
+    assertThat(aggregator.estimatedSize).isEqualTo(0)
+  }
+
+  @Test
+  fun record_GivenMetricsOfDifferentProfilesAndZones_AggregateThemSeparately() {
+    aggregator.record(Metric.builder("id1").setProfileId(1).setZoneId(10).build())
+    aggregator.record(Metric.builder("id2").setProfileId(1).setZoneId(10).build())
+    aggregator.record(Metric.builder("id3").setProfileId(1).setZoneId(20).build())
+    aggregator.record(Metric.builder("id4").setProfileId(2).setZoneId(10).build())
+    aggregator.record(Metric.builder("id5").build())
+
+    assertThat(aggregator.estimatedSize).isGreaterThan(0)
+
+    val aggregates = aggregator.drain()
+
+    val keysAndCounts = aggregates.map { Triple(it.profileId, it.zoneId, it.count) }
+    assertThat(keysAndCounts).containsExactlyInAnyOrder(
+        Triple(1, 10, 2L),
+        Triple(1, 20, 1L),
+        Triple(2, 10, 1L),
+        Triple(Integration.FALLBACK.profileId, null, 1L)
+    )
+    assertThat(aggregator.drain()).isEmpty()
+    assertThat(aggregator.estimatedSize).isEqualTo(0)
+  }
+
+  @Test
+  fun record_GivenMetricsOfEachKind_CountThem() {
+    val builder = Metric.builder().setProfileId(1).setCdbCallStartTimestamp(100L)
+
+    // Timeout
+    aggregator.record(builder.setImpressionId("id1").setCdbCallTimeout(true).build())
+    // No bid
+    aggregator.record(builder.setImpressionId("id2").setCdbCallTimeout(false)
+        .setCdbCallEndTimestamp(130L).build())
+    // Consumed bid from cache
+    aggregator.record(builder.setImpressionId("id3").setZoneId(10).setCachedBidUsed(true)
+        .setElapsedTimestamp(1100L).build())
+
+    val aggregates = aggregator.drain()
+
+    assertThat(aggregates).hasSize(2)
+    val noZone = aggregates.first { it.zoneId == null }
+    assertThat(noZone.count).isEqualTo(2)
+    assertThat(noZone.timeoutCount).isEqualTo(1)
+    assertThat(noZone.noBidCount).isEqualTo(1)
+    assertThat(noZone.cdbCallLatency.totalCount).isEqualTo(1)
+    assertThat(noZone.elapsed.totalCount).isEqualTo(0)
+
+    val zone = aggregates.first { it.zoneId == 10 }
+    assertThat(zone.count).isEqualTo(1)
+    assertThat(zone.noBidCount).isEqualTo(0)
+    assertThat(zone.cachedBidUsedCount).isEqualTo(1)
+    assertThat(zone.consumedCount).isEqualTo(1)
+    assertThat(zone.cdbCallLatency.totalCount).isEqualTo(1)
+    assertThat(zone.elapsed.totalCount).isEqualTo(1)
+  }
+
+  @Test
+  fun record_GivenSampledMetrics_CountThemAsManyTimesAsTheirWeight() {
+    val builder = Metric.builder().setProfileId(1).setCdbCallStartTimestamp(100L)
+
+    aggregator.record(builder.setImpressionId("id1").setCdbCallEndTimestamp(130L)
+        .setSamplingWeight(10).build())
+    aggregator.record(builder.setImpressionId("id2").setCdbCallEndTimestamp(130L)
+        .setSamplingWeight(null).build())
+
+    val aggregate = aggregator.drain().single()
+    assertThat(aggregate.count).isEqualTo(11)
+    assertThat(aggregate.noBidCount).isEqualTo(11)
+    assertThat(aggregate.cdbCallLatency.totalCount).isEqualTo(11)
+  }
+
+  @Test
+  fun record_GivenSameMetricTwice_CountItOnce() {
+    val metric = Metric.builder("id1").setProfileId(1).setZoneId(10).build()
+
+    aggregator.record(metric)
+    aggregator.record(metric)
+
+    val aggregate = aggregator.drain().single()
+    assertThat(aggregate.count).isEqualTo(1)
+    assertThat(aggregate.impressionIds).containsExactly("id1")
+  }
+
+  @Test
+  fun restore_GivenDrainedAggregates_MergeThemWithNewOnes() {
+    aggregator.record(Metric.builder("id1").setProfileId(1).setZoneId(10).build())
+    val drained = aggregator.drain()
+
+    aggregator.record(Metric.builder("id2").setProfileId(1).setZoneId(10)
+        .setCdbCallTimeout(true).build())
+    aggregator.restore(drained)
+
+    val aggregates = aggregator.drain()
+    assertThat(aggregates).hasSize(1)
+    assertThat(aggregates[0].count).isEqualTo(2)
+    assertThat(aggregates[0].timeoutCount).isEqualTo(1)
+    assertThat(aggregates[0].impressionIds).containsExactlyInAnyOrder("id1", "id2")
+  }
+
+  @Test
+  fun createSummaryRequest_GivenAggregate_SerializeCountersAndHistograms() {
+    aggregator.record(Metric.builder("id1")
+        .setProfileId(456)
+        .setZoneId(10)
+        .setCdbCallStartTimestamp(100L)
+        .setCdbCallEndTimestamp(103L)
+        .setElapsedTimestamp(400L)
+        .build())
+
+    val request = MetricSummaryRequest.create(aggregator.drain(), "1.2.3", 456)
+
+    assertThat(serializer.writeIntoString(request)).isEqualToIgnoringWhitespace("""
+      {
+        "summaries": [{
+          "zoneId": 10,
+          "count": 1,
+          "timeoutCount": 0,
+          "noBidCount": 0,
+          "cachedBidUsedCount": 0,
+          "consumedCount": 1,
+          "cdbCallEndElapsed": {
+            "lowerBounds": [3],
+            "counts": [1]
+          },
+          "elapsed": {
+            "lowerBounds": [288],
+            "counts": [1]
+          }
+        }],
+        "wrapper_version": "1.2.3",
+        "profile_id": 456
+      }
+    """.trimIndent())
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.criteo.publisher.csm
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatCode
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+
+class MetricCodecTest {
+
+  private val codec = MetricCodec()
+
+  @Test
+  fun readWrite_GivenMinimalMetric_ReadSameMetric() {
+    val metric = Metric.builder("id").build()
+
+    assertThat(readWrite(metric)).isEqualTo(metric)
+  }
+
+  @Test
+  fun readWrite_GivenFullMetric_ReadSameMetric() {
+    val metric = Metric.builder("0123456789abcdef0123456789abcdef")
+        .setRequestGroupId("fedcba9876543210fedcba9876543210")
+        .setCdbCallStartTimestamp(1600000000000L)
+        .setCdbCallEndTimestamp(1600000000042L)
+        .setElapsedTimestamp(1600000001337L)
+        .setCdbCallTimeout(true)
+        .setCachedBidUsed(true)
+        .setReadyToSend(true)
+        .setZoneId(1337)
+        .setProfileId(235)
+        .setSamplingWeight(100)
+        .build()
+
+    assertThat(readWrite(metric)).isEqualTo(metric)
+  }
+
+  @Test
+  fun readWrite_GivenTimestampsBeforeStartOrWithoutStart_ReadSameMetric() {
+    val metric1 = Metric.builder("id1")
+        .setCdbCallStartTimestamp(1000L)
+        .setCdbCallEndTimestamp(10L)
+        .build()
+    val metric2 = Metric.builder("id2")
+        .setCdbCallEndTimestamp(1600000000042L)
+        .setElapsedTimestamp(1600000001337L)
+        .build()
+
+    assertThat(readWrite(metric1)).isEqualTo(metric1)
+    assertThat(readWrite(metric2)).isEqualTo(metric2)
+  }
+
+  @Test
+  fun readWrite_GivenUppercaseHexIds_KeepThemAsIs() {
+    val metric = Metric.builder("0123456789ABCDEF0123456789ABCDEF")
+        .setRequestGroupId("not-an-sdk-id")
+        .setZoneId(-1)
+        .build()
+
+    assertThat(readWrite(metric)).isEqualTo(metric)
+  }
+
+  @Test
+  fun read_GivenMetricOfFirstVersion_ReadItWithoutSamplingWeight() {
+    // Flags (ready to send, has profile ID), "i" string ID, null ID, then zigzag profile ID 42
+    val bytes = byteArrayOf(0x84.toByte(), 2, 2, 'i'.toByte(), 0, 84)
+
+    val metric = codec.read(DataInputStream(ByteArrayInputStream(bytes)), 1)
+
+    assertThat(metric).isEqualTo(Metric.builder("i")
+        .setReadyToSend(true)
+        .setProfileId(42)
+        .build())
+  }
+
+  @Test
+  fun read_GivenUnknownVersion_ThrowIOException() {
+    val bytes = write(Metric.builder("id").build())
+
+    assertThatCode {
+      codec.read(DataInputStream(ByteArrayInputStream(bytes)), 42)
+    }.isInstanceOf(IOException::class.java)
+  }
+
+  @Test
+  fun write_GivenMetricWithSdkGeneratedIds_TakeLessThan64Bytes() {
+    val metric = Metric.builder("0123456789abcdef0123456789abcdef")
+        .setRequestGroupId("fedcba9876543210fedcba9876543210")
+        .setCdbCallStartTimestamp(1600000000000L)
+        .setCdbCallEndTimestamp(1600000000042L)
+        .setElapsedTimestamp(1600000001337L)
+        .setZoneId(1337)
+        .setProfileId(235)
+        .build()
+
+    assertThat(write(metric).size).isLessThan(64)
+  }
+
+  private fun readWrite(metric: Metric): Metric {
+    return codec.read(DataInputStream(ByteArrayInputStream(write(metric))), codec.version)
+  }
+
+  private fun write(metric: Metric): ByteArray {
+    val bytes = ByteArrayOutputStream()
+    DataOutputStream(bytes).use { codec.write(metric, it) }
+    return bytes.toByteArray()
+  }
+}
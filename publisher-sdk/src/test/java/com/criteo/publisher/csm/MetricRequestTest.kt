@@ -242,6 +242,31 @@ class MetricRequestTest {
     )
   }
 
+  @Test
+  fun create_GivenSampledMetric_ReturnRequestWithSamplingWeight() {
+    val metric = Metric.builder("impId")
+        .setRequestGroupId("requestId")
+        .setCdbCallStartTimestamp(1L)
+        .setCdbCallEndTimestamp(43L)
+        .setReadyToSend(true)
+        .setSamplingWeight(100)
+        .build()
+
+    val request = MetricRequest.create(listOf(metric), "1.2.3", 456)
+
+    assertThat(request.feedbacks).hasSize(1).allSatisfy {
+      assertThat(it.samplingWeight).isEqualTo(100)
+    }
+
+    assertThat(serializer.writeIntoString(request)).isEqualToIgnoringWhitespace(
+        expectedSingleJson(
+            impressionId = "impId",
+            cdbCallEndElapsed = 43 - 1,
+            samplingWeight = 100
+        )
+    )
+  }
+
   private fun ObjectAssert<MetricRequest.MetricRequestFeedback>.matchEmptyMetric(
       impressionId: String
   ) {
@@ -256,6 +281,7 @@ class MetricRequestTest {
       assertThat(it.cdbCallEndElapsed).isNull()
       assertThat(it.cdbCallEndElapsed).isNull()
       assertThat(it.requestGroupId).isNull()
+      assertThat(it.samplingWeight).isNull()
     }
   }
 
@@ -293,7 +319,8 @@ class MetricRequestTest {
       elapsed: Long? = null,
       wrapperVersion: String = "1.2.3",
       profileId: Int = 456,
-      zoneId: Int? = null
+      zoneId: Int? = null,
+      samplingWeight: Int? = null
   ): String {
     val feedbackJson = feedbackJson(
         impressionId,
@@ -302,7 +329,8 @@ class MetricRequestTest {
         isTimeout,
         cdbCallEndElapsed,
         elapsed,
-        zoneId
+        zoneId,
+        samplingWeight
     )
 
     return expectedMultipleJson(listOf(feedbackJson), wrapperVersion, profileId)
@@ -330,7 +358,8 @@ class MetricRequestTest {
       isTimeout: Boolean = false,
       cdbCallEndElapsed: Long? = null,
       elapsed: Long? = null,
-      zoneId: Int? = null
+      zoneId: Int? = null,
+      samplingWeight: Int? = null
   ): String {
     return """{
       "slots": [{
@@ -343,6 +372,7 @@ class MetricRequestTest {
       "cdbCallStartElapsed": 0
       ${cdbCallEndElapsed?.let { ",\"cdbCallEndElapsed\": $it" } ?: ""}
       ${requestGroupId?.let { ",\"requestGroupId\": \"$it\"" } ?: ""}
+      ${samplingWeight?.let { ",\"samplingWeight\": $it" } ?: ""}
     }""".trimIndent()
   }
 
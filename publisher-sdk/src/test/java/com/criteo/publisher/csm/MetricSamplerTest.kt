@@ -0,0 +1,112 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.criteo.publisher.csm
+
+import com.criteo.publisher.Clock
+import com.criteo.publisher.model.Config
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.stub
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.data.Percentage.withPercentage
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mock
+import org.mockito.MockitoAnnotations
+import java.util.UUID
+
+class MetricSamplerTest {
+
+  @Mock
+  private lateinit var config: Config
+
+  @Mock
+  private lateinit var clock: Clock
+
+  private lateinit var sampler: MetricSampler
+
+  @Before
+  fun setUp() {
+    MockitoAnnotations.initMocks(this)
+
+    config.stub {
+      on { csmSamplingWeight } doReturn 1
+      on { csmMaxMetricsPerMinute } doReturn 0
+    }
+
+    sampler = MetricSampler(config, clock)
+  }
+
+  @Test
+  fun sample_GivenNoSamplingAndNoLimit_TrackAllImpressionsWithWeightOfOne() {
+    val impressionIds = generateImpressionIds(100)
+
+    impressionIds.forEach {
+      assertThat(sampler.sample(it)).isEqualTo(1)
+    }
+  }
+
+  @Test
+  fun sample_GivenSamplingWeight_TrackOneImpressionOutOfWeight() {
+    config.stub {
+      on { csmSamplingWeight } doReturn 10
+    }
+
+    val weights = generateImpressionIds(100_000).map { sampler.sample(it) }
+
+    assertThat(weights).containsOnly(0, 10)
+    assertThat(weights.count { it > 0 }).isCloseTo(10_000, withPercentage(5.0))
+  }
+
+  @Test
+  fun sample_GivenMaxMetricsPerMinuteReached_RejectUntilTokensAreRefilled() {
+    config.stub {
+      on { csmMaxMetricsPerMinute } doReturn 2
+    }
+    clock.stub {
+      on { currentTimeInMillis } doReturn 0
+    }
+
+    assertThat(sampler.sample("id1")).isEqualTo(1)
+    assertThat(sampler.sample("id2")).isEqualTo(1)
+    assertThat(sampler.sample("id3")).isEqualTo(0)
+
+    clock.stub {
+      on { currentTimeInMillis } doReturn 30_000
+    }
+
+    assertThat(sampler.sample("id4")).isEqualTo(1)
+    assertThat(sampler.sample("id5")).isEqualTo(0)
+  }
+
+  @Test
+  fun bucket_GivenTrackingAndFeedbackSalts_DecisionsAreNotCorrelated() {
+    val trackedIds = generateImpressionIds(100_000).filter {
+      MetricSampler.bucket(it, 0, 10) == 0
+    }
+
+    val feedbackCount = trackedIds.count {
+      MetricSampler.bucket(it, MetricSendingQueueProducer.FEEDBACK_SAMPLING_SALT, 100) < 5
+    }
+
+    assertThat(feedbackCount).isCloseTo(trackedIds.size * 5 / 100, withPercentage(20.0))
+  }
+
+  private fun generateImpressionIds(count: Int): List<String> {
+    return List(count) { UUID.randomUUID().toString().replace("-", "") }
+  }
+}
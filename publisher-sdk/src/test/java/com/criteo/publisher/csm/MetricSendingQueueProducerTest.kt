@@ -16,7 +16,9 @@
 
 package com.criteo.publisher.csm
 
+import com.criteo.publisher.util.BuildConfigWrapper
 import com.nhaarman.mockitokotlin2.*
+import org.assertj.core.api.Assertions.assertThat
 import org.junit.Before
 import org.junit.Test
 import org.mockito.Mock
@@ -31,17 +33,23 @@ class MetricSendingQueueProducerTest {
   @Mock
   private lateinit var queue: MetricSendingQueue
 
+  @Mock
+  private lateinit var aggregator: MetricAggregator
+
+  @Mock
+  private lateinit var buildConfigWrapper: BuildConfigWrapper
+
   private lateinit var producer: MetricSendingQueueProducer
 
   @Before
   fun setUp() {
     MockitoAnnotations.initMocks(this)
 
-    producer = MetricSendingQueueProducer(queue)
+    producer = MetricSendingQueueProducer(queue, aggregator, buildConfigWrapper)
   }
 
   @Test
-  fun pushAllInQueue_GivenAnyMetric_PushAndMoveThem() {
+  fun pushAllInQueue_GivenAnyMetric_PushAndMoveThemByBatches() {
     val metric1 = Metric.builder("id1")
         .setReadyToSend(false)
         .build()
@@ -50,11 +58,95 @@ class MetricSendingQueueProducerTest {
         .setReadyToSend(true)
         .build()
 
+    val metric3 = Metric.builder("id3")
+        .build()
+
+    givenMetricInRepository(metric1, metric2, metric3)
+    buildConfigWrapper.stub {
+      on { csmRecoveryBatchSize } doReturn 2
+    }
+    queue.stub {
+      on { offerAll(any()) } doReturn true
+    }
+
+    val movedCount = producer.pushAllInQueue(repository)
+
+    assertThat(movedCount).isEqualTo(3)
+    inOrder(repository, queue) {
+      verify(repository).moveByIds(eq(listOf("id1", "id2")), any())
+      verify(queue).offerAll(listOf(metric1, metric2))
+      verify(repository).moveByIds(eq(listOf("id3")), any())
+      verify(queue).offerAll(listOf(metric3))
+    }
+  }
+
+  @Test
+  fun pushAllInQueue_GivenStartTime_OnlyMoveMetricsOfCdbCallsStartedBefore() {
+    val withoutCdbCall = Metric.builder("id1")
+        .build()
+
+    val startedBefore = Metric.builder("id2")
+        .setCdbCallStartTimestamp(1336L)
+        .build()
+
+    val startedAfter = Metric.builder("id3")
+        .setCdbCallStartTimestamp(1337L)
+        .build()
+
+    givenMetricInRepository(withoutCdbCall, startedBefore, startedAfter)
+    buildConfigWrapper.stub {
+      on { csmRecoveryBatchSize } doReturn 10
+    }
+    queue.stub {
+      on { offerAll(any()) } doReturn true
+    }
+
+    val movedCount = producer.pushAllInQueue(repository, 1337L)
+
+    assertThat(movedCount).isEqualTo(2)
+    verify(repository).moveByIds(eq(listOf("id1", "id2")), any())
+    verify(queue).offerAll(listOf(withoutCdbCall, startedBefore))
+  }
+
+  @Test
+  fun pushAllInQueue_GivenAggregationEnabledAndNotSampledMetrics_OnlyAggregateThemAndKeepThem() {
+    val metric1 = Metric.builder("id1").build()
+    val metric2 = Metric.builder("id2").build()
+
     givenMetricInRepository(metric1, metric2)
+    givenAggregationEnabled(samplePercent = 0)
+    buildConfigWrapper.stub {
+      on { csmRecoveryBatchSize } doReturn 10
+    }
 
-    producer.pushAllInQueue(repository)
+    val movedCount = producer.pushAllInQueue(repository)
 
-    assertOnlyThoseMetricsAreMoved(metric1, metric2)
+    assertThat(movedCount).isEqualTo(2)
+    verify(aggregator).record(metric1)
+    verify(aggregator).record(metric2)
+    verify(repository, never()).moveByIds(any(), any())
+    verify(queue, never()).offerAll(any())
+  }
+
+  @Test
+  fun pushAllInQueue_GivenAggregationEnabledAndSampledMetrics_OnlyPushThem() {
+    val metric1 = Metric.builder("id1").build()
+    val metric2 = Metric.builder("id2").build()
+
+    givenMetricInRepository(metric1, metric2)
+    givenAggregationEnabled(samplePercent = 100)
+    buildConfigWrapper.stub {
+      on { csmRecoveryBatchSize } doReturn 10
+    }
+    queue.stub {
+      on { offerAll(any()) } doReturn true
+    }
+
+    val movedCount = producer.pushAllInQueue(repository)
+
+    assertThat(movedCount).isEqualTo(2)
+    verify(queue).offerAll(listOf(metric1, metric2))
+    verifyZeroInteractions(aggregator)
   }
 
   @Test
@@ -69,6 +161,81 @@ class MetricSendingQueueProducerTest {
     assertOnlyThoseMetricsAreMoved(shouldBeSent)
   }
 
+  @Test
+  fun pushInQueue_GivenAggregationDisabled_DoNotAggregate() {
+    val metric = Metric.builder("id").build()
+    givenMetricInRepository(metric)
+    queue.stub {
+      on { offer(any()) } doReturn true
+    }
+
+    producer.pushInQueue(repository, "id")
+
+    verify(queue).offer(metric)
+    verifyZeroInteractions(aggregator)
+  }
+
+  @Test
+  fun pushInQueue_GivenAggregationEnabledAndNotSampledMetric_OnlyAggregateItAndKeepIt() {
+    val metric = Metric.builder("id").build()
+    givenMetricInRepository(metric)
+    givenAggregationEnabled(samplePercent = 0)
+
+    producer.pushInQueue(repository, "id")
+
+    verify(aggregator).record(metric)
+    verify(repository, never()).moveById(any(), any())
+    verify(queue, never()).offer(any())
+  }
+
+  @Test
+  fun pushInQueue_GivenAggregationEnabledAndUnknownMetric_DoNothing() {
+    givenMetricInRepository()
+    givenAggregationEnabled(samplePercent = 0)
+
+    producer.pushInQueue(repository, "id")
+
+    verifyZeroInteractions(aggregator)
+    verifyZeroInteractions(queue)
+  }
+
+  @Test
+  fun pushInQueue_GivenAggregationEnabledAndSampledMetric_OnlyPushIt() {
+    val metric = Metric.builder("id").build()
+    givenMetricInRepository(metric)
+    givenAggregationEnabled(samplePercent = 100)
+    queue.stub {
+      on { offer(any()) } doReturn true
+    }
+
+    producer.pushInQueue(repository, "id")
+
+    verify(queue).offer(metric)
+    verifyZeroInteractions(aggregator)
+  }
+
+  @Test
+  fun pushInQueue_GivenAggregationEnabledAndSampledMetricRejectedByQueue_DoNotAggregateIt() {
+    val metric = Metric.builder("id").build()
+    givenMetricInRepository(metric)
+    givenAggregationEnabled(samplePercent = 100)
+    queue.stub {
+      on { offer(any()) } doReturn false
+    }
+
+    producer.pushInQueue(repository, "id")
+
+    verify(queue).offer(metric)
+    verify(aggregator, never()).record(any())
+  }
+
+  private fun givenAggregationEnabled(samplePercent: Int) {
+    buildConfigWrapper.stub {
+      on { isCsmAggregationEnabled } doReturn true
+      on { csmAggregationFeedbackSamplePercent } doReturn samplePercent
+    }
+  }
+
   private fun givenMetricInRepository(vararg metrics: Metric) {
     repository.stub {
       doAnswer { invocationOnMock: InvocationOnMock ->
@@ -80,7 +247,19 @@ class MetricSendingQueueProducerTest {
         }
       }.whenever(mock).moveById(any(), any())
 
+      doAnswer { invocationOnMock: InvocationOnMock ->
+        val impressionIds: Collection<String> = invocationOnMock.getArgument(0)
+        val move: MetricBatchMover = invocationOnMock.getArgument(1)
+
+        val batch = metrics.filter { impressionIds.contains(it.impressionId) }
+        if (move.offerToDestination(batch)) batch.size else 0
+      }.whenever(mock).moveByIds(any(), any())
+
       on { allStoredMetrics } doReturn metrics.asList()
+      on { getById(any()) } doAnswer { invocationOnMock: InvocationOnMock ->
+        val impressionId: String = invocationOnMock.getArgument(0)
+        metrics.firstOrNull { it.impressionId == impressionId }
+      }
     }
   }
 
@@ -16,7 +16,6 @@
 
 package com.criteo.publisher.csm
 
-import com.criteo.publisher.concurrent.DirectMockExecutor
 import com.criteo.publisher.integration.Integration.FALLBACK
 import com.criteo.publisher.mock.MockedDependenciesRule
 import com.criteo.publisher.mock.SpyBean
@@ -31,7 +30,7 @@ import org.mockito.Mock
 import org.mockito.MockitoAnnotations
 import java.io.IOException
 
-class MetricSendingQueueConsumerTest {
+class MetricSendingTaskTest {
 
   @Rule
   @JvmField
@@ -49,9 +48,7 @@ class MetricSendingQueueConsumerTest {
   @SpyBean
   private lateinit var config: Config
 
-  private val executor = DirectMockExecutor()
-
-  private lateinit var consumer: MetricSendingQueueConsumer
+  private lateinit var task: MetricSendingTask
 
   @Before
   fun setUp() {
@@ -61,44 +58,43 @@ class MetricSendingQueueConsumerTest {
       on { preconditionThrowsOnException() } doReturn false
     }
 
-    consumer = MetricSendingQueueConsumer(
+    task = MetricSendingTask(
         queue,
         api,
         buildConfigWrapper,
-        config,
-        executor
+        config
     )
   }
 
   @Test
-  fun sendMetricBatch_GivenDeactivatedFeature_DoNothing() {
+  fun run_GivenDeactivatedFeature_DoNothing() {
     config.stub {
       on { isCsmEnabled } doReturn false
     }
 
-    consumer.sendMetricBatch()
+    task.run()
 
     verifyZeroInteractions(queue)
     verifyZeroInteractions(api)
   }
 
   @Test
-  fun sendMetricBatch_GivenFeatureDeactivatedAfterAPreviousSending_DoNothing() {
-    sendMetricBatch_GivenSomeMetricsInBatch_SendThemAsyncWithApi()
+  fun run_GivenFeatureDeactivatedAfterAPreviousSending_DoNothing() {
+    run_GivenSomeMetricsInBatch_SendThemWithApi()
     clearInvocations(queue, api)
 
     config.stub {
       on { isCsmEnabled } doReturn false
     }
 
-    consumer.sendMetricBatch()
+    task.run()
 
     verifyZeroInteractions(queue)
     verifyZeroInteractions(api)
   }
 
   @Test
-  fun sendMetricBatch_GivenSomeMetricsAndIOException_RollbackMetrics() {
+  fun run_GivenSomeMetricsAndIOException_RollbackMetrics() {
     val metric1 = Metric.builder("id1").build()
     val metric2 = Metric.builder("id2").build()
 
@@ -110,14 +106,13 @@ class MetricSendingQueueConsumerTest {
       on { postCsm(any()) } doThrow IOException::class
     }
 
-    consumer.sendMetricBatch()
+    task.run()
 
-    verify(queue).offer(metric1)
-    verify(queue).offer(metric2)
+    verify(queue).offerAll(listOf(metric1, metric2))
   }
 
   @Test
-  fun sendMetricBatch_GivenNoMetricsInBatch_DoNotSendAnything() {
+  fun run_GivenNoMetricsInBatch_DoNotSendAnything() {
     buildConfigWrapper.stub {
       on { csmBatchSize } doReturn 42
     }
@@ -126,13 +121,13 @@ class MetricSendingQueueConsumerTest {
       on { poll(42) } doReturn listOf()
     }
 
-    consumer.sendMetricBatch()
+    task.run()
 
     verify(api, never()).postCsm(any())
   }
 
   @Test
-  fun sendMetricBatch_GivenSomeMetricsInBatch_SendThemAsyncWithApi() {
+  fun run_GivenSomeMetricsInBatch_SendThemWithApi() {
     val metric1 = Metric.builder("id1").setProfileId(1337).build()
     val metric2 = Metric.builder("id2").setProfileId(1337).build()
 
@@ -151,13 +146,13 @@ class MetricSendingQueueConsumerTest {
         1337
     )
 
-    consumer.sendMetricBatch()
+    task.run()
 
     verify(api).postCsm(expectedRequest)
   }
 
   @Test
-  fun sendMetricBatch_GivenSomeMetricsWithDifferentProfileId_SendThemGroupedByProfileId() {
+  fun run_GivenSomeMetricsWithDifferentProfileId_SendThemGroupedByProfileId() {
     val metric1 = Metric.builder("id1").setProfileId(1337).build()
     val metric2 = Metric.builder("id2").build()
     val metric3 = Metric.builder("id3").setProfileId(1337).build()
@@ -174,16 +169,13 @@ class MetricSendingQueueConsumerTest {
 
     doNothing().doThrow(IOException::class.java).whenever(api).postCsm(any())
 
-    consumer.sendMetricBatch()
+    task.run()
 
-    verify(queue, never()).offer(metric1)
-    verify(queue).offer(metric2)
-    verify(queue, never()).offer(metric3)
-    verify(queue).offer(metric4)
+    verify(queue).offerAll(listOf(metric2, metric4))
   }
 
   @Test
-  fun sendMetricBatch_GivenOneProfileIdSentButExceptionAfter_RollbackOnlyRemainingMetrics() {
+  fun run_GivenOneProfileIdSentButExceptionAfter_RollbackOnlyRemainingMetrics() {
     val metric1 = Metric.builder("id1").build()
     val metric2 = Metric.builder("id2").setProfileId(1337).build()
     val metric3 = Metric.builder("id3").setProfileId(FALLBACK.profileId).build()
@@ -210,27 +202,11 @@ class MetricSendingQueueConsumerTest {
         1337
     )
 
-    consumer.sendMetricBatch()
+    task.run()
 
     verify(api).postCsm(expectedRequest1)
     verify(api).postCsm(expectedRequest2)
     verifyNoMoreInteractions(api)
   }
 
-  @Test
-  fun sendMetricBatch_GivenExecutor_CallApiInExecutor() {
-    queue.stub {
-      on { poll(any()) } doReturn listOf(Metric.builder("id1").build())
-    }
-
-    doAnswer {
-      executor.expectIsRunningInExecutor()
-    }.whenever(api).postCsm(any())
-
-    consumer.sendMetricBatch()
-
-    verify(api).postCsm(any())
-    executor.verifyExpectations()
-  }
-
-}
\ No newline at end of file
+}
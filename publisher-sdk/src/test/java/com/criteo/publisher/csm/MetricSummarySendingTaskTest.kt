@@ -0,0 +1,137 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm
+
+import com.criteo.publisher.model.Config
+import com.criteo.publisher.network.PubSdkApi
+import com.criteo.publisher.util.BuildConfigWrapper
+import com.nhaarman.mockitokotlin2.*
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatCode
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.mockito.Mock
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.junit.MockitoJUnit
+import org.mockito.junit.MockitoRule
+import java.io.IOException
+
+class MetricSummarySendingTaskTest {
+
+  @Rule
+  @JvmField
+  val mockitoRule: MockitoRule = MockitoJUnit.rule()
+
+  @Mock
+  private lateinit var repository: MetricRepository
+
+  @Mock
+  private lateinit var api: PubSdkApi
+
+  @Mock
+  private lateinit var buildConfigWrapper: BuildConfigWrapper
+
+  @Mock
+  private lateinit var config: Config
+
+  private val aggregator = MetricAggregator()
+
+  private lateinit var task: MetricSummarySendingTask
+
+  @Before
+  fun setUp() {
+    buildConfigWrapper.stub {
+      on { sdkVersion } doReturn "1.2.3"
+    }
+
+    config.stub {
+      on { isCsmEnabled } doReturn true
+    }
+
+    repository.stub {
+      doAnswer { invocationOnMock: InvocationOnMock ->
+        val impressionIds: Collection<String> = invocationOnMock.getArgument(0)
+        val move: MetricBatchMover = invocationOnMock.getArgument(1)
+
+        if (move.offerToDestination(listOf())) impressionIds.size else 0
+      }.whenever(mock).moveByIds(any(), any())
+    }
+
+    task = MetricSummarySendingTask(aggregator, repository, api, buildConfigWrapper, config)
+  }
+
+  @Test
+  fun runSafely_GivenDeactivatedFeature_DoNothing() {
+    config.stub {
+      on { isCsmEnabled } doReturn false
+    }
+    aggregator.record(Metric.builder("id").setProfileId(1).build())
+
+    task.runSafely()
+
+    verifyZeroInteractions(api)
+    verifyZeroInteractions(repository)
+    assertThat(aggregator.drain()).hasSize(1)
+  }
+
+  @Test
+  fun runSafely_GivenNoAggregate_DoNothing() {
+    task.runSafely()
+
+    verifyZeroInteractions(api)
+  }
+
+  @Test
+  fun runSafely_GivenAggregatesOfManyProfiles_SendOneRequestPerProfile() {
+    aggregator.record(Metric.builder("id1").setProfileId(1).setZoneId(10).build())
+    aggregator.record(Metric.builder("id2").setProfileId(1).setZoneId(20).build())
+    aggregator.record(Metric.builder("id3").setProfileId(2).build())
+
+    task.runSafely()
+
+    verify(api).postCsmSummary(check {
+      assertThat(it.profileId).isEqualTo(1)
+      assertThat(it.wrapperVersion).isEqualTo("1.2.3")
+      assertThat(it.summaries.map { summary -> summary.zoneId }).containsExactlyInAnyOrder(10, 20)
+    })
+    verify(api).postCsmSummary(check {
+      assertThat(it.profileId).isEqualTo(2)
+      assertThat(it.summaries).hasSize(1)
+    })
+    argumentCaptor<Collection<String>> {
+      verify(repository, times(2)).moveByIds(capture(), any())
+      assertThat(allValues.map { it.toSet() }).containsExactlyInAnyOrder(
+          setOf("id1", "id2"),
+          setOf("id3")
+      )
+    }
+    assertThat(aggregator.drain()).isEmpty()
+  }
+
+  @Test
+  fun runSafely_GivenFailingRequest_RestoreAggregatesAndThrow() {
+    aggregator.record(Metric.builder("id1").setProfileId(1).build())
+    doThrow(IOException::class).whenever(api).postCsmSummary(any())
+
+    assertThatCode { task.runSafely() }.isInstanceOf(IOException::class.java)
+
+    assertThat(aggregator.drain()).hasSize(1).allSatisfy {
+      assertThat(it.count).isEqualTo(1)
+    }
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm
+
+import com.criteo.publisher.Clock
+import com.criteo.publisher.SafeRunnable
+import com.criteo.publisher.mock.MockedDependenciesRule
+import com.criteo.publisher.util.BuildConfigWrapper
+import com.nhaarman.mockitokotlin2.*
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.mockito.Mock
+import org.mockito.MockitoAnnotations
+import java.io.IOException
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+class SendingQueueUploadSchedulerTest {
+
+  @Rule
+  @JvmField
+  var mockedDependenciesRule = MockedDependenciesRule()
+
+  @Mock
+  private lateinit var scheduledExecutorService: ScheduledExecutorService
+
+  @Mock
+  private lateinit var clock: Clock
+
+  @Mock
+  private lateinit var buildConfigWrapper: BuildConfigWrapper
+
+  @Mock
+  private lateinit var queue: ConcurrentSendingQueue<Any>
+
+  @Mock
+  private lateinit var uploadTask: SafeRunnable
+
+  private var now = 0L
+
+  private lateinit var scheduler: SendingQueueUploadScheduler
+
+  @Before
+  fun setUp() {
+    MockitoAnnotations.initMocks(this)
+
+    clock.stub {
+      on { currentTimeInMillis } doAnswer { now }
+    }
+
+    buildConfigWrapper.stub {
+      on { sendingQueueUploadCheckIntervalInMillis } doReturn 42
+      on { sendingQueueUploadIntervalInMillis } doReturn 1000
+      on { sendingQueueUploadThresholdInBytes } doReturn 100
+      on { sendingQueueUploadMaxBackoffInMillis } doReturn 3000
+    }
+
+    scheduler = SendingQueueUploadScheduler(scheduledExecutorService, clock, buildConfigWrapper)
+    scheduler.register(queue, uploadTask)
+  }
+
+  @Test
+  fun start_CalledTwice_ScheduleChecksOnlyOnceWithConfiguredInterval() {
+    scheduler.start()
+    scheduler.start()
+
+    verify(scheduledExecutorService, times(1)).scheduleWithFixedDelay(
+        any(),
+        eq(42L),
+        eq(42L),
+        eq(TimeUnit.MILLISECONDS)
+    )
+  }
+
+  @Test
+  fun start_WhenScheduledTaskIsRunWithDueQueue_UploadIt() {
+    givenQueueSize(100)
+    scheduler.start()
+
+    argumentCaptor<Runnable>().apply {
+      verify(scheduledExecutorService).scheduleWithFixedDelay(capture(), any(), any(), any())
+      firstValue.run()
+    }
+
+    verify(uploadTask).runSafely()
+  }
+
+  @Test
+  fun uploadDueQueues_GivenEmptyQueue_DoNotUpload() {
+    givenQueueSize(0)
+    now = 10_000
+
+    scheduler.uploadDueQueues(true)
+
+    verify(uploadTask, never()).runSafely()
+  }
+
+  @Test
+  fun uploadDueQueues_GivenSmallQueueRecentlyUploaded_DoNotUpload() {
+    givenQueueSize(99)
+    now = 999
+
+    scheduler.uploadDueQueues(false)
+
+    verify(uploadTask, never()).runSafely()
+  }
+
+  @Test
+  fun uploadDueQueues_GivenQueueReachingThreshold_Upload() {
+    givenQueueSize(100)
+
+    scheduler.uploadDueQueues(false)
+
+    verify(uploadTask).runSafely()
+  }
+
+  @Test
+  fun uploadDueQueues_GivenSmallQueueNotUploadedForInterval_Upload() {
+    givenQueueSize(1)
+    now = 1000
+
+    scheduler.uploadDueQueues(false)
+
+    verify(uploadTask).runSafely()
+  }
+
+  @Test
+  fun uploadDueQueues_GivenFlushOfSmallQueue_Upload() {
+    givenQueueSize(1)
+
+    scheduler.uploadDueQueues(true)
+
+    verify(uploadTask).runSafely()
+  }
+
+  @Test
+  fun uploadDueQueues_GivenFailingUploads_BackOffExponentiallyUpToMaxBackoff() {
+    givenQueueSize(100)
+    doThrow(IOException()).whenever(uploadTask).runSafely()
+
+    // Failure at 0: backoff of 1000ms
+    scheduler.uploadDueQueues(true)
+    now = 999
+    scheduler.uploadDueQueues(true)
+    verify(uploadTask, times(1)).runSafely()
+
+    // Failure at 1000: backoff of 2000ms
+    now = 1000
+    scheduler.uploadDueQueues(true)
+    now = 2999
+    scheduler.uploadDueQueues(true)
+    verify(uploadTask, times(2)).runSafely()
+
+    // Failure at 3000: backoff capped to 3000ms
+    now = 3000
+    scheduler.uploadDueQueues(true)
+    now = 5999
+    scheduler.uploadDueQueues(true)
+    verify(uploadTask, times(3)).runSafely()
+
+    now = 6000
+    scheduler.uploadDueQueues(true)
+    verify(uploadTask, times(4)).runSafely()
+  }
+
+  @Test
+  fun uploadDueQueues_GivenSuccessfulUploadAfterFailure_ResetBackoff() {
+    givenQueueSize(100)
+    doThrow(IOException()).doNothing().doThrow(IOException()).whenever(uploadTask).runSafely()
+
+    scheduler.uploadDueQueues(true)
+    now = 1000
+    scheduler.uploadDueQueues(true)
+    scheduler.uploadDueQueues(true)
+    now = 1999
+    scheduler.uploadDueQueues(true)
+    verify(uploadTask, times(3)).runSafely()
+
+    now = 2000
+    scheduler.uploadDueQueues(true)
+    verify(uploadTask, times(4)).runSafely()
+  }
+
+  @Test
+  fun uploadDueQueues_GivenManyQueues_UploadThemIndependently() {
+    val otherQueue = mock<ConcurrentSendingQueue<Any>> {
+      on { totalSize } doReturn 100
+    }
+    val otherUploadTask = mock<SafeRunnable>()
+    scheduler.register(otherQueue, otherUploadTask)
+
+    givenQueueSize(100)
+    doThrow(IOException()).whenever(uploadTask).runSafely()
+
+    scheduler.uploadDueQueues(false)
+    now = 500
+    scheduler.uploadDueQueues(false)
+
+    verify(uploadTask, times(1)).runSafely()
+    verify(otherUploadTask, times(2)).runSafely()
+  }
+
+  @Test
+  fun onApplicationStopped_CalledTwiceBeforeFlush_FlushOnlyOnce() {
+    givenQueueSize(1)
+
+    scheduler.onApplicationStopped()
+    scheduler.onApplicationStopped()
+
+    argumentCaptor<Runnable>().apply {
+      verify(scheduledExecutorService, times(1)).execute(capture())
+      firstValue.run()
+    }
+
+    verify(uploadTask).runSafely()
+
+    scheduler.onApplicationStopped()
+    verify(scheduledExecutorService, times(2)).execute(any())
+  }
+
+  @Test
+  fun requestUpload_GivenQueueBelowThresholdAndInterval_UploadIt() {
+    givenQueueSize(1)
+
+    scheduler.requestUpload()
+
+    argumentCaptor<Runnable>().apply {
+      verify(scheduledExecutorService).execute(capture())
+      firstValue.run()
+    }
+
+    verify(uploadTask).runSafely()
+  }
+
+  private fun givenQueueSize(size: Int) {
+    queue.stub {
+      on { totalSize } doReturn size
+    }
+  }
+}
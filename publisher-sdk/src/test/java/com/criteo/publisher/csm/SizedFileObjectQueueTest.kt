@@ -0,0 +1,224 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm
+
+import com.criteo.publisher.csm.BatchedQueueFile.ELEMENT_HEADER_LENGTH
+import com.criteo.publisher.csm.BatchedQueueFile.HEADER_LENGTH
+import com.criteo.publisher.csm.ObjectQueueFactory.AdapterConverter
+import com.criteo.publisher.mock.MockedDependenciesRule
+import com.criteo.publisher.util.JsonSerializer
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.verify
+import com.squareup.tape.ObjectQueue
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.io.File
+import javax.inject.Inject
+
+class SizedFileObjectQueueTest {
+
+  @Rule
+  @JvmField
+  val mockedDependenciesRule = MockedDependenciesRule()
+
+  @Rule
+  @JvmField
+  val tempFolder = TemporaryFolder()
+
+  @Inject
+  private lateinit var jsonSerializer: JsonSerializer
+
+  private lateinit var file: File
+
+  private lateinit var queue: SizedFileObjectQueue<Metric>
+
+  @Before
+  fun setUp() {
+    file = tempFolder.newFile().apply {
+      delete()
+    }
+
+    queue = createQueue()
+  }
+
+  @Test
+  fun getUsedBytes_GivenNewQueue_ReturnHeaderLength() {
+    assertThat(queue.usedBytes).isEqualTo(HEADER_LENGTH)
+  }
+
+  @Test
+  fun getUsedBytes_AfterAdd_IncludeSerializedElementAndItsHeader() {
+    val metric = metric(1)
+
+    queue.add(metric)
+
+    assertThat(queue.usedBytes).isEqualTo(
+        HEADER_LENGTH + ELEMENT_HEADER_LENGTH + serializedLength(metric)
+    )
+  }
+
+  @Test
+  fun getUsedBytes_AfterAddAndRemoveAll_ReturnHeaderLength() {
+    (0 until 50).forEach { queue.add(metric(it)) }
+    (0 until 50).forEach { queue.remove() }
+
+    assertThat(queue.usedBytes).isEqualTo(HEADER_LENGTH)
+  }
+
+  @Test
+  fun getUsedBytes_GivenReopenedQueue_ReturnSameSizeAsBefore() {
+    (0 until 50).forEach { queue.add(metric(it)) }
+    (0 until 20).forEach { queue.remove() }
+    val usedBytes = queue.usedBytes
+
+    val reopenedQueue = createQueue()
+
+    assertThat(reopenedQueue.usedBytes).isEqualTo(usedBytes)
+    assertThat(reopenedQueue.size()).isEqualTo(30)
+  }
+
+  @Test
+  fun remove_GivenEmptyQueue_DoNotChangeUsedBytes() {
+    queue.remove()
+
+    assertThat(queue.usedBytes).isEqualTo(HEADER_LENGTH)
+  }
+
+  @Test
+  fun peek_AfterAdd_ReturnElementsInOrder() {
+    queue.add(metric(1))
+    queue.add(metric(2))
+
+    assertThat(queue.peek()).isEqualTo(metric(1))
+    queue.remove()
+    assertThat(queue.peek()).isEqualTo(metric(2))
+    queue.remove()
+    assertThat(queue.peek()).isNull()
+  }
+
+  @Test
+  fun poll_GivenLessElementsThanMax_ReturnAllAndClearQueue() {
+    (0 until 3).forEach { queue.add(metric(it)) }
+    val errors = mutableListOf<Exception>()
+
+    val metrics = queue.poll(10, errors)
+
+    assertThat(metrics).containsExactly(metric(0), metric(1), metric(2))
+    assertThat(errors).isEmpty()
+    assertThat(queue.size()).isZero()
+    assertThat(queue.usedBytes).isEqualTo(HEADER_LENGTH)
+  }
+
+  @Test
+  fun poll_GivenMoreElementsThanMax_ReturnFirstOnesAndKeepOthers() {
+    (0 until 5).forEach { queue.add(metric(it)) }
+    val errors = mutableListOf<Exception>()
+
+    val metrics = queue.poll(2, errors)
+
+    assertThat(metrics).containsExactly(metric(0), metric(1))
+    assertThat(queue.size()).isEqualTo(3)
+    assertThat(queue.peek()).isEqualTo(metric(2))
+    assertThat(queue.usedBytes).isEqualTo(createQueue().usedBytes)
+  }
+
+  @Test
+  fun addAll_GivenEntries_AddThemInOrderAndNotifyListener() {
+    val listener = mock<ObjectQueue.Listener<Metric>>()
+    queue.add(metric(0))
+    queue.setListener(listener)
+
+    queue.addAll(listOf(metric(1), metric(2)))
+
+    assertThat(queue.poll(10, mutableListOf())).containsExactly(metric(0), metric(1), metric(2))
+    verify(listener).onAdd(queue, metric(1))
+    verify(listener).onAdd(queue, metric(2))
+  }
+
+  @Test
+  fun addAll_GivenReopenedQueue_EntriesArePersisted() {
+    queue.addAll((0 until 50).map { metric(it) })
+
+    val reopenedQueue = createQueue()
+
+    assertThat(reopenedQueue.poll(50, mutableListOf()))
+        .containsExactlyElementsOf((0 until 50).map { metric(it) })
+  }
+
+  @Test
+  fun poll_GivenZeroFilledElements_RemoveThemAndReportErrors() {
+    queue.add(metric(1))
+    queue.queueFile.add(ByteArray(42))
+    queue.add(metric(2))
+    val errors = mutableListOf<Exception>()
+
+    val metrics = queue.poll(3, errors)
+
+    assertThat(metrics).containsExactly(metric(1), metric(2))
+    assertThat(errors).hasSize(1)
+    assertThat(queue.size()).isZero()
+  }
+
+  @Test
+  fun poll_GivenZeroMax_DoNothing() {
+    queue.add(metric(1))
+
+    val metrics = queue.poll(0, mutableListOf())
+
+    assertThat(metrics).isEmpty()
+    assertThat(queue.size()).isEqualTo(1)
+  }
+
+  @Test
+  fun setListener_GivenExistingElements_NotifyThemAndNextOperations() {
+    queue.add(metric(1))
+    val listener = mock<ObjectQueue.Listener<Metric>>()
+
+    queue.setListener(listener)
+    queue.add(metric(2))
+    queue.remove()
+
+    verify(listener).onAdd(queue, metric(1))
+    verify(listener).onAdd(queue, metric(2))
+    verify(listener).onRemove(queue)
+  }
+
+  private fun createQueue(): SizedFileObjectQueue<Metric> {
+    return SizedFileObjectQueue(file, converter())
+  }
+
+  private fun converter(): AdapterConverter<Metric> {
+    return AdapterConverter(jsonSerializer, Metric::class.java, MetricCodec())
+  }
+
+  private fun serializedLength(metric: Metric): Int {
+    val outputStream = ByteArrayOutputStream()
+    converter().toStream(metric, outputStream)
+    return outputStream.size()
+  }
+
+  private fun metric(id: Int): Metric {
+    return Metric.builder("id$id")
+        .setCdbCallStartTimestamp(42L)
+        .setCdbCallEndTimestamp(1337L)
+        .build()
+  }
+}
@@ -35,7 +35,6 @@ import com.nhaarman.mockitokotlin2.verify
 import com.nhaarman.mockitokotlin2.verifyZeroInteractions
 import com.nhaarman.mockitokotlin2.whenever
 import com.squareup.tape.FileException
-import com.squareup.tape.FileObjectQueue
 import com.squareup.tape.InMemoryObjectQueue
 import com.squareup.tape.ObjectQueue
 import org.assertj.core.api.Assertions.assertThat
@@ -118,7 +117,8 @@ class TapeSendingQueueTest(private val tapeImplementation: TapeImplementation) {
 
   @Test
   fun getTotalSize_AfterFewOperations_ReturnSizeGreaterThanEstimation() {
-    val estimatedSizePerMetric = 170
+    // Metrics below are stored in ~15 bytes with the binary codec, plus the header of each element
+    val estimatedSizePerMetric = 15
 
     (0 until 1000).forEach {
       queue.offer(mockMetric(it))
@@ -143,6 +143,24 @@ class TapeSendingQueueTest(private val tapeImplementation: TapeImplementation) {
     }
   }
 
+  @Test
+  fun getTotalSize_AfterFewOperations_ReturnSameSizeAsWhenReopeningTheQueue() {
+    assumeThat(file).isNotNull()
+
+    (0 until 100).forEach {
+      queue.offer(mockMetric(it))
+    }
+
+    queue.poll(42)
+
+    val size = queue.totalSize
+
+    queue = TapeSendingQueue(objectQueueFactory)
+    doReturn(createFileObjectQueue()).whenever(objectQueueFactory).create()
+
+    assertThat(queue.totalSize).isEqualTo(size)
+  }
+
   @Test
   fun offer_GivenAcceptedMetric_ReturnTrue() {
     givenMockedTapeQueue()
@@ -170,6 +188,30 @@ class TapeSendingQueueTest(private val tapeImplementation: TapeImplementation) {
     assertThat(isOffered).isFalse()
   }
 
+  @Test
+  fun offerAll_GivenMetrics_AddThemInOrder() {
+    val metric1 = mockMetric(1)
+    val metric2 = mockMetric(2)
+
+    val isOffered = queue.offerAll(listOf(metric1, metric2))
+    val metrics = queue.poll(2)
+
+    assertThat(isOffered).isTrue()
+    assertThat(metrics).containsExactly(metric1, metric2)
+  }
+
+  @Test
+  fun offerAll_GivenExceptionWhileAddingMetric_ReturnFalse() {
+    givenDeactivatedPreconditionUtils()
+    givenMockedTapeQueue()
+
+    doThrow(FileException::class).whenever(tapeQueue).add(any())
+
+    val isOffered = queue.offerAll(listOf(mockMetric(1), mockMetric(2)))
+
+    assertThat(isOffered).isFalse()
+  }
+
   @Test
   fun poll_AfterAnOfferOperation_ReturnOfferedMetric() {
     val metric = mockMetric()
@@ -277,10 +319,10 @@ class TapeSendingQueueTest(private val tapeImplementation: TapeImplementation) {
       fileTapeQueue.add(it.getArgument(0))
     }.doAnswer {
       // Reproduce bug: bytes full of zero are written
-      queue.getQueueFile(fileTapeQueue).add(ByteArray(42))
+      fileTapeQueue.queueFile.add(ByteArray(42))
     }.doAnswer {
       // Reproduce bug: empty byte array
-      queue.getQueueFile(fileTapeQueue).add(ByteArray(0))
+      fileTapeQueue.queueFile.add(ByteArray(0))
     }.doAnswer {
       fileTapeQueue.add(it.getArgument(0))
     }.whenever(tapeQueue).add(any())
@@ -298,6 +340,38 @@ class TapeSendingQueueTest(private val tapeImplementation: TapeImplementation) {
     assertThat(metrics).hasSize(2).containsExactly(metric1, metric4)
   }
 
+  @Test
+  fun poll_GivenZeroByteArrayWrittenInFile_RecoverByRemovingBuggyElements() {
+    assumeThat(file).isNotNull()
+
+    val metric1 = Metric.builder("id1").build()
+    val metric2 = Metric.builder("id2").build()
+    val fileTapeQueue = tapeQueue as SizedFileObjectQueue<Metric>
+
+    queue.offer(metric1)
+    fileTapeQueue.queueFile.add(ByteArray(42))
+    fileTapeQueue.queueFile.add(ByteArray(0))
+    queue.offer(metric2)
+
+    val metrics = queue.poll(4)
+
+    assertThat(metrics).containsExactly(metric1, metric2)
+    assertThat(tapeQueue.size()).isEqualTo(0)
+  }
+
+  @Test
+  fun poll_GivenMoreElementsThanMax_KeepRemainingElementsInOrder() {
+    (0 until 10).forEach {
+      queue.offer(mockMetric(it))
+    }
+
+    val firstMetrics = queue.poll(4)
+    val nextMetrics = queue.poll(10)
+
+    assertThat(firstMetrics).containsExactlyElementsOf((0 until 4).map { mockMetric(it) })
+    assertThat(nextMetrics).containsExactlyElementsOf((4 until 10).map { mockMetric(it) })
+  }
+
   @Test
   fun poll_GivenManyWorkersInParallel_ShouldNotProduceDuplicate() {
     for (id in 0 until 2000) {
@@ -347,7 +421,10 @@ class TapeSendingQueueTest(private val tapeImplementation: TapeImplementation) {
     }
   }
 
-  private fun createFileObjectQueue() = FileObjectQueue(file, AdapterConverter(jsonSerializer, Metric::class.java))
+  private fun createFileObjectQueue() = SizedFileObjectQueue(
+      file!!,
+      AdapterConverter(jsonSerializer, Metric::class.java, MetricCodec())
+  )
 
   private fun givenMockedTapeQueue(defaultAnswer: Answer<Any>? = null) {
     tapeQueue = mock(defaultAnswer = defaultAnswer)
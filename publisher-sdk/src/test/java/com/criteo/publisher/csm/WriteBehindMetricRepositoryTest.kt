@@ -0,0 +1,229 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.csm
+
+import com.criteo.publisher.csm.MetricRepository.MetricUpdater
+import com.criteo.publisher.util.BuildConfigWrapper
+import com.nhaarman.mockitokotlin2.*
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.mockito.Mock
+import org.mockito.junit.MockitoJUnit
+import org.mockito.junit.MockitoRule
+import java.util.concurrent.Executor
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+class WriteBehindMetricRepositoryTest {
+
+  @Rule
+  @JvmField
+  val mockitoRule: MockitoRule = MockitoJUnit.rule()
+
+  @Mock
+  private lateinit var delegate: MetricRepository
+
+  @Mock
+  private lateinit var scheduledExecutorService: ScheduledExecutorService
+
+  @Mock
+  private lateinit var buildConfigWrapper: BuildConfigWrapper
+
+  private lateinit var repository: WriteBehindMetricRepository
+
+  @Before
+  fun setUp() {
+    buildConfigWrapper.stub {
+      on { csmWriteBehindDelayInMillis } doReturn 42
+      on { csmWriteBehindMaxPendingMetrics } doReturn 3
+    }
+
+    repository = WriteBehindMetricRepository(
+        delegate,
+        Executor { it.run() },
+        scheduledExecutorService,
+        buildConfigWrapper
+    )
+  }
+
+  @Test
+  fun addOrUpdateById_GivenNotReadyToSendUpdate_DoNotWriteInDelegate() {
+    repository.addOrUpdateById("id", MetricUpdater { it.setCdbCallStartTimestamp(1337L) })
+
+    verify(delegate, never()).addOrUpdateById(any(), any())
+    verify(scheduledExecutorService).schedule(any<Runnable>(), eq(42L), eq(TimeUnit.MILLISECONDS))
+  }
+
+  @Test
+  fun addOrUpdateById_GivenManyUpdates_ScheduleOnlyOneFlush() {
+    repository.addOrUpdateById("id1", MetricUpdater { it.setCdbCallStartTimestamp(1L) })
+    repository.addOrUpdateById("id1", MetricUpdater { it.setCdbCallEndTimestamp(2L) })
+    repository.addOrUpdateById("id2", MetricUpdater { it.setCdbCallStartTimestamp(3L) })
+
+    verify(scheduledExecutorService).schedule(any<Runnable>(), any(), any())
+  }
+
+  @Test
+  fun addOrUpdateById_AfterScheduledFlush_WriteAllPendingUpdatesAndScheduleAgain() {
+    repository.addOrUpdateById("id", MetricUpdater { it.setCdbCallStartTimestamp(1L) })
+    repository.addOrUpdateById("id", MetricUpdater { it.setCdbCallEndTimestamp(2L) })
+
+    runScheduledFlush()
+
+    assertThat(metricWrittenInDelegate("id")).isEqualTo(
+        Metric.builder("id")
+            .setCdbCallStartTimestamp(1L)
+            .setCdbCallEndTimestamp(2L)
+            .build()
+    )
+
+    repository.addOrUpdateById("id", MetricUpdater { it.setCachedBidUsed(true) })
+
+    verify(scheduledExecutorService, times(2)).schedule(any<Runnable>(), any(), any())
+  }
+
+  @Test
+  fun addOrUpdateById_GivenReadyToSendUpdate_WriteMergedUpdatesOfThisMetricInDelegate() {
+    repository.addOrUpdateById("id1", MetricUpdater { it.setCdbCallStartTimestamp(1L) })
+    repository.addOrUpdateById("id2", MetricUpdater { it.setCdbCallStartTimestamp(2L) })
+    repository.addOrUpdateById("id1", MetricUpdater {
+      it.setCdbCallEndTimestamp(3L)
+      it.setReadyToSend(true)
+    })
+
+    assertThat(metricWrittenInDelegate("id1")).isEqualTo(
+        Metric.builder("id1")
+            .setCdbCallStartTimestamp(1L)
+            .setCdbCallEndTimestamp(3L)
+            .setReadyToSend(true)
+            .build()
+    )
+    verify(delegate, never()).addOrUpdateById(eq("id2"), any())
+  }
+
+  @Test
+  fun addOrUpdateById_GivenTooManyPendingMetrics_WriteAllInDelegate() {
+    repository.addOrUpdateById("id1", MetricUpdater { it.setCdbCallStartTimestamp(1L) })
+    repository.addOrUpdateById("id2", MetricUpdater { it.setCdbCallStartTimestamp(2L) })
+
+    verify(delegate, never()).addOrUpdateById(any(), any())
+
+    repository.addOrUpdateById("id3", MetricUpdater { it.setCdbCallStartTimestamp(3L) })
+
+    verify(delegate).addOrUpdateById(eq("id1"), any())
+    verify(delegate).addOrUpdateById(eq("id2"), any())
+    verify(delegate).addOrUpdateById(eq("id3"), any())
+  }
+
+  @Test
+  fun moveById_GivenPendingUpdates_WriteThemBeforeMoving() {
+    val mover = mock<MetricMover>()
+    repository.addOrUpdateById("id", MetricUpdater { it.setCdbCallStartTimestamp(1L) })
+
+    repository.moveById("id", mover)
+
+    inOrder(delegate) {
+      verify(delegate).addOrUpdateById(eq("id"), any())
+      verify(delegate).moveById("id", mover)
+    }
+  }
+
+  @Test
+  fun getAllStoredMetrics_GivenPendingUpdates_WriteThemBeforeReading() {
+    val metric = mock<Metric>()
+    delegate.stub {
+      on { allStoredMetrics } doReturn listOf(metric)
+    }
+
+    repository.addOrUpdateById("id", MetricUpdater { it.setCdbCallStartTimestamp(1L) })
+
+    val metrics = repository.allStoredMetrics
+
+    assertThat(metrics).containsExactly(metric)
+    inOrder(delegate) {
+      verify(delegate).addOrUpdateById(eq("id"), any())
+      verify(delegate).allStoredMetrics
+    }
+  }
+
+  @Test
+  fun getById_GivenPendingUpdates_WriteThemBeforeReading() {
+    val metric = mock<Metric>()
+    delegate.stub {
+      on { getById("id") } doReturn metric
+    }
+
+    repository.addOrUpdateById("id", MetricUpdater { it.setCdbCallStartTimestamp(1L) })
+
+    val readMetric = repository.getById("id")
+
+    assertThat(readMetric).isSameAs(metric)
+    inOrder(delegate) {
+      verify(delegate).addOrUpdateById(eq("id"), any())
+      verify(delegate).getById("id")
+    }
+  }
+
+  @Test
+  fun contains_GivenPendingUpdates_ReturnTrueWithoutDelegate() {
+    repository.addOrUpdateById("id", MetricUpdater { it.setCdbCallStartTimestamp(1L) })
+
+    val contained = repository.contains("id")
+
+    assertThat(contained).isTrue()
+    verify(delegate, never()).contains(any())
+  }
+
+  @Test
+  fun contains_GivenNoPendingUpdates_DelegateToIt() {
+    delegate.stub {
+      on { contains("id") } doReturn true
+    }
+
+    val contained = repository.contains("id")
+
+    assertThat(contained).isTrue()
+  }
+
+  @Test
+  fun flush_GivenNoPendingUpdates_OnlyFlushDelegate() {
+    repository.flush()
+
+    verify(delegate).flush()
+    verify(delegate, never()).addOrUpdateById(any(), any())
+  }
+
+  private fun runScheduledFlush() {
+    argumentCaptor<Runnable>().apply {
+      verify(scheduledExecutorService, atLeastOnce()).schedule(capture(), any(), any())
+      lastValue.run()
+    }
+  }
+
+  private fun metricWrittenInDelegate(impressionId: String): Metric {
+    val builder = Metric.builder(impressionId)
+
+    argumentCaptor<MetricUpdater>().apply {
+      verify(delegate).addOrUpdateById(eq(impressionId), capture())
+      firstValue.update(builder)
+    }
+
+    return builder.build()
+  }
+}
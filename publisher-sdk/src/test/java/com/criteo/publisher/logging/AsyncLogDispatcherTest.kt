@@ -0,0 +1,181 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.criteo.publisher.logging
+
+import android.util.Log
+import com.criteo.publisher.Clock
+import com.criteo.publisher.dependency.LazyDependency
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.verify
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+
+class AsyncLogDispatcherTest {
+
+  private lateinit var clock: Clock
+
+  private lateinit var handler: RecordingHandler
+
+  private lateinit var logger: Logger
+
+  /**
+   * Thread factory giving a consumer thread that does nothing, so tests drive the consumer with
+   * [AsyncLogDispatcher.handleNext].
+   */
+  private val idleThreadFactory = ThreadFactory { Thread() }
+
+  private val consumerThreadFactory = ThreadFactory {
+    Thread(it, "consumer").apply { isDaemon = true }
+  }
+
+  @Before
+  fun setUp() {
+    clock = mock {
+      on { currentTimeInMillis } doReturn 1337L
+    }
+
+    handler = RecordingHandler()
+  }
+
+  @Test
+  fun offer_GivenMessages_HandleThemInOrderOnConsumerThreadWithCallerContext() {
+    val dispatcher = createDispatcher(16, consumerThreadFactory)
+
+    logger.log(LogMessage(Log.INFO, "message1"))
+    logger.log(LogMessage(Log.INFO, "message2"))
+    logger.log(LogMessage(Log.INFO, "message3"))
+
+    assertThat(dispatcher.flush(5000)).isTrue()
+
+    val callerThreadName = Thread.currentThread().name
+    assertThat(handler.logMessages).containsExactly(
+        LogMessage(Log.INFO, "message1", threadName = callerThreadName, timestamp = 1337L),
+        LogMessage(Log.INFO, "message2", threadName = callerThreadName, timestamp = 1337L),
+        LogMessage(Log.INFO, "message3", threadName = callerThreadName, timestamp = 1337L)
+    )
+    assertThat(handler.threadNames).containsOnly("consumer")
+  }
+
+  @Test
+  fun offer_GivenFullRing_DropAndCountNewMessages() {
+    val dispatcher = createDispatcher(4, idleThreadFactory)
+
+    val accepted = (0 until 6).map { dispatcher.offer(logger, LogMessage(message = "message$it")) }
+
+    assertThat(accepted).containsExactly(true, true, true, true, false, false)
+    assertThat(dispatcher.droppedCount).isEqualTo(2)
+  }
+
+  @Test
+  fun offer_GivenFullRingThenDrained_AcceptNewMessages() {
+    val dispatcher = createDispatcher(4, idleThreadFactory)
+    (0 until 4).forEach { dispatcher.offer(logger, LogMessage(message = "message$it")) }
+
+    assertThat(dispatcher.handleNext()).isTrue()
+    assertThat(dispatcher.offer(logger, LogMessage(message = "message4"))).isTrue()
+    while (dispatcher.handleNext()) {
+      // Drain the ring
+    }
+
+    assertThat(handler.logMessages.map { it.message })
+        .containsExactly("message0", "message1", "message2", "message3", "message4")
+    assertThat(dispatcher.droppedCount).isEqualTo(0)
+  }
+
+  @Test
+  fun new_GivenCapacityNotPowerOfTwo_RoundItUp() {
+    val dispatcher = createDispatcher(3, idleThreadFactory)
+
+    val accepted = (0 until 5).map { dispatcher.offer(logger, LogMessage(message = "message$it")) }
+
+    assertThat(accepted).containsExactly(true, true, true, true, false)
+  }
+
+  @Test
+  fun handleNext_GivenEmptyRing_ReturnFalse() {
+    val dispatcher = createDispatcher(4, idleThreadFactory)
+
+    assertThat(dispatcher.handleNext()).isFalse()
+  }
+
+  @Test
+  fun flush_GivenNoPendingMessage_ReturnTrue() {
+    val dispatcher = createDispatcher(4, idleThreadFactory)
+
+    assertThat(dispatcher.flush(0)).isTrue()
+  }
+
+  @Test
+  fun flush_GivenStuckConsumer_ReturnFalseAfterTimeout() {
+    val dispatcher = createDispatcher(4, idleThreadFactory)
+    dispatcher.offer(logger, LogMessage(message = "message"))
+
+    assertThat(dispatcher.flush(10)).isFalse()
+  }
+
+  @Test
+  fun log_GivenManyProducersInParallel_HandleAllMessagesOnce() {
+    val dispatcher = createDispatcher(8192, consumerThreadFactory)
+
+    val nbWorkers = 4
+    val nbMessagesPerWorker = 1000
+    val executor = Executors.newFixedThreadPool(nbWorkers)
+    val allAreReadyToWork = CyclicBarrier(nbWorkers)
+    val allAreDone = CountDownLatch(nbWorkers)
+
+    for (worker in 0 until nbWorkers) {
+      executor.execute {
+        allAreReadyToWork.await()
+        for (i in 0 until nbMessagesPerWorker) {
+          logger.log(LogMessage(message = "$worker-$i"))
+        }
+        allAreDone.countDown()
+      }
+    }
+
+    allAreDone.await()
+    assertThat(dispatcher.flush(5000)).isTrue()
+
+    assertThat(handler.logMessages.map { it.message }).doesNotHaveDuplicates()
+    assertThat(handler.logMessages).hasSize(nbWorkers * nbMessagesPerWorker)
+    assertThat(dispatcher.droppedCount).isEqualTo(0)
+  }
+
+  private fun createDispatcher(capacity: Int, threadFactory: ThreadFactory): AsyncLogDispatcher {
+    val dispatcher = AsyncLogDispatcher(capacity, threadFactory, clock)
+    logger = Logger("myTag", listOf(LazyDependency { handler }), dispatcher, null)
+    return dispatcher
+  }
+
+  private class RecordingHandler : LogHandler {
+    val logMessages: MutableList<LogMessage> = Collections.synchronizedList(mutableListOf())
+    val threadNames: MutableSet<String> = Collections.synchronizedSet(mutableSetOf())
+
+    override fun log(tag: String, logMessage: LogMessage) {
+      logMessages.add(logMessage)
+      threadNames.add(Thread.currentThread().name)
+    }
+  }
+}
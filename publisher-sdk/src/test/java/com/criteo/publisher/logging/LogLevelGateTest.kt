@@ -0,0 +1,115 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.criteo.publisher.logging
+
+import android.content.SharedPreferences
+import android.util.Log
+import com.criteo.publisher.CriteoNotInitializedException
+import com.criteo.publisher.dependency.LazyDependency
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.verify
+import com.nhaarman.mockitokotlin2.whenever
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.mockito.Mock
+import org.mockito.junit.MockitoJUnit
+import org.mockito.junit.MockitoRule
+
+class LogLevelGateTest {
+
+  @Rule
+  @JvmField
+  val mockitoRule: MockitoRule = MockitoJUnit.rule()
+
+  @Mock
+  private lateinit var handler1: LogHandler
+
+  @Mock
+  private lateinit var handler2: LogHandler
+
+  private lateinit var gate: LogLevelGate
+
+  @Before
+  fun setUp() {
+    gate = LogLevelGate(listOf(LazyDependency { handler1 }, LazyDependency { handler2 }))
+  }
+
+  @Test
+  fun isLoggable_BeforeRefresh_AcceptAllLevels() {
+    assertThat(gate.isLoggable(Log.VERBOSE)).isTrue()
+  }
+
+  @Test
+  fun isLoggable_AfterRefresh_AcceptLevelsLoggedByAtLeastOneHandler() {
+    givenMinLevel(handler1, Log.WARN)
+    givenMinLevel(handler2, Log.INFO)
+
+    gate.refresh()
+
+    assertThat(gate.isLoggable(Log.DEBUG)).isFalse()
+    assertThat(gate.isLoggable(Log.INFO)).isTrue()
+    assertThat(gate.isLoggable(Log.ERROR)).isTrue()
+  }
+
+  @Test
+  fun isLoggable_GivenNoHandlerLoggingAnything_RejectAllLevels() {
+    gate.refresh()
+
+    assertThat(gate.isLoggable(Log.ASSERT)).isFalse()
+  }
+
+  @Test
+  fun isLoggable_GivenOneHandlerProviderThrowing_AcceptAllLevels() {
+    gate = LogLevelGate(listOf(
+        LazyDependency<LogHandler> { throw CriteoNotInitializedException("") },
+        LazyDependency { handler2 }
+    ))
+
+    gate.refresh()
+
+    assertThat(gate.isLoggable(Log.VERBOSE)).isTrue()
+  }
+
+  @Test
+  fun watch_GivenPreferences_RegisterAndRefresh() {
+    val sharedPreferences = mock<SharedPreferences>()
+
+    gate.watch(sharedPreferences)
+
+    verify(sharedPreferences).registerOnSharedPreferenceChangeListener(gate)
+    assertThat(gate.isLoggable(Log.ASSERT)).isFalse()
+  }
+
+  @Test
+  fun onSharedPreferenceChanged_GivenNewHandlerLevel_RefreshGate() {
+    gate.refresh()
+    givenMinLevel(handler1, Log.DEBUG)
+
+    gate.onSharedPreferenceChanged(mock(), "key")
+
+    assertThat(gate.isLoggable(Log.DEBUG)).isTrue()
+    assertThat(gate.isLoggable(Log.VERBOSE)).isFalse()
+  }
+
+  private fun givenMinLevel(handler: LogHandler, minLevel: Int) {
+    whenever(handler.isLoggable(any())).thenAnswer { (it.getArgument(0) as Int) >= minLevel }
+  }
+}
@@ -20,13 +20,18 @@ import android.util.Log
 import com.criteo.publisher.CriteoNotInitializedException
 import com.criteo.publisher.dependency.LazyDependency
 import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.atLeastOnce
+import com.nhaarman.mockitokotlin2.doReturn
 import com.nhaarman.mockitokotlin2.argThat
 import com.nhaarman.mockitokotlin2.doThrow
 import com.nhaarman.mockitokotlin2.inOrder
 import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.never
 import com.nhaarman.mockitokotlin2.spy
 import com.nhaarman.mockitokotlin2.verify
+import com.nhaarman.mockitokotlin2.verifyZeroInteractions
 import com.nhaarman.mockitokotlin2.whenever
+import org.assertj.core.api.Assertions.assertThat
 import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
@@ -50,7 +55,12 @@ class LoggerTest {
 
   @Before
   fun setUp() {
-    logger = spy(Logger("myTag", listOf(LazyDependency { handler1 }, LazyDependency { handler2 })))
+    logger = spy(Logger(
+        "myTag",
+        listOf(LazyDependency { handler1 }, LazyDependency { handler2 }),
+        null,
+        null
+    ))
   }
 
   @Test
@@ -79,6 +89,32 @@ class LoggerTest {
     verify(handler2).log("myTag", LogMessage(Log.DEBUG, null, exception))
   }
 
+  @Test
+  fun isLoggable_GivenOneHandlerAcceptingLevel_ReturnTrue() {
+    whenever(handler1.isLoggable(Log.INFO)).doReturn(false)
+    whenever(handler2.isLoggable(Log.INFO)).doReturn(true)
+
+    assertThat(logger.isLoggable(Log.INFO)).isTrue()
+  }
+
+  @Test
+  fun isLoggable_GivenNoHandlerAcceptingLevel_ReturnFalse() {
+    whenever(handler1.isLoggable(Log.INFO)).doReturn(false)
+    whenever(handler2.isLoggable(Log.INFO)).doReturn(false)
+
+    assertThat(logger.isLoggable(Log.INFO)).isFalse()
+  }
+
+  @Test
+  fun isLoggable_GivenOneHandlerProviderThrowing_ReturnTrue() {
+    logger = Logger("myTag", listOf(
+        LazyDependency<LogHandler> { throw CriteoNotInitializedException("") },
+        LazyDependency { handler2 }
+    ), null, null)
+
+    assertThat(logger.isLoggable(Log.INFO)).isTrue()
+  }
+
   @Test
   fun log_GivenOneHandlerThrowing_IgnoreErrorAndKeepLoggingWithOtherHandler() {
     whenever(handler1.log(any(), any())).doThrow(Exception::class)
@@ -96,7 +132,7 @@ class LoggerTest {
     logger = Logger("myTag", listOf(
         LazyDependency<LogHandler> { throw CriteoNotInitializedException("") },
         LazyDependency { handler2 }
-    ))
+    ), null, null)
 
     logger.log(logMessage)
 
@@ -125,7 +161,12 @@ class LoggerTest {
       }
     }
 
-    logger = Logger("myTag", listOf(LazyDependency { handler1 }, LazyDependency { handler2 }))
+    logger = Logger(
+        "myTag",
+        listOf(LazyDependency { handler1 }, LazyDependency { handler2 }),
+        null,
+        null
+    )
     logger.log(LogMessage(message = "dummy message"))
 
     inOrder(handler) {
@@ -150,7 +191,12 @@ class LoggerTest {
     lateinit var handler1: LogHandler
     lateinit var handler2: LogHandler
 
-    fun newLogger(): Logger = Logger("myTag", listOf(LazyDependency { handler1 }, LazyDependency { handler2 }))
+    fun newLogger(): Logger = Logger(
+        "myTag",
+        listOf(LazyDependency { handler1 }, LazyDependency { handler2 }),
+        null,
+        null
+    )
 
     val handler = mock<LogHandler>()
 
@@ -190,4 +236,83 @@ class LoggerTest {
       verifyNoMoreInteractions()
     }
   }
+
+  @Test
+  fun log_GivenAsyncDispatcher_OnlyPublishMessage() {
+    val dispatcher = mock<AsyncLogDispatcher>()
+    logger = Logger(
+        "myTag",
+        listOf(LazyDependency { handler1 }, LazyDependency { handler2 }),
+        dispatcher,
+        null
+    )
+    val logMessage = LogMessage(Log.INFO, "message")
+
+    logger.log(logMessage)
+
+    verify(dispatcher).offer(logger, logMessage)
+    verifyZeroInteractions(handler1, handler2)
+  }
+
+  @Test
+  fun log_GivenAsyncDispatcherAndConsumerThread_HandleMessageDirectly() {
+    val dispatcher = mock<AsyncLogDispatcher> {
+      on { isConsumerThread } doReturn true
+    }
+    logger = Logger(
+        "myTag",
+        listOf(LazyDependency { handler1 }, LazyDependency { handler2 }),
+        dispatcher,
+        null
+    )
+    val logMessage = LogMessage(Log.INFO, "message")
+
+    logger.log(logMessage)
+
+    verify(dispatcher, never()).offer(any(), any())
+    verify(handler1).log("myTag", logMessage)
+    verify(handler2).log("myTag", logMessage)
+  }
+
+  @Test
+  fun log_GivenClosedGate_DoNotBuildNorLogMessage() {
+    val gate = mock<LogLevelGate>()
+    val factory = mock<Logger.MessageFactory<String>>()
+    val biFactory = mock<Logger.BiMessageFactory<String, String>>()
+    logger = Logger("myTag", listOf(LazyDependency { handler1 }), null, gate)
+
+    logger.log(Log.INFO, factory, "arg")
+    logger.log(Log.INFO, biFactory, "arg1", "arg2")
+    logger.log(LogMessage(Log.INFO, "message"))
+    logger.debug("Hello %s", "World")
+
+    verify(gate, atLeastOnce()).isLoggable(any())
+    verifyZeroInteractions(factory, biFactory, handler1)
+  }
+
+  @Test
+  fun log_GivenOpenGate_BuildAndLogMessage() {
+    val gate = mock<LogLevelGate> {
+      on { isLoggable(Log.INFO) } doReturn true
+    }
+    logger = Logger("myTag", listOf(LazyDependency { handler1 }), null, gate)
+
+    logger.log(Log.INFO, { arg: String -> LogMessage(Log.INFO, "Hello $arg") }, "World")
+    logger.log(Log.INFO, { arg1: String, arg2: Int -> LogMessage(Log.INFO, "$arg1 $arg2") }, "Hi", 42)
+
+    verify(handler1).log("myTag", LogMessage(Log.INFO, "Hello World"))
+    verify(handler1).log("myTag", LogMessage(Log.INFO, "Hi 42"))
+  }
+
+  @Test
+  fun isLoggable_GivenGate_DelegateToGate() {
+    val gate = mock<LogLevelGate> {
+      on { isLoggable(Log.WARN) } doReturn true
+    }
+    logger = Logger("myTag", listOf(LazyDependency { handler1 }), null, gate)
+
+    assertThat(logger.isLoggable(Log.WARN)).isTrue()
+    assertThat(logger.isLoggable(Log.INFO)).isFalse()
+    verifyZeroInteractions(handler1)
+  }
 }
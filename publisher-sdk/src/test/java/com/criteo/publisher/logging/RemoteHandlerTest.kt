@@ -23,6 +23,7 @@ import com.criteo.publisher.mock.MockedDependenciesRule
 import com.criteo.publisher.model.Config
 import com.criteo.publisher.privacy.ConsentData
 import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.check
 import com.nhaarman.mockitokotlin2.doReturn
 import com.nhaarman.mockitokotlin2.mock
 import com.nhaarman.mockitokotlin2.times
@@ -30,6 +31,7 @@ import com.nhaarman.mockitokotlin2.verify
 import com.nhaarman.mockitokotlin2.verifyNoMoreInteractions
 import com.nhaarman.mockitokotlin2.verifyZeroInteractions
 import com.nhaarman.mockitokotlin2.whenever
+import org.assertj.core.api.Assertions.assertThat
 import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
@@ -109,6 +111,36 @@ class RemoteHandlerTest {
     verify(sendingQueue).offer(logRecords)
   }
 
+  @Test
+  fun log_GivenSameMessagesWithinAggregationWindow_PushFirstOneOnlyUntilAppIsStopped() {
+    whenever(config.remoteLogAggregationWindowInMillis).doReturn(60_000)
+    whenever(config.remoteLogAggregationMaxKeys).doReturn(10)
+
+    val logMessage = LogMessage(level = Log.WARN, message = "dummy")
+    val logRecords = mock<RemoteLogRecords>()
+    val aggregatedLogRecords = mock<RemoteLogRecords>()
+
+    whenever(remoteLogRecordsFactory.createLogRecords(logMessage)).thenReturn(logRecords)
+    whenever(remoteLogRecordsFactory.createAggregatedLogRecords(any()))
+        .thenReturn(aggregatedLogRecords)
+
+    remoteHandler.log("tag", logMessage)
+    remoteHandler.log("tag", logMessage)
+    remoteHandler.log("tag", logMessage)
+    mockedDependenciesRule.waitForIdleState()
+
+    verify(sendingQueue).offer(logRecords)
+    verifyNoMoreInteractions(sendingQueue)
+
+    remoteHandler.onApplicationStopped()
+    mockedDependenciesRule.waitForIdleState()
+
+    verify(remoteLogRecordsFactory).createAggregatedLogRecords(check {
+      assertThat(it.occurrences).isEqualTo(2)
+    })
+    verify(sendingQueue).offer(aggregatedLogRecords)
+  }
+
   @Test
   fun log_GivenConsentNotGiven_DoesNothing() {
     whenever(consentData.isConsentGiven()).thenReturn(false)
@@ -120,4 +152,20 @@ class RemoteHandlerTest {
     verifyZeroInteractions(remoteLogRecordsFactory)
     verifyZeroInteractions(sendingQueue)
   }
+
+  @Test
+  fun isLoggable_GivenConsentNotGiven_ReturnFalse() {
+    whenever(consentData.isConsentGiven()).thenReturn(false)
+
+    assertThat(remoteHandler.isLoggable(Log.ERROR)).isFalse()
+  }
+
+  @Test
+  fun isLoggable_GivenConfiguredRemoteLogLevel_ReturnTrueOnlyForLevelAboveOrEqual() {
+    whenever(config.remoteLogLevel).doReturn(RemoteLogLevel.WARNING)
+
+    assertThat(remoteHandler.isLoggable(Log.INFO)).isFalse()
+    assertThat(remoteHandler.isLoggable(Log.WARN)).isTrue()
+    assertThat(remoteHandler.isLoggable(Log.ERROR)).isTrue()
+  }
 }
@@ -0,0 +1,182 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.logging
+
+import android.util.Log
+import com.criteo.publisher.Clock
+import com.criteo.publisher.model.Config
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.stub
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mock
+import org.mockito.MockitoAnnotations
+
+class RemoteLogAggregatorTest {
+
+  @Mock
+  private lateinit var config: Config
+
+  @Mock
+  private lateinit var clock: Clock
+
+  private lateinit var aggregator: RemoteLogAggregator
+
+  @Before
+  fun setUp() {
+    MockitoAnnotations.initMocks(this)
+
+    config.stub {
+      on { remoteLogAggregationWindowInMillis } doReturn 1000
+      on { remoteLogAggregationMaxKeys } doReturn 10
+    }
+
+    aggregator = RemoteLogAggregator(config, clock)
+  }
+
+  @Test
+  fun aggregate_GivenDisabledAggregation_SendAllMessages() {
+    config.stub {
+      on { remoteLogAggregationWindowInMillis } doReturn 0
+    }
+
+    val logMessage = LogMessage(Log.WARN, "message")
+
+    assertThat(aggregator.aggregate(logMessage)).isTrue()
+    assertThat(aggregator.aggregate(logMessage)).isTrue()
+    assertThat(aggregator.pollClosedWindows()).isEmpty()
+  }
+
+  @Test
+  fun aggregate_GivenSameMessageWithinWindow_SendOnlyFirstOne() {
+    givenTime(0)
+    assertThat(aggregator.aggregate(LogMessage(Log.WARN, "call #1 failed after 42ms"))).isTrue()
+
+    givenTime(500)
+    assertThat(aggregator.aggregate(LogMessage(Log.WARN, "call #2 failed after 1337ms"))).isFalse()
+    assertThat(aggregator.aggregate(LogMessage(Log.WARN, "call #3 failed after 7ms"))).isFalse()
+
+    assertThat(aggregator.pollClosedWindows()).isEmpty()
+  }
+
+  @Test
+  fun aggregate_GivenMessagesOfDifferentKinds_SendAllOfThem() {
+    givenTime(0)
+
+    assertThat(aggregator.aggregate(LogMessage(Log.WARN, "message"))).isTrue()
+    assertThat(aggregator.aggregate(LogMessage(Log.ERROR, "message"))).isTrue()
+    assertThat(aggregator.aggregate(LogMessage(Log.WARN, "other message"))).isTrue()
+    assertThat(aggregator.aggregate(LogMessage(Log.WARN, "message", logId = "id"))).isTrue()
+    assertThat(aggregator.aggregate(
+        LogMessage(Log.WARN, "message", throwable = IllegalStateException())
+    )).isTrue()
+    assertThat(aggregator.aggregate(
+        LogMessage(Log.WARN, "message", throwable = IllegalArgumentException())
+    )).isTrue()
+  }
+
+  @Test
+  fun pollClosedWindows_AfterWindow_ReturnCountAndFirstAndLatestMessages() {
+    givenTime(0)
+    aggregator.aggregate(LogMessage(Log.WARN, "call #1 failed"))
+
+    givenTime(100)
+    aggregator.aggregate(LogMessage(Log.WARN, "call #2 failed").withCallerContext("thread", 90))
+
+    givenTime(200)
+    aggregator.aggregate(LogMessage(Log.WARN, "call #3 failed").withCallerContext("thread", 190))
+
+    givenTime(1000)
+    val aggregatedLogMessages = aggregator.pollClosedWindows()
+
+    assertThat(aggregatedLogMessages).containsExactly(AggregatedLogMessage(
+        LogMessage(Log.WARN, "call #3 failed").withCallerContext("thread", 190),
+        2,
+        90
+    ))
+    assertThat(aggregator.pollClosedWindows()).isEmpty()
+  }
+
+  @Test
+  fun pollClosedWindows_AfterWindowWithoutDuplicate_ReturnNothing() {
+    givenTime(0)
+    aggregator.aggregate(LogMessage(Log.WARN, "message"))
+
+    givenTime(1000)
+
+    assertThat(aggregator.pollClosedWindows()).isEmpty()
+  }
+
+  @Test
+  fun aggregate_AfterWindow_SendMessageAndOpenNewWindow() {
+    givenTime(0)
+    aggregator.aggregate(LogMessage(Log.WARN, "message"))
+    aggregator.aggregate(LogMessage(Log.WARN, "message"))
+
+    givenTime(1000)
+    assertThat(aggregator.aggregate(LogMessage(Log.WARN, "message"))).isTrue()
+    assertThat(aggregator.aggregate(LogMessage(Log.WARN, "message"))).isFalse()
+
+    assertThat(aggregator.pollClosedWindows()).hasSize(1)
+  }
+
+  @Test
+  fun aggregate_GivenTooManyKinds_CloseOldestWindowsFirst() {
+    config.stub {
+      on { remoteLogAggregationMaxKeys } doReturn 2
+    }
+
+    givenTime(0)
+    aggregator.aggregate(LogMessage(Log.WARN, "first"))
+    aggregator.aggregate(LogMessage(Log.WARN, "first").withCallerContext("thread", 0))
+    aggregator.aggregate(LogMessage(Log.WARN, "second"))
+    aggregator.aggregate(LogMessage(Log.WARN, "second").withCallerContext("thread", 0))
+
+    assertThat(aggregator.aggregate(LogMessage(Log.WARN, "third"))).isTrue()
+    assertThat(aggregator.pollClosedWindows()).containsExactly(AggregatedLogMessage(
+        LogMessage(Log.WARN, "first").withCallerContext("thread", 0),
+        1,
+        0
+    ))
+
+    // Window of the first message was closed, so it is sent again
+    assertThat(aggregator.aggregate(LogMessage(Log.WARN, "first"))).isTrue()
+  }
+
+  @Test
+  fun closeAllWindows_GivenOpenWindows_ReturnTheirAggregatedMessages() {
+    givenTime(0)
+    aggregator.aggregate(LogMessage(Log.WARN, "first"))
+    aggregator.aggregate(LogMessage(Log.WARN, "first"))
+    aggregator.aggregate(LogMessage(Log.WARN, "second"))
+
+    val aggregatedLogMessages = aggregator.closeAllWindows()
+
+    assertThat(aggregatedLogMessages).hasSize(1)
+    assertThat(aggregatedLogMessages[0].logMessage.message).isEqualTo("first")
+    assertThat(aggregatedLogMessages[0].logMessage.threadName).isEqualTo(Thread.currentThread().name)
+    assertThat(aggregatedLogMessages[0].logMessage.timestamp).isEqualTo(0L)
+    assertThat(aggregator.aggregate(LogMessage(Log.WARN, "second"))).isTrue()
+  }
+
+  private fun givenTime(timestamp: Long) {
+    clock.stub {
+      on { currentTimeInMillis } doReturn timestamp
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.criteo.publisher.logging
+
+import com.criteo.publisher.logging.RemoteLogRecords.RemoteLogContext
+import com.criteo.publisher.logging.RemoteLogRecords.RemoteLogLevel
+import com.criteo.publisher.logging.RemoteLogRecords.RemoteLogRecord
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+class RemoteLogRecordsCodecTest {
+
+  private val codec = RemoteLogRecordsCodec("org.dummy.bundle")
+
+  @Test
+  fun readWrite_GivenFullRecords_ReadSameRecordsWithoutDeviceId() {
+    val records = RemoteLogRecords(
+        RemoteLogContext(
+            "1.2.3",
+            "org.dummy.bundle",
+            "2c3f3b6e-0d4e-4a1c-9d7e-5b1f0c2a3e4d",
+            "0123456789abcdef0123456789abcdef",
+            456,
+            "java.lang.IllegalStateException",
+            "fedcba9876543210fedcba9876543210"
+        ),
+        listOf(
+            RemoteLogRecord(RemoteLogLevel.ERROR, listOf("message 1", "message 2")),
+            RemoteLogRecord(RemoteLogLevel.DEBUG, listOf("é ∑ unicode"))
+        )
+    )
+
+    val expected = records.copy(context = records.context.copy(deviceId = null))
+
+    assertThat(readWrite(records)).isEqualTo(expected)
+  }
+
+  @Test
+  fun readWrite_GivenRecordsWithoutOptionalFields_ReadSameRecords() {
+    val records = RemoteLogRecords(
+        RemoteLogContext("1.2.3", "org.dummy.bundle", null, "sessionId", 456, null, null),
+        listOf(RemoteLogRecord(RemoteLogLevel.INFO, listOf()))
+    )
+
+    assertThat(readWrite(records)).isEqualTo(records)
+  }
+
+  @Test
+  fun readWrite_GivenRecordsOfAnotherBundle_ReadSameBundle() {
+    val records = RemoteLogRecords(
+        RemoteLogContext("1.2.3", "org.other.bundle", null, "sessionId", 456, null, null),
+        listOf(RemoteLogRecord(RemoteLogLevel.INFO, listOf("message")))
+    )
+
+    assertThat(readWrite(records)).isEqualTo(records)
+  }
+
+  @Test
+  fun write_GivenRecordsOfThisBundle_DoNotWriteSharedContext() {
+    val context = RemoteLogContext(
+        "1.2.3",
+        "org.dummy.bundle",
+        "2c3f3b6e-0d4e-4a1c-9d7e-5b1f0c2a3e4d",
+        "0123456789abcdef0123456789abcdef",
+        456,
+        null,
+        null
+    )
+    val logRecords = listOf(RemoteLogRecord(RemoteLogLevel.INFO, listOf("message")))
+
+    val withOtherBundle = context.copy(bundleId = "org.other.bundle", deviceId = null)
+
+    // The bundle ID of this application takes a single byte and the device ID is not written
+    assertThat(write(RemoteLogRecords(context, logRecords)).size).isEqualTo(
+        write(RemoteLogRecords(withOtherBundle, logRecords)).size - "org.other.bundle".length
+    )
+  }
+
+  @Test
+  fun read_GivenRecordsOfFirstVersion_ReadFullContext() {
+    val bytes = byteArrayOf(
+        2, '1'.toByte(), // version
+        2, 'b'.toByte(), // bundle ID
+        2, 2, 'd'.toByte(), // device ID
+        2, 2, 's'.toByte(), // session ID
+        84, // zigzag profile ID 42
+        0, // no exception
+        0, // no log ID
+        1, 3, 1, 2, 'm'.toByte() // one error record with one message
+    )
+
+    val records = codec.read(DataInputStream(ByteArrayInputStream(bytes)), 1)
+
+    assertThat(records).isEqualTo(RemoteLogRecords(
+        RemoteLogContext("1", "b", "d", "s", 42, null, null),
+        listOf(RemoteLogRecord(RemoteLogLevel.ERROR, listOf("m")))
+    ))
+  }
+
+  private fun readWrite(records: RemoteLogRecords): RemoteLogRecords {
+    return codec.read(DataInputStream(ByteArrayInputStream(write(records))), codec.version)
+  }
+
+  private fun write(records: RemoteLogRecords): ByteArray {
+    val bytes = ByteArrayOutputStream()
+    DataOutputStream(bytes).use { codec.write(records, it) }
+    return bytes.toByteArray()
+  }
+}
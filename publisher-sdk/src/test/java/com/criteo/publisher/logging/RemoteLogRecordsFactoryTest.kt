@@ -34,8 +34,14 @@ import com.nhaarman.mockitokotlin2.whenever
 import org.assertj.core.api.Assertions.assertThat
 import org.junit.Rule
 import org.junit.Test
+import java.time.Instant
 import java.time.ZoneOffset
 import java.time.ZonedDateTime
+import java.time.format.DateTimeFormatter
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 
 class RemoteLogRecordsFactoryTest {
 
@@ -156,4 +162,80 @@ class RemoteLogRecordsFactoryTest {
 
     assertThat(messageBody).isEqualTo("throwable message+stacktrace,threadId:thread-name,2042-06-22T13:37:28.012Z")
   }
+
+  @Test
+  fun createMessageBody_GivenCallerContext_FormatItInsteadOfCurrentOne() {
+    val timestamp = ZonedDateTime.of(2042, 6, 22, 13, 37, 28, 0, ZoneOffset.UTC).toInstant().toEpochMilli()
+    whenever(clock.currentTimeInMillis).doReturn(timestamp + 1000)
+    doReturn("consumer-thread").whenever(factory).getCurrentThreadName()
+
+    val logMessage = LogMessage(message = "dummy message").withCallerContext("caller-thread", timestamp)
+
+    val messageBody = factory.createMessageBody(logMessage)
+
+    assertThat(messageBody).isEqualTo("dummy message,threadId:caller-thread,2042-06-22T13:37:28.000Z")
+  }
+
+  @Test
+  fun createMessageBody_GivenManyThreadsInParallel_FormatEachMessageWithItsOwnContext() {
+    val threadCount = 8
+    val messagesPerThread = 2_000
+    val start = ZonedDateTime.of(2042, 6, 22, 13, 37, 28, 0, ZoneOffset.UTC)
+        .toInstant()
+        .toEpochMilli()
+    val formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+        .withZone(ZoneOffset.UTC)
+
+    val executor = Executors.newFixedThreadPool(threadCount)
+    val startLatch = CountDownLatch(1)
+
+    try {
+      val futures = (0 until threadCount).map { thread ->
+        executor.submit(Callable {
+          startLatch.await()
+          (0 until messagesPerThread).map { i ->
+            // Each message has its own date, spread over years, to detect any shared state
+            val timestamp = start + (thread * messagesPerThread + i) * 123_456_789L
+            val logMessage = LogMessage(message = "message $thread-$i")
+                .withCallerContext("thread-$thread", timestamp)
+
+            val expected = "message $thread-$i,threadId:thread-$thread," +
+                formatter.format(Instant.ofEpochMilli(timestamp))
+
+            factory.createMessageBody(logMessage) to expected
+          }
+        })
+      }
+
+      startLatch.countDown()
+
+      futures.flatMap { it.get(30, TimeUnit.SECONDS) }.forEach { (actual, expected) ->
+        assertThat(actual).isEqualTo(expected)
+      }
+    } finally {
+      executor.shutdownNow()
+    }
+  }
+
+  @Test
+  fun createAggregatedLogRecords_GivenAggregatedLog_AppendOccurrencesToLatestMessage() {
+    val timestamp = ZonedDateTime.of(2042, 6, 22, 13, 37, 28, 0, ZoneOffset.UTC).toInstant().toEpochMilli()
+    whenever(buildConfigWrapper.sdkVersion).doReturn("1.2.3")
+    whenever(context.packageName).doReturn("org.dummy")
+    whenever(session.sessionId).doReturn("session-id")
+
+    val logMessage = LogMessage(Log.WARN, "latest message", logId = "myLogId")
+        .withCallerContext("caller-thread", timestamp + 1000)
+
+    val aggregatedLogMessage = AggregatedLogMessage(logMessage, 41, timestamp)
+
+    val logRecords = factory.createAggregatedLogRecords(aggregatedLogMessage)
+
+    assertThat(logRecords!!.logRecords).containsExactly(RemoteLogRecord(
+        RemoteLogLevel.WARNING,
+        listOf("latest message,threadId:caller-thread,2042-06-22T13:37:29.000Z," +
+            "occurrences:41,firstOccurrence:2042-06-22T13:37:28.000Z")
+    ))
+    assertThat(logRecords.context.logId).isEqualTo("myLogId")
+  }
 }
@@ -16,15 +16,16 @@
 
 package com.criteo.publisher.logging
 
-import com.criteo.publisher.concurrent.DirectMockExecutor
 import com.criteo.publisher.csm.ConcurrentSendingQueue
+import com.criteo.publisher.logging.RemoteLogRecords.RemoteLogContext
+import com.criteo.publisher.logging.RemoteLogRecords.RemoteLogLevel
+import com.criteo.publisher.logging.RemoteLogRecords.RemoteLogRecord
 import com.criteo.publisher.mock.MockedDependenciesRule
 import com.criteo.publisher.mock.SpyBean
 import com.criteo.publisher.network.PubSdkApi
 import com.criteo.publisher.util.AdvertisingInfo
 import com.criteo.publisher.util.BuildConfigWrapper
 import com.nhaarman.mockitokotlin2.any
-import com.nhaarman.mockitokotlin2.doAnswer
 import com.nhaarman.mockitokotlin2.doReturn
 import com.nhaarman.mockitokotlin2.doThrow
 import com.nhaarman.mockitokotlin2.mock
@@ -38,7 +39,7 @@ import org.mockito.Mock
 import org.mockito.MockitoAnnotations
 import java.io.IOException
 
-class RemoteLogSendingQueueConsumerTest {
+class RemoteLogSendingTaskTest {
 
   @Rule
   @JvmField
@@ -56,9 +57,7 @@ class RemoteLogSendingQueueConsumerTest {
   @SpyBean
   private lateinit var buildConfigWrapper: BuildConfigWrapper
 
-  private val executor = DirectMockExecutor()
-
-  private lateinit var consumer: RemoteLogSendingQueueConsumer
+  private lateinit var task: RemoteLogSendingTask
 
   @Before
   fun setUp() {
@@ -66,65 +65,96 @@ class RemoteLogSendingQueueConsumerTest {
 
     doReturn(false).whenever(buildConfigWrapper).preconditionThrowsOnException()
 
-    consumer = RemoteLogSendingQueueConsumer(
+    task = RemoteLogSendingTask(
         queue,
         api,
         buildConfigWrapper,
-        advertisingInfo,
-        executor
+        advertisingInfo
     )
   }
 
   @Test
-  fun sendRemoteLogBatch_GivenSomeLogsAndIOException_RollbackLogs() {
-    val logs1 = mock<RemoteLogRecords>()
-    val logs2 = mock<RemoteLogRecords>()
+  fun run_GivenSomeLogsAndIOException_RollbackLogs() {
+    val logs1 = mock<RemoteLogRecords>() {
+      on { context } doReturn mock()
+    }
+    val logs2 = mock<RemoteLogRecords>() {
+      on { context } doReturn mock()
+    }
 
     whenever(queue.poll(any())).doReturn(listOf(logs1, logs2))
     doThrow(IOException::class).whenever(api).postLogs(any())
 
-    consumer.sendRemoteLogBatch()
+    task.run()
 
-    verify(queue).offer(logs1)
-    verify(queue).offer(logs2)
+    verify(queue).offerAll(listOf(logs1, logs2))
   }
 
   @Test
-  fun sendRemoteLogBatch_GivenNoLogsInBatch_DoNotSendAnything() {
+  fun run_GivenNoLogsInBatch_DoNotSendAnything() {
     doReturn(42).whenever(buildConfigWrapper).remoteLogBatchSize
     whenever(queue.poll(any())).doReturn(listOf())
 
-    consumer.sendRemoteLogBatch()
+    task.run()
 
     verify(api, never()).postLogs(any())
   }
 
   @Test
-  fun sendRemoteLogBatch_GivenSomeLogsInBatch_SendThemAsyncWithApi() {
-    val logs1 = mock<RemoteLogRecords>()
-    val logs2 = mock<RemoteLogRecords>()
+  fun run_GivenSomeLogsInBatch_SendThemWithApi() {
+    val logs1 = mock<RemoteLogRecords>() {
+      on { context } doReturn mock()
+    }
+    val logs2 = mock<RemoteLogRecords>() {
+      on { context } doReturn mock()
+    }
 
     doReturn(42).whenever(buildConfigWrapper).remoteLogBatchSize
     whenever(queue.poll(any())).doReturn(listOf(logs1, logs2))
 
-    consumer.sendRemoteLogBatch()
+    task.run()
 
     verify(api).postLogs(listOf(logs1, logs2))
   }
 
   @Test
-  fun sendRemoteLogBatch_GivenExecutor_CallApiInExecutor() {
-    val logs = mock<RemoteLogRecords>()
-    whenever(queue.poll(any())).doReturn(listOf(logs))
+  fun run_GivenLogsSharingContexts_SendEachContextOnce() {
+    val context1 = RemoteLogContext("1.2.3", "org.dummy", "device-id", "session-id", 42, null, null)
+    val context2 = context1.copy(exceptionType = "IllegalStateException")
+    val record1 = RemoteLogRecord(RemoteLogLevel.WARNING, listOf("message 1"))
+    val record2 = RemoteLogRecord(RemoteLogLevel.ERROR, listOf("message 2"))
+    val record3 = RemoteLogRecord(RemoteLogLevel.WARNING, listOf("message 3"))
+
+    val logs = listOf(
+        RemoteLogRecords(context1, listOf(record1)),
+        RemoteLogRecords(context2, listOf(record2)),
+        RemoteLogRecords(context1.copy(), listOf(record3))
+    )
 
-    doAnswer {
-      executor.expectIsRunningInExecutor()
-    }.whenever(api).postLogs(any())
+    whenever(queue.poll(any())).doReturn(logs)
 
-    consumer.sendRemoteLogBatch()
+    task.run()
 
-    verify(api).postLogs(any())
-    executor.verifyExpectations()
+    verify(api).postLogs(listOf(
+        RemoteLogRecords(context1, listOf(record1, record3)),
+        RemoteLogRecords(context2, listOf(record2))
+    ))
+  }
+
+  @Test
+  fun run_GivenLogsSharingContextsAndIOException_RollbackOriginalLogs() {
+    val context = RemoteLogContext("1.2.3", "org.dummy", "device-id", "session-id", 42, null, null)
+    val logs = listOf(
+        RemoteLogRecords(context, listOf(RemoteLogRecord(RemoteLogLevel.WARNING, listOf("1")))),
+        RemoteLogRecords(context, listOf(RemoteLogRecord(RemoteLogLevel.WARNING, listOf("2"))))
+    )
+
+    whenever(queue.poll(any())).doReturn(logs)
+    doThrow(IOException::class).whenever(api).postLogs(any())
+
+    task.run()
+
+    verify(queue).offerAll(logs)
   }
 
   @Test
@@ -146,15 +176,10 @@ class RemoteLogSendingQueueConsumerTest {
     whenever(advertisingInfo.advertisingId).doReturn("new-device-id")
     whenever(queue.poll(any())).doReturn(listOf(logsWithoutDeviceId, logsWithDeviceId))
 
-    doAnswer {
-      executor.expectIsRunningInExecutor()
-    }.whenever(api).postLogs(any())
-
-    consumer.sendRemoteLogBatch()
+    task.run()
 
     verify(contextWithDeviceId, never()).deviceId = any()
     verify(contextWithoutDeviceId).deviceId = "new-device-id"
     verify(api).postLogs(any())
-    executor.verifyExpectations()
   }
 }
@@ -0,0 +1,74 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.logging
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import java.time.Instant
+import java.time.ZoneOffset
+import java.time.ZonedDateTime
+import java.time.format.DateTimeFormatter
+import java.util.Random
+
+class UtcTimestampEncoderTest {
+
+  private val referenceFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+      .withZone(ZoneOffset.UTC)
+
+  @Test
+  fun format_GivenEpoch_ReturnEpochDate() {
+    assertThat(UtcTimestampEncoder.format(0)).isEqualTo("1970-01-01T00:00:00.000Z")
+  }
+
+  @Test
+  fun format_GivenTimestampBeforeEpoch_ReturnPreviousDay() {
+    assertThat(UtcTimestampEncoder.format(-1)).isEqualTo("1969-12-31T23:59:59.999Z")
+  }
+
+  @Test
+  fun format_GivenLeapDay_ReturnLeapDay() {
+    val timestamp = ZonedDateTime.of(2000, 2, 29, 23, 59, 59, 999_000_000, ZoneOffset.UTC)
+        .toInstant()
+        .toEpochMilli()
+
+    assertThat(UtcTimestampEncoder.format(timestamp)).isEqualTo("2000-02-29T23:59:59.999Z")
+    assertThat(UtcTimestampEncoder.format(timestamp + 1)).isEqualTo("2000-03-01T00:00:00.000Z")
+  }
+
+  @Test
+  fun format_GivenRandomTimestamps_ReturnSameAsReferenceFormatter() {
+    val random = Random(42)
+    val min = Instant.parse("0001-01-01T00:00:00Z").toEpochMilli()
+    val max = Instant.parse("9999-12-31T23:59:59.999Z").toEpochMilli()
+
+    repeat(100_000) {
+      val timestamp = min + (random.nextDouble() * (max - min)).toLong()
+
+      assertThat(UtcTimestampEncoder.format(timestamp))
+          .isEqualTo(referenceFormatter.format(Instant.ofEpochMilli(timestamp)))
+    }
+  }
+
+  @Test
+  fun appendTo_GivenBuilderWithContent_AppendAfterIt() {
+    val builder = StringBuilder("date:")
+
+    UtcTimestampEncoder.appendTo(builder, 1_600_000_000_123)
+
+    assertThat(builder.toString()).isEqualTo("date:2020-09-13T12:26:40.123Z")
+  }
+}
@@ -24,11 +24,15 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.content.res.Configuration;
 import com.criteo.publisher.util.DeviceUtil;
 import java.util.List;
 import org.junit.Before;
@@ -217,6 +221,68 @@ public class AdUnitMapperTest {
     assertThat(validAdUnit).isNull();
   }
 
+  @Test
+  public void convertValidAdUnit_GivenSameAdUnitTwice_MapItOnlyOnce() throws Exception {
+    mapper = spy(mapper);
+    AdUnit adUnit = new BannerAdUnit("adUnit", new AdSize(320, 50));
+
+    CacheAdUnit validAdUnit1 = mapper.map(adUnit);
+    CacheAdUnit validAdUnit2 = mapper.map(new BannerAdUnit("adUnit", new AdSize(320, 50)));
+
+    assertThat(validAdUnit1)
+        .isEqualTo(new CacheAdUnit(new AdSize(320, 50), "adUnit", CRITEO_BANNER));
+    assertThat(validAdUnit2).isSameAs(validAdUnit1);
+    verify(mapper, times(1)).mapToChunks(any());
+  }
+
+  @Test
+  public void convertValidAdUnit_GivenInvalidAdUnitTwice_MapItTwice() throws Exception {
+    mapper = spy(mapper);
+    AdUnit adUnit = new BannerAdUnit("", new AdSize(320, 50));
+
+    CacheAdUnit validAdUnit1 = mapper.map(adUnit);
+    CacheAdUnit validAdUnit2 = mapper.map(adUnit);
+
+    assertThat(validAdUnit1).isNull();
+    assertThat(validAdUnit2).isNull();
+    verify(mapper, times(2)).mapToChunks(any());
+  }
+
+  @Test
+  public void convertValidAdUnit_GivenInterstitialAndConfigurationChange_MapItWithNewScreenSize()
+      throws Exception {
+    AdSize portraitSize = new AdSize(10, 30);
+    AdSize landscapeSize = new AdSize(30, 10);
+    when(deviceUtil.getCurrentScreenSize()).thenReturn(portraitSize, landscapeSize);
+    AdUnit adUnit = new InterstitialAdUnit("adUnit");
+
+    CacheAdUnit validAdUnit1 = mapper.map(adUnit);
+    CacheAdUnit validAdUnit2 = mapper.map(adUnit);
+    mapper.onConfigurationChanged(new Configuration());
+    CacheAdUnit validAdUnit3 = mapper.map(adUnit);
+
+    assertThat(validAdUnit1)
+        .isEqualTo(new CacheAdUnit(portraitSize, "adUnit", CRITEO_INTERSTITIAL));
+    assertThat(validAdUnit2).isSameAs(validAdUnit1);
+    assertThat(validAdUnit3)
+        .isEqualTo(new CacheAdUnit(landscapeSize, "adUnit", CRITEO_INTERSTITIAL));
+  }
+
+  @Test
+  public void convertValidAdUnit_GivenManyAdUnits_MemoizeOnlyUpToTheLimit() throws Exception {
+    for (int i = 0; i < AdUnitMapper.MAX_RESOLVED_AD_UNITS; i++) {
+      mapper.map(new InterstitialAdUnit("adUnit" + i));
+    }
+    mapper = spy(mapper);
+    AdUnit adUnit = new InterstitialAdUnit("oneMoreAdUnit");
+    when(deviceUtil.getCurrentScreenSize()).thenReturn(new AdSize(10, 30));
+
+    mapper.map(adUnit);
+    mapper.map(adUnit);
+
+    verify(mapper, times(2)).mapToChunks(any());
+  }
+
   @Test
   public void splitIntoChunks_GivenAnyChunkSizeAndNoElements_ReturnsEmpty() throws Exception {
     List<List<Object>> chunks = splitIntoChunks(emptyList(), 1);
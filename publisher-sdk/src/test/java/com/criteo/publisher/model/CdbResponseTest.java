@@ -23,6 +23,13 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.criteo.publisher.DependencyProvider;
+import com.criteo.publisher.util.JsonSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -157,4 +164,81 @@ public class CdbResponseTest {
     assertThat(cdbResponse.getConsentGiven()).isFalse();
   }
 
+  @Test
+  public void read_GivenInvalidConsentInfo_ReturnNullConsent() throws Exception {
+    String json = "{\"slots\":[], \"consentGiven\": \"maybe\"}";
+    CdbResponse cdbResponse = read(json);
+
+    assertThat(cdbResponse.getConsentGiven()).isNull();
+  }
+
+  @Test
+  public void read_GivenInvalidSlotsAmongValidOnes_IgnoreOnlyInvalidOnes() throws Exception {
+    String json = "{\"slots\":["
+        + "{\"placementId\":\"valid1\"},"
+        + "\"notAnObject\","
+        + "{\"placementId\":\"invalid\",\"width\":\"notANumber\"},"
+        + "{\"placementId\":\"valid2\"}"
+        + "], \"timeToNextCall\": 42}";
+    CdbResponse cdbResponse = read(json);
+
+    assertThat(cdbResponse.getSlots())
+        .extracting(CdbResponseSlot::getPlacementId)
+        .containsExactly("valid1", "valid2");
+    assertThat(cdbResponse.getTimeToNextCall()).isEqualTo(42);
+  }
+
+  @Test
+  public void read_GivenSlotsThatAreNotAnArray_ReturnNoSlot() throws Exception {
+    String json = "{\"slots\":{\"placementId\":\"myAdUnit\"}, \"timeToNextCall\": 42}";
+    CdbResponse cdbResponse = read(json);
+
+    assertThat(cdbResponse.getSlots()).isEmpty();
+    assertThat(cdbResponse.getTimeToNextCall()).isEqualTo(42);
+  }
+
+  @Test
+  public void read_GivenStream_ReadResponseInSinglePass() throws Exception {
+    String json = "{\"unknown\":{\"nested\":[1, 2]},\"slots\":["
+        + "{\"impId\":\"id\",\"placementId\":\"myAdUnit\",\"cpm\":\"1.00\",\"ttl\":42}"
+        + "],\"timeToNextCall\":30,\"consentGiven\":true}";
+    CdbResponse cdbResponse = read(json);
+
+    assertThat(cdbResponse.getSlots()).hasSize(1);
+    assertThat(cdbResponse.getSlots().get(0).getImpressionId()).isEqualTo("id");
+    assertThat(cdbResponse.getSlots().get(0).getCpm()).isEqualTo("1.00");
+    assertThat(cdbResponse.getSlots().get(0).getTtlInSeconds()).isEqualTo(42);
+    assertThat(cdbResponse.getTimeToNextCall()).isEqualTo(30);
+    assertThat(cdbResponse.getConsentGiven()).isTrue();
+  }
+
+  @Test
+  public void write_GivenResponse_WriteItSoItIsReadBack() throws Exception {
+    String json = "{\"slots\":["
+        + "{\"impId\":\"id\",\"placementId\":\"myAdUnit\",\"cpm\":\"1.00\",\"ttl\":42}"
+        + "],\"timeToNextCall\":30,\"consentGiven\":false}";
+    JsonSerializer serializer = DependencyProvider.getInstance().provideJsonSerializer();
+    CdbResponse expected = read(json);
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    serializer.write(expected, outputStream);
+    CdbResponse cdbResponse = read(outputStream.toString("UTF-8"));
+
+    assertThat(cdbResponse.getSlots()).hasSize(1);
+    assertThat(cdbResponse.getSlots().get(0).getImpressionId()).isEqualTo("id");
+    assertThat(cdbResponse.getSlots().get(0).getPlacementId()).isEqualTo("myAdUnit");
+    assertThat(cdbResponse.getSlots().get(0).getCpm()).isEqualTo("1.00");
+    assertThat(cdbResponse.getSlots().get(0).getTtlInSeconds()).isEqualTo(42);
+    assertThat(cdbResponse.getTimeToNextCall()).isEqualTo(30);
+    assertThat(cdbResponse.getConsentGiven()).isFalse();
+  }
+
+  private static CdbResponse read(String json) throws IOException {
+    JsonSerializer serializer = DependencyProvider.getInstance().provideJsonSerializer();
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    try (InputStream inputStream = new ByteArrayInputStream(bytes)) {
+      return serializer.read(CdbResponse.class, inputStream);
+    }
+  }
+
 }
@@ -212,6 +212,57 @@ public class ConfigTest {
     refreshConfig_assertItIsUnchanged(newConfig, Config::getRemoteLogLevel);
   }
 
+  @Test
+  public void refreshConfig_GivenMissingCsmSamplingWeight_ItIsUnchanged() throws Exception {
+    givenNewConfig();
+
+    RemoteConfigResponse newConfig = givenFullNewPayload(config);
+    when(newConfig.getCsmSamplingWeight()).thenReturn(null);
+
+    refreshConfig_assertItIsUnchanged(newConfig, Config::getCsmSamplingWeight);
+  }
+
+  @Test
+  public void refreshConfig_GivenMissingCsmMaxMetricsPerMinute_ItIsUnchanged() throws Exception {
+    givenNewConfig();
+
+    RemoteConfigResponse newConfig = givenFullNewPayload(config);
+    when(newConfig.getCsmMaxMetricsPerMinute()).thenReturn(null);
+
+    refreshConfig_assertItIsUnchanged(newConfig, Config::getCsmMaxMetricsPerMinute);
+  }
+
+  @Test
+  public void getCsmSamplingWeight_GivenNonPositiveWeight_TrackAllImpressions() throws Exception {
+    givenNewConfig();
+
+    RemoteConfigResponse newConfig = givenFullNewPayload(config);
+    when(newConfig.getCsmSamplingWeight()).thenReturn(-3);
+    config.refreshConfig(newConfig);
+
+    assertEquals(1, config.getCsmSamplingWeight());
+  }
+
+  @Test
+  public void refreshConfig_GivenMissingRemoteLogAggregationWindow_ItIsUnchanged() throws Exception {
+    givenNewConfig();
+
+    RemoteConfigResponse newConfig = givenFullNewPayload(config);
+    when(newConfig.getRemoteLogAggregationWindowInMillis()).thenReturn(null);
+
+    refreshConfig_assertItIsUnchanged(newConfig, Config::getRemoteLogAggregationWindowInMillis);
+  }
+
+  @Test
+  public void refreshConfig_GivenMissingRemoteLogAggregationMaxKeys_ItIsUnchanged() throws Exception {
+    givenNewConfig();
+
+    RemoteConfigResponse newConfig = givenFullNewPayload(config);
+    when(newConfig.getRemoteLogAggregationMaxKeys()).thenReturn(null);
+
+    refreshConfig_assertItIsUnchanged(newConfig, Config::getRemoteLogAggregationMaxKeys);
+  }
+
   private <T> void refreshConfig_assertItIsUnchanged(
       RemoteConfigResponse newConfig,
       Function<Config, T> projection
@@ -240,7 +291,11 @@ public class ConfigTest {
         false,
         42,
         false,
-        RemoteLogLevel.ERROR
+        RemoteLogLevel.ERROR,
+        10,
+        1000,
+        30000,
+        20
     );
 
     doAnswer(answerVoid((RemoteConfigResponse ignored, OutputStream outputStream) -> {
@@ -282,6 +337,10 @@ public class ConfigTest {
     boolean csmEnabled = config.isCsmEnabled();
     boolean liveBiddingEnabled = config.isLiveBiddingEnabled();
     int liveBiddingTimeBudgetInMillis = config.getLiveBiddingTimeBudgetInMillis();
+    int csmSamplingWeight = config.getCsmSamplingWeight();
+    int csmMaxMetricsPerMinute = config.getCsmMaxMetricsPerMinute();
+    int remoteLogAggregationWindowInMillis = config.getRemoteLogAggregationWindowInMillis();
+    int remoteLogAggregationMaxKeys = config.getRemoteLogAggregationMaxKeys();
 
     RemoteConfigResponse newConfig = givenFullNewPayload(config);
 
@@ -295,6 +354,13 @@ public class ConfigTest {
     assertEquals(csmEnabled, !config.isCsmEnabled());
     assertEquals(liveBiddingEnabled, !config.isLiveBiddingEnabled());
     assertEquals(1 + liveBiddingTimeBudgetInMillis, config.getLiveBiddingTimeBudgetInMillis());
+    assertEquals(1 + csmSamplingWeight, config.getCsmSamplingWeight());
+    assertEquals(1 + csmMaxMetricsPerMinute, config.getCsmMaxMetricsPerMinute());
+    assertEquals(
+        1 + remoteLogAggregationWindowInMillis,
+        config.getRemoteLogAggregationWindowInMillis()
+    );
+    assertEquals(1 + remoteLogAggregationMaxKeys, config.getRemoteLogAggregationMaxKeys());
 
   }
 
@@ -313,6 +379,12 @@ public class ConfigTest {
     when(response.getLiveBiddingEnabled()).thenReturn(!config.isLiveBiddingEnabled());
     when(response.getLiveBiddingTimeBudgetInMillis()).thenReturn(1 + config.getLiveBiddingTimeBudgetInMillis());
     when(response.getPrefetchOnInitEnabled()).thenReturn(!config.isPrefetchOnInitEnabled());
+    when(response.getCsmSamplingWeight()).thenReturn(1 + config.getCsmSamplingWeight());
+    when(response.getCsmMaxMetricsPerMinute()).thenReturn(1 + config.getCsmMaxMetricsPerMinute());
+    when(response.getRemoteLogAggregationWindowInMillis())
+        .thenReturn(1 + config.getRemoteLogAggregationWindowInMillis());
+    when(response.getRemoteLogAggregationMaxKeys())
+        .thenReturn(1 + config.getRemoteLogAggregationMaxKeys());
 
     // Get any value that is not the one set in the given config
     RemoteLogLevel otherLogLevel = Arrays.stream(RemoteLogLevel.values())
@@ -336,6 +408,10 @@ public class ConfigTest {
     assertTrue(config.isCsmEnabled());
     assertFalse(config.isLiveBiddingEnabled());
     assertEquals(8000, config.getLiveBiddingTimeBudgetInMillis());
+    assertEquals(1, config.getCsmSamplingWeight());
+    assertEquals(600, config.getCsmMaxMetricsPerMinute());
+    assertEquals(60_000, config.getRemoteLogAggregationWindowInMillis());
+    assertEquals(64, config.getRemoteLogAggregationMaxKeys());
   }
 
 }
\ No newline at end of file
@@ -72,6 +72,10 @@ class RemoteConfigResponseTest {
     assertThat(response.liveBiddingTimeBudgetInMillis).isNull()
     assertThat(response.prefetchOnInitEnabled).isNull()
     assertThat(response.remoteLogLevel).isNull()
+    assertThat(response.csmSamplingWeight).isNull()
+    assertThat(response.csmMaxMetricsPerMinute).isNull()
+    assertThat(response.remoteLogAggregationWindowInMillis).isNull()
+    assertThat(response.remoteLogAggregationMaxKeys).isNull()
   }
 
   @Test
@@ -86,7 +90,11 @@ class RemoteConfigResponseTest {
       "liveBiddingEnabled": true,
       "liveBiddingTimeBudgetInMillis": 42,
       "prefetchOnInitEnabled": true,
-      "remoteLogLevel": "Warning"
+      "remoteLogLevel": "Warning",
+      "csmSamplingWeight": 10,
+      "csmMaxMetricsPerMinute": 1000,
+      "remoteLogAggregationWindowInMillis": 30000,
+      "remoteLogAggregationMaxKeys": 20
     }""".trimIndent()
 
     val response = readFromString(json)
@@ -101,6 +109,10 @@ class RemoteConfigResponseTest {
     assertThat(response.liveBiddingTimeBudgetInMillis).isEqualTo(42)
     assertThat(response.prefetchOnInitEnabled).isTrue()
     assertThat(response.remoteLogLevel).isEqualTo(RemoteLogLevel.WARNING)
+    assertThat(response.csmSamplingWeight).isEqualTo(10)
+    assertThat(response.csmMaxMetricsPerMinute).isEqualTo(1000)
+    assertThat(response.remoteLogAggregationWindowInMillis).isEqualTo(30000)
+    assertThat(response.remoteLogAggregationMaxKeys).isEqualTo(20)
   }
 
   @Test
@@ -21,15 +21,19 @@ import com.criteo.publisher.Clock
 import com.criteo.publisher.concurrent.DirectMockExecutor
 import com.criteo.publisher.context.ContextData
 import com.criteo.publisher.model.AdSize
+import com.criteo.publisher.model.AdUnitMapper
 import com.criteo.publisher.model.CacheAdUnit
 import com.criteo.publisher.model.CdbRequest
 import com.criteo.publisher.model.CdbRequestFactory
+import com.criteo.publisher.model.CdbRequestSlot
 import com.criteo.publisher.model.CdbResponse
+import com.criteo.publisher.model.CdbResponseSlot
 import com.criteo.publisher.model.Config
 import com.criteo.publisher.model.RemoteConfigRequest
 import com.criteo.publisher.model.RemoteConfigRequestFactory
 import com.criteo.publisher.model.RemoteConfigResponse
 import com.criteo.publisher.util.AdUnitType.CRITEO_BANNER
+import com.criteo.publisher.util.BuildConfigWrapper
 import com.criteo.publisher.util.CompletableFuture.completedFuture
 import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.anyOrNull
@@ -37,8 +41,10 @@ import com.nhaarman.mockitokotlin2.argumentCaptor
 import com.nhaarman.mockitokotlin2.doAnswer
 import com.nhaarman.mockitokotlin2.doReturn
 import com.nhaarman.mockitokotlin2.doThrow
+import com.nhaarman.mockitokotlin2.eq
 import com.nhaarman.mockitokotlin2.inOrder
 import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.never
 import com.nhaarman.mockitokotlin2.spy
 import com.nhaarman.mockitokotlin2.stub
 import com.nhaarman.mockitokotlin2.times
@@ -57,6 +63,7 @@ import java.util.concurrent.CyclicBarrier
 import java.util.concurrent.Executor
 import java.util.concurrent.Executors
 import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ScheduledExecutorService
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 
@@ -74,6 +81,12 @@ class BidRequestSenderTest {
     @Mock
     private lateinit var api: PubSdkApi
 
+    @Mock
+    private lateinit var scheduledExecutorService: ScheduledExecutorService
+
+    @Mock
+    private lateinit var buildConfigWrapper: BuildConfigWrapper
+
     private var executor = Executor(Runnable::run)
 
     private lateinit var sender: BidRequestSender
@@ -95,7 +108,9 @@ class BidRequestSenderTest {
             remoteConfigRequestFactory,
             clock,
             api,
-            executor
+            executor,
+            scheduledExecutorService,
+            buildConfigWrapper
         )
     }
 
@@ -160,6 +175,7 @@ class BidRequestSenderTest {
         val inOrder = inOrder(listener)
         inOrder.verify(listener).onCdbRequest(request)
         inOrder.verify(listener).onCdbResponse(request, response)
+        inOrder.verify(listener).onCdbCallEnded()
         inOrder.verifyNoMoreInteractions()
     }
 
@@ -185,6 +201,7 @@ class BidRequestSenderTest {
         val inOrder = inOrder(listener)
         inOrder.verify(listener).onCdbRequest(request)
         inOrder.verify(listener).onCdbError(request, exception)
+        inOrder.verify(listener).onCdbCallEnded()
         inOrder.verifyNoMoreInteractions()
     }
 
@@ -330,6 +347,238 @@ class BidRequestSenderTest {
         assertThat(bothCallsAreInterrupted.await(1, TimeUnit.SECONDS)).isTrue()
     }
 
+    @Test
+    fun sendBidRequest_GivenCoalescingWindow_DoNotSendUntilEndOfWindow() {
+        givenCoalescingWindow(42)
+
+        sender.sendBidRequest(listOf(createAdUnit()), ContextData(), mock())
+
+        verify(scheduledExecutorService).schedule(any(), eq(42L), eq(TimeUnit.MILLISECONDS))
+        verifyZeroInteractions(api)
+    }
+
+    @Test
+    fun sendBidRequest_GivenCoalescingWindowAndRequestsWithSameContext_SendSingleCallAndNotifyEachListener() {
+        givenCoalescingWindow(42)
+
+        val adUnit1 = createAdUnit()
+        val adUnit2 = createAdUnit()
+        val contextData = ContextData()
+        val listener1: CdbCallListener = mock()
+        val listener2: CdbCallListener = mock()
+        val slot1 = CdbRequestSlot.create("imp1", adUnit1.placementId, CRITEO_BANNER, adUnit1.size)
+        val slot2 = CdbRequestSlot.create("imp2", adUnit2.placementId, CRITEO_BANNER, adUnit2.size)
+        val request = CdbRequest.create("id", mock(), mock(), "1.0", 42, null, listOf(slot1, slot2))
+        val responseSlot1 = CdbResponseSlot(impressionId = "imp1")
+        val responseSlot2 = CdbResponseSlot(impressionId = "imp2")
+        val response = CdbResponse(listOf(responseSlot2, responseSlot1), 1337, true)
+
+        whenever(cdbRequestFactory.createRequest(listOf(adUnit1, adUnit2), contextData)).doReturn(request)
+        whenever(api.loadCdb(request, "")).doReturn(response)
+
+        sender.sendBidRequest(listOf(adUnit1), contextData, listener1)
+        sender.sendBidRequest(listOf(adUnit2), contextData, listener2)
+        endCoalescingWindow()
+
+        verify(api).loadCdb(request, "")
+
+        val requestCaptor1 = argumentCaptor<CdbRequest>()
+        val responseCaptor1 = argumentCaptor<CdbResponse>()
+        verify(listener1).onCdbRequest(requestCaptor1.capture())
+        verify(listener1).onCdbResponse(eq(requestCaptor1.firstValue), responseCaptor1.capture())
+        assertThat(requestCaptor1.firstValue.id).isEqualTo("id")
+        assertThat(requestCaptor1.firstValue.slots).containsExactly(slot1)
+        assertThat(responseCaptor1.firstValue.slots).containsExactly(responseSlot1)
+        assertThat(responseCaptor1.firstValue.timeToNextCall).isEqualTo(1337)
+
+        val requestCaptor2 = argumentCaptor<CdbRequest>()
+        val responseCaptor2 = argumentCaptor<CdbResponse>()
+        verify(listener2).onCdbRequest(requestCaptor2.capture())
+        verify(listener2).onCdbResponse(eq(requestCaptor2.firstValue), responseCaptor2.capture())
+        assertThat(requestCaptor2.firstValue.slots).containsExactly(slot2)
+        assertThat(responseCaptor2.firstValue.slots).containsExactly(responseSlot2)
+    }
+
+    @Test
+    fun sendBidRequest_GivenCoalescingWindowAndError_NotifyEachListener() {
+        givenCoalescingWindow(42)
+
+        val adUnit1 = createAdUnit()
+        val adUnit2 = createAdUnit()
+        val contextData = ContextData()
+        val listener1: CdbCallListener = mock()
+        val listener2: CdbCallListener = mock()
+        val slot1 = CdbRequestSlot.create("imp1", adUnit1.placementId, CRITEO_BANNER, adUnit1.size)
+        val slot2 = CdbRequestSlot.create("imp2", adUnit2.placementId, CRITEO_BANNER, adUnit2.size)
+        val request = CdbRequest.create("id", mock(), mock(), "1.0", 42, null, listOf(slot1, slot2))
+        val exception = IOException()
+
+        whenever(cdbRequestFactory.createRequest(listOf(adUnit1, adUnit2), contextData)).doReturn(request)
+        whenever(api.loadCdb(request, "")).doThrow(exception)
+
+        sender.sendBidRequest(listOf(adUnit1), contextData, listener1)
+        sender.sendBidRequest(listOf(adUnit2), contextData, listener2)
+        endCoalescingWindow()
+
+        verify(listener1).onCdbError(any(), eq(exception))
+        verify(listener2).onCdbError(any(), eq(exception))
+        verify(listener1, never()).onCdbResponse(any(), any())
+        verify(listener2, never()).onCdbResponse(any(), any())
+    }
+
+    @Test
+    fun sendBidRequest_GivenListenerFailingOnResponse_NotifyItOfError() {
+        val adUnits = listOf(createAdUnit())
+        val contextData = ContextData()
+        val listener: CdbCallListener = mock()
+        val request: CdbRequest = mock()
+        val response: CdbResponse = mock()
+        val exception = IllegalStateException()
+
+        whenever(cdbRequestFactory.createRequest(adUnits, contextData)).doReturn(request)
+        whenever(api.loadCdb(request, "")).doReturn(response)
+        doThrow(exception).whenever(listener).onCdbResponse(request, response)
+
+        sender.sendBidRequest(adUnits, contextData, listener)
+
+        verify(listener).onCdbError(request, exception)
+    }
+
+    @Test
+    fun sendBidRequest_GivenCallOver_NotifyListenerOnceAdUnitsAreNotPendingAnymore() {
+        val adUnits = listOf(createAdUnit())
+        val contextData = ContextData()
+        val listener: CdbCallListener = mock()
+        val request: CdbRequest = mock()
+        val response: CdbResponse = mock()
+        var pendingAdUnitsWhenEnded: Set<CacheAdUnit>? = null
+
+        whenever(cdbRequestFactory.createRequest(adUnits, contextData)).doReturn(request)
+        whenever(api.loadCdb(request, "")).doReturn(response)
+        doAnswer {
+            pendingAdUnitsWhenEnded = sender.pendingTaskAdUnits.toSet()
+        }.whenever(listener).onCdbCallEnded()
+
+        sender.sendBidRequest(adUnits, contextData, listener)
+
+        val inOrder = inOrder(listener)
+        inOrder.verify(listener).onCdbResponse(request, response)
+        inOrder.verify(listener).onCdbCallEnded()
+        assertThat(pendingAdUnitsWhenEnded).isEmpty()
+    }
+
+    @Test
+    fun sendBidRequest_GivenCoalescingWindowAndListenerFailingOnResponse_NotifyOnlyItOfError() {
+        givenCoalescingWindow(42)
+
+        val adUnit1 = createAdUnit()
+        val adUnit2 = createAdUnit()
+        val contextData = ContextData()
+        val listener1: CdbCallListener = mock()
+        val listener2: CdbCallListener = mock()
+        val exception = IllegalStateException()
+
+        givenRequestFactoryCreatingRealRequests()
+        doThrow(exception).whenever(listener1).onCdbResponse(any(), any())
+
+        sender.sendBidRequest(listOf(adUnit1), contextData, listener1)
+        sender.sendBidRequest(listOf(adUnit2), contextData, listener2)
+        endCoalescingWindow()
+
+        verify(listener1).onCdbError(any(), eq(exception))
+        verify(listener2).onCdbResponse(any(), any())
+        verify(listener2, never()).onCdbError(any(), any())
+    }
+
+    @Test
+    fun sendBidRequest_GivenCoalescingWindowAndRequestsWithDifferentContexts_SendOneCallPerContext() {
+        givenCoalescingWindow(42)
+
+        val adUnit1 = createAdUnit()
+        val adUnit2 = createAdUnit()
+        val contextData1 = ContextData().set("key", "value1")
+        val contextData2 = ContextData().set("key", "value2")
+
+        givenRequestFactoryCreatingRealRequests()
+
+        sender.sendBidRequest(listOf(adUnit1), contextData1, mock())
+        sender.sendBidRequest(listOf(adUnit2), contextData2, mock())
+        endCoalescingWindow()
+
+        verify(cdbRequestFactory).createRequest(listOf(adUnit1), contextData1)
+        verify(cdbRequestFactory).createRequest(listOf(adUnit2), contextData2)
+        verify(api, times(2)).loadCdb(any(), any())
+    }
+
+    @Test
+    fun sendBidRequest_GivenCoalescingWindowAndMoreAdUnitsThanChunkSize_SplitIntoSeveralCalls() {
+        givenCoalescingWindow(42)
+
+        val contextData = ContextData()
+        val adUnits = (1..AdUnitMapper.CHUNK_SIZE + 1).map { createAdUnit() }
+
+        givenRequestFactoryCreatingRealRequests()
+
+        adUnits.forEach { sender.sendBidRequest(listOf(it), contextData, mock()) }
+        endCoalescingWindow()
+
+        verify(cdbRequestFactory).createRequest(adUnits.take(AdUnitMapper.CHUNK_SIZE), contextData)
+        verify(cdbRequestFactory).createRequest(adUnits.drop(AdUnitMapper.CHUNK_SIZE), contextData)
+    }
+
+    @Test
+    fun sendBidRequest_GivenCoalescingWindowAndAlreadyCoalescedAdUnit_IgnoreIt() {
+        givenCoalescingWindow(42)
+
+        val adUnit = createAdUnit()
+        val listener1: CdbCallListener = mock()
+        val listener2: CdbCallListener = mock()
+        givenRequestFactoryCreatingRealRequests()
+
+        sender.sendBidRequest(listOf(adUnit), ContextData(), listener1)
+        sender.sendBidRequest(listOf(adUnit), ContextData(), listener2)
+        endCoalescingWindow()
+
+        verify(cdbRequestFactory).createRequest(listOf(adUnit), ContextData())
+        verifyZeroInteractions(listener2)
+    }
+
+    @Test
+    fun cancelAllPendingTasks_GivenCoalescedRequests_DropThem() {
+        givenCoalescingWindow(42)
+
+        val listener: CdbCallListener = mock()
+        sender.sendBidRequest(listOf(createAdUnit()), ContextData(), listener)
+
+        sender.cancelAllPendingTasks()
+        endCoalescingWindow()
+
+        verifyZeroInteractions(api)
+        verifyZeroInteractions(listener)
+    }
+
+    private fun givenCoalescingWindow(windowInMillis: Int) {
+        whenever(buildConfigWrapper.bidRequestCoalescingWindowInMillis).doReturn(windowInMillis)
+    }
+
+    private fun givenRequestFactoryCreatingRealRequests() {
+        whenever(cdbRequestFactory.createRequest(any(), any())).doAnswer {
+            val adUnits: List<CacheAdUnit> = it.getArgument(0)
+            val slots = adUnits.map { adUnit ->
+                CdbRequestSlot.create(adUnit.placementId, adUnit.placementId, CRITEO_BANNER, adUnit.size)
+            }
+            CdbRequest.create("id", mock(), mock(), "1.0", 42, null, slots)
+        }
+        whenever(api.loadCdb(any(), any())).doReturn(CdbResponse(listOf(), 0, null))
+    }
+
+    private fun endCoalescingWindow() {
+        argumentCaptor<Runnable>().apply {
+            verify(scheduledExecutorService, times(1)).schedule(capture(), any(), any())
+            allValues.forEach { it.run() }
+        }
+    }
+
     private fun createAdUnit(): CacheAdUnit {
         val id = "id" + adUnitId.incrementAndGet()
         return CacheAdUnit(AdSize(1, 2), id, CRITEO_BANNER)
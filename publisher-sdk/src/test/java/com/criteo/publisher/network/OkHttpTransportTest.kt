@@ -0,0 +1,112 @@
+/*
+ *    Copyright 2020 Criteo
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.criteo.publisher.network
+
+import com.criteo.publisher.util.BuildConfigWrapper
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import java.net.SocketTimeoutException
+import java.net.URL
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class OkHttpTransportTest {
+
+    @Rule
+    @JvmField
+    val mockWebServer = MockWebServer()
+
+    private lateinit var buildConfigWrapper: BuildConfigWrapper
+
+    private lateinit var transport: OkHttpTransport
+
+    private lateinit var serverUrl: URL
+
+    @Before
+    fun setUp() {
+        buildConfigWrapper = mock {
+            on { networkTimeoutInMillis } doReturn 1000
+            on { httpMaxConnectionsPerHost } doReturn 1
+            on { httpMaxIdleConnections } doReturn 1
+            on { httpKeepAliveDurationInMillis } doReturn 60_000
+            on { isHttp2Enabled } doReturn false
+        }
+
+        transport = OkHttpTransport(buildConfigWrapper)
+        serverUrl = mockWebServer.url("/").toUrl()
+    }
+
+    @Test
+    fun execute_GivenMaxConnectionsPerHostReached_WaitForPreviousResponseToBeClosed() {
+        mockWebServer.enqueue(MockResponse().setBody("first"))
+        mockWebServer.enqueue(MockResponse().setBody("second"))
+
+        val firstResponse = transport.execute("GET", serverUrl, null, null)
+
+        val secondCallIsDone = CountDownLatch(1)
+        val executor = Executors.newSingleThreadExecutor()
+        try {
+            executor.execute {
+                transport.execute("GET", serverUrl, null, null).close()
+                secondCallIsDone.countDown()
+            }
+
+            assertThat(secondCallIsDone.await(200, TimeUnit.MILLISECONDS)).isFalse()
+
+            firstResponse.close()
+
+            assertThat(secondCallIsDone.await(1, TimeUnit.SECONDS)).isTrue()
+            assertThat(mockWebServer.connectionCount).isEqualTo(1)
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    fun execute_GivenMaxConnectionsPerHostReachedForLongerThanTimeout_ThrowTimeout() {
+        mockWebServer.enqueue(MockResponse().setBody("first"))
+
+        val firstResponse = transport.execute("GET", serverUrl, null, null)
+
+        firstResponse.use {
+            val result = runCatching { transport.execute("GET", serverUrl, null, null) }
+
+            assertThat(result.exceptionOrNull()).isInstanceOf(SocketTimeoutException::class.java)
+            assertThat(mockWebServer.requestCount).isEqualTo(1)
+        }
+    }
+
+    @Test
+    fun execute_GivenHttpError_ReleaseConnectionForNextCalls() {
+        mockWebServer.enqueue(MockResponse().setResponseCode(500))
+        mockWebServer.enqueue(MockResponse().setBody("ok"))
+
+        val result = runCatching { transport.execute("GET", serverUrl, null, null) }
+
+        assertThat(result.exceptionOrNull()).isInstanceOf(HttpResponseException::class.java)
+        transport.execute("GET", serverUrl, null, null).use {
+            assertThat(it).hasContent("ok")
+        }
+    }
+}
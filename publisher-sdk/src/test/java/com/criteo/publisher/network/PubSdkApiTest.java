@@ -18,6 +18,7 @@ package com.criteo.publisher.network;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.AdditionalAnswers.answerVoid;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -27,6 +28,7 @@ import static org.mockito.Mockito.when;
 
 import androidx.annotation.NonNull;
 import com.criteo.publisher.csm.MetricRequest;
+import com.criteo.publisher.csm.MetricSummaryRequest;
 import com.criteo.publisher.logging.RemoteLogRecords;
 import com.criteo.publisher.mock.MockedDependenciesRule;
 import com.criteo.publisher.mock.SpyBean;
@@ -43,19 +45,42 @@ import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+@RunWith(Parameterized.class)
 public class PubSdkApiTest {
 
+  @Parameters(name = "pooled transport: {0}")
+  public static Collection<Object[]> data() {
+    return Arrays.asList(new Object[][]{{true}, {false}});
+  }
+
+  private final boolean isPooledTransport;
+
+  public PubSdkApiTest(boolean isPooledTransport) {
+    this.isPooledTransport = isPooledTransport;
+  }
+
   @Rule
   public MockedDependenciesRule mockedDependenciesRule = new MockedDependenciesRule();
 
@@ -88,7 +113,14 @@ public class PubSdkApiTest {
     when(gdprData.gdprApplies()).thenReturn(false);
     when(gdprData.version()).thenReturn(1);
 
-    api = new PubSdkApi(buildConfigWrapper, serializer);
+    HttpTransport transport;
+    if (isPooledTransport) {
+      transport = new OkHttpTransport(buildConfigWrapper);
+    } else {
+      transport = new UrlConnectionTransport(buildConfigWrapper);
+    }
+
+    api = new PubSdkApi(buildConfigWrapper, serializer, transport);
   }
 
   @Test
@@ -158,6 +190,39 @@ public class PubSdkApiTest {
     assertThat(webRequest.getBody().snapshot().utf8()).isEqualTo(json);
   }
 
+  @Test
+  public void postCsm_GivenSerializedRequest_StreamItInChunks() throws Exception {
+    MetricRequest request = mock(MetricRequest.class);
+    String json = "{\"expectedJson\": 42}";
+
+    givenSerializerWriting(request, json);
+
+    mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+
+    api.postCsm(request);
+
+    RecordedRequest webRequest = mockWebServer.takeRequest();
+    assertThat(webRequest.getHeader("Transfer-Encoding")).isEqualToIgnoringCase("chunked");
+    assertThat(webRequest.getBody().snapshot().utf8()).isEqualTo(json);
+  }
+
+  @Test
+  public void postCsmSummary_GivenSerializedRequest_SendItWithPost() throws Exception {
+    MetricSummaryRequest request = mock(MetricSummaryRequest.class);
+    String json = "{\"expectedJson\": 42}";
+
+    givenSerializerWriting(request, json);
+
+    mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+
+    api.postCsmSummary(request);
+
+    RecordedRequest webRequest = mockWebServer.takeRequest();
+    assertThat(webRequest.getPath()).isEqualTo("/csm/summary");
+    assertThat(webRequest.getMethod()).isEqualTo("POST");
+    assertThat(webRequest.getBody().snapshot().utf8()).isEqualTo(json);
+  }
+
   @Test
   public void postCsm_GivenConnectionError_ThrowIOException() throws Exception {
     MetricRequest request = mock(MetricRequest.class);
@@ -448,6 +513,119 @@ public class PubSdkApiTest {
     assertThat(response).hasContent("myResponse");
   }
 
+  @Test
+  public void postLogs_GivenPooledTransportAndConsecutiveCalls_ReuseConnection() throws Exception {
+    assumeTrue(isPooledTransport);
+
+    List<RemoteLogRecords> request = new ArrayList<>();
+    mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+
+    api.postLogs(request);
+    api.postLogs(request);
+
+    assertThat(mockWebServer.takeRequest().getSequenceNumber()).isEqualTo(0);
+    assertThat(mockWebServer.takeRequest().getSequenceNumber()).isEqualTo(1);
+    assertThat(mockWebServer.getConnectionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void executeRawGet_GivenPooledTransportAndUnreadResponse_DrainItAndReuseConnection()
+      throws Exception {
+    assumeTrue(isPooledTransport);
+
+    mockWebServer.enqueue(new MockResponse().setBody("myResponse"));
+    mockWebServer.enqueue(new MockResponse().setBody("myResponse"));
+
+    api.executeRawGet(serverUrl).close();
+    api.executeRawGet(serverUrl).close();
+
+    assertThat(mockWebServer.getConnectionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void postCsm_GivenGzipEnabled_SendCompressedRequest() throws Exception {
+    when(buildConfigWrapper.isGzipRequestEnabled()).thenReturn(true);
+    MetricRequest request = mock(MetricRequest.class);
+    String json = "{\"expectedJson\": 42}";
+
+    givenSerializerWriting(request, json);
+
+    mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+
+    api.postCsm(request);
+
+    RecordedRequest webRequest = mockWebServer.takeRequest();
+    assertThat(webRequest.getHeader("Content-Encoding")).isEqualTo("gzip");
+    assertThat(webRequest.getHeader("Content-Type")).isEqualTo("text/plain");
+    assertThat(gunzip(webRequest.getBody())).isEqualTo(json);
+  }
+
+  @Test
+  public void postLogs_GivenGzipEnabledAndUnsupportedByEndpoint_RetryAndSendNextRequestsUncompressed()
+      throws Exception {
+    when(buildConfigWrapper.isGzipRequestEnabled()).thenReturn(true);
+    List<RemoteLogRecords> request = new ArrayList<>();
+    String json = "{\"expectedJson\": 42}";
+
+    givenSerializerWriting(request, json);
+
+    mockWebServer.enqueue(new MockResponse().setResponseCode(415));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+
+    api.postLogs(request);
+    api.postLogs(request);
+
+    RecordedRequest rejectedRequest = mockWebServer.takeRequest();
+    assertThat(rejectedRequest.getHeader("Content-Encoding")).isEqualTo("gzip");
+
+    RecordedRequest retriedRequest = mockWebServer.takeRequest();
+    assertThat(retriedRequest.getHeader("Content-Encoding")).isNull();
+    assertThat(retriedRequest.getBody().snapshot().utf8()).isEqualTo(json);
+
+    RecordedRequest nextRequest = mockWebServer.takeRequest();
+    assertThat(nextRequest.getHeader("Content-Encoding")).isNull();
+    assertThat(nextRequest.getBody().snapshot().utf8()).isEqualTo(json);
+  }
+
+  @Test
+  public void loadCdb_GivenGzipEnabledAndOtherHttpError_ThrowIt() throws Exception {
+    when(buildConfigWrapper.isGzipRequestEnabled()).thenReturn(true);
+    CdbRequest cdbRequest = givenEmptyCdbRequest();
+
+    mockWebServer.enqueue(new MockResponse().setResponseCode(400));
+
+    assertThatCode(() -> api.loadCdb(cdbRequest, "")).isInstanceOf(HttpResponseException.class);
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void loadCdb_GivenCompressedResponse_DecompressIt() throws Exception {
+    CdbRequest cdbRequest = givenEmptyCdbRequest();
+
+    Buffer compressedBody = new Buffer();
+    try (BufferedSink sink = Okio.buffer(new GzipSink(compressedBody))) {
+      sink.writeUtf8("{\"slots\":[],\"timeToNextCall\":42}");
+    }
+
+    mockWebServer.enqueue(new MockResponse()
+        .setResponseCode(200)
+        .setHeader("Content-Encoding", "gzip")
+        .setBody(compressedBody));
+
+    CdbResponse cdbResponse = api.loadCdb(cdbRequest, "");
+
+    assertThat(cdbResponse.getTimeToNextCall()).isEqualTo(42);
+  }
+
+  @NonNull
+  private static String gunzip(@NonNull Buffer compressed) throws IOException {
+    try (BufferedSource source = Okio.buffer(new GzipSource(compressed))) {
+      return source.readUtf8();
+    }
+  }
+
   @NonNull
   private CdbRequest givenEmptyCdbRequest() throws Exception {
     CdbRequest cdbRequest = mock(CdbRequest.class);
@@ -48,6 +48,10 @@ public class CdbMockResource implements TestResource {
     BuildConfigWrapper buildConfigWrapper = spy(dependencyProvider.provideBuildConfigWrapper());
     when(buildConfigWrapper.getCdbUrl()).thenReturn(cdbMock.getUrl());
     when(buildConfigWrapper.getEventUrl()).thenReturn(cdbMock.getUrl());
+
+    // Coalesced bid requests are delayed on a scheduled executor that is not tracked while waiting
+    // for idle state. Send them directly so tests stay deterministic.
+    when(buildConfigWrapper.getBidRequestCoalescingWindowInMillis()).thenReturn(0);
     when(dependencyProvider.provideBuildConfigWrapper()).thenReturn(buildConfigWrapper);
 
     doReturn(cdbMock).when(dependencyProvider).provideCdbMock();